@@ -0,0 +1,70 @@
+package org.molgenis.genotype.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Lookup of pooled sample alleles, single threaded and contended
+ */
+@State(Scope.Thread)
+public class AllelesBenchmark
+{
+	private static final Allele[] SNP_ALLELES = new Allele[]
+	{ Allele.A, Allele.C, Allele.G, Allele.T, Allele.ZERO };
+	private static final Allele[] INDEL_ALLELES = new Allele[]
+	{ Allele.create("A"), Allele.create("AT"), Allele.create("ATT"), Allele.create("I"), Allele.create("D") };
+
+	private int next;
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Alleles createSnpAlleles()
+	{
+		int pair = nextPair();
+		return Alleles.createAlleles(SNP_ALLELES[pair % 5], SNP_ALLELES[(pair / 5) % 5]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Alleles createIndelAlleles()
+	{
+		int pair = nextPair();
+		return Alleles.createAlleles(INDEL_ALLELES[pair % 5], INDEL_ALLELES[(pair / 5) % 5]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Alleles createAllelesList()
+	{
+		int pair = nextPair();
+		return Alleles.createAlleles(Arrays.asList(SNP_ALLELES[pair % 5], SNP_ALLELES[(pair / 5) % 5]));
+	}
+
+	private int nextPair()
+	{
+		next = next == 24 ? 0 : next + 1;
+		return next;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@Threads(4)
+	public Alleles createSnpAllelesContended()
+	{
+		return createSnpAlleles();
+	}
+}
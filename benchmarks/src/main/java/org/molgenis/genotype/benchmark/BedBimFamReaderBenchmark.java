@@ -0,0 +1,91 @@
+package org.molgenis.genotype.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.plink.readers.BedBimFamReader;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding of the sample alleles and called dosages of all variants in a BED
+ * file
+ */
+@State(Scope.Benchmark)
+public class BedBimFamReaderBenchmark
+{
+	@Param(
+	{ "100", "1000", "10000" })
+	public int sampleCount;
+
+	@Param(
+	{ "1000" })
+	public int variantCount;
+
+	private File directory;
+	private BedBimFamReader reader;
+	private List<GeneticVariant> variants;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		directory = BenchmarkFiles.createTempDirectory();
+		File bedFile = new File(directory, "synthetic.bed");
+		File bimFile = new File(directory, "synthetic.bim");
+		File famFile = new File(directory, "synthetic.fam");
+		new SyntheticGenotypes(sampleCount, variantCount, BenchmarkFiles.SEED).writeBedBimFam(bedFile, bimFile,
+				famFile);
+
+		reader = new BedBimFamReader(bedFile, bimFile, famFile);
+		reader.setIndividuals();
+		reader.setSnps();
+
+		variants = new ArrayList<GeneticVariant>(variantCount);
+		for (int i = 0; i < variantCount; ++i)
+		{
+			variants.addAll(reader.loadVariantsForIndex(i));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void getSampleVariants(Blackhole blackhole)
+	{
+		for (GeneticVariant variant : variants)
+		{
+			blackhole.consume(reader.getSampleVariants(variant));
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void getSampleCalledDosage(Blackhole blackhole)
+	{
+		for (GeneticVariant variant : variants)
+		{
+			blackhole.consume(reader.getSampleCalledDosage(variant));
+		}
+	}
+}
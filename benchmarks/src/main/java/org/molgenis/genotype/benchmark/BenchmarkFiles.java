@@ -0,0 +1,30 @@
+package org.molgenis.genotype.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Shared settings of the benchmarks that read synthetic files
+ */
+public class BenchmarkFiles
+{
+	/** Seed of all synthetic data, fixed so runs can be compared */
+	public static final long SEED = 20130601L;
+
+	private BenchmarkFiles()
+	{
+	}
+
+	/**
+	 * @return a new empty directory in the temporary directory
+	 */
+	public static File createTempDirectory() throws IOException
+	{
+		File directory = File.createTempFile("genotype-benchmark", "");
+		if (!directory.delete() || !directory.mkdir())
+		{
+			throw new IOException("Could not create temporary directory " + directory.getAbsolutePath());
+		}
+		return directory;
+	}
+}
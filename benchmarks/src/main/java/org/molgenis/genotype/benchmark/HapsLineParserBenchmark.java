@@ -0,0 +1,46 @@
+package org.molgenis.genotype.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.molgenis.genotype.impute2.HapsLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing of a single haps line
+ */
+@State(Scope.Benchmark)
+public class HapsLineParserBenchmark
+{
+	private static final int LINE_COUNT = 256;
+
+	@Param(
+	{ "100", "1000", "10000" })
+	public int sampleCount;
+
+	private String[] lines;
+	private int nextLine;
+
+	@Setup
+	public void setUp()
+	{
+		List<String> hapsLines = new SyntheticGenotypes(sampleCount, LINE_COUNT, BenchmarkFiles.SEED)
+				.createHapsLines();
+		lines = hapsLines.toArray(new String[hapsLines.size()]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object parse()
+	{
+		return HapsLineParser.parse(lines[nextLine++ & (LINE_COUNT - 1)]);
+	}
+}
@@ -0,0 +1,84 @@
+package org.molgenis.genotype.benchmark;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantUniqueIdProvider;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
+
+/**
+ * Sample data of synthetic variants, found by the position of the variant
+ */
+class InMemorySampleVariantsProvider implements SampleVariantsProvider
+{
+	private final SyntheticGenotypes genotypes;
+	private final List<Boolean> phasing;
+	private final int sampleVariantProviderUniqueId;
+
+	public InMemorySampleVariantsProvider(SyntheticGenotypes genotypes)
+	{
+		this.genotypes = genotypes;
+		this.phasing = Collections.nCopies(genotypes.getSampleCount(), false);
+		this.sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
+	}
+
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant)
+	{
+		return genotypes.getSampleAlleles(SyntheticGenotypes.getVariantIndex(variant.getStartPos()));
+	}
+
+	@Override
+	public List<Boolean> getSamplePhasing(GeneticVariant variant)
+	{
+		return phasing;
+	}
+
+	@Override
+	public int cacheSize()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getSampleVariantProviderUniqueId()
+	{
+		return sampleVariantProviderUniqueId;
+	}
+
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		byte[] calledDosage = new byte[genotypes.getSampleCount()];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		// the reference is the first allele and the called dosage counts the
+		// reference alleles
+		byte[] variantGenotypes = genotypes.getGenotypes(SyntheticGenotypes.getVariantIndex(variant.getStartPos()));
+		for (int i = 0; i < variantGenotypes.length; ++i)
+		{
+			calledDosage[i] = variantGenotypes[i] < 0 ? -1 : (byte) (2 - variantGenotypes[i]);
+		}
+	}
+
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant)
+	{
+		return CalledDosageConvertor.convertCalledDosageToDosage(getSampleCalledDosage(variant));
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return false;
+	}
+
+}
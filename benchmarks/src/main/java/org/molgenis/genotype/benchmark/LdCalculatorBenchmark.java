@@ -0,0 +1,47 @@
+package org.molgenis.genotype.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.molgenis.genotype.util.LdCalculator;
+import org.molgenis.genotype.util.LdCalculatorException;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * LD between pairs of in memory variants, includes loading the called dosages
+ */
+@State(Scope.Benchmark)
+public class LdCalculatorBenchmark
+{
+	private static final int VARIANT_COUNT = 256;
+
+	@Param(
+	{ "100", "1000", "10000" })
+	public int sampleCount;
+
+	private List<GeneticVariant> variants;
+	private int nextPair;
+
+	@Setup
+	public void setUp()
+	{
+		variants = new SyntheticGenotypes(sampleCount, VARIANT_COUNT, BenchmarkFiles.SEED).createVariants();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object calculateLd() throws LdCalculatorException
+	{
+		int pair = nextPair++ & (VARIANT_COUNT - 1);
+		return LdCalculator.calculateLd(variants.get(pair), variants.get((pair + 1) & (VARIANT_COUNT - 1)));
+	}
+}
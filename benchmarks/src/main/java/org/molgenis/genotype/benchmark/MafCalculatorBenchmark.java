@@ -0,0 +1,77 @@
+package org.molgenis.genotype.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.util.MafCalculator;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * MAF from sample alleles and from called dosages, the sample data is
+ * prepared in advance
+ */
+@State(Scope.Benchmark)
+public class MafCalculatorBenchmark
+{
+	private static final int VARIANT_COUNT = 256;
+
+	@Param(
+	{ "100", "1000", "10000" })
+	public int sampleCount;
+
+	private Alleles[] variantAlleles;
+	private Allele[] refAlleles;
+	private List<List<Alleles>> sampleAlleles;
+	private byte[][] calledDosages;
+	private int nextVariant;
+
+	@Setup
+	public void setUp()
+	{
+		SyntheticGenotypes genotypes = new SyntheticGenotypes(sampleCount, VARIANT_COUNT, BenchmarkFiles.SEED);
+		List<GeneticVariant> variants = genotypes.createVariants();
+
+		variantAlleles = new Alleles[VARIANT_COUNT];
+		refAlleles = new Allele[VARIANT_COUNT];
+		sampleAlleles = new ArrayList<List<Alleles>>(VARIANT_COUNT);
+		calledDosages = new byte[VARIANT_COUNT][];
+		for (int i = 0; i < VARIANT_COUNT; ++i)
+		{
+			GeneticVariant variant = variants.get(i);
+			variantAlleles[i] = variant.getVariantAlleles();
+			refAlleles[i] = variant.getRefAllele();
+			sampleAlleles.add(variant.getSampleVariants());
+			calledDosages[i] = variant.getSampleCalledDosages();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object calculateMaf()
+	{
+		int variant = nextVariant++ & (VARIANT_COUNT - 1);
+		return MafCalculator.calculateMaf(variantAlleles[variant], refAlleles[variant], sampleAlleles.get(variant));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object calculateMafFromCalledDosage()
+	{
+		int variant = nextVariant++ & (VARIANT_COUNT - 1);
+		return MafCalculator.calculateMafFromCalledDosage(variantAlleles[variant], refAlleles[variant],
+				calledDosages[variant], sampleCount);
+	}
+}
@@ -0,0 +1,310 @@
+package org.molgenis.genotype.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.plink.datatypes.BimEntry;
+import org.molgenis.genotype.plink.datatypes.FamEntry;
+import org.molgenis.genotype.plink.writers.BimFileWriter;
+import org.molgenis.genotype.plink.writers.FamFileWriter;
+import org.molgenis.genotype.tabix.TabixIndexWriter;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+
+/**
+ * Random bi-allelic genotypes of diploid samples on a single sequence. The
+ * same seed always gives the same genotypes, so benchmark runs are
+ * reproducible.
+ *
+ * The genotypes can be written as a bgzipped VCF with tabix index, as
+ * BED/BIM/FAM and as haps lines, or used as in memory variants.
+ */
+public class SyntheticGenotypes
+{
+	public static final String SEQUENCE = "1";
+	public static final int FIRST_POSITION = 10000;
+	public static final int POSITION_STEP = 100;
+
+	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+	private static final char[] BASES = new char[]
+	{ 'A', 'C', 'G', 'T' };
+	private static final double MISSING_RATE = 0.01;
+	private static final byte MISSING = -1;
+
+	// BED genotype codes by number of alternative alleles
+	private static final int[] BED_CODES = new int[]
+	{ 0, 2, 3 };
+	private static final int BED_MISSING_CODE = 1;
+
+	private final int sampleCount;
+	private final int variantCount;
+	private final char[] refAlleles;
+	private final char[] altAlleles;
+	/** Number of alternative alleles per variant per sample, -1 for missing */
+	private final byte[][] genotypes;
+
+	public SyntheticGenotypes(int sampleCount, int variantCount, long seed)
+	{
+		this.sampleCount = sampleCount;
+		this.variantCount = variantCount;
+		this.refAlleles = new char[variantCount];
+		this.altAlleles = new char[variantCount];
+		this.genotypes = new byte[variantCount][sampleCount];
+
+		Random random = new Random(seed);
+		for (int v = 0; v < variantCount; ++v)
+		{
+			int ref = random.nextInt(BASES.length);
+			refAlleles[v] = BASES[ref];
+			altAlleles[v] = BASES[(ref + 1 + random.nextInt(BASES.length - 1)) % BASES.length];
+
+			double altFrequency = 0.01 + random.nextDouble() * 0.49;
+			for (int s = 0; s < sampleCount; ++s)
+			{
+				if (random.nextDouble() < MISSING_RATE)
+				{
+					genotypes[v][s] = MISSING;
+				}
+				else
+				{
+					genotypes[v][s] = (byte) ((random.nextDouble() < altFrequency ? 1 : 0) + (random.nextDouble() < altFrequency ? 1
+							: 0));
+				}
+			}
+		}
+	}
+
+	public int getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	public int getVariantCount()
+	{
+		return variantCount;
+	}
+
+	public static int getPosition(int variantIndex)
+	{
+		return FIRST_POSITION + variantIndex * POSITION_STEP;
+	}
+
+	public static int getVariantIndex(int position)
+	{
+		return (position - FIRST_POSITION) / POSITION_STEP;
+	}
+
+	public static String getVariantId(int variantIndex)
+	{
+		return "rs" + (variantIndex + 1);
+	}
+
+	public static String getSampleId(int sampleIndex)
+	{
+		return "sample" + (sampleIndex + 1);
+	}
+
+	public char getRefAllele(int variantIndex)
+	{
+		return refAlleles[variantIndex];
+	}
+
+	public char getAltAllele(int variantIndex)
+	{
+		return altAlleles[variantIndex];
+	}
+
+	/**
+	 * @return number of alternative alleles per sample, -1 for missing
+	 */
+	public byte[] getGenotypes(int variantIndex)
+	{
+		return genotypes[variantIndex];
+	}
+
+	/**
+	 * @return the alleles of all samples, missing genotypes are 0 alleles
+	 */
+	public List<Alleles> getSampleAlleles(int variantIndex)
+	{
+		Allele ref = Allele.create(refAlleles[variantIndex]);
+		Allele alt = Allele.create(altAlleles[variantIndex]);
+		Alleles[] allelesByGenotype = new Alleles[]
+		{ Alleles.createAlleles(ref, ref), Alleles.createAlleles(ref, alt), Alleles.createAlleles(alt, alt) };
+		Alleles missing = Alleles.createAlleles(Allele.ZERO, Allele.ZERO);
+
+		List<Alleles> sampleAlleles = new ArrayList<Alleles>(sampleCount);
+		for (byte genotype : genotypes[variantIndex])
+		{
+			sampleAlleles.add(genotype == MISSING ? missing : allelesByGenotype[genotype]);
+		}
+		return sampleAlleles;
+	}
+
+	/**
+	 * @return in memory variants, the sample data is read from these genotypes
+	 */
+	public List<GeneticVariant> createVariants()
+	{
+		InMemorySampleVariantsProvider sampleVariantsProvider = new InMemorySampleVariantsProvider(this);
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(variantCount);
+		for (int v = 0; v < variantCount; ++v)
+		{
+			variants.add(ReadOnlyGeneticVariant.createSnp(getVariantId(v), getPosition(v), SEQUENCE,
+					sampleVariantsProvider, refAlleles[v], altAlleles[v], refAlleles[v]));
+		}
+		return variants;
+	}
+
+	/**
+	 * @return tab separated haps lines as read by HapsLineParser, missing
+	 *         genotypes are written as homozygous reference
+	 */
+	public List<String> createHapsLines()
+	{
+		List<String> lines = new ArrayList<String>(variantCount);
+		StringBuilder line = new StringBuilder();
+		for (int v = 0; v < variantCount; ++v)
+		{
+			line.setLength(0);
+			line.append(SEQUENCE).append('\t').append(getVariantId(v)).append('\t').append(getPosition(v))
+					.append('\t').append(refAlleles[v]).append('\t').append(altAlleles[v]);
+			for (byte genotype : genotypes[v])
+			{
+				line.append(genotype >= 1 ? "\t1" : "\t0").append(genotype == 2 ? "\t1" : "\t0");
+			}
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * Write a bgzipped VCF with the GT field and its tabix index
+	 */
+	public void writeVcf(File vcfFile, File tabixIndexFile) throws IOException
+	{
+		TabixIndexWriter indexWriter = TabixIndexWriter.createVcfIndexWriter();
+
+		BlockCompressedOutputStream vcfOut = new BlockCompressedOutputStream(vcfFile);
+		try
+		{
+			StringBuilder header = new StringBuilder();
+			header.append("##fileformat=VCFv4.1\n");
+			header.append("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">\n");
+			header.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+			for (int s = 0; s < sampleCount; ++s)
+			{
+				header.append('\t').append(getSampleId(s));
+			}
+			header.append('\n');
+			vcfOut.write(header.toString().getBytes(CHARSET_UTF8));
+
+			StringBuilder line = new StringBuilder();
+			for (int v = 0; v < variantCount; ++v)
+			{
+				line.setLength(0);
+				line.append(SEQUENCE).append('\t').append(getPosition(v)).append('\t').append(getVariantId(v))
+						.append('\t').append(refAlleles[v]).append('\t').append(altAlleles[v])
+						.append("\t.\tPASS\t.\tGT");
+				for (byte genotype : genotypes[v])
+				{
+					switch (genotype)
+					{
+						case 0:
+							line.append("\t0/0");
+							break;
+						case 1:
+							line.append("\t0/1");
+							break;
+						case 2:
+							line.append("\t1/1");
+							break;
+						default:
+							line.append("\t./.");
+					}
+				}
+				line.append('\n');
+
+				long lineBegin = vcfOut.getFilePointer();
+				vcfOut.write(line.toString().getBytes(CHARSET_UTF8));
+				indexWriter.addLine(SEQUENCE, getPosition(v) - 1, getPosition(v), lineBegin, vcfOut.getFilePointer());
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(vcfOut);
+		}
+
+		indexWriter.write(tabixIndexFile);
+	}
+
+	/**
+	 * Write a SNP major BED file with BIM and FAM. The reference allele is the
+	 * first allele in the BIM file.
+	 */
+	public void writeBedBimFam(File bedFile, File bimFile, File famFile) throws IOException
+	{
+		FamFileWriter famWriter = new FamFileWriter(famFile);
+		try
+		{
+			for (int s = 0; s < sampleCount; ++s)
+			{
+				famWriter.write(new FamEntry(getSampleId(s), getSampleId(s), "0", "0", (byte) 0, -9));
+			}
+		}
+		finally
+		{
+			famWriter.close();
+		}
+
+		BimFileWriter bimWriter = new BimFileWriter(bimFile);
+		try
+		{
+			for (int v = 0; v < variantCount; ++v)
+			{
+				bimWriter.write(new BimEntry(SEQUENCE, getVariantId(v), 0, getPosition(v), Alleles
+						.createBasedOnChars(refAlleles[v], altAlleles[v])));
+			}
+		}
+		finally
+		{
+			bimWriter.close();
+		}
+
+		OutputStream bedOut = new FileOutputStream(bedFile);
+		try
+		{
+			bedOut.write(new byte[]
+			{ 0x6c, 0x1b, 0x01 });
+			byte[] snpBytes = new byte[(sampleCount + 3) / 4];
+			for (int v = 0; v < variantCount; ++v)
+			{
+				Arrays.fill(snpBytes, (byte) 0);
+				byte[] variantGenotypes = genotypes[v];
+				for (int s = 0; s < sampleCount; ++s)
+				{
+					int code = variantGenotypes[s] == MISSING ? BED_MISSING_CODE : BED_CODES[variantGenotypes[s]];
+					snpBytes[s >> 2] |= code << ((s & 3) << 1);
+				}
+				bedOut.write(snpBytes);
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(bedOut);
+		}
+	}
+
+}
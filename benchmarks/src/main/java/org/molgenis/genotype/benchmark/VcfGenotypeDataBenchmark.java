@@ -0,0 +1,108 @@
+package org.molgenis.genotype.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Sequential and random access reading of a bgzipped VCF without sample data
+ * cache
+ */
+@State(Scope.Benchmark)
+public class VcfGenotypeDataBenchmark
+{
+	private static final int QUERY_COUNT = 1024;
+
+	@Param(
+	{ "100", "1000" })
+	public int sampleCount;
+
+	@Param(
+	{ "10000" })
+	public int variantCount;
+
+	/** Threads inflating the blocks of sequential reads, 0 to not read ahead */
+	@Param(
+	{ "0", "4" })
+	public int inflaterThreads;
+
+	private File directory;
+	private ExecutorService inflater;
+	private VcfGenotypeData genotypeData;
+	private int[] queryPositions;
+	private int nextQuery;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		directory = BenchmarkFiles.createTempDirectory();
+		File vcfFile = new File(directory, "synthetic.vcf.gz");
+		File tabixIndexFile = new File(directory, "synthetic.vcf.gz.tbi");
+		new SyntheticGenotypes(sampleCount, variantCount, BenchmarkFiles.SEED).writeVcf(vcfFile, tabixIndexFile);
+
+		genotypeData = new VcfGenotypeData(vcfFile, tabixIndexFile, 0);
+		if (inflaterThreads > 0)
+		{
+			inflater = Executors.newFixedThreadPool(inflaterThreads);
+			genotypeData.setParallelInflater(inflater);
+		}
+
+		Random random = new Random(BenchmarkFiles.SEED);
+		queryPositions = new int[QUERY_COUNT];
+		for (int i = 0; i < QUERY_COUNT; ++i)
+		{
+			queryPositions[i] = SyntheticGenotypes.getPosition(random.nextInt(variantCount));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		if (inflater != null)
+		{
+			inflater.shutdown();
+		}
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void sequentialCalledDosages(Blackhole blackhole)
+	{
+		for (GeneticVariant variant : genotypeData)
+		{
+			blackhole.consume(variant.getSampleCalledDosages());
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void randomAccessCalledDosages(Blackhole blackhole)
+	{
+		int position = queryPositions[nextQuery++ & (QUERY_COUNT - 1)];
+		for (GeneticVariant variant : genotypeData.getVariantsByPos(SyntheticGenotypes.SEQUENCE, position))
+		{
+			blackhole.consume(variant.getSampleCalledDosages());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.benchmark.BenchmarkFiles;
+import org.molgenis.genotype.benchmark.SyntheticGenotypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Region queries on the tabix index, returning the raw lines. In this package
+ * because queryTabixIndex is not public.
+ */
+@State(Scope.Benchmark)
+public class TabixIndexBenchmark
+{
+	private static final int QUERY_COUNT = 1024;
+
+	@Param(
+	{ "100" })
+	public int sampleCount;
+
+	@Param(
+	{ "100000" })
+	public int variantCount;
+
+	/** Number of variants in a queried region */
+	@Param(
+	{ "1", "100" })
+	public int regionSize;
+
+	private File directory;
+	private TabixIndex index;
+	private int[] queryStarts;
+	private int nextQuery;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		directory = BenchmarkFiles.createTempDirectory();
+		File vcfFile = new File(directory, "synthetic.vcf.gz");
+		File tabixIndexFile = new File(directory, "synthetic.vcf.gz.tbi");
+		new SyntheticGenotypes(sampleCount, variantCount, BenchmarkFiles.SEED).writeVcf(vcfFile, tabixIndexFile);
+
+		index = new TabixIndex(tabixIndexFile, vcfFile, null);
+
+		Random random = new Random(BenchmarkFiles.SEED);
+		queryStarts = new int[QUERY_COUNT];
+		for (int i = 0; i < QUERY_COUNT; ++i)
+		{
+			queryStarts[i] = SyntheticGenotypes.getPosition(random.nextInt(variantCount - regionSize + 1));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void queryRegion(Blackhole blackhole) throws IOException
+	{
+		int start = queryStarts[nextQuery++ & (QUERY_COUNT - 1)];
+		int end = start + (regionSize - 1) * SyntheticGenotypes.POSITION_STEP;
+
+		BlockCompressedInputStream inputStream = index.borrowInputStream();
+		try
+		{
+			// tabix uses 0-based half open regions
+			TabixIndex.TabixIterator iterator = index.queryTabixIndex(SyntheticGenotypes.SEQUENCE, start - 1, end,
+					inputStream);
+			String line;
+			while (iterator != null && (line = iterator.next()) != null)
+			{
+				blackhole.consume(line);
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+}
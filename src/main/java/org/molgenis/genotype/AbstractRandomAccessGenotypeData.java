@@ -1,12 +1,20 @@
 package org.molgenis.genotype;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.molgenis.genotype.util.Utils;
+import org.molgenis.genotype.util.VariantIdIndex;
 import org.molgenis.genotype.variant.GeneticVariant;
 
 public abstract class AbstractRandomAccessGenotypeData extends AbstractGenotypeData implements RandomAccessGenotypeData
 {
+	private volatile VariantIdIndex variantIdIndex;
+
 	@Override
 	public Sequence getSequenceByName(String name)
 	{
@@ -24,8 +32,34 @@ public abstract class AbstractRandomAccessGenotypeData extends AbstractGenotypeD
 	@Override
 	public GeneticVariant getSnpVariantByPos(String seqName, int startPos)
 	{
-		Iterable<GeneticVariant> variants = getVariantsByPos(seqName, startPos);
+		return getSnpVariant(getVariantsByPos(seqName, startPos));
+	}
+
+	@Override
+	public List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<List<GeneticVariant>> variants = new ArrayList<List<GeneticVariant>>(positions.size());
+		for (GenomicPosition position : positions)
+		{
+			variants.add(Utils.iteratorToList(getVariantsByPos(position.getSequenceName(), position.getPosition())
+					.iterator()));
+		}
+		return variants;
+	}
 
+	@Override
+	public List<GeneticVariant> getSnpVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<GeneticVariant> snpVariants = new ArrayList<GeneticVariant>(positions.size());
+		for (List<GeneticVariant> variants : getVariantsByPositions(positions))
+		{
+			snpVariants.add(getSnpVariant(variants));
+		}
+		return snpVariants;
+	}
+
+	private static GeneticVariant getSnpVariant(Iterable<GeneticVariant> variants)
+	{
 		for (GeneticVariant variant : variants)
 		{
 			if (variant.isSnp())
@@ -36,7 +70,87 @@ public abstract class AbstractRandomAccessGenotypeData extends AbstractGenotypeD
 		}
 
 		return null;
+	}
+
+	/**
+	 * Uses the variant ID index if there is one, otherwise all variants are
+	 * scanned
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		VariantIdIndex index = variantIdIndex;
+		if (index == null)
+		{
+			for (GeneticVariant variant : this)
+			{
+				if (variant.getVariantId().isIdInVariantIds(variantId))
+				{
+					return variant;
+				}
+			}
+			return null;
+		}
+
+		for (GenomicPosition position : index.getCandidatePositions(variantId))
+		{
+			for (GeneticVariant variant : getVariantsByPos(position.getSequenceName(), position.getPosition()))
+			{
+				if (variant.getVariantId().isIdInVariantIds(variantId))
+				{
+					return variant;
+				}
+			}
+		}
+		return null;
+	}
+
+	public VariantIdIndex getVariantIdIndex()
+	{
+		return variantIdIndex;
+	}
 
+	/**
+	 * @param variantIdIndex
+	 *            index of the variants of this data, null to scan all
+	 *            variants for ID lookups
+	 */
+	public void setVariantIdIndex(VariantIdIndex variantIdIndex)
+	{
+		this.variantIdIndex = variantIdIndex;
+	}
+
+	/**
+	 * Index the IDs of all variants and use the index for ID lookups
+	 * 
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public void createVariantIdIndex(File indexFile) throws IOException
+	{
+		setVariantIdIndex(VariantIdIndex.create(this, indexFile));
+	}
+
+	/**
+	 * Open the sidecar variant ID index of the data file if it exists and is
+	 * not older than the data file
+	 * 
+	 * @param dataFile
+	 */
+	protected void openDefaultVariantIdIndex(File dataFile)
+	{
+		File indexFile = VariantIdIndex.getDefaultIndexFile(dataFile);
+		if (VariantIdIndex.isUpToDate(indexFile, dataFile))
+		{
+			try
+			{
+				setVariantIdIndex(VariantIdIndex.open(indexFile));
+			}
+			catch (IOException e)
+			{
+				throw new GenotypeDataException("Error reading variant ID index: " + indexFile.getAbsolutePath(), e);
+			}
+		}
 	}
 
 	@Override
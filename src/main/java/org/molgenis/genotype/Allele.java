@@ -1,15 +1,21 @@
 package org.molgenis.genotype;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.molgenis.genotype.util.Utils;
 
 public class Allele implements Comparable<Allele>
 {
 
-	private static Map<String, Allele> pool = new HashMap<String, Allele>();
-	private static Map<Character, Allele> snpPool = new HashMap<Character, Allele>();
+	/**
+	 * Interning pools. Reads are lock-free, new alleles are created while
+	 * holding the class lock so an allele and its complement are published
+	 * together.
+	 */
+	private static final ConcurrentHashMap<String, Allele> pool = new ConcurrentHashMap<String, Allele>();
+	/** Single character alleles by ASCII value */
+	private static final AtomicReferenceArray<Allele> charPool = new AtomicReferenceArray<Allele>(128);
 
 	public final static Allele A = create('A');
 	public final static Allele C = create('C');
@@ -43,11 +49,6 @@ public class Allele implements Comparable<Allele>
 		this.allele = allele;
 	}
 
-	private Allele(char allele)
-	{
-		this(String.valueOf(allele));
-	}
-
 	public boolean isSnpAllele()
 	{
 		return (byte) snpAllele != -1;
@@ -69,11 +70,6 @@ public class Allele implements Comparable<Allele>
 		return snpAllele;
 	}
 
-	private void addComplement(Allele complement)
-	{
-		this.complement = complement;
-	}
-
 	public Allele getComplement()
 	{
 		if (isSnpAllele())
@@ -88,44 +84,64 @@ public class Allele implements Comparable<Allele>
 
 	public static Allele create(String alleleString)
 	{
+		Allele allele = pool.get(alleleString);
+		return allele != null ? allele : createNew(alleleString);
+	}
 
-		if (pool.containsKey(alleleString))
-		{
-
-			return pool.get(alleleString);
-		}
-		else
+	public static Allele create(char alleleChar)
+	{
+		if (alleleChar < charPool.length())
 		{
-
-			Allele newAllele = new Allele(alleleString);
-			pool.put(alleleString, newAllele);
-			if (newAllele.isSnpAllele())
+			Allele allele = charPool.get(alleleChar);
+			if (allele != null)
 			{
-				snpPool.put(newAllele.getAlleleAsSnp(), newAllele);
-				newAllele.addComplement(Allele.create(Utils.getComplementNucleotide(newAllele.getAlleleAsSnp())));
+				return allele;
 			}
-			return newAllele;
-
 		}
+		return create(String.valueOf(alleleChar));
 	}
 
-	public static Allele create(char alleleChar)
+	private static synchronized Allele createNew(String alleleString)
 	{
-
-		if (snpPool.containsKey(alleleChar))
+		Allele allele = pool.get(alleleString);
+		if (allele != null)
 		{
-
-			return snpPool.get(alleleChar);
+			return allele;
 		}
-		else
+
+		Allele newAllele = new Allele(alleleString);
+		if (newAllele.isSnpAllele())
 		{
-			Allele newAllele = new Allele(alleleChar);
-			snpPool.put(alleleChar, newAllele);
-			pool.put(newAllele.getAlleleAsString(), newAllele);
-			newAllele.addComplement(Allele.create(Utils.getComplementNucleotide(alleleChar)));
-			return newAllele;
+			// SNP alleles are created together with their complement
+			String complementString = String.valueOf(Utils.getComplementNucleotide(newAllele.getAlleleAsSnp()));
+			if (complementString.equals(alleleString))
+			{
+				newAllele.complement = newAllele;
+			}
+			else
+			{
+				Allele complement = pool.get(complementString);
+				if (complement == null)
+				{
+					complement = new Allele(complementString);
+					complement.complement = newAllele;
+				}
+				// link both before publishing either of them
+				newAllele.complement = complement;
+				publish(complement);
+			}
 		}
+		publish(newAllele);
+		return newAllele;
+	}
 
+	private static void publish(Allele allele)
+	{
+		pool.put(allele.allele, allele);
+		if (allele.allele.length() == 1 && allele.allele.charAt(0) < charPool.length())
+		{
+			charPool.set(allele.allele.charAt(0), allele);
+		}
 	}
 
 	@Override
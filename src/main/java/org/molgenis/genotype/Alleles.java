@@ -1,15 +1,52 @@
 package org.molgenis.genotype;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Alleles implements Iterable<Allele>, Comparable<Alleles>
 {
-	private static final Map<List<Allele>, Alleles> pool = new HashMap<List<Allele>, Alleles>();
+	/**
+	 * Interning pool. Reads are lock-free, new alleles are created while
+	 * holding the class lock so alleles and their complement are published
+	 * together.
+	 */
+	private static final ConcurrentHashMap<List<Allele>, Alleles> pool = new ConcurrentHashMap<List<Allele>, Alleles>();
+
+	/** Alleles that have a code in the pair table */
+	private static final Allele[] PAIR_TABLE_ALLELES =
+	{ Allele.A, Allele.C, Allele.G, Allele.T, Allele.ZERO };
+	/** Pair table code by allele char, -1 if not in the table */
+	private static final byte[] PAIR_TABLE_CODES = new byte[128];
+	/**
+	 * All pairs of the pair table alleles, indexed by the codes of the first
+	 * and second allele. Filled during class initialization so reads need no
+	 * synchronization.
+	 */
+	private static final Alleles[] PAIR_TABLE = new Alleles[PAIR_TABLE_ALLELES.length * PAIR_TABLE_ALLELES.length];
+
+	static
+	{
+		Arrays.fill(PAIR_TABLE_CODES, (byte) -1);
+		for (int i = 0; i < PAIR_TABLE_ALLELES.length; ++i)
+		{
+			PAIR_TABLE_CODES[PAIR_TABLE_ALLELES[i].getAlleleAsSnp()] = (byte) i;
+		}
+
+		for (int i = 0; i < PAIR_TABLE_ALLELES.length; ++i)
+		{
+			for (int j = 0; j < PAIR_TABLE_ALLELES.length; ++j)
+			{
+				ArrayList<Allele> pair = new ArrayList<Allele>(2);
+				pair.add(PAIR_TABLE_ALLELES[i]);
+				pair.add(PAIR_TABLE_ALLELES[j]);
+				PAIR_TABLE[i * PAIR_TABLE_ALLELES.length + j] = createAlleles(pair);
+			}
+		}
+	}
 
 	private final List<Allele> alleles;
 	private final boolean snp;
@@ -85,22 +122,57 @@ public class Alleles implements Iterable<Allele>, Comparable<Alleles>
 
 	public static Alleles createAlleles(List<Allele> alleles)
 	{
+		Alleles existing = pool.get(alleles);
+		return existing != null ? existing : createNew(alleles);
+	}
 
-		if (pool.containsKey(alleles))
+	private static synchronized Alleles createNew(List<Allele> alleles)
+	{
+		Alleles existing = pool.get(alleles);
+		if (existing != null)
 		{
-			return pool.get(alleles);
+			return existing;
 		}
-		else
+
+		Alleles newAlleles = new Alleles(alleles);
+		if (newAlleles.snp)
 		{
-			Alleles newAlleles = new Alleles(alleles);
-			pool.put(alleles, newAlleles);
-			newAlleles.addComplement();
-			return newAlleles;
+			ArrayList<Allele> complementAlleles = new ArrayList<Allele>(alleles.size());
+			for (Allele allele : alleles)
+			{
+				complementAlleles.add(allele.getComplement());
+			}
+
+			if (complementAlleles.equals(alleles))
+			{
+				newAlleles.complement = newAlleles;
+			}
+			else
+			{
+				Alleles complement = pool.get(complementAlleles);
+				if (complement == null)
+				{
+					complement = new Alleles(complementAlleles);
+					complement.complement = newAlleles;
+				}
+				// link both before publishing either of them
+				newAlleles.complement = complement;
+				pool.put(complementAlleles, complement);
+			}
 		}
+		pool.put(alleles, newAlleles);
+		return newAlleles;
 	}
 
 	public static Alleles createAlleles(Allele allele1, Allele allele2)
 	{
+		int code1 = getPairTableCode(allele1);
+		int code2 = getPairTableCode(allele2);
+		if (code1 >= 0 && code2 >= 0)
+		{
+			return PAIR_TABLE[code1 * PAIR_TABLE_ALLELES.length + code2];
+		}
+
 		ArrayList<Allele> alleles = new ArrayList<Allele>(2);
 		alleles.add(allele1);
 		alleles.add(allele2);
@@ -144,25 +216,13 @@ public class Alleles implements Iterable<Allele>, Comparable<Alleles>
 	}
 
 	/**
-	 * Add complement. Not done in constructor to prevent infinite loop. Pool
-	 * must be up to date before this is called
+	 * @return index of the allele in the pair table or -1
 	 */
-	private void addComplement()
+	private static int getPairTableCode(Allele allele)
 	{
-		if (snp)
-		{
-			ArrayList<Allele> complementAlleles = new ArrayList<Allele>(alleles.size());
-			for (Allele allele : alleles)
-			{
-				complementAlleles.add(allele.getComplement());
-			}
-			this.complement = Alleles.createAlleles(complementAlleles);
-		}
-		else
-		{
-			this.complement = null;
-		}
-
+		// non SNP alleles have a char outside the table
+		char snpAllele = allele.getAlleleAsSnp();
+		return snpAllele < PAIR_TABLE_CODES.length ? PAIR_TABLE_CODES[snpAllele] : -1;
 	}
 
 	/**
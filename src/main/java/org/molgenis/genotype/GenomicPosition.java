@@ -0,0 +1,48 @@
+package org.molgenis.genotype;
+
+/**
+ * Position on a sequence, used to request variants at multiple positions
+ */
+public class GenomicPosition
+{
+	private final String sequenceName;
+	private final int position;
+
+	public GenomicPosition(String sequenceName, int position)
+	{
+		if (sequenceName == null) throw new IllegalArgumentException("Sequence name is null");
+		this.sequenceName = sequenceName;
+		this.position = position;
+	}
+
+	public String getSequenceName()
+	{
+		return sequenceName;
+	}
+
+	public int getPosition()
+	{
+		return position;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return sequenceName.hashCode() * 31 + position;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj) return true;
+		if (!(obj instanceof GenomicPosition)) return false;
+		GenomicPosition other = (GenomicPosition) obj;
+		return position == other.position && sequenceName.equals(other.sequenceName);
+	}
+
+	@Override
+	public String toString()
+	{
+		return sequenceName + ":" + position;
+	}
+}
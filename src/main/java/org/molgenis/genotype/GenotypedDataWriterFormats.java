@@ -4,7 +4,7 @@ package org.molgenis.genotype;
 public enum GenotypedDataWriterFormats
 {
 
-	PED_MAP("PED / MAP file");
+	PED_MAP("PED / MAP file"), BED_BIM_FAM("BED / BIM / FAM files"), BINARY("Binary genotype file"), VCF("VCF file");
 
 	private final String name;
 
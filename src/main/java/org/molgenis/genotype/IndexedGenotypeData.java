@@ -1,8 +1,16 @@
 package org.molgenis.genotype;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.tabix.TabixIndex;
 import org.molgenis.genotype.util.Utils;
 import org.molgenis.genotype.variant.GeneticVariant;
 
@@ -35,6 +43,90 @@ public abstract class IndexedGenotypeData extends AbstractRandomAccessGenotypeDa
 		return getIndex().createQuery().executeQuery(seqName);
 	}
 
+	/**
+	 * Inflate the bgzip blocks of full sequence scans in parallel, ahead of the
+	 * parsing. Only supported for tabix indexed data. Close the query results
+	 * of scans that are not read to the end, otherwise their reader thread
+	 * only stops after the idle timeout of ParallelBlockCompressedInputStream.
+	 * 
+	 * @param executor
+	 *            executor inflating the blocks, null to inflate on the thread
+	 *            reading the variants
+	 */
+	public void setParallelInflater(ExecutorService executor)
+	{
+		GenotypeDataIndex index = getIndex();
+		if (!(index instanceof TabixIndex))
+		{
+			throw new UnsupportedOperationException("Parallel inflating is only supported for tabix indexed data");
+		}
+		((TabixIndex) index).setParallelInflater(executor);
+	}
+
+	/**
+	 * Positions are grouped per sequence and sorted so nearby positions are
+	 * read with a single query on the index
+	 */
+	@Override
+	public List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions)
+	{
+		// per sequence the position in the upper and the request index in the
+		// lower 32 bits
+		Map<String, long[]> requestsBySequence = new LinkedHashMap<String, long[]>();
+		Map<String, Integer> requestCounts = new HashMap<String, Integer>();
+		for (GenomicPosition position : positions)
+		{
+			Integer count = requestCounts.get(position.getSequenceName());
+			requestCounts.put(position.getSequenceName(), count == null ? 1 : count + 1);
+		}
+		for (Map.Entry<String, Integer> requestCount : requestCounts.entrySet())
+		{
+			requestsBySequence.put(requestCount.getKey(), new long[requestCount.getValue()]);
+			requestCount.setValue(0);
+		}
+		for (int i = 0; i < positions.size(); ++i)
+		{
+			GenomicPosition position = positions.get(i);
+			int next = requestCounts.get(position.getSequenceName());
+			requestsBySequence.get(position.getSequenceName())[next] = ((long) position.getPosition() << 32)
+					| (i & 0xFFFFFFFFL);
+			requestCounts.put(position.getSequenceName(), next + 1);
+		}
+
+		List<List<GeneticVariant>> variants = new ArrayList<List<GeneticVariant>>(Collections.nCopies(
+				positions.size(), (List<GeneticVariant>) null));
+		for (Map.Entry<String, long[]> sequenceRequests : requestsBySequence.entrySet())
+		{
+			long[] requests = sequenceRequests.getValue();
+			Arrays.sort(requests);
+
+			int[] distinctPositions = new int[requests.length];
+			int distinctCount = 0;
+			for (long request : requests)
+			{
+				int position = (int) (request >> 32);
+				if (distinctCount == 0 || distinctPositions[distinctCount - 1] != position)
+				{
+					distinctPositions[distinctCount++] = position;
+				}
+			}
+
+			List<List<GeneticVariant>> sequenceVariants = getIndex().createQuery().executeQuery(
+					sequenceRequests.getKey(), Arrays.copyOf(distinctPositions, distinctCount));
+
+			for (int i = 0, d = 0; i < requests.length; ++i)
+			{
+				if (distinctPositions[d] != (int) (requests[i] >> 32))
+				{
+					++d;
+				}
+				variants.set((int) requests[i], sequenceVariants.get(d));
+			}
+		}
+
+		return variants;
+	}
+
 	protected abstract GenotypeDataIndex getIndex();
 
 	@Override
@@ -47,6 +47,27 @@ public interface RandomAccessGenotypeData extends GenotypeData
 	 */
 	GeneticVariant getSnpVariantByPos(String seqName, int startPos);
 
+	/**
+	 * Get the variants at multiple positions. Implementations can sort the
+	 * positions and read nearby positions at once, this is more efficient than
+	 * calling getVariantsByPos for each position.
+	 * 
+	 * @param positions
+	 * @return per requested position the variants found, in the order of the
+	 *         requested positions. Lists can be empty if no variants are found
+	 *         and must not be modified
+	 */
+	List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions);
+
+	/**
+	 * Get the SNP variants at multiple positions
+	 * 
+	 * @param positions
+	 * @return per requested position the SNP found, in the order of the
+	 *         requested positions. null if there is no SNP at a position
+	 */
+	List<GeneticVariant> getSnpVariantsByPositions(List<GenomicPosition> positions);
+
 	/**
 	 * Get all variants from a sequence
 	 * 
@@ -67,4 +88,13 @@ public interface RandomAccessGenotypeData extends GenotypeData
 	 */
 	Iterable<GeneticVariant> getVariantsByRange(String seqName, int rangeStart, int rangeEnd);
 
+	/**
+	 * Get a variant by one of its IDs, primary or alternative. IDs are case
+	 * sensitive
+	 * 
+	 * @param variantId
+	 * @return the first variant in the data with this ID, null if not found
+	 */
+	GeneticVariant getVariantById(String variantId);
+
 }
@@ -3,6 +3,7 @@ package org.molgenis.genotype;
 import java.io.File;
 import java.io.IOException;
 
+import org.molgenis.genotype.binary.BinaryGenotypeData;
 import org.molgenis.genotype.multipart.IncompetibleMultiPartGenotypeDataException;
 import org.molgenis.genotype.multipart.MultiPartGenotypeData;
 import org.molgenis.genotype.plink.PedMapGenotypeData;
@@ -13,7 +14,8 @@ public enum RandomAccessGenotypedDataReaderFormats
 
 	PED_MAP("PED / MAP file", "plink PED MAP files gziped with tabix index."), VCF("VCF file",
 			"gziped vcf with tabix index file"), VCF_FOLDER("VCF folder",
-			"Matches all gziped vcf files + tabix index in a folder");
+			"Matches all gziped vcf files + tabix index in a folder"), BINARY("Binary genotype file",
+			"binary genotype .gtd data file with .gtm metadata file");
 
 	private final String name;
 	private final String description;
@@ -46,6 +48,8 @@ public enum RandomAccessGenotypedDataReaderFormats
 				return new VcfGenotypeData(new File(path), cacheSize);
 			case VCF_FOLDER:
 				return MultiPartGenotypeData.createFromVcfFolder(new File(path), cacheSize);
+			case BINARY:
+				return new BinaryGenotypeData(path);
 			default:
 				throw new RuntimeException("This should not be reachable. Please contact the autors");
 		}
@@ -1,6 +1,9 @@
 package org.molgenis.genotype;
 
 import java.io.IOException;
+import java.util.List;
+
+import org.molgenis.genotype.variant.GeneticVariant;
 
 public interface VariantQuery
 {
@@ -37,4 +40,15 @@ public interface VariantQuery
 	 */
 	VariantQueryResult executeQuery(String sequence, int startPos);
 
+	/**
+	 * Find variants at multiple positions of a sequence. Nearby positions are
+	 * read at once.
+	 * 
+	 * @param sequence
+	 * @param positions
+	 *            sorted positions
+	 * @return per position the variants at that position
+	 */
+	List<List<GeneticVariant>> executeQuery(String sequence, int[] positions);
+
 }
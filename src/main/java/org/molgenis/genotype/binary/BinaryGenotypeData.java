@@ -0,0 +1,494 @@
+package org.molgenis.genotype.binary;
+
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.ABSENT_ALLELE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.DATA_HEADER_SIZE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.DATA_MAGIC;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.DOSAGE_SCALE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.FLAG_DOSAGE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.METADATA_MAGIC;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.MISSING_ALLELE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.MISSING_DOSAGE;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.AbstractRandomAccessGenotypeData;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.SimpleSequence;
+import org.molgenis.genotype.annotation.Annotation;
+import org.molgenis.genotype.annotation.SampleAnnotation;
+import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.util.MappedBuffers;
+import org.molgenis.genotype.util.VariantPositionIndex;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantUniqueIdProvider;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
+
+/**
+ * Random access reader of the binary genotype format written by
+ * {@link BinaryGenotypeWriter}, see {@link BinaryGenotypeFormat}.
+ * 
+ * The metadata of all variants is kept in memory and indexed on position and
+ * ID. The data file is memory mapped, the sample data of a variant is decoded
+ * directly from its fixed size block using lookup tables per variant. Call
+ * close to unmap the data file.
+ * 
+ * Reading from multiple threads is safe, only absolute reads are done on the
+ * mapped buffers.
+ */
+public class BinaryGenotypeData extends AbstractRandomAccessGenotypeData implements SampleVariantsProvider,
+		Closeable
+{
+	private final List<Sample> samples;
+	private final List<String> seqNames;
+	private final List<GeneticVariant> variants;
+	private final VariantPositionIndex positionIndex;
+	/** Index of the first variant with an ID */
+	private final Map<String, Integer> variantIndexById;
+	private final int sampleCount;
+	private final boolean hasDosage;
+	private final int blockSize;
+	private final int variantsPerBuffer;
+	/** null after close */
+	private volatile MappedByteBuffer[] buffers;
+	private final int sampleVariantProviderUniqueId;
+
+	public BinaryGenotypeData(String basePath) throws IOException
+	{
+		this(new File(basePath + ".gtd"), new File(basePath + ".gtm"));
+	}
+
+	public BinaryGenotypeData(File dataFile, File metadataFile) throws IOException
+	{
+		if (dataFile == null) throw new IllegalArgumentException("Data file is null");
+		if (metadataFile == null) throw new IllegalArgumentException("Metadata file is null");
+		if (!dataFile.isFile()) throw new FileNotFoundException("Binary genotype data file not found at "
+				+ dataFile.getAbsolutePath());
+		if (!metadataFile.isFile()) throw new FileNotFoundException("Binary genotype metadata file not found at "
+				+ metadataFile.getAbsolutePath());
+
+		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
+
+		samples = new ArrayList<Sample>();
+		variants = new ArrayList<GeneticVariant>();
+		variantIndexById = new HashMap<String, Integer>();
+		List<String> variantSeqNames = new ArrayList<String>();
+		int[] positions = readMetadata(metadataFile, variantSeqNames);
+
+		seqNames = Collections.unmodifiableList(new ArrayList<String>(new LinkedHashSet<String>(variantSeqNames)));
+		positionIndex = new VariantPositionIndex(variantSeqNames, positions);
+
+		RandomAccessFile raf = new RandomAccessFile(dataFile, "r");
+		try
+		{
+			if (raf.readInt() != DATA_MAGIC)
+			{
+				throw new GenotypeDataException("Not a binary genotype data file: " + dataFile.getAbsolutePath());
+			}
+			sampleCount = raf.readInt();
+			if (sampleCount != samples.size())
+			{
+				throw new GenotypeDataException("Binary genotype data file " + dataFile.getAbsolutePath() + " has "
+						+ sampleCount + " samples but the metadata file has " + samples.size() + " samples");
+			}
+			hasDosage = (raf.readByte() & FLAG_DOSAGE) != 0;
+			blockSize = BinaryGenotypeFormat.getBlockSize(sampleCount, hasDosage);
+
+			long expectedLength = DATA_HEADER_SIZE + (long) blockSize * variants.size();
+			if (raf.length() < expectedLength)
+			{
+				throw new GenotypeDataException("Binary genotype data file " + dataFile.getAbsolutePath() + " is "
+						+ raf.length() + " bytes, expected " + expectedLength + " bytes");
+			}
+
+			// a single mapped buffer can not exceed 2GB, split on whole variants
+			variantsPerBuffer = blockSize == 0 ? Integer.MAX_VALUE : Integer.MAX_VALUE / blockSize;
+			FileChannel channel = raf.getChannel();
+			int nrOfBuffers = blockSize == 0 ? 0 : (int) ((variants.size() + (long) variantsPerBuffer - 1)
+					/ variantsPerBuffer);
+			MappedByteBuffer[] mappedBuffers = new MappedByteBuffer[nrOfBuffers];
+			for (int i = 0; i < nrOfBuffers; ++i)
+			{
+				long firstVariant = (long) i * variantsPerBuffer;
+				long variantsInBuffer = Math.min(variantsPerBuffer, variants.size() - firstVariant);
+				mappedBuffers[i] = channel.map(MapMode.READ_ONLY, DATA_HEADER_SIZE + firstVariant * blockSize,
+						variantsInBuffer * blockSize);
+			}
+			buffers = mappedBuffers;
+		}
+		finally
+		{
+			// mapping stays valid after closing the file
+			raf.close();
+		}
+	}
+
+	private int[] readMetadata(File metadataFile, List<String> variantSeqNames) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(metadataFile), 1 << 16));
+		try
+		{
+			if (in.readInt() != METADATA_MAGIC)
+			{
+				throw new GenotypeDataException("Not a binary genotype metadata file: "
+						+ metadataFile.getAbsolutePath());
+			}
+
+			int metadataSampleCount = in.readInt();
+			for (int i = 0; i < metadataSampleCount; ++i)
+			{
+				String familyId = in.readBoolean() ? in.readUTF() : null;
+				samples.add(new Sample(in.readUTF(), familyId, null));
+			}
+
+			// share the sequence name strings
+			Map<String, String> seqNamePool = new HashMap<String, String>();
+			int[] positions = new int[1024];
+			while (in.readBoolean())
+			{
+				String seqName = in.readUTF();
+				String pooledSeqName = seqNamePool.get(seqName);
+				if (pooledSeqName == null)
+				{
+					seqNamePool.put(seqName, seqName);
+					pooledSeqName = seqName;
+				}
+				int position = in.readInt();
+
+				int idCount = in.readShort();
+				List<String> ids = new ArrayList<String>(idCount);
+				for (int i = 0; i < idCount; ++i)
+				{
+					String id = in.readUTF();
+					ids.add(id);
+					if (!variantIndexById.containsKey(id))
+					{
+						variantIndexById.put(id, variants.size());
+					}
+				}
+
+				int alleleCount = in.readByte();
+				List<String> alleles = new ArrayList<String>(alleleCount);
+				for (int i = 0; i < alleleCount; ++i)
+				{
+					alleles.add(in.readUTF());
+				}
+				int refAlleleIndex = in.readByte();
+
+				GeneticVariant variant = refAlleleIndex < 0 ? ReadOnlyGeneticVariant.createVariant(ids, position,
+						pooledSeqName, this, alleles) : ReadOnlyGeneticVariant.createVariant(ids, position,
+						pooledSeqName, this, alleles, alleles.get(refAlleleIndex));
+
+				if (variants.size() == positions.length)
+				{
+					positions = Arrays.copyOf(positions, positions.length * 2);
+				}
+				positions[variants.size()] = position;
+				variants.add(variant);
+				variantSeqNames.add(pooledSeqName);
+			}
+			return Arrays.copyOf(positions, variants.size());
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	@Override
+	public List<Sequence> getSequences()
+	{
+		List<Sequence> sequences = new ArrayList<Sequence>(seqNames.size());
+		for (String seqName : seqNames)
+		{
+			sequences.add(new SimpleSequence(seqName, null, this));
+		}
+		return sequences;
+	}
+
+	@Override
+	public List<Sample> getSamples()
+	{
+		return Collections.unmodifiableList(samples);
+	}
+
+	@Override
+	protected Map<String, Annotation> getVariantAnnotationsMap()
+	{
+		return Collections.emptyMap();
+	}
+
+	@Override
+	protected Map<String, SampleAnnotation> getSampleAnnotationsMap()
+	{
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public List<String> getSeqNames()
+	{
+		return seqNames;
+	}
+
+	@Override
+	public Iterable<GeneticVariant> getVariantsByPos(String seqName, int startPos)
+	{
+		return getVariants(positionIndex.getVariantIndices(seqName, startPos));
+	}
+
+	@Override
+	public Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName)
+	{
+		return getVariants(positionIndex.getSequenceVariantIndices(seqName));
+	}
+
+	@Override
+	public Iterable<GeneticVariant> getVariantsByRange(String seqName, int rangeStart, int rangeEnd)
+	{
+		return getVariants(positionIndex.getVariantIndicesInRange(seqName, rangeStart, rangeEnd));
+	}
+
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		if (getVariantIdIndex() != null)
+		{
+			return super.getVariantById(variantId);
+		}
+		Integer index = variantIndexById.get(variantId);
+		return index == null ? null : variants.get(index);
+	}
+
+	@Override
+	public Iterator<GeneticVariant> iterator()
+	{
+		return Collections.unmodifiableList(variants).iterator();
+	}
+
+	/**
+	 * Unmaps the data file, the sample data can not be read afterwards. Must
+	 * not be called while other threads are reading.
+	 */
+	@Override
+	public void close()
+	{
+		MappedByteBuffer[] mappedBuffers = buffers;
+		buffers = null;
+		if (mappedBuffers != null)
+		{
+			for (MappedByteBuffer buffer : mappedBuffers)
+			{
+				MappedBuffers.unmap(buffer);
+			}
+		}
+	}
+
+	private List<GeneticVariant> getVariants(int[] indices)
+	{
+		List<GeneticVariant> result = new ArrayList<GeneticVariant>(indices.length);
+		for (int index : indices)
+		{
+			result.add(variants.get(index));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant)
+	{
+		int index = getVariantIndex(variant);
+		Alleles variantAlleles = variants.get(index).getVariantAlleles();
+
+		Alleles[] allelesByGenotype = new Alleles[256];
+		Alleles[] sampleAlleles = new Alleles[sampleCount];
+		MappedByteBuffer buffer = getVariantBuffer(index);
+		int offset = getVariantOffset(index);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int genotype = buffer.get(offset + i) & 0xFF;
+			Alleles alleles = allelesByGenotype[genotype];
+			if (alleles == null)
+			{
+				alleles = createAlleles(variantAlleles, genotype);
+				allelesByGenotype[genotype] = alleles;
+			}
+			sampleAlleles[i] = alleles;
+		}
+		return Arrays.asList(sampleAlleles);
+	}
+
+	private static Alleles createAlleles(Alleles variantAlleles, int genotype)
+	{
+		int allele2 = genotype >>> 4;
+		List<Allele> alleles = new ArrayList<Allele>(2);
+		alleles.add(getAllele(variantAlleles, genotype & 0xF));
+		if (allele2 != ABSENT_ALLELE)
+		{
+			alleles.add(getAllele(variantAlleles, allele2));
+		}
+		return Alleles.createAlleles(alleles);
+	}
+
+	private static Allele getAllele(Alleles variantAlleles, int alleleIndex)
+	{
+		return alleleIndex == MISSING_ALLELE ? Allele.ZERO : variantAlleles.get(alleleIndex);
+	}
+
+	@Override
+	public List<Boolean> getSamplePhasing(GeneticVariant variant)
+	{
+		int index = getVariantIndex(variant);
+		MappedByteBuffer buffer = getVariantBuffer(index);
+		int offset = getVariantOffset(index) + sampleCount;
+
+		List<Boolean> phasing = new ArrayList<Boolean>(sampleCount);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			phasing.add((buffer.get(offset + (i >> 3)) & (1 << (i & 7))) != 0);
+		}
+		return phasing;
+	}
+
+	@Override
+	public int cacheSize()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getSampleVariantProviderUniqueId()
+	{
+		return sampleVariantProviderUniqueId;
+	}
+
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		byte[] calledDosage = new byte[sampleCount];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		int index = getVariantIndex(variant);
+		Allele dosageRef = variant.getRefAllele() == null ? variant.getVariantAlleles().get(0) : variant
+				.getRefAllele();
+		int dosageAlleleIndex = variants.get(index).getVariantAlleles().getAlleles().indexOf(dosageRef);
+
+		// called dosage of every possible genotype byte
+		byte[] calledDosageByGenotype = new byte[256];
+		for (int genotype = 0; genotype < 256; ++genotype)
+		{
+			int allele1 = genotype & 0xF;
+			int allele2 = genotype >>> 4;
+			calledDosageByGenotype[genotype] = allele1 == MISSING_ALLELE || allele2 == MISSING_ALLELE ? -1
+					: (byte) ((allele1 == dosageAlleleIndex ? 1 : 0) + (allele2 == dosageAlleleIndex ? 1 : 0));
+		}
+
+		MappedByteBuffer buffer = getVariantBuffer(index);
+		int offset = getVariantOffset(index);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			calledDosage[i] = calledDosageByGenotype[buffer.get(offset + i) & 0xFF];
+		}
+	}
+
+	/**
+	 * Returns the stored dosages if the data file contains dosages, otherwise
+	 * the dosages are derived from the genotypes
+	 */
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant)
+	{
+		if (!hasDosage)
+		{
+			return CalledDosageConvertor.convertCalledDosageToDosage(getSampleCalledDosage(variant));
+		}
+
+		int index = getVariantIndex(variant);
+		MappedByteBuffer buffer = getVariantBuffer(index);
+		int offset = getVariantOffset(index) + sampleCount + BinaryGenotypeFormat.getPhasingBytes(sampleCount);
+
+		float[] dosages = new float[sampleCount];
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int packed = ((buffer.get(offset + i * 2) & 0xFF) << 8) | (buffer.get(offset + i * 2 + 1) & 0xFF);
+			dosages[i] = packed == MISSING_DOSAGE ? -1 : packed / DOSAGE_SCALE;
+		}
+		return dosages;
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return hasDosage;
+	}
+
+	/**
+	 * Index of a variant of this dataset. Variants are looked up on position
+	 * and then matched on alleles and ids, so copies of the variants created
+	 * by other genotype data wrappers are also found.
+	 */
+	private int getVariantIndex(GeneticVariant variant)
+	{
+		int[] indices = positionIndex.getVariantIndices(variant.getSequenceName(), variant.getStartPos());
+		for (int index : indices)
+		{
+			if (variants.get(index) == variant)
+			{
+				return index;
+			}
+		}
+		for (int index : indices)
+		{
+			GeneticVariant candidate = variants.get(index);
+			if (candidate.getVariantAlleles().equals(variant.getVariantAlleles())
+					&& candidate.getVariantId().equals(variant.getVariantId()))
+			{
+				return index;
+			}
+		}
+		throw new GenotypeDataException("Variant at " + variant.getSequenceName() + ":" + variant.getStartPos()
+				+ " is not part of this binary genotype data");
+	}
+
+	private MappedByteBuffer getVariantBuffer(int index)
+	{
+		MappedByteBuffer[] mappedBuffers = buffers;
+		if (mappedBuffers == null)
+		{
+			throw new GenotypeDataException("Binary genotype data is closed");
+		}
+		return blockSize == 0 ? null : mappedBuffers[index / variantsPerBuffer];
+	}
+
+	private int getVariantOffset(int index)
+	{
+		return (index % variantsPerBuffer) * blockSize;
+	}
+}
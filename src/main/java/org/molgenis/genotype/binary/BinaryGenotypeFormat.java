@@ -0,0 +1,50 @@
+package org.molgenis.genotype.binary;
+
+/**
+ * Layout of the binary genotype format. A dataset consists of two files:
+ * 
+ * <ul>
+ * <li>.gtm metadata file with the samples and per variant the sequence,
+ * position, ids, alleles and reference allele</li>
+ * <li>.gtd data file with a small header followed by a fixed size block per
+ * variant, in the order of the metadata file</li>
+ * </ul>
+ * 
+ * A variant block contains one genotype byte per sample, the phasing bits of
+ * the samples and optionally an unsigned 16 bit dosage per sample. The
+ * genotype byte stores the allele index of the first allele in the lower 4
+ * bits and of the second allele in the upper 4 bits. Because the blocks have a
+ * fixed size the data of a variant is found without an index.
+ */
+final class BinaryGenotypeFormat
+{
+	static final int METADATA_MAGIC = 0x47544D31;
+	static final int DATA_MAGIC = 0x47544431;
+
+	/** magic, sample count and flags */
+	static final int DATA_HEADER_SIZE = 9;
+	static final byte FLAG_DOSAGE = 1;
+
+	static final int MAX_ALLELES = 14;
+	static final int ABSENT_ALLELE = 14;
+	static final int MISSING_ALLELE = 15;
+	static final byte MISSING_GENOTYPE = (byte) (MISSING_ALLELE | (MISSING_ALLELE << 4));
+
+	static final float DOSAGE_SCALE = 10000f;
+	static final int MISSING_DOSAGE = 0xFFFF;
+
+	private BinaryGenotypeFormat()
+	{
+		// constants only
+	}
+
+	static int getPhasingBytes(int sampleCount)
+	{
+		return (sampleCount + 7) >> 3;
+	}
+
+	static int getBlockSize(int sampleCount, boolean dosage)
+	{
+		return sampleCount + getPhasingBytes(sampleCount) + (dosage ? sampleCount * 2 : 0);
+	}
+}
@@ -0,0 +1,250 @@
+package org.molgenis.genotype.binary;
+
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.ABSENT_ALLELE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.DATA_MAGIC;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.DOSAGE_SCALE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.FLAG_DOSAGE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.MAX_ALLELES;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.METADATA_MAGIC;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.MISSING_ALLELE;
+import static org.molgenis.genotype.binary.BinaryGenotypeFormat.MISSING_DOSAGE;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Export a GenotypeData object to the binary genotype format, see
+ * {@link BinaryGenotypeFormat}. Read the data using {@link BinaryGenotypeData}.
+ * 
+ * Supports up to 14 alleles per variant and haploid or diploid samples.
+ */
+public class BinaryGenotypeWriter
+{
+	private static final Logger LOG = Logger.getLogger(BinaryGenotypeWriter.class);
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final GenotypeData genotypeData;
+	private final boolean writeDosage;
+
+	/**
+	 * Writes genotypes and dosages
+	 * 
+	 * @param genotypeData
+	 */
+	public BinaryGenotypeWriter(GenotypeData genotypeData)
+	{
+		this(genotypeData, true);
+	}
+
+	/**
+	 * @param genotypeData
+	 * @param writeDosage
+	 *            if false only the genotypes are stored and dosages are
+	 *            derived from the genotypes when reading
+	 */
+	public BinaryGenotypeWriter(GenotypeData genotypeData, boolean writeDosage)
+	{
+		this.genotypeData = genotypeData;
+		this.writeDosage = writeDosage;
+	}
+
+	public void write(String basePath) throws IOException
+	{
+		write(new File(basePath + ".gtd"), new File(basePath + ".gtm"));
+	}
+
+	public void write(File dataFile, File metadataFile) throws IOException
+	{
+		LOG.info("Writing binary genotype data file [" + dataFile.getAbsolutePath() + "] and metadata file ["
+				+ metadataFile.getAbsolutePath() + "]");
+
+		DataOutputStream dataOut = null;
+		DataOutputStream metadataOut = null;
+		try
+		{
+			dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), BUFFER_SIZE));
+			metadataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(metadataFile),
+					BUFFER_SIZE));
+			write(dataOut, metadataOut);
+			dataOut.flush();
+			metadataOut.flush();
+		}
+		finally
+		{
+			IOUtils.closeQuietly(dataOut);
+			IOUtils.closeQuietly(metadataOut);
+		}
+	}
+
+	private void write(DataOutputStream dataOut, DataOutputStream metadataOut) throws IOException
+	{
+		List<Sample> samples = genotypeData.getSamples();
+		int sampleCount = samples.size();
+
+		metadataOut.writeInt(METADATA_MAGIC);
+		metadataOut.writeInt(sampleCount);
+		for (Sample sample : samples)
+		{
+			writeNullableString(metadataOut, sample.getFamilyId());
+			metadataOut.writeUTF(sample.getId());
+		}
+
+		dataOut.writeInt(DATA_MAGIC);
+		dataOut.writeInt(sampleCount);
+		dataOut.writeByte(writeDosage ? FLAG_DOSAGE : 0);
+
+		byte[] genotypes = new byte[sampleCount];
+		byte[] phasing = new byte[BinaryGenotypeFormat.getPhasingBytes(sampleCount)];
+		byte[] dosages = new byte[writeDosage ? sampleCount * 2 : 0];
+
+		int variantCount = 0;
+		for (GeneticVariant variant : genotypeData)
+		{
+			Alleles variantAlleles = variant.getVariantAlleles();
+			if (variantAlleles.getAlleleCount() > MAX_ALLELES)
+			{
+				throw new GenotypeDataException("Variant at " + variant.getSequenceName() + ":"
+						+ variant.getStartPos() + " has " + variantAlleles.getAlleleCount()
+						+ " alleles, the binary genotype format supports at most " + MAX_ALLELES);
+			}
+
+			writeVariantMetadata(metadataOut, variant);
+			packGenotypes(variant, variantAlleles, genotypes);
+			packPhasing(variant, phasing);
+			dataOut.write(genotypes);
+			dataOut.write(phasing);
+			if (writeDosage)
+			{
+				packDosages(variant, dosages);
+				dataOut.write(dosages);
+			}
+			++variantCount;
+		}
+		// end of variants
+		metadataOut.writeBoolean(false);
+
+		LOG.info("Written " + variantCount + " variants of " + sampleCount + " samples");
+	}
+
+	private static void writeVariantMetadata(DataOutputStream metadataOut, GeneticVariant variant) throws IOException
+	{
+		metadataOut.writeBoolean(true);
+		metadataOut.writeUTF(variant.getSequenceName());
+		metadataOut.writeInt(variant.getStartPos());
+
+		List<String> ids = variant.getVariantId().getVariantIds();
+		metadataOut.writeShort(ids.size());
+		for (String id : ids)
+		{
+			metadataOut.writeUTF(id);
+		}
+
+		Alleles variantAlleles = variant.getVariantAlleles();
+		metadataOut.writeByte(variantAlleles.getAlleleCount());
+		for (Allele allele : variantAlleles)
+		{
+			metadataOut.writeUTF(allele.getAlleleAsString());
+		}
+
+		Allele refAllele = variant.getRefAllele();
+		metadataOut.writeByte(refAllele == null ? -1 : variantAlleles.getAlleles().indexOf(refAllele));
+	}
+
+	private static void writeNullableString(DataOutputStream out, String value) throws IOException
+	{
+		out.writeBoolean(value != null);
+		if (value != null)
+		{
+			out.writeUTF(value);
+		}
+	}
+
+	private static void packGenotypes(GeneticVariant variant, Alleles variantAlleles, byte[] genotypes)
+	{
+		List<Alleles> sampleVariants = variant.getSampleVariants();
+		if (sampleVariants.size() != genotypes.length)
+		{
+			throw new GenotypeDataException("Expected " + genotypes.length + " samples for variant at "
+					+ variant.getSequenceName() + ":" + variant.getStartPos() + " but got " + sampleVariants.size());
+		}
+
+		int i = 0;
+		for (Alleles sampleAlleles : sampleVariants)
+		{
+			int alleleCount = sampleAlleles.getAlleleCount();
+			if (alleleCount > 2)
+			{
+				throw new GenotypeDataException("Polyploid sample at variant " + variant.getSequenceName() + ":"
+						+ variant.getStartPos() + ", the binary genotype format supports at most 2 alleles per sample");
+			}
+			int allele1 = alleleCount == 0 ? MISSING_ALLELE : getAlleleIndex(variant, variantAlleles,
+					sampleAlleles.get(0));
+			int allele2 = alleleCount == 2 ? getAlleleIndex(variant, variantAlleles, sampleAlleles.get(1))
+					: alleleCount == 1 ? ABSENT_ALLELE : MISSING_ALLELE;
+			genotypes[i++] = (byte) (allele1 | (allele2 << 4));
+		}
+	}
+
+	private static int getAlleleIndex(GeneticVariant variant, Alleles variantAlleles, Allele allele)
+	{
+		if (allele == Allele.ZERO || allele.getAlleleAsString() == null)
+		{
+			return MISSING_ALLELE;
+		}
+		// alleles are pooled, identity is enough
+		for (int i = 0; i < variantAlleles.getAlleleCount(); ++i)
+		{
+			if (variantAlleles.get(i) == allele)
+			{
+				return i;
+			}
+		}
+		throw new GenotypeDataException("Sample allele " + allele + " is not an allele of variant at "
+				+ variant.getSequenceName() + ":" + variant.getStartPos());
+	}
+
+	private static void packPhasing(GeneticVariant variant, byte[] phasing)
+	{
+		Arrays.fill(phasing, (byte) 0);
+		List<Boolean> samplePhasing = variant.getSampleVariantsProvider().getSamplePhasing(variant);
+		if (samplePhasing == null)
+		{
+			return;
+		}
+		int i = 0;
+		for (Boolean phased : samplePhasing)
+		{
+			if (phased != null && phased)
+			{
+				phasing[i >> 3] |= 1 << (i & 7);
+			}
+			++i;
+		}
+	}
+
+	private static void packDosages(GeneticVariant variant, byte[] dosages)
+	{
+		float[] sampleDosages = variant.getSampleDosages();
+		for (int i = 0; i < sampleDosages.length; ++i)
+		{
+			float dosage = sampleDosages[i];
+			int packed = dosage < 0 ? MISSING_DOSAGE : Math.min(MISSING_DOSAGE - 1, Math.round(dosage * DOSAGE_SCALE));
+			dosages[i * 2] = (byte) (packed >>> 8);
+			dosages[i * 2 + 1] = (byte) packed;
+		}
+	}
+}
@@ -105,15 +105,64 @@ public class HapsEntrySampleVariantsProvider implements SampleVariantsProvider
 	@Override
 	public byte[] getSampleCalledDosage(GeneticVariant variant)
 	{
-		return CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
-				variant.getVariantAlleles(), variant.getRefAllele());
+		byte[] calledDosage = new byte[hapsEntry.getSampleAlleles().size()];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		if (!variant.getPrimaryVariantId().equals(hapsEntry.getSnpId()))
+		{
+			throw new IllegalArgumentException("Ids don't match");
+		}
+
+		Allele dosageRef = variant.getRefAllele() == null ? variant.getVariantAlleles().get(0) : variant
+				.getRefAllele();
+		// dosage of the 0 and 1 haplotype values
+		byte[] haplotypeDosage = new byte[]
+		{ (byte) (Allele.create(hapsEntry.getFirstAllele()) == dosageRef ? 1 : 0),
+				(byte) (Allele.create(hapsEntry.getSecondAllele()) == dosageRef ? 1 : 0) };
+
+		int i = 0;
+		for (String[] sampleAlleles : hapsEntry.getSampleAlleles())
+		{
+			int allele1 = getHaplotypeIndex(sampleAlleles[0]);
+			int allele2 = getHaplotypeIndex(sampleAlleles[1]);
+			calledDosage[i++] = allele1 == -1 || allele2 == -1 ? -1
+					: (byte) (haplotypeDosage[allele1] + haplotypeDosage[allele2]);
+		}
+	}
+
+	/*
+	 * Index of the allele in the haps entry or -1 for missing
+	 */
+	private static int getHaplotypeIndex(String sample)
+	{
+		switch (sample.charAt(0))
+		{
+			case '?':
+				return -1;
+			case '0':
+				return 0;
+			case '1':
+				return 1;
+			default:
+				throw new IllegalArgumentException("[" + sample + "] is an invalid value for a haps sample value");
+		}
 	}
 
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
-		return CalledDosageConvertor.convertCalledAllelesToDosage(getSampleVariants(variant),
-				variant.getVariantAlleles(), variant.getRefAllele());
+		return CalledDosageConvertor.convertCalledDosageToDosage(getSampleCalledDosage(variant));
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return false;
 	}
 
 }
@@ -28,7 +28,8 @@ import org.molgenis.util.tuple.Tuple;
 /**
  * GenotypeData for haps/sample files see http://www.shapeit.fr/
  * 
- * First run <code>index-haps.sh yourfile.haps<code> to create the tabix index file
+ * First run <code>index-haps.sh yourfile.haps<code> to create the tabix index file, or write the files with
+ * Impute2GenotypeWriter.writeIndexed
  * 
  * The two character string 'NA' is treated as missing when encountered in the sample file
  * 
@@ -69,6 +70,8 @@ public class Impute2GenotypeData extends IndexedGenotypeData
 
 		loadAnnotations();
 		LOG.info("Annotations loaded");
+
+		openDefaultVariantIdIndex(bzipHapsFile);
 	}
 
 	@Override
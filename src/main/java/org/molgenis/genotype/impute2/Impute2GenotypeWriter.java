@@ -9,6 +9,7 @@ import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
@@ -18,6 +19,8 @@ import org.molgenis.genotype.GenotypeData;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.annotation.SampleAnnotation;
 import org.molgenis.genotype.annotation.SampleAnnotation.SampleAnnotationType;
+import org.molgenis.genotype.tabix.ParallelBlockCompressedOutputStream;
+import org.molgenis.genotype.tabix.TabixIndexWriter;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.NotASnpException;
 import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
@@ -27,6 +30,9 @@ import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
  * 
  * Missing values in the samplefile are written as 'NA'
  * 
+ * The haps file can also be written tab separated, bgzipped and tabix indexed
+ * so it can be read by Impute2GenotypeData directly.
+ * 
  * @author erwin
  * 
  */
@@ -202,93 +208,158 @@ public class Impute2GenotypeWriter
 
 	private void writeHapsFile(Writer hapsFileWriter) throws IOException
 	{
+		StringBuilder sb = new StringBuilder();
 		for (GeneticVariant variant : genotypeData)
 		{
-			if (!variant.isSnp())
+			sb.setLength(0);
+			appendHapsLine(sb, variant, SEPARATOR);
+			hapsFileWriter.write(sb.toString());
+		}
+	}
+
+	/**
+	 * Writes a tab separated haps file compressed with bgzip and its tabix
+	 * index, as read by Impute2GenotypeData. The files are basePath.haps.tab.gz,
+	 * basePath.haps.tab.gz.tbi and basePath.sample.
+	 * 
+	 * @param basePath
+	 * @param executor
+	 *            executor compressing the haps file, null to compress on the
+	 *            calling thread
+	 * @throws IOException
+	 */
+	public void writeIndexed(String basePath, ExecutorService executor) throws IOException
+	{
+		writeIndexed(new File(basePath + ".haps.tab.gz"), new File(basePath + ".haps.tab.gz.tbi"), new File(basePath
+				+ ".sample"), executor);
+	}
+
+	public void writeIndexed(File bzipHapsFile, File tabixIndexFile, File sampleFile, ExecutorService executor)
+			throws IOException
+	{
+		LOG.info("Writing bgzipped haps file [" + bzipHapsFile.getAbsolutePath() + "] with index ["
+				+ tabixIndexFile.getAbsolutePath() + "] and sample file [" + sampleFile.getAbsolutePath() + "]");
+
+		TabixIndexWriter indexWriter = TabixIndexWriter.createHapsIndexWriter();
+		ParallelBlockCompressedOutputStream hapsOutputStream = new ParallelBlockCompressedOutputStream(bzipHapsFile,
+				executor);
+		try
+		{
+			StringBuilder sb = new StringBuilder();
+			for (GeneticVariant variant : genotypeData)
 			{
-				throw new NotASnpException(variant);
+				sb.setLength(0);
+				appendHapsLine(sb, variant, '\t');
+
+				long lineBegin = hapsOutputStream.getBlockPointer();
+				hapsOutputStream.write(sb.toString().getBytes(FILE_ENCODING));
+				indexWriter.addLine(variant.getSequenceName(), variant.getStartPos() - 1, variant.getStartPos(),
+						lineBegin, hapsOutputStream.getBlockPointer());
 			}
+			hapsOutputStream.close();
+		}
+		finally
+		{
+			IOUtils.closeQuietly(hapsOutputStream);
+		}
+		indexWriter.write(tabixIndexFile, hapsOutputStream);
 
-			Allele allele0 = variant.getVariantAlleles().get(0);
-			Allele allele1 = variant.getVariantAlleles().get(1);
+		Writer sampleFileWriter = null;
+		try
+		{
+			sampleFileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(sampleFile),
+					FILE_ENCODING));
+			writeSampleFile(sampleFileWriter);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(sampleFileWriter);
+		}
+	}
 
-			StringBuilder sb = new StringBuilder();
-			sb.append(variant.getSequenceName());
-			sb.append(SEPARATOR);
-			sb.append(variant.getPrimaryVariantId());
-			sb.append(SEPARATOR);
-			sb.append(variant.getStartPos());
-			sb.append(SEPARATOR);
-			sb.append(allele0);
-			sb.append(SEPARATOR);
-			sb.append(allele1);
+	private void appendHapsLine(StringBuilder sb, GeneticVariant variant, char separator)
+	{
+		if (!variant.isSnp())
+		{
+			throw new NotASnpException(variant);
+		}
 
-			SampleVariantsProvider variantsProvider = variant.getSampleVariantsProvider();
-			List<Alleles> sampleAlleles = variantsProvider.getSampleVariants(variant);
-			List<Boolean> phasing = variantsProvider.getSamplePhasing(variant);
+		Allele allele0 = variant.getVariantAlleles().get(0);
+		Allele allele1 = variant.getVariantAlleles().get(1);
 
-			if ((sampleAlleles != null) && !sampleAlleles.isEmpty())
+		sb.append(variant.getSequenceName());
+		sb.append(separator);
+		sb.append(variant.getPrimaryVariantId());
+		sb.append(separator);
+		sb.append(variant.getStartPos());
+		sb.append(separator);
+		sb.append(allele0);
+		sb.append(separator);
+		sb.append(allele1);
+
+		SampleVariantsProvider variantsProvider = variant.getSampleVariantsProvider();
+		List<Alleles> sampleAlleles = variantsProvider.getSampleVariants(variant);
+		List<Boolean> phasing = variantsProvider.getSamplePhasing(variant);
+
+		if ((sampleAlleles != null) && !sampleAlleles.isEmpty())
+		{
+			for (int i = 0; i < sampleAlleles.size(); i++)
 			{
-				for (int i = 0; i < sampleAlleles.size(); i++)
+				sb.append(separator);
+
+				Alleles alleles = sampleAlleles.get(i);
+				if ((alleles == null) || alleles.getAllelesAsString().isEmpty() || (alleles.get(0) == Allele.ZERO)
+						|| (alleles.get(1) == Allele.ZERO))
 				{
-					sb.append(SEPARATOR);
+					sb.append(MISSING_INDICATOR);
+					sb.append(separator);
+					sb.append(MISSING_INDICATOR);
+				}
+				else
+				{
+					if (alleles.get(0).equals(allele0))
+					{
+						sb.append("0");
+					}
+					else if (alleles.get(0).equals(allele1))
+					{
+						sb.append("1");
+					}
+					else
+					{
+						throw new RuntimeException("SampleAllele [" + alleles.get(0) + "] for SNP ["
+								+ variant.getPrimaryVariantId() + "] does not match one of the variant alleles");
+					}
+
+					if (!phasing.get(i))
+					{
+						sb.append(UNPHASED_INDICATOR);
+					}
 
-					Alleles alleles = sampleAlleles.get(i);
-					if ((alleles == null) || alleles.getAllelesAsString().isEmpty() || (alleles.get(0) == Allele.ZERO)
-							|| (alleles.get(1) == Allele.ZERO))
+					sb.append(separator);
+
+					if (alleles.get(1).equals(allele0))
+					{
+						sb.append("0");
+					}
+					else if (alleles.get(1).equals(allele1))
 					{
-						sb.append(MISSING_INDICATOR);
-						sb.append(SEPARATOR);
-						sb.append(MISSING_INDICATOR);
+						sb.append("1");
 					}
 					else
 					{
-						if (alleles.get(0).equals(allele0))
-						{
-							sb.append("0");
-						}
-						else if (alleles.get(0).equals(allele1))
-						{
-							sb.append("1");
-						}
-						else
-						{
-							throw new RuntimeException("SampleAllele [" + alleles.get(0) + "] for SNP ["
-									+ variant.getPrimaryVariantId() + "] does not match one of the variant alleles");
-						}
-
-						if (!phasing.get(i))
-						{
-							sb.append(UNPHASED_INDICATOR);
-						}
-
-						sb.append(SEPARATOR);
-
-						if (alleles.get(1).equals(allele0))
-						{
-							sb.append("0");
-						}
-						else if (alleles.get(1).equals(allele1))
-						{
-							sb.append("1");
-						}
-						else
-						{
-							throw new RuntimeException("SampleAllele [" + alleles.get(1) + "] for SNP ["
-									+ variant.getPrimaryVariantId() + "] does not match one of the variant alleles");
-						}
-
-						if (!phasing.get(i))
-						{
-							sb.append(UNPHASED_INDICATOR);
-						}
+						throw new RuntimeException("SampleAllele [" + alleles.get(1) + "] for SNP ["
+								+ variant.getPrimaryVariantId() + "] does not match one of the variant alleles");
+					}
+
+					if (!phasing.get(i))
+					{
+						sb.append(UNPHASED_INDICATOR);
 					}
 				}
 			}
-
-			sb.append(LINE_ENDING);
-
-			hapsFileWriter.write(sb.toString());
 		}
+
+		sb.append(LINE_ENDING);
 	}
 }
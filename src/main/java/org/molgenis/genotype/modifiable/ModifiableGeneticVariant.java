@@ -211,7 +211,7 @@ public class ModifiableGeneticVariant extends AbstractGeneticVariant
 				// 1 -> -1 -> 1
 				// 1.5 -> -1.5 -> 0.5
 				// 2 -> -2 -> 0
-				newDosage[i] = (dosageByProvider[i] * -1) + 2;
+				newDosage[i] = dosageByProvider[i] == -1 ? -1 : (dosageByProvider[i] * -1) + 2;
 			}
 			return newDosage;
 		}
@@ -255,11 +255,32 @@ public class ModifiableGeneticVariant extends AbstractGeneticVariant
 				// 1 -> -1 -> 1
 				// 1.5 -> -1.5 -> 0.5
 				// 2 -> -2 -> 0
-				newDosage[i] = (byte) ((dosageByProvider[i] * -1) + 2);
+				newDosage[i] = dosageByProvider[i] == -1 ? -1 : (byte) ((dosageByProvider[i] * -1) + 2);
 			}
 			return newDosage;
 		}
+	}
+
+	@Override
+	public void loadSampleCalledDosages(byte[] calledDosages)
+	{
+		getSampleVariantsProvider().loadSampleCalledDosage(originalVariant, calledDosages);
+
+		Allele refUsedForOriginalDosage = originalVariant.getRefAllele() == null ? originalVariant.getVariantAlleles()
+				.get(0) : originalVariant.getRefAllele();
 
+		Allele refShouldBeUsed = getRefAllele() == null ? getVariantAlleles().get(0) : getRefAllele();
+
+		if (refUsedForOriginalDosage != refShouldBeUsed && refUsedForOriginalDosage != refShouldBeUsed.getComplement())
+		{
+			for (int i = 0; i < calledDosages.length; ++i)
+			{
+				if (calledDosages[i] != -1)
+				{
+					calledDosages[i] = (byte) (2 - calledDosages[i]);
+				}
+			}
+		}
 	}
 
 	@Override
@@ -8,12 +8,14 @@ import java.util.List;
 
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenomicPosition;
 import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.RandomAccessGenotypeData;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.SampleAnnotation;
+import org.molgenis.genotype.util.Utils;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.id.GeneticVariantId;
 import org.molgenis.genotype.variant.sampleProvider.CachedSampleVariantProvider;
@@ -75,6 +77,57 @@ public class ModifiableGenotypeDataInMemory implements ModifiableGenotypeData
 		return getModifiableSnpVariantByPos(seqName, startPos);
 	}
 
+	/**
+	 * Looks up the original IDs, IDs set by updating a variant can not be
+	 * found
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		GeneticVariant originalVariant = sourceGenotypeData.getVariantById(variantId);
+		if (originalVariant == null || filteredOutVariants.contains(originalVariant))
+		{
+			return null;
+		}
+
+		GeneticVariant variant = new ModifiableGeneticVariant(originalVariant, this);
+		return variant.getVariantId().isIdInVariantIds(variantId) ? variant : null;
+	}
+
+	@Override
+	public List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<List<GeneticVariant>> originalVariantsByPosition = sourceGenotypeData.getVariantsByPositions(positions);
+		List<List<GeneticVariant>> variantsByPosition = new ArrayList<List<GeneticVariant>>(
+				originalVariantsByPosition.size());
+		for (List<GeneticVariant> originalVariants : originalVariantsByPosition)
+		{
+			variantsByPosition.add(Utils.iteratorToList(ModifiableGeneticVariantIterator
+					.createGeneticVariantIterableBackByModifiable(originalVariants.iterator(), this,
+							filteredOutVariants).iterator()));
+		}
+		return variantsByPosition;
+	}
+
+	@Override
+	public List<GeneticVariant> getSnpVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<GeneticVariant> originalSnpVariants = sourceGenotypeData.getSnpVariantsByPositions(positions);
+		List<GeneticVariant> snpVariants = new ArrayList<GeneticVariant>(originalSnpVariants.size());
+		for (GeneticVariant originalVariant : originalSnpVariants)
+		{
+			if (originalVariant == null || filteredOutVariants.contains(originalVariant))
+			{
+				snpVariants.add(null);
+			}
+			else
+			{
+				snpVariants.add(new ModifiableGeneticVariant(originalVariant, this));
+			}
+		}
+		return snpVariants;
+	}
+
 	@Override
 	public Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName)
 	{
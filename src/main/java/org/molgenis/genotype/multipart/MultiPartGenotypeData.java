@@ -8,16 +8,21 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.molgenis.genotype.GenomicPosition;
 import org.molgenis.genotype.RandomAccessGenotypeData;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.SampleAnnotation;
+import org.molgenis.genotype.util.ChromosomeComparator;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.vcf.VcfGenotypeData;
 
@@ -185,6 +190,102 @@ public class MultiPartGenotypeData implements RandomAccessGenotypeData
 		}
 	}
 
+	/**
+	 * The parts are searched in the order of their first sequence, so the
+	 * first variant with the ID in sequence order is returned
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		for (RandomAccessGenotypeData genotypeData : getDatasetsInSequenceOrder())
+		{
+			GeneticVariant variant = genotypeData.getVariantById(variantId);
+			if (variant != null)
+			{
+				return variant;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<List<GeneticVariant>> variants = new ArrayList<List<GeneticVariant>>(Collections.nCopies(
+				positions.size(), Collections.<GeneticVariant> emptyList()));
+
+		Map<RandomAccessGenotypeData, List<Integer>> requestsByDataset = groupRequestsByDataset(positions);
+		for (Map.Entry<RandomAccessGenotypeData, List<Integer>> datasetRequests : requestsByDataset.entrySet())
+		{
+			List<Integer> requests = datasetRequests.getValue();
+			List<List<GeneticVariant>> datasetVariants = datasetRequests.getKey().getVariantsByPositions(
+					getRequestedPositions(positions, requests));
+			for (int i = 0; i < requests.size(); ++i)
+			{
+				variants.set(requests.get(i), datasetVariants.get(i));
+			}
+		}
+
+		return variants;
+	}
+
+	@Override
+	public List<GeneticVariant> getSnpVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(Collections.nCopies(positions.size(),
+				(GeneticVariant) null));
+
+		Map<RandomAccessGenotypeData, List<Integer>> requestsByDataset = groupRequestsByDataset(positions);
+		for (Map.Entry<RandomAccessGenotypeData, List<Integer>> datasetRequests : requestsByDataset.entrySet())
+		{
+			List<Integer> requests = datasetRequests.getValue();
+			List<GeneticVariant> datasetVariants = datasetRequests.getKey().getSnpVariantsByPositions(
+					getRequestedPositions(positions, requests));
+			for (int i = 0; i < requests.size(); ++i)
+			{
+				variants.set(requests.get(i), datasetVariants.get(i));
+			}
+		}
+
+		return variants;
+	}
+
+	/**
+	 * @return the indices of the requested positions per dataset, positions on
+	 *         unknown sequences are skipped
+	 */
+	private Map<RandomAccessGenotypeData, List<Integer>> groupRequestsByDataset(List<GenomicPosition> positions)
+	{
+		Map<RandomAccessGenotypeData, List<Integer>> requestsByDataset = new LinkedHashMap<RandomAccessGenotypeData, List<Integer>>();
+		for (int i = 0; i < positions.size(); ++i)
+		{
+			RandomAccessGenotypeData genotypeData = genotypeDatasets.get(positions.get(i).getSequenceName());
+			if (genotypeData == null)
+			{
+				continue;
+			}
+
+			List<Integer> requests = requestsByDataset.get(genotypeData);
+			if (requests == null)
+			{
+				requests = new ArrayList<Integer>();
+				requestsByDataset.put(genotypeData, requests);
+			}
+			requests.add(i);
+		}
+		return requestsByDataset;
+	}
+
+	private static List<GenomicPosition> getRequestedPositions(List<GenomicPosition> positions, List<Integer> requests)
+	{
+		List<GenomicPosition> requestedPositions = new ArrayList<GenomicPosition>(requests.size());
+		for (Integer request : requests)
+		{
+			requestedPositions.add(positions.get(request));
+		}
+		return requestedPositions;
+	}
+
 	@Override
 	public List<Sample> getSamples()
 	{
@@ -236,4 +337,61 @@ public class MultiPartGenotypeData implements RandomAccessGenotypeData
 			return null;
 		}
 	}
+
+	/**
+	 * Visit all variants using multiple threads. Each genotype dataset is read
+	 * by one thread so the visitor is called concurrently for variants of
+	 * different datasets. Returns when all variants are visited.
+	 * 
+	 * @param visitor
+	 *            thread safe visitor
+	 * @param executor
+	 *            executor used to run the workers
+	 * @param nrThreads
+	 *            maximum number of datasets read at the same time
+	 */
+	public void visitVariants(VariantVisitor<?> visitor, ExecutorService executor, int nrThreads)
+	{
+		new ParallelVariantTraversal<Object>(getDatasetsInSequenceOrder(), visitor).traverse(executor, nrThreads);
+	}
+
+	/**
+	 * Visit all variants using multiple threads and pass the results to the
+	 * result handler on the calling thread. The results are handled in the
+	 * order of the sequences and per dataset in the order of the variants.
+	 * 
+	 * @param visitor
+	 *            thread safe visitor
+	 * @param resultHandler
+	 *            handler of the visitor results
+	 * @param executor
+	 *            executor used to run the workers
+	 * @param nrThreads
+	 *            maximum number of datasets read at the same time
+	 */
+	public <T> void visitVariants(VariantVisitor<T> visitor, VariantResultHandler<? super T> resultHandler,
+			ExecutorService executor, int nrThreads)
+	{
+		new ParallelVariantTraversal<T>(getDatasetsInSequenceOrder(), visitor).traverseOrdered(executor, nrThreads,
+				resultHandler);
+	}
+
+	/**
+	 * @return the datasets ordered on their first sequence
+	 */
+	private List<RandomAccessGenotypeData> getDatasetsInSequenceOrder()
+	{
+		List<String> seqNames = getSeqNames();
+		Collections.sort(seqNames, new ChromosomeComparator());
+
+		Set<RandomAccessGenotypeData> datasets = new LinkedHashSet<RandomAccessGenotypeData>();
+		for (String seqName : seqNames)
+		{
+			datasets.add(genotypeDatasets.get(seqName));
+		}
+		// datasets without sequences
+		datasets.addAll(genotypeDataCollection);
+
+		return new ArrayList<RandomAccessGenotypeData>(datasets);
+	}
 }
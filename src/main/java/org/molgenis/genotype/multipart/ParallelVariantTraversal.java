@@ -0,0 +1,241 @@
+package org.molgenis.genotype.multipart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Visits the variants of multiple genotype datasets using multiple threads.
+ * Each dataset is read by a single worker at a time so the readers do not
+ * need to be thread safe.
+ *
+ * Workers claim datasets in order. In ordered mode every dataset has a bounded
+ * result queue that is drained by the calling thread, since the oldest
+ * unfinished dataset is always claimed by a running worker this can not
+ * deadlock.
+ */
+class ParallelVariantTraversal<T>
+{
+	private static final int QUEUE_SIZE = 1024;
+	private static final long POLL_MILLIS = 100;
+
+	private final List<RandomAccessGenotypeData> datasets;
+	private final VariantVisitor<? extends T> visitor;
+	private final AtomicInteger nextDataset = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	private final VariantResult<T> endOfDataset = new VariantResult<T>(null, null);
+	private volatile boolean aborted = false;
+
+	public ParallelVariantTraversal(List<RandomAccessGenotypeData> datasets, VariantVisitor<? extends T> visitor)
+	{
+		this.datasets = datasets;
+		this.visitor = visitor;
+	}
+
+	/**
+	 * Visit all variants, returns when all variants are visited
+	 */
+	public void traverse(ExecutorService executor, int nrThreads)
+	{
+		List<Future<?>> workers = startWorkers(executor, nrThreads, null);
+		awaitWorkers(workers);
+		checkFailure();
+	}
+
+	/**
+	 * Visit all variants and pass the results to the handler in dataset order
+	 */
+	public void traverseOrdered(ExecutorService executor, int nrThreads, VariantResultHandler<? super T> resultHandler)
+	{
+		List<BlockingQueue<VariantResult<T>>> queues = new ArrayList<BlockingQueue<VariantResult<T>>>(
+				datasets.size());
+		for (int i = 0; i < datasets.size(); ++i)
+		{
+			queues.add(new ArrayBlockingQueue<VariantResult<T>>(QUEUE_SIZE));
+		}
+
+		List<Future<?>> workers = startWorkers(executor, nrThreads, queues);
+
+		boolean completed = false;
+		try
+		{
+			for (BlockingQueue<VariantResult<T>> queue : queues)
+			{
+				while (true)
+				{
+					VariantResult<T> variantResult = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (variantResult == null)
+					{
+						checkFailure();
+					}
+					else if (variantResult == endOfDataset)
+					{
+						break;
+					}
+					else
+					{
+						resultHandler.handleResult(variantResult.variant, variantResult.result);
+					}
+				}
+			}
+			completed = true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new GenotypeDataException("Interrupted while visiting variants", e);
+		}
+		finally
+		{
+			if (!completed)
+			{
+				// let the workers stop instead of waiting on full queues
+				aborted = true;
+			}
+		}
+
+		awaitWorkers(workers);
+		checkFailure();
+	}
+
+	private List<Future<?>> startWorkers(ExecutorService executor, int nrThreads,
+			List<BlockingQueue<VariantResult<T>>> queues)
+	{
+		if (nrThreads <= 0)
+		{
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+
+		int nrWorkers = Math.min(nrThreads, datasets.size());
+		List<Future<?>> workers = new ArrayList<Future<?>>(nrWorkers);
+		for (int i = 0; i < nrWorkers; ++i)
+		{
+			workers.add(executor.submit(new Worker(queues)));
+		}
+		return workers;
+	}
+
+	private void awaitWorkers(List<Future<?>> workers)
+	{
+		for (Future<?> worker : workers)
+		{
+			try
+			{
+				worker.get();
+			}
+			catch (InterruptedException e)
+			{
+				aborted = true;
+				Thread.currentThread().interrupt();
+				throw new GenotypeDataException("Interrupted while visiting variants", e);
+			}
+			catch (ExecutionException e)
+			{
+				failure.compareAndSet(null, e.getCause());
+			}
+		}
+	}
+
+	private void checkFailure()
+	{
+		Throwable cause = failure.get();
+		if (cause == null)
+		{
+			return;
+		}
+		aborted = true;
+		if (cause instanceof GenotypeDataException)
+		{
+			throw (GenotypeDataException) cause;
+		}
+		throw new GenotypeDataException("Error visiting variants: " + cause.getMessage(), cause);
+	}
+
+	/**
+	 * @return false if the traversal is aborted
+	 */
+	private boolean enqueue(BlockingQueue<VariantResult<T>> queue, VariantResult<T> variantResult)
+			throws InterruptedException
+	{
+		while (!aborted)
+		{
+			if (queue.offer(variantResult, POLL_MILLIS, TimeUnit.MILLISECONDS))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private class Worker implements Runnable
+	{
+		private final List<BlockingQueue<VariantResult<T>>> queues;
+
+		/**
+		 * @param queues
+		 *            result queue per dataset, null if the results are not
+		 *            needed
+		 */
+		public Worker(List<BlockingQueue<VariantResult<T>>> queues)
+		{
+			this.queues = queues;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				int datasetIndex;
+				while (!aborted && (datasetIndex = nextDataset.getAndIncrement()) < datasets.size())
+				{
+					BlockingQueue<VariantResult<T>> queue = queues == null ? null : queues.get(datasetIndex);
+					for (GeneticVariant variant : datasets.get(datasetIndex))
+					{
+						if (aborted)
+						{
+							return;
+						}
+						T result = visitor.visit(variant);
+						if (queue != null && !enqueue(queue, new VariantResult<T>(variant, result)))
+						{
+							return;
+						}
+					}
+					if (queue != null && !enqueue(queue, endOfDataset))
+					{
+						return;
+					}
+				}
+			}
+			catch (Throwable t)
+			{
+				failure.compareAndSet(null, t);
+				aborted = true;
+			}
+		}
+	}
+
+	private static class VariantResult<T>
+	{
+		private final GeneticVariant variant;
+		private final T result;
+
+		public VariantResult(GeneticVariant variant, T result)
+		{
+			this.variant = variant;
+			this.result = result;
+		}
+	}
+}
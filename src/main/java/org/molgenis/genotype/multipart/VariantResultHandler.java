@@ -0,0 +1,15 @@
+package org.molgenis.genotype.multipart;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Receives the results of a {@link VariantVisitor} in variant order on the
+ * thread that started the traversal.
+ * 
+ * @param <T>
+ *            type of the result per variant
+ */
+public interface VariantResultHandler<T>
+{
+	void handleResult(GeneticVariant variant, T result);
+}
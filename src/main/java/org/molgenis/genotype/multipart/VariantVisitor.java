@@ -0,0 +1,20 @@
+package org.molgenis.genotype.multipart;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Visitor used to process the variants of multiple genotype datasets in
+ * parallel. Variants of different datasets are visited concurrently so
+ * implementations must be thread safe.
+ * 
+ * @param <T>
+ *            type of the result per variant
+ */
+public interface VariantVisitor<T>
+{
+	/**
+	 * @param variant
+	 * @return the result for this variant, can be null
+	 */
+	T visit(GeneticVariant variant);
+}
@@ -1,5 +1,6 @@
 package org.molgenis.genotype.plink;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -21,7 +22,7 @@ import org.molgenis.genotype.plink.datatypes.FamEntry;
 import org.molgenis.genotype.plink.readers.BedBimFamReader;
 import org.molgenis.genotype.variant.GeneticVariant;
 
-public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData
+public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData implements Closeable
 {
 	public static final String FATHER_SAMPLE_ANNOTATION_NAME = "father";
 	public static final String MOTHER_SAMPLE_ANNOTATION_NAME = "mother";
@@ -101,8 +102,22 @@ public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData
 	@Override
 	public List<GeneticVariant> getVariantsByPos(String seqName, int startPos)
 	{
-		int index = this.reader.getSnpIndexByPosition(seqName, startPos);
-		return this.reader.loadVariantsForIndex(index);
+		return this.reader.loadVariantsForPosition(seqName, startPos);
+	}
+
+	/**
+	 * The IDs in the BIM file are unique and kept in memory, a variant ID index
+	 * is only used if one is set
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		if (getVariantIdIndex() != null)
+		{
+			return super.getVariantById(variantId);
+		}
+		int index = reader.getSnpIndexById(variantId);
+		return index < 0 ? null : reader.loadVariantsForIndex(index).get(0);
 	}
 
 	@Override
@@ -153,7 +168,17 @@ public class BedBimFamGenotypeData extends AbstractRandomAccessGenotypeData
 	@Override
 	public Iterable<GeneticVariant> getVariantsByRange(String seqName, int rangeStart, int rangeEnd)
 	{
-		throw new UnsupportedOperationException();
+		return this.reader.loadVariantsForRange(seqName, rangeStart, rangeEnd);
+	}
+
+	/**
+	 * Releases the mapped BED data and deletes the temporary SNP-major copy of
+	 * an individual-major BED file. The data can not be used afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		reader.close();
 	}
 
 }
@@ -0,0 +1,191 @@
+package org.molgenis.genotype.plink;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.plink.datatypes.BimEntry;
+import org.molgenis.genotype.plink.writers.BimFileWriter;
+import org.molgenis.genotype.plink.writers.FamFileWriter;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.NotASnpException;
+
+/**
+ * Export a GenotypeData object to SNP major PLINK BED/BIM/FAM files. The
+ * variants are read once, their called dosages are packed four samples per
+ * byte.
+ *
+ * Only SNPs can be written. The first BIM allele is the reference allele, or
+ * the first allele if a variant has no reference allele. Variants with one
+ * allele get '0' as second allele. Samples are written as diploid.
+ */
+public class BedBimFamGenotypeWriter
+{
+	private static final Logger LOG = Logger.getLogger(BedBimFamGenotypeWriter.class);
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final byte[] BED_MAGIC = new byte[]
+	{ 0x6c, 0x1b, 0x01 };
+	/** BED genotype codes indexed by the called dosage of the first allele */
+	private static final int[] GENOTYPE_CODES = new int[]
+	{ 3, 2, 0 };
+	private static final int MISSING_CODE = 1;
+
+	private final GenotypeData genotypeData;
+	private final PlinkSampleFieldMapper sampleFieldMapper;
+
+	/**
+	 * Writes missing values for the parents, sex and phenotype
+	 *
+	 * @param genotypeData
+	 */
+	public BedBimFamGenotypeWriter(GenotypeData genotypeData)
+	{
+		this(genotypeData, null, null, null, null);
+	}
+
+	public BedBimFamGenotypeWriter(GenotypeData genotypeData, String fatherSampleAnnotionId,
+			String motherSampleAnnotionId, String sexSampleAnnotionId, String phenoSampleAnnotionId)
+	{
+		this.genotypeData = genotypeData;
+		this.sampleFieldMapper = new PlinkSampleFieldMapper(fatherSampleAnnotionId, motherSampleAnnotionId,
+				sexSampleAnnotionId, phenoSampleAnnotionId);
+	}
+
+	public void write(String basePath) throws IOException, NotASnpException
+	{
+		write(new File(basePath + ".bed"), new File(basePath + ".bim"), new File(basePath + ".fam"));
+	}
+
+	public void write(File bedFile, File bimFile, File famFile) throws IOException, NotASnpException
+	{
+		List<Sample> samples = genotypeData.getSamples();
+		writeFamFile(famFile, samples);
+
+		LOG.info("Going to create [" + bedFile + "] and [" + bimFile + "]");
+		OutputStream bedOut = null;
+		BimFileWriter bimWriter = null;
+		try
+		{
+			bedOut = new BufferedOutputStream(new FileOutputStream(bedFile), BUFFER_SIZE);
+			bimWriter = new BimFileWriter(bimFile);
+
+			bedOut.write(BED_MAGIC);
+
+			byte[] calledDosages = new byte[samples.size()];
+			byte[] snpBytes = new byte[(samples.size() + 3) / 4];
+			int count = 0;
+			for (GeneticVariant variant : genotypeData)
+			{
+				bimWriter.write(createBimEntry(variant));
+
+				variant.loadSampleCalledDosages(calledDosages);
+				packGenotypes(calledDosages, snpBytes);
+				bedOut.write(snpBytes);
+
+				count++;
+				if ((count % 100000) == 0)
+				{
+					LOG.info("Written " + count + " variants");
+				}
+			}
+			bedOut.flush();
+			LOG.info("Total written " + count + " variants");
+		}
+		finally
+		{
+			IOUtils.closeQuietly(bedOut);
+			IOUtils.closeQuietly(bimWriter);
+		}
+	}
+
+	private void writeFamFile(File famFile, List<Sample> samples) throws IOException
+	{
+		LOG.info("Going to create [" + famFile + "]");
+		FamFileWriter writer = null;
+		try
+		{
+			writer = new FamFileWriter(famFile);
+			for (Sample sample : samples)
+			{
+				writer.write(sampleFieldMapper.createFamEntry(sample));
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(writer);
+		}
+	}
+
+	/**
+	 * The first allele of the BIM entry is the allele counted by the called
+	 * dosage
+	 */
+	private static BimEntry createBimEntry(GeneticVariant variant)
+	{
+		// the BIM reader only supports single character alleles
+		if (!variant.isSnp())
+		{
+			throw new NotASnpException(variant);
+		}
+
+		Alleles variantAlleles = variant.getVariantAlleles();
+		// BED genotypes only distinguish two alleles
+		if (variantAlleles.getAlleleCount() > 2)
+		{
+			throw new GenotypeDataException("Can not write multiallelic variant to BED: " + variant.getSequenceName()
+					+ ":" + variant.getStartPos() + " " + variantAlleles);
+		}
+
+		Allele firstAllele;
+		Allele secondAllele;
+		if (variantAlleles.getAlleleCount() == 0)
+		{
+			firstAllele = Allele.ZERO;
+			secondAllele = Allele.ZERO;
+		}
+		else
+		{
+			firstAllele = variant.getRefAllele() == null ? variantAlleles.get(0) : variant.getRefAllele();
+			secondAllele = Allele.ZERO;
+			for (Allele allele : variantAlleles)
+			{
+				if (allele != firstAllele)
+				{
+					secondAllele = allele;
+				}
+			}
+		}
+
+		// the BIM id is required and used to look up the variant
+		String id = variant.getPrimaryVariantId();
+		if (id == null)
+		{
+			id = variant.getSequenceName() + ":" + variant.getStartPos();
+		}
+
+		return new BimEntry(variant.getSequenceName(), id, 0, variant.getStartPos(), Alleles.createAlleles(
+				firstAllele, secondAllele));
+	}
+
+	private static void packGenotypes(byte[] calledDosages, byte[] snpBytes)
+	{
+		Arrays.fill(snpBytes, (byte) 0);
+		for (int i = 0; i < calledDosages.length; ++i)
+		{
+			int calledDosage = calledDosages[i];
+			int code = calledDosage < 0 || calledDosage > 2 ? MISSING_CODE : GENOTYPE_CODES[calledDosage];
+			snpBytes[i >> 2] |= code << ((i & 3) << 1);
+		}
+	}
+}
@@ -1,10 +1,12 @@
 package org.molgenis.genotype.plink;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -18,14 +20,18 @@ import org.apache.log4j.Logger;
 import org.molgenis.genotype.AbstractRandomAccessGenotypeData;
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
 import org.molgenis.genotype.SimpleSequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.SampleAnnotation;
+import org.molgenis.genotype.plink.datatypes.FamEntry;
 import org.molgenis.genotype.plink.datatypes.MapEntry;
 import org.molgenis.genotype.plink.datatypes.PedEntry;
+import org.molgenis.genotype.plink.drivers.MappedBedFileDriver;
 import org.molgenis.genotype.plink.drivers.PedFileDriver;
+import org.molgenis.genotype.plink.drivers.PedToBedConverter;
 import org.molgenis.genotype.plink.readers.MapFileReader;
 import org.molgenis.genotype.util.CalledDosageConvertor;
 import org.molgenis.genotype.util.GeneticVariantTreeSet;
@@ -34,7 +40,8 @@ import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
 import org.molgenis.genotype.variant.sampleProvider.SampleVariantUniqueIdProvider;
 import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
 
-public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData implements SampleVariantsProvider
+public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData implements SampleVariantsProvider,
+		Closeable
 {
 	public static final String FATHER_SAMPLE_ANNOTATION_NAME = "father";
 	public static final String MOTHER_SAMPLE_ANNOTATION_NAME = "mother";
@@ -44,6 +51,9 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 	private final int sampleVariantProviderUniqueId;
 
 	private final File pedFile;
+	/** Packed genotypes and sample info in low memory mode, otherwise null */
+	private final MappedBedFileDriver packedGenotypes;
+	private final PedToBedConverter pedToBedConverter;
 	private Map<Integer, List<Alleles>> sampleAllelesBySnpIndex = new HashMap<Integer, List<Alleles>>();
 
 	private GeneticVariantTreeSet<GeneticVariant> snps = new GeneticVariantTreeSet<GeneticVariant>();
@@ -57,7 +67,28 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 		this(new File(basePath + ".ped"), new File(basePath + ".map"));
 	}
 
+	public PedMapGenotypeData(String basePath, boolean lowMemory) throws FileNotFoundException, IOException
+	{
+		this(new File(basePath + ".ped"), new File(basePath + ".map"), lowMemory);
+	}
+
 	public PedMapGenotypeData(File pedFile, File mapFile) throws FileNotFoundException, IOException
+	{
+		this(pedFile, mapFile, false);
+	}
+
+	/**
+	 * @param pedFile
+	 * @param mapFile
+	 * @param lowMemory
+	 *            if true the PED file is converted once to a temporary packed
+	 *            file with 2 bits per genotype that is memory mapped, instead of
+	 *            keeping all genotypes in memory. Only biallelic SNPs are
+	 *            supported and heterozygous genotypes are returned in the order
+	 *            of the SNP alleles.
+	 */
+	public PedMapGenotypeData(File pedFile, File mapFile, boolean lowMemory) throws FileNotFoundException,
+			IOException
 	{
 		if (pedFile == null) throw new IllegalArgumentException("PedFile is null");
 		if (mapFile == null) throw new IllegalArgumentException("MapFile is null");
@@ -74,7 +105,17 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 		try
 		{
 			pedFileDriver = new PedFileDriver(pedFile);
-			loadSampleBialleles(pedFileDriver);
+			if (lowMemory)
+			{
+				pedToBedConverter = new PedToBedConverter();
+				packedGenotypes = loadPackedGenotypes(pedFileDriver, pedToBedConverter);
+			}
+			else
+			{
+				pedToBedConverter = null;
+				packedGenotypes = null;
+				loadSampleBialleles(pedFileDriver);
+			}
 
 			mapFileReader = new MapFileReader(new FileInputStream(mapFile));
 			loadSnps(mapFileReader);
@@ -86,6 +127,12 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 			IOUtils.closeQuietly(mapFileReader);
 		}
 
+		if (packedGenotypes != null && packedGenotypes.getNrOfSnps() != snpIndexById.size())
+		{
+			throw new GenotypeDataException("PED file has " + packedGenotypes.getNrOfSnps()
+					+ " SNPs but the MAP file has " + snpIndexById.size() + " SNPs");
+		}
+
 		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
 
 		sampleAnnotations = PlinkSampleAnnotations.getSampleAnnotations();
@@ -120,6 +167,23 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 		LOG.info("Total [" + count + "] samples");
 	}
 
+	private static MappedBedFileDriver loadPackedGenotypes(PedFileDriver pedFileDriver,
+			PedToBedConverter pedToBedConverter) throws IOException
+	{
+		File individualMajorBed = File.createTempFile("individualMajor", ".bed");
+		try
+		{
+			pedToBedConverter.convert(pedFileDriver, individualMajorBed);
+			// the driver transposes to a SNP-major temporary file
+			return new MappedBedFileDriver(individualMajorBed, pedToBedConverter.getFamEntries().size(),
+					pedToBedConverter.getNrOfSnps());
+		}
+		finally
+		{
+			individualMajorBed.delete();
+		}
+	}
+
 	private void loadSnps(MapFileReader reader)
 	{
 		int index = 0;
@@ -129,23 +193,7 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 			String sequenceName = entry.getChromosome();
 			int startPos = (int) entry.getBpPos();
 
-			List<Alleles> sampleAlleles = sampleAllelesBySnpIndex.get(index);
-			List<String> alleles = new ArrayList<String>(2);
-			for (Alleles biallele : sampleAlleles)
-			{
-
-				String allele1 = biallele.get(0) == Allele.ZERO ? null : biallele.get(0).toString();
-				if ((allele1 != null) && !alleles.contains(allele1))
-				{
-					alleles.add(allele1);
-				}
-
-				String allele2 = biallele.get(1) == Allele.ZERO ? null : biallele.get(1).toString();
-				if ((allele2 != null) && !alleles.contains(allele2))
-				{
-					alleles.add(allele2);
-				}
-			}
+			List<String> alleles = getSnpAlleles(index);
 
 			GeneticVariant snp = ReadOnlyGeneticVariant.createVariant(id, startPos, sequenceName, this, alleles);
 
@@ -171,6 +219,46 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 		LOG.info("Total [" + index + "] snps");
 	}
 
+	private List<String> getSnpAlleles(int index)
+	{
+		List<String> alleles = new ArrayList<String>(2);
+		if (pedToBedConverter != null)
+		{
+			if (index < pedToBedConverter.getNrOfSnps())
+			{
+				Allele first = pedToBedConverter.getFirstAllele(index);
+				Allele second = pedToBedConverter.getSecondAllele(index);
+				if (first != null)
+				{
+					alleles.add(first.toString());
+				}
+				if (second != null)
+				{
+					alleles.add(second.toString());
+				}
+			}
+			return alleles;
+		}
+
+		List<Alleles> sampleAlleles = sampleAllelesBySnpIndex.get(index);
+		for (Alleles biallele : sampleAlleles)
+		{
+			String allele1 = biallele.get(0) == Allele.ZERO ? null : biallele.get(0).toString();
+			if ((allele1 != null) && !alleles.contains(allele1))
+			{
+				alleles.add(allele1);
+			}
+
+			String allele2 = biallele.get(1) == Allele.ZERO ? null : biallele.get(1).toString();
+			if ((allele2 != null) && !alleles.contains(allele2))
+			{
+				alleles.add(allele2);
+			}
+		}
+
+		return alleles;
+	}
+
 	@Override
 	public List<Sequence> getSequences()
 	{
@@ -188,6 +276,16 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 	@Override
 	public List<Sample> getSamples()
 	{
+		if (pedToBedConverter != null)
+		{
+			List<Sample> samples = new ArrayList<Sample>();
+			for (FamEntry famEntry : pedToBedConverter.getFamEntries())
+			{
+				samples.add(createSample(famEntry));
+			}
+			return samples;
+		}
+
 		PedFileDriver pedFileDriver = null;
 
 		try
@@ -196,13 +294,7 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 			List<Sample> samples = new ArrayList<Sample>();
 			for (PedEntry pedEntry : pedFileDriver)
 			{
-				Map<String, Object> annotationValues = new LinkedHashMap<String, Object>();
-				annotationValues.put(FATHER_SAMPLE_ANNOTATION_NAME, pedEntry.getFather());
-				annotationValues.put(MOTHER_SAMPLE_ANNOTATION_NAME, pedEntry.getMother());
-				annotationValues.put(SEX_SAMPLE_ANNOTATION_NAME, pedEntry.getSex());
-				annotationValues.put(PHENOTYPE_SAMPLE_ANNOTATION_NAME, pedEntry.getPhenotype());
-
-				samples.add(new Sample(pedEntry.getIndividual(), pedEntry.getFamily(), annotationValues));
+				samples.add(createSample(pedEntry));
 			}
 
 			return samples;
@@ -213,9 +305,49 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 		}
 	}
 
+	private static Sample createSample(FamEntry famEntry)
+	{
+		Map<String, Object> annotationValues = new LinkedHashMap<String, Object>();
+		annotationValues.put(FATHER_SAMPLE_ANNOTATION_NAME, famEntry.getFather());
+		annotationValues.put(MOTHER_SAMPLE_ANNOTATION_NAME, famEntry.getMother());
+		annotationValues.put(SEX_SAMPLE_ANNOTATION_NAME, famEntry.getSex());
+		annotationValues.put(PHENOTYPE_SAMPLE_ANNOTATION_NAME, famEntry.getPhenotype());
+
+		return new Sample(famEntry.getIndividual(), famEntry.getFamily(), annotationValues);
+	}
+
 	@Override
 	public List<Alleles> getSampleVariants(GeneticVariant variant)
 
+	{
+		int index = getSnpIndex(variant);
+
+		if (packedGenotypes != null)
+		{
+			Allele first = getAlleleOrZero(pedToBedConverter.getFirstAllele(index));
+			Allele second = getAlleleOrZero(pedToBedConverter.getSecondAllele(index));
+
+			// indexed by the BED genotype codes
+			Alleles[] allelesByGenotypeCode = new Alleles[]
+			{ Alleles.createAlleles(first, first), Alleles.createAlleles(Allele.ZERO, Allele.ZERO),
+					Alleles.createAlleles(first, second), Alleles.createAlleles(second, second) };
+
+			Alleles[] sampleAlleles = new Alleles[packedGenotypes.getNrOfIndividuals()];
+			packedGenotypes.loadGenotypes(index, allelesByGenotypeCode, sampleAlleles);
+			return Arrays.asList(sampleAlleles);
+		}
+
+		List<Alleles> bialleles = sampleAllelesBySnpIndex.get(index);
+
+		return Collections.unmodifiableList(bialleles);
+	}
+
+	private static Allele getAlleleOrZero(Allele allele)
+	{
+		return allele == null ? Allele.ZERO : allele;
+	}
+
+	private int getSnpIndex(GeneticVariant variant)
 	{
 		if (variant.getPrimaryVariantId() == null)
 		{
@@ -229,9 +361,7 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 			throw new IllegalArgumentException("Unknown primaryVariantId [" + variant.getPrimaryVariantId() + "]");
 		}
 
-		List<Alleles> bialleles = sampleAllelesBySnpIndex.get(index);
-
-		return Collections.unmodifiableList(bialleles);
+		return index;
 	}
 
 	@Override
@@ -287,6 +417,11 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 	@Override
 	public List<Boolean> getSamplePhasing(GeneticVariant variant)
 	{
+		if (packedGenotypes != null)
+		{
+			return Collections.nCopies(packedGenotypes.getNrOfIndividuals(), false);
+		}
+
 		if (samplePhasing.containsKey(variant))
 		{
 			return samplePhasing.get(variant);
@@ -318,15 +453,66 @@ public class PedMapGenotypeData extends AbstractRandomAccessGenotypeData impleme
 	@Override
 	public byte[] getSampleCalledDosage(GeneticVariant variant)
 	{
+		if (packedGenotypes != null)
+		{
+			byte[] calledDosage = new byte[packedGenotypes.getNrOfIndividuals()];
+			loadSampleCalledDosage(variant, calledDosage);
+			return calledDosage;
+		}
 
 		return CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
 				variant.getVariantAlleles(), variant.getRefAllele());
 	}
 
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		if (packedGenotypes != null)
+		{
+			int index = getSnpIndex(variant);
+			Allele first = pedToBedConverter.getFirstAllele(index);
+			Allele second = pedToBedConverter.getSecondAllele(index);
+			Allele dosageRef = variant.getRefAllele() == null ? first : variant.getRefAllele();
+
+			// indexed by the BED genotype codes
+			byte[] calledDosageByGenotypeCode = new byte[]
+			{ (byte) (first == dosageRef ? 2 : 0), -1, (byte) (first == dosageRef || second == dosageRef ? 1 : 0),
+					(byte) (second == dosageRef ? 2 : 0) };
+
+			packedGenotypes.loadGenotypes(index, calledDosageByGenotypeCode, calledDosage);
+			return;
+		}
+		CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
+				variant.getVariantAlleles(), variant.getRefAllele(), calledDosage);
+	}
+
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
+		if (packedGenotypes != null)
+		{
+			return CalledDosageConvertor.convertCalledDosageToDosage(getSampleCalledDosage(variant));
+		}
 		return CalledDosageConvertor.convertCalledAllelesToDosage(getSampleVariants(variant),
 				variant.getVariantAlleles(), variant.getRefAllele());
 	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return false;
+	}
+
+	/**
+	 * Releases the packed genotypes of the low memory mode and deletes their
+	 * temporary file. The data can not be used afterwards.
+	 */
+	@Override
+	public void close()
+	{
+		if (packedGenotypes != null)
+		{
+			packedGenotypes.close();
+		}
+	}
 }
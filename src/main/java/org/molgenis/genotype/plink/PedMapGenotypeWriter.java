@@ -2,13 +2,16 @@ package org.molgenis.genotype.plink;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
+import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
 import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.plink.datatypes.MapEntry;
 import org.molgenis.genotype.plink.datatypes.PedEntry;
@@ -17,23 +20,43 @@ import org.molgenis.genotype.plink.writers.PedFileWriter;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.NotASnpException;
 
+/**
+ * Export a GenotypeData object to PED/MAP files. The variants are read once,
+ * the genotypes are transposed to sample rows in a temporary file when they do
+ * not fit in the transpose buffer.
+ */
 public class PedMapGenotypeWriter
 {
+	public static final int DEFAULT_TRANSPOSE_BUFFER_SIZE = 64 * 1024 * 1024;
+	/** Maximum number of alleles of a variant, the genotype packs two 4 bit allele indices */
+	private static final int MAX_ALLELES = 15;
+	private static final int MISSING_ALLELE = 0xf;
+
 	private static Logger LOG = Logger.getLogger(PedMapGenotypeWriter.class);
 	private GenotypeData genotypeData;
-	private String fatherSampleAnnotionId;
-	private String motherSampleAnnotionId;
-	private String sexSampleAnnotionId;
-	private String phenoSampleAnnotionId;
+	private PlinkSampleFieldMapper sampleFieldMapper;
+	private int transposeBufferSize;
 
 	public PedMapGenotypeWriter(GenotypeData genotypeData, String fatherSampleAnnotionId,
 			String motherSampleAnnotionId, String sexSampleAnnotionId, String phenoSampleAnnotionId)
+	{
+		this(genotypeData, fatherSampleAnnotionId, motherSampleAnnotionId, sexSampleAnnotionId,
+				phenoSampleAnnotionId, DEFAULT_TRANSPOSE_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param transposeBufferSize
+	 *            maximum size in bytes of the genotypes kept in memory, the
+	 *            genotypes use one byte per sample per variant
+	 */
+	public PedMapGenotypeWriter(GenotypeData genotypeData, String fatherSampleAnnotionId,
+			String motherSampleAnnotionId, String sexSampleAnnotionId, String phenoSampleAnnotionId,
+			int transposeBufferSize)
 	{
 		this.genotypeData = genotypeData;
-		this.fatherSampleAnnotionId = fatherSampleAnnotionId;
-		this.motherSampleAnnotionId = motherSampleAnnotionId;
-		this.sexSampleAnnotionId = sexSampleAnnotionId;
-		this.phenoSampleAnnotionId = phenoSampleAnnotionId;
+		this.sampleFieldMapper = new PlinkSampleFieldMapper(fatherSampleAnnotionId, motherSampleAnnotionId,
+				sexSampleAnnotionId, phenoSampleAnnotionId);
+		this.transposeBufferSize = transposeBufferSize;
 	}
 
 	public void write(String basePath) throws IOException, NotASnpException
@@ -43,18 +66,35 @@ public class PedMapGenotypeWriter
 
 	public void write(File pedFile, File mapFile) throws IOException, NotASnpException
 	{
-		writeMapFile(mapFile);
-		writePedFile(pedFile);
+		TransposedGenotypeBuffer genotypes = new TransposedGenotypeBuffer(genotypeData.getSamples().size(),
+				transposeBufferSize);
+		try
+		{
+			List<Alleles> variantAlleles = writeMapFile(mapFile, genotypes);
+			writePedFile(pedFile, genotypes, variantAlleles);
+		}
+		finally
+		{
+			genotypes.close();
+		}
 	}
 
+	/**
+	 * Writes the MAP file and collects the genotypes of all variants
+	 * 
+	 * @return the alleles of the variants
+	 */
 	@SuppressWarnings("resource")
-	private void writeMapFile(File mapFile) throws IOException, NotASnpException
+	private List<Alleles> writeMapFile(File mapFile, TransposedGenotypeBuffer genotypes) throws IOException,
+			NotASnpException
 	{
 		LOG.info("Going to create [" + mapFile + "]");
+		List<Alleles> variantAllelesList = new ArrayList<Alleles>();
 		MapFileWriter writer = null;
 		try
 		{
 			writer = new MapFileWriter(mapFile);
+			byte[] variantGenotypes = new byte[genotypeData.getSamples().size()];
 			int count = 0;
 
 			for (GeneticVariant variant : genotypeData)
@@ -67,6 +107,12 @@ public class PedMapGenotypeWriter
 				MapEntry mapEntry = new MapEntry(variant.getSequenceName(), variant.getPrimaryVariantId(), 0,
 						variant.getStartPos());
 				writer.write(mapEntry);
+
+				Alleles variantAlleles = variant.getVariantAlleles();
+				packGenotypes(variant, variantAlleles, variantGenotypes);
+				genotypes.addVariant(variantGenotypes);
+				variantAllelesList.add(variantAlleles);
+
 				count++;
 				if ((count % 100000) == 0)
 				{
@@ -81,9 +127,11 @@ public class PedMapGenotypeWriter
 		{
 			IOUtils.closeQuietly(writer);
 		}
+		return variantAllelesList;
 	}
 
-	private void writePedFile(File pedFile) throws IOException
+	private void writePedFile(File pedFile, TransposedGenotypeBuffer genotypes, List<Alleles> variantAlleles)
+			throws IOException
 	{
 		LOG.info("Going to create [" + pedFile + "]");
 
@@ -93,13 +141,17 @@ public class PedMapGenotypeWriter
 			writer = new PedFileWriter(pedFile);
 			final List<Sample> samples = genotypeData.getSamples();
 			int count = samples.size();
+			byte[] sampleGenotypes = new byte[genotypes.getVariantCount()];
 
 			for (int i = 0; i < count; i++)
 			{
 				Sample sample = samples.get(i);
+				genotypes.readSample(i, sampleGenotypes);
 
-				PedEntry pedEntry = new PedEntry(getFamilyId(sample), sample.getId(), getFather(sample),
-						getMother(sample), getSex(sample), getPhenotype(sample), new BialleleIterator(genotypeData, i));
+				PedEntry pedEntry = new PedEntry(sampleFieldMapper.getFamilyId(sample), sample.getId(),
+						sampleFieldMapper.getFather(sample), sampleFieldMapper.getMother(sample),
+						sampleFieldMapper.getSex(sample), sampleFieldMapper.getPhenotype(sample), new BialleleIterator(
+								variantAlleles, sampleGenotypes));
 
 				writer.write(pedEntry);
 				if ((i % 100) == 0)
@@ -118,108 +170,88 @@ public class PedMapGenotypeWriter
 
 	}
 
-	private String getFamilyId(Sample sample)
-	{
-		return sample.getFamilyId() != null ? sample.getFamilyId() : "0";
-	}
-
-	private String getFather(Sample sample)
-	{
-		if (fatherSampleAnnotionId == null)
-		{
-			return "0";
-		}
-
-		Object value = sample.getAnnotationValues().get(fatherSampleAnnotionId);
-		if (value == null)
-		{
-			return "0";
-		}
-
-		return value.toString();
-	}
-
-	private String getMother(Sample sample)
+	/**
+	 * Pack the sample alleles as indices in the variant alleles, first allele
+	 * in the high 4 bits. Haploid samples get their allele twice.
+	 */
+	private static void packGenotypes(GeneticVariant variant, Alleles variantAlleles, byte[] genotypes)
 	{
-		if (motherSampleAnnotionId == null)
+		if (variantAlleles.getAlleleCount() > MAX_ALLELES)
 		{
-			return "0";
+			throw new GenotypeDataException("Variant at " + variant.getSequenceName() + ":"
+					+ variant.getStartPos() + " has " + variantAlleles.getAlleleCount()
+					+ " alleles, the PED writer supports at most " + MAX_ALLELES);
 		}
 
-		Object value = sample.getAnnotationValues().get(motherSampleAnnotionId);
-		if (value == null)
+		List<Alleles> sampleVariants = variant.getSampleVariants();
+		for (int i = 0; i < genotypes.length; ++i)
 		{
-			return "0";
+			Alleles sampleAlleles = sampleVariants.get(i);
+			if (sampleAlleles == null || sampleAlleles.getAlleleCount() == 0)
+			{
+				genotypes[i] = (byte) (MISSING_ALLELE << 4 | MISSING_ALLELE);
+			}
+			else
+			{
+				int allele1 = getAlleleIndex(variant, variantAlleles, sampleAlleles.get(0));
+				int allele2 = sampleAlleles.getAlleleCount() == 1 ? allele1 : getAlleleIndex(variant, variantAlleles,
+						sampleAlleles.get(1));
+				genotypes[i] = (byte) (allele1 << 4 | allele2);
+			}
 		}
-
-		return value.toString();
 	}
 
-	private byte getSex(Sample sample)
+	private static int getAlleleIndex(GeneticVariant variant, Alleles variantAlleles, Allele allele)
 	{
-		if (sexSampleAnnotionId == null)
-		{
-			return 0;
-		}
-
-		Object value = sample.getAnnotationValues().get(sexSampleAnnotionId);
-		if (value == null)
+		if (allele == null || allele == Allele.ZERO)
 		{
-			return 0;
+			return MISSING_ALLELE;
 		}
-
-		if (value instanceof Byte)
+		// alleles are pooled, identity is enough
+		for (int i = 0; i < variantAlleles.getAlleleCount(); ++i)
 		{
-			return (Byte) value;
+			if (variantAlleles.get(i) == allele)
+			{
+				return i;
+			}
 		}
-
-		return Byte.valueOf(value.toString());
+		throw new GenotypeDataException("Sample allele " + allele + " is not an allele of variant at "
+				+ variant.getSequenceName() + ":" + variant.getStartPos());
 	}
 
-	private double getPhenotype(Sample sample)
+	private static Allele getAllele(Alleles variantAlleles, int alleleIndex)
 	{
-		if (phenoSampleAnnotionId == null)
-		{
-			return -9;
-		}
-
-		Object value = sample.getAnnotationValues().get(phenoSampleAnnotionId);
-		if (value == null)
-		{
-			return -9;
-		}
-
-		if (value instanceof Double)
-		{
-			return (Double) value;
-		}
-
-		return Double.valueOf(value.toString());
+		return alleleIndex == MISSING_ALLELE ? Allele.ZERO : variantAlleles.get(alleleIndex);
 	}
 
-	private class BialleleIterator implements Iterator<Alleles>
+	/**
+	 * Alleles of a sample decoded from the transposed genotypes
+	 */
+	private static class BialleleIterator implements Iterator<Alleles>
 	{
-		private Iterator<GeneticVariant> variantsIterator;
-		private int sampleIndex;
+		private final List<Alleles> variantAlleles;
+		private final byte[] sampleGenotypes;
+		private int variantIndex = 0;
 
-		public BialleleIterator(GenotypeData genotypeData, int sampleIndex)
+		public BialleleIterator(List<Alleles> variantAlleles, byte[] sampleGenotypes)
 		{
-			this.variantsIterator = genotypeData.iterator();
-			this.sampleIndex = sampleIndex;
+			this.variantAlleles = variantAlleles;
+			this.sampleGenotypes = sampleGenotypes;
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			return variantsIterator.hasNext();
+			return variantIndex < variantAlleles.size();
 		}
 
 		@Override
 		public Alleles next()
 		{
-			GeneticVariant variant = variantsIterator.next();
-			Alleles variantAlleles = variant.getSampleVariants().get(sampleIndex);
-			return variantAlleles;
+			Alleles alleles = variantAlleles.get(variantIndex);
+			int genotype = sampleGenotypes[variantIndex] & 0xff;
+			++variantIndex;
+			return Alleles.createAlleles(getAllele(alleles, genotype >>> 4), getAllele(alleles, genotype & 0xf));
 		}
 
 		@Override
@@ -0,0 +1,111 @@
+package org.molgenis.genotype.plink;
+
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.plink.datatypes.FamEntry;
+
+/**
+ * Maps samples to the family, parent, sex and phenotype fields of PED and FAM
+ * files using sample annotations. Fields without an annotation get the PLINK
+ * missing value.
+ */
+class PlinkSampleFieldMapper
+{
+	private final String fatherSampleAnnotionId;
+	private final String motherSampleAnnotionId;
+	private final String sexSampleAnnotionId;
+	private final String phenoSampleAnnotionId;
+
+	public PlinkSampleFieldMapper(String fatherSampleAnnotionId, String motherSampleAnnotionId,
+			String sexSampleAnnotionId, String phenoSampleAnnotionId)
+	{
+		this.fatherSampleAnnotionId = fatherSampleAnnotionId;
+		this.motherSampleAnnotionId = motherSampleAnnotionId;
+		this.sexSampleAnnotionId = sexSampleAnnotionId;
+		this.phenoSampleAnnotionId = phenoSampleAnnotionId;
+	}
+
+	public FamEntry createFamEntry(Sample sample)
+	{
+		return new FamEntry(getFamilyId(sample), sample.getId(), getFather(sample), getMother(sample),
+				getSex(sample), getPhenotype(sample));
+	}
+
+	public String getFamilyId(Sample sample)
+	{
+		return sample.getFamilyId() != null ? sample.getFamilyId() : "0";
+	}
+
+	public String getFather(Sample sample)
+	{
+		if (fatherSampleAnnotionId == null)
+		{
+			return "0";
+		}
+
+		Object value = sample.getAnnotationValues().get(fatherSampleAnnotionId);
+		if (value == null)
+		{
+			return "0";
+		}
+
+		return value.toString();
+	}
+
+	public String getMother(Sample sample)
+	{
+		if (motherSampleAnnotionId == null)
+		{
+			return "0";
+		}
+
+		Object value = sample.getAnnotationValues().get(motherSampleAnnotionId);
+		if (value == null)
+		{
+			return "0";
+		}
+
+		return value.toString();
+	}
+
+	public byte getSex(Sample sample)
+	{
+		if (sexSampleAnnotionId == null)
+		{
+			return 0;
+		}
+
+		Object value = sample.getAnnotationValues().get(sexSampleAnnotionId);
+		if (value == null)
+		{
+			return 0;
+		}
+
+		if (value instanceof Byte)
+		{
+			return (Byte) value;
+		}
+
+		return Byte.valueOf(value.toString());
+	}
+
+	public double getPhenotype(Sample sample)
+	{
+		if (phenoSampleAnnotionId == null)
+		{
+			return -9;
+		}
+
+		Object value = sample.getAnnotationValues().get(phenoSampleAnnotionId);
+		if (value == null)
+		{
+			return -9;
+		}
+
+		if (value instanceof Double)
+		{
+			return (Double) value;
+		}
+
+		return Double.valueOf(value.toString());
+	}
+}
@@ -0,0 +1,171 @@
+package org.molgenis.genotype.plink;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Transposes variant major genotypes to sample major rows with a single pass
+ * over the variants. Variants are collected in a block of limited size, when
+ * the block is full it is transposed and written to a temporary file as a tile
+ * with the variants of each sample together. A sample row is then read with
+ * one read per tile.
+ *
+ * Genotypes are one byte per sample per variant. If all variants fit in one
+ * block no temporary file is used.
+ */
+class TransposedGenotypeBuffer implements Closeable
+{
+	private static final int TRANSPOSE_GROUP_SIZE = 64;
+	private static final int INITIAL_BLOCK_VARIANTS = 1024;
+
+	private final int sampleCount;
+	private final int blockVariantCount;
+	private byte[] block;
+	private int blockVariants = 0;
+	private int variantCount = 0;
+
+	private File spillFile;
+	private OutputStream spillOut;
+	/** Number of variants per written tile */
+	private int[] tileVariantCounts = new int[16];
+	private int tileCount = 0;
+	private RandomAccessFile spillReader;
+
+	/**
+	 * @param sampleCount
+	 * @param maxBlockSize
+	 *            maximum size in bytes of the block kept in memory
+	 */
+	public TransposedGenotypeBuffer(int sampleCount, int maxBlockSize)
+	{
+		this.sampleCount = sampleCount;
+		this.blockVariantCount = Math.max(1, maxBlockSize / Math.max(1, sampleCount));
+		// grows up to the maximum size when variants are added
+		this.block = new byte[Math.min(blockVariantCount, INITIAL_BLOCK_VARIANTS) * sampleCount];
+	}
+
+	/**
+	 * Add the genotypes of the next variant
+	 *
+	 * @param genotypes
+	 *            genotype per sample
+	 * @throws IOException
+	 */
+	public void addVariant(byte[] genotypes) throws IOException
+	{
+		if (spillReader != null)
+		{
+			throw new IllegalStateException("Can not add variants after reading samples");
+		}
+		if (blockVariants == blockVariantCount)
+		{
+			spillBlock();
+		}
+		else if ((blockVariants + 1) * sampleCount > block.length)
+		{
+			block = Arrays.copyOf(block, Math.min(blockVariantCount, blockVariants * 2) * sampleCount);
+		}
+		System.arraycopy(genotypes, 0, block, blockVariants * sampleCount, sampleCount);
+		++blockVariants;
+		++variantCount;
+	}
+
+	public int getVariantCount()
+	{
+		return variantCount;
+	}
+
+	/**
+	 * Read the genotypes of a sample, reading the samples in order is the
+	 * fastest
+	 *
+	 * @param sampleIndex
+	 * @param genotypes
+	 *            array of at least the number of variants
+	 * @throws IOException
+	 */
+	public void readSample(int sampleIndex, byte[] genotypes) throws IOException
+	{
+		if (spillReader == null && spillFile != null)
+		{
+			spillOut.close();
+			spillReader = new RandomAccessFile(spillFile, "r");
+		}
+
+		int variantIndex = 0;
+		long tileOffset = 0;
+		for (int tile = 0; tile < tileCount; ++tile)
+		{
+			int tileVariants = tileVariantCounts[tile];
+			spillReader.seek(tileOffset + (long) sampleIndex * tileVariants);
+			spillReader.readFully(genotypes, variantIndex, tileVariants);
+			variantIndex += tileVariants;
+			tileOffset += (long) sampleCount * tileVariants;
+		}
+
+		// variants of the last block are still in memory
+		for (int v = 0; v < blockVariants; ++v)
+		{
+			genotypes[variantIndex++] = block[v * sampleCount + sampleIndex];
+		}
+	}
+
+	/**
+	 * Deletes the temporary file
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		IOUtils.closeQuietly(spillOut);
+		IOUtils.closeQuietly(spillReader);
+		if (spillFile != null)
+		{
+			spillFile.delete();
+			spillFile = null;
+		}
+	}
+
+	private void spillBlock() throws IOException
+	{
+		if (spillFile == null)
+		{
+			spillFile = File.createTempFile("genotypes", ".tmp");
+			spillOut = new BufferedOutputStream(new FileOutputStream(spillFile), 1 << 16);
+		}
+
+		// write the block sample major, transposing a group of samples at a
+		// time so the block is read sequentially
+		byte[][] sampleRows = new byte[Math.min(TRANSPOSE_GROUP_SIZE, sampleCount)][blockVariants];
+		for (int groupStart = 0; groupStart < sampleCount; groupStart += TRANSPOSE_GROUP_SIZE)
+		{
+			int groupSize = Math.min(TRANSPOSE_GROUP_SIZE, sampleCount - groupStart);
+			for (int v = 0; v < blockVariants; ++v)
+			{
+				int offset = v * sampleCount + groupStart;
+				for (int s = 0; s < groupSize; ++s)
+				{
+					sampleRows[s][v] = block[offset + s];
+				}
+			}
+			for (int s = 0; s < groupSize; ++s)
+			{
+				spillOut.write(sampleRows[s]);
+			}
+		}
+
+		if (tileCount == tileVariantCounts.length)
+		{
+			tileVariantCounts = Arrays.copyOf(tileVariantCounts, tileCount * 2);
+		}
+		tileVariantCounts[tileCount++] = blockVariants;
+		blockVariants = 0;
+	}
+}
@@ -8,8 +8,8 @@ import java.io.RandomAccessFile;
  * Driver to query BED (binary Plink genotype) files. See:
  * http://pngu.mgh.harvard.edu/~purcell/plink/binary.shtml
  * 
- * PLEASE NOTE THAT: this driver at the moment works ONLY on SNP-major mode
- * files!
+ * PLEASE NOTE THAT: the genotype queries of this driver work ONLY on SNP-major
+ * mode files! Use MappedBedFileDriver to read individual-major files.
  * 
  */
 public class BedFileDriver
@@ -74,7 +74,6 @@ public class BedFileDriver
 			else if (bmode == 0) // assumed... bit code 00000000
 			{
 				// System.out.println("mode 0: individual-major");
-				throw new Exception("BED file individual-major mode not yet supported!");
 			}
 			else
 			{
@@ -145,6 +144,7 @@ public class BedFileDriver
 	public String getElement(long index) throws Exception
 	{
 		// throw new Exception("fixme!");
+		checkSnpMajor();
 		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
 		raf.seek((index / 4) + 3);
 		String byteString = reverse(bits(raf.readByte()));
@@ -166,6 +166,8 @@ public class BedFileDriver
 	 */
 	public String[] getSNPs(long index, int nrOfIndividualsInFAMfile) throws Exception
 	{
+		checkSnpMajor();
+
 		// calculate the number of individuals in the byte that is potentially
 		// padded
 		int nrOfIndividualsInPaddedByte = nrOfIndividualsInFAMfile % 4;
@@ -313,6 +315,7 @@ public class BedFileDriver
 	 */
 	public String[] getElements(long from, long to, int paddingBitpairs, int pass) throws IOException
 	{
+		checkSnpMajor();
 		double paddingFraction = paddingBitpairs / 4.0;
 		// Start byte = byte position of start individual, corrected for padding
 		// 0's that get added at every SNP:
@@ -358,6 +361,14 @@ public class BedFileDriver
 		return result;
 	}
 
+	private void checkSnpMajor() throws IOException
+	{
+		if (mode != 1)
+		{
+			throw new IOException("Querying BED file individual-major mode not supported, use MappedBedFileDriver");
+		}
+	}
+
 	/**
 	 * Helper function to get the bit values
 	 * 
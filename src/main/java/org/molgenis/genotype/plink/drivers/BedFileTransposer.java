@@ -0,0 +1,174 @@
+package org.molgenis.genotype.plink.drivers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+import org.molgenis.genotype.GenotypeDataException;
+
+/**
+ * Transposes an individual-major BED file to a SNP-major BED file.
+ *
+ * The transpose is done in blocks of SNPs. For each block the individual-major
+ * bytes of all individuals are read from the memory mapped input and the
+ * SNP-major bytes of the block are written sequentially to the output. Memory
+ * usage is bounded by the block size.
+ */
+public class BedFileTransposer
+{
+	static final byte INDIVIDUAL_MAJOR_MODE = 0;
+
+	private static final int DEFAULT_BLOCK_SIZE = 16 * 1024 * 1024;
+
+	private final int nrOfIndividuals;
+	private final int nrOfSnps;
+	private final int blockSize;
+
+	/**
+	 * @param nrOfIndividuals
+	 * @param nrOfSnps
+	 */
+	public BedFileTransposer(int nrOfIndividuals, int nrOfSnps)
+	{
+		this(nrOfIndividuals, nrOfSnps, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param nrOfIndividuals
+	 * @param nrOfSnps
+	 * @param blockSize
+	 *            the maximum number of bytes of SNP-major data to buffer
+	 */
+	public BedFileTransposer(int nrOfIndividuals, int nrOfSnps, int blockSize)
+	{
+		this.nrOfIndividuals = nrOfIndividuals;
+		this.nrOfSnps = nrOfSnps;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Write the genotypes of an individual-major BED file to a new SNP-major
+	 * BED file
+	 *
+	 * @param individualMajorBed
+	 * @param snpMajorBed
+	 *            will be overwritten if it exists
+	 * @throws IOException
+	 */
+	public void transpose(File individualMajorBed, File snpMajorBed) throws IOException
+	{
+		int bytesPerIndividual = (nrOfSnps + 3) >> 2;
+		int bytesPerSnp = (nrOfIndividuals + 3) >> 2;
+
+		MappedByteBuffer[] input = mapIndividualMajor(individualMajorBed, bytesPerIndividual);
+		int individualsPerBuffer = bytesPerIndividual == 0 ? Integer.MAX_VALUE : Integer.MAX_VALUE
+				/ bytesPerIndividual;
+
+		// a multiple of 4 SNPs so a block always starts at a whole input byte
+		int snpsPerBlock = Math.max(4, (blockSize / Math.max(1, bytesPerSnp)) & ~3);
+		byte[] block = new byte[(int) Math.min((long) snpsPerBlock * bytesPerSnp, (long) nrOfSnps * bytesPerSnp)];
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(snpMajorBed));
+		try
+		{
+			out.write(MappedBedFileDriver.MAGIC_NUMBER_1);
+			out.write(MappedBedFileDriver.MAGIC_NUMBER_2);
+			out.write(MappedBedFileDriver.SNP_MAJOR_MODE);
+
+			for (int firstSnp = 0; firstSnp < nrOfSnps; firstSnp += snpsPerBlock)
+			{
+				int snpsInBlock = Math.min(snpsPerBlock, nrOfSnps - firstSnp);
+				int inputBytes = (snpsInBlock + 3) >> 2;
+				int inputOffset = firstSnp >> 2;
+
+				Arrays.fill(block, (byte) 0);
+
+				for (int individual = 0; individual < nrOfIndividuals; ++individual)
+				{
+					MappedByteBuffer buffer = input[individual / individualsPerBuffer];
+					int individualOffset = (individual % individualsPerBuffer) * bytesPerIndividual + inputOffset;
+					int outputByte = individual >> 2;
+					int outputShift = (individual & 3) << 1;
+
+					for (int i = 0; i < inputBytes; ++i)
+					{
+						int b = buffer.get(individualOffset + i) & 0xFF;
+						int snp = i << 2;
+						int snpsInByte = Math.min(4, snpsInBlock - snp);
+						for (int j = 0; j < snpsInByte; ++j)
+						{
+							int code = (b >>> (j << 1)) & 3;
+							block[(snp + j) * bytesPerSnp + outputByte] |= code << outputShift;
+						}
+					}
+				}
+
+				out.write(block, 0, snpsInBlock * bytesPerSnp);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private MappedByteBuffer[] mapIndividualMajor(File individualMajorBed, int bytesPerIndividual)
+			throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(individualMajorBed, "r");
+		try
+		{
+			byte[] header = new byte[MappedBedFileDriver.HEADER_SIZE];
+			raf.readFully(header);
+
+			if (header[0] != MappedBedFileDriver.MAGIC_NUMBER_1 || header[1] != MappedBedFileDriver.MAGIC_NUMBER_2)
+			{
+				throw new GenotypeDataException("Invalid Plink magic number in BED file: "
+						+ individualMajorBed.getAbsolutePath());
+			}
+
+			if (header[2] != INDIVIDUAL_MAJOR_MODE)
+			{
+				throw new GenotypeDataException("BED file is not in individual-major mode: "
+						+ individualMajorBed.getAbsolutePath());
+			}
+
+			long expectedLength = MappedBedFileDriver.HEADER_SIZE + (long) bytesPerIndividual * nrOfIndividuals;
+			if (raf.length() < expectedLength)
+			{
+				throw new GenotypeDataException("BED file " + individualMajorBed.getAbsolutePath() + " is "
+						+ raf.length() + " bytes, expected " + expectedLength + " bytes for " + nrOfIndividuals
+						+ " individuals and " + nrOfSnps + " SNPs");
+			}
+
+			if (bytesPerIndividual == 0)
+			{
+				return new MappedByteBuffer[0];
+			}
+
+			FileChannel channel = raf.getChannel();
+			int individualsPerBuffer = Integer.MAX_VALUE / bytesPerIndividual;
+			int nrOfBuffers = (int) ((nrOfIndividuals + (long) individualsPerBuffer - 1) / individualsPerBuffer);
+			MappedByteBuffer[] buffers = new MappedByteBuffer[nrOfBuffers];
+			for (int i = 0; i < nrOfBuffers; ++i)
+			{
+				long firstIndividual = (long) i * individualsPerBuffer;
+				long individualsInBuffer = Math.min(individualsPerBuffer, nrOfIndividuals - firstIndividual);
+				buffers[i] = channel.map(MapMode.READ_ONLY, MappedBedFileDriver.HEADER_SIZE + firstIndividual
+						* bytesPerIndividual, individualsInBuffer * bytesPerIndividual);
+			}
+			return buffers;
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,361 @@
+package org.molgenis.genotype.plink.drivers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.util.MappedBuffers;
+
+/**
+ * Memory mapped driver to query BED (binary Plink genotype) files. See:
+ * http://pngu.mgh.harvard.edu/~purcell/plink/binary.shtml
+ *
+ * Individual-major files are transposed once to a temporary SNP-major file.
+ * Call close to unmap the data and delete the temporary file.
+ *
+ * Genotypes are decoded using a lookup table on whole bytes directly into the
+ * array supplied by the caller, no intermediate objects are created per
+ * sample. The genotype codes are the 2 bit values as stored in the BED file.
+ *
+ * Reading from multiple threads is safe, only absolute reads are done on the
+ * mapped buffers.
+ */
+public class MappedBedFileDriver implements Closeable
+{
+	public static final byte HOMOZYGOUS_FIRST = 0;
+	public static final byte MISSING = 1;
+	public static final byte HETEROZYGOUS = 2;
+	public static final byte HOMOZYGOUS_SECOND = 3;
+
+	static final byte MAGIC_NUMBER_1 = 108;
+	static final byte MAGIC_NUMBER_2 = 27;
+	static final byte SNP_MAJOR_MODE = 1;
+	static final int HEADER_SIZE = 3;
+
+	/**
+	 * The four genotype codes stored in every possible byte, first individual
+	 * in the lowest bits
+	 */
+	private static final byte[] BYTE_GENOTYPE_CODES = new byte[256 * 4];
+
+	private static final byte[] GENOTYPE_CODES =
+	{ HOMOZYGOUS_FIRST, MISSING, HETEROZYGOUS, HOMOZYGOUS_SECOND };
+
+	static
+	{
+		for (int b = 0; b < 256; ++b)
+		{
+			for (int i = 0; i < 4; ++i)
+			{
+				BYTE_GENOTYPE_CODES[(b << 2) + i] = (byte) ((b >>> (i << 1)) & 3);
+			}
+		}
+	}
+
+	private final int nrOfIndividuals;
+	private final int nrOfSnps;
+	private final int bytesPerSnp;
+	private final int snpsPerBuffer;
+	/** null after close */
+	private volatile MappedByteBuffer[] buffers;
+	/** SNP-major copy of individual-major data, null for SNP-major data */
+	private final File snpMajorTempFile;
+
+	public MappedBedFileDriver(File bedFile, int nrOfIndividuals, int nrOfSnps) throws IOException
+	{
+		this.nrOfIndividuals = nrOfIndividuals;
+		this.nrOfSnps = nrOfSnps;
+		this.bytesPerSnp = (nrOfIndividuals + 3) >> 2;
+		// a single mapped buffer can not exceed 2GB, split on whole SNPs
+		this.snpsPerBuffer = bytesPerSnp == 0 ? Integer.MAX_VALUE : Integer.MAX_VALUE / bytesPerSnp;
+
+		if (readMode(bedFile) == BedFileTransposer.INDIVIDUAL_MAJOR_MODE)
+		{
+			// variant access on individual-major data would read one byte per
+			// individual scattered over the whole file. Transpose once to a
+			// temporary SNP-major file instead.
+			File snpMajorBed = File.createTempFile("snpMajor", ".bed");
+			snpMajorBed.deleteOnExit();
+			try
+			{
+				new BedFileTransposer(nrOfIndividuals, nrOfSnps).transpose(bedFile, snpMajorBed);
+				this.buffers = mapSnpMajor(snpMajorBed);
+			}
+			catch (IOException e)
+			{
+				snpMajorBed.delete();
+				throw e;
+			}
+			catch (RuntimeException e)
+			{
+				snpMajorBed.delete();
+				throw e;
+			}
+			this.snpMajorTempFile = snpMajorBed;
+		}
+		else
+		{
+			this.buffers = mapSnpMajor(bedFile);
+			this.snpMajorTempFile = null;
+		}
+	}
+
+	/**
+	 * Unmaps the BED data and deletes the temporary SNP-major file of
+	 * individual-major data. The driver can not be used afterwards. Must not be
+	 * called while other threads are reading.
+	 */
+	@Override
+	public void close()
+	{
+		MappedByteBuffer[] mappedBuffers = buffers;
+		buffers = null;
+		if (mappedBuffers != null)
+		{
+			for (MappedByteBuffer buffer : mappedBuffers)
+			{
+				MappedBuffers.unmap(buffer);
+			}
+		}
+		if (snpMajorTempFile != null)
+		{
+			snpMajorTempFile.delete();
+		}
+	}
+
+	private static byte readMode(File bedFile) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
+		try
+		{
+			byte[] header = new byte[HEADER_SIZE];
+			raf.readFully(header);
+
+			if (header[0] != MAGIC_NUMBER_1 || header[1] != MAGIC_NUMBER_2)
+			{
+				throw new GenotypeDataException("Invalid Plink magic number in BED file: " + bedFile.getAbsolutePath());
+			}
+
+			if (header[2] != SNP_MAJOR_MODE && header[2] != BedFileTransposer.INDIVIDUAL_MAJOR_MODE)
+			{
+				throw new GenotypeDataException("Mode not recognized: " + header[2]);
+			}
+
+			return header[2];
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	private MappedByteBuffer[] mapSnpMajor(File bedFile) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(bedFile, "r");
+		try
+		{
+			long expectedLength = HEADER_SIZE + (long) bytesPerSnp * nrOfSnps;
+			if (raf.length() < expectedLength)
+			{
+				throw new GenotypeDataException("BED file " + bedFile.getAbsolutePath() + " is " + raf.length()
+						+ " bytes, expected " + expectedLength + " bytes for " + nrOfIndividuals + " individuals and "
+						+ nrOfSnps + " SNPs");
+			}
+
+			FileChannel channel = raf.getChannel();
+			int nrOfBuffers = bytesPerSnp == 0 ? 0 : (int) ((nrOfSnps + (long) snpsPerBuffer - 1) / snpsPerBuffer);
+			MappedByteBuffer[] buffers = new MappedByteBuffer[nrOfBuffers];
+			for (int i = 0; i < nrOfBuffers; ++i)
+			{
+				long firstSnp = (long) i * snpsPerBuffer;
+				long snpsInBuffer = Math.min(snpsPerBuffer, nrOfSnps - firstSnp);
+				buffers[i] = channel.map(MapMode.READ_ONLY, HEADER_SIZE + firstSnp * bytesPerSnp, snpsInBuffer
+						* bytesPerSnp);
+			}
+			return buffers;
+		}
+		finally
+		{
+			// mapping stays valid after closing the file
+			raf.close();
+		}
+	}
+
+	public int getNrOfIndividuals()
+	{
+		return nrOfIndividuals;
+	}
+
+	public int getNrOfSnps()
+	{
+		return nrOfSnps;
+	}
+
+	/**
+	 * Load the genotype codes of all individuals for a SNP
+	 *
+	 * @param snpIndex
+	 * @param genotypeCodes
+	 *            array of at least the number of individuals to fill
+	 */
+	public void loadGenotypeCodes(int snpIndex, byte[] genotypeCodes)
+	{
+		loadGenotypes(snpIndex, GENOTYPE_CODES, genotypeCodes);
+	}
+
+	/**
+	 * Load the genotypes of all individuals for a SNP translating the genotype
+	 * codes using the supplied values. Typically used for called dosages.
+	 *
+	 * @param snpIndex
+	 * @param valueByGenotypeCode
+	 *            value for each of the 4 genotype codes
+	 * @param values
+	 *            array of at least the number of individuals to fill
+	 */
+	public void loadGenotypes(int snpIndex, byte[] valueByGenotypeCode, byte[] values)
+	{
+		MappedByteBuffer buffer = getSnpBuffer(snpIndex);
+		int offset = getSnpOffset(snpIndex);
+
+		int individual = 0;
+		int fullBytes = nrOfIndividuals >> 2;
+		for (int i = 0; i < fullBytes; ++i)
+		{
+			int lookup = (buffer.get(offset + i) & 0xFF) << 2;
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup]];
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + 1]];
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + 2]];
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + 3]];
+		}
+
+		int remaining = nrOfIndividuals & 3;
+		if (remaining > 0)
+		{
+			int lookup = (buffer.get(offset + fullBytes) & 0xFF) << 2;
+			for (int i = 0; i < remaining; ++i)
+			{
+				values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + i]];
+			}
+		}
+	}
+
+	/**
+	 * Load the genotypes of all individuals for a SNP translating the genotype
+	 * codes using the supplied values. Typically used for the alleles of the
+	 * individuals.
+	 *
+	 * @param snpIndex
+	 * @param valueByGenotypeCode
+	 *            value for each of the 4 genotype codes
+	 * @param values
+	 *            array of at least the number of individuals to fill
+	 */
+	public <T> void loadGenotypes(int snpIndex, T[] valueByGenotypeCode, T[] values)
+	{
+		MappedByteBuffer buffer = getSnpBuffer(snpIndex);
+		int offset = getSnpOffset(snpIndex);
+
+		int individual = 0;
+		int fullBytes = nrOfIndividuals >> 2;
+		for (int i = 0; i < fullBytes; ++i)
+		{
+			int lookup = (buffer.get(offset + i) & 0xFF) << 2;
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup]];
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + 1]];
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + 2]];
+			values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + 3]];
+		}
+
+		int remaining = nrOfIndividuals & 3;
+		if (remaining > 0)
+		{
+			int lookup = (buffer.get(offset + fullBytes) & 0xFF) << 2;
+			for (int i = 0; i < remaining; ++i)
+			{
+				values[individual++] = valueByGenotypeCode[BYTE_GENOTYPE_CODES[lookup + i]];
+			}
+		}
+	}
+
+	/**
+	 * Load the genotypes of a subset of the individuals for a SNP, only the
+	 * genotype codes of the requested individuals are decoded.
+	 *
+	 * @param snpIndex
+	 * @param valueByGenotypeCode
+	 *            value for each of the 4 genotype codes
+	 * @param individuals
+	 *            indices of the requested individuals
+	 * @param values
+	 *            array of at least the number of requested individuals to fill
+	 */
+	public void loadGenotypes(int snpIndex, byte[] valueByGenotypeCode, int[] individuals, byte[] values)
+	{
+		MappedByteBuffer buffer = getSnpBuffer(snpIndex);
+		int offset = getSnpOffset(snpIndex);
+
+		for (int i = 0; i < individuals.length; ++i)
+		{
+			values[i] = valueByGenotypeCode[getGenotypeCode(buffer, offset, individuals[i])];
+		}
+	}
+
+	/**
+	 * Load the genotypes of a subset of the individuals for a SNP, only the
+	 * genotype codes of the requested individuals are decoded.
+	 *
+	 * @param snpIndex
+	 * @param valueByGenotypeCode
+	 *            value for each of the 4 genotype codes
+	 * @param individuals
+	 *            indices of the requested individuals
+	 * @param values
+	 *            array of at least the number of requested individuals to fill
+	 */
+	public <T> void loadGenotypes(int snpIndex, T[] valueByGenotypeCode, int[] individuals, T[] values)
+	{
+		MappedByteBuffer buffer = getSnpBuffer(snpIndex);
+		int offset = getSnpOffset(snpIndex);
+
+		for (int i = 0; i < individuals.length; ++i)
+		{
+			values[i] = valueByGenotypeCode[getGenotypeCode(buffer, offset, individuals[i])];
+		}
+	}
+
+	private int getGenotypeCode(MappedByteBuffer buffer, int offset, int individual)
+	{
+		if (individual < 0 || individual >= nrOfIndividuals)
+		{
+			throw new IndexOutOfBoundsException("Individual index " + individual + " out of range for "
+					+ nrOfIndividuals + " individuals");
+		}
+		return (buffer.get(offset + (individual >> 2)) >>> ((individual & 3) << 1)) & 3;
+	}
+
+	private MappedByteBuffer getSnpBuffer(int snpIndex)
+	{
+		if (snpIndex < 0 || snpIndex >= nrOfSnps)
+		{
+			throw new IndexOutOfBoundsException("SNP index " + snpIndex + " out of range for " + nrOfSnps + " SNPs");
+		}
+		MappedByteBuffer[] mappedBuffers = buffers;
+		if (mappedBuffers == null)
+		{
+			throw new GenotypeDataException("BED file driver is closed");
+		}
+		return bytesPerSnp == 0 ? null : mappedBuffers[snpIndex / snpsPerBuffer];
+	}
+
+	private int getSnpOffset(int snpIndex)
+	{
+		return (snpIndex % snpsPerBuffer) * bytesPerSnp;
+	}
+
+}
@@ -0,0 +1,177 @@
+package org.molgenis.genotype.plink.drivers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.plink.datatypes.FamEntry;
+import org.molgenis.genotype.plink.datatypes.PedEntry;
+
+/**
+ * Converts a PED file in a single pass to an individual-major BED file with 2
+ * bits per genotype. Only the genotypes of one individual are in memory at a
+ * time.
+ *
+ * The alleles of a SNP are numbered in order of appearance, the first allele
+ * seen is the first allele of the BED genotype codes. SNPs with more than two
+ * alleles can not be converted.
+ */
+public class PedToBedConverter
+{
+	private static final Logger LOG = Logger.getLogger(PedToBedConverter.class);
+
+	private final List<FamEntry> famEntries = new ArrayList<FamEntry>();
+	private Allele[] firstAlleles;
+	private Allele[] secondAlleles;
+	private int nrOfSnps = -1;
+
+	/**
+	 * Convert the PED file, can only be called once
+	 *
+	 * @param pedFileDriver
+	 * @param bedFile
+	 *            the individual-major BED file to create
+	 * @throws IOException
+	 */
+	public void convert(PedFileDriver pedFileDriver, File bedFile) throws IOException
+	{
+		if (nrOfSnps != -1)
+		{
+			throw new IllegalStateException("PED file already converted");
+		}
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(bedFile), 1 << 16);
+		try
+		{
+			out.write(MappedBedFileDriver.MAGIC_NUMBER_1);
+			out.write(MappedBedFileDriver.MAGIC_NUMBER_2);
+			out.write(BedFileTransposer.INDIVIDUAL_MAJOR_MODE);
+
+			byte[] individualBytes = null;
+			for (PedEntry entry : pedFileDriver)
+			{
+				List<Alleles> genotypes = entry.getBialleles();
+				if (nrOfSnps == -1)
+				{
+					nrOfSnps = genotypes.size();
+					firstAlleles = new Allele[nrOfSnps];
+					secondAlleles = new Allele[nrOfSnps];
+					individualBytes = new byte[(nrOfSnps + 3) >> 2];
+				}
+				else if (genotypes.size() != nrOfSnps)
+				{
+					throw new GenotypeDataException("Individual [" + entry.getIndividual() + "] has "
+							+ genotypes.size() + " genotypes, expected " + nrOfSnps);
+				}
+
+				Arrays.fill(individualBytes, (byte) 0);
+				int snp = 0;
+				for (Alleles genotype : genotypes)
+				{
+					individualBytes[snp >> 2] |= getGenotypeCode(snp, genotype) << ((snp & 3) << 1);
+					++snp;
+				}
+				out.write(individualBytes);
+
+				famEntries.add(new FamEntry(entry.getFamily(), entry.getIndividual(), entry.getFather(), entry
+						.getMother(), entry.getSex(), entry.getPhenotype()));
+				if ((famEntries.size() % 100) == 0)
+				{
+					LOG.info("Converted [" + famEntries.size() + "] samples");
+				}
+			}
+			out.flush();
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+
+		if (nrOfSnps == -1)
+		{
+			nrOfSnps = 0;
+			firstAlleles = new Allele[0];
+			secondAlleles = new Allele[0];
+		}
+		LOG.info("Total [" + famEntries.size() + "] samples");
+	}
+
+	private byte getGenotypeCode(int snp, Alleles genotype)
+	{
+		Allele allele1 = genotype.get(0);
+		Allele allele2 = genotype.get(1);
+		if (allele1 == Allele.ZERO || allele2 == Allele.ZERO)
+		{
+			return MappedBedFileDriver.MISSING;
+		}
+
+		boolean second1 = isSecondAllele(snp, allele1);
+		boolean second2 = isSecondAllele(snp, allele2);
+		if (second1 != second2)
+		{
+			return MappedBedFileDriver.HETEROZYGOUS;
+		}
+		return second1 ? MappedBedFileDriver.HOMOZYGOUS_SECOND : MappedBedFileDriver.HOMOZYGOUS_FIRST;
+	}
+
+	private boolean isSecondAllele(int snp, Allele allele)
+	{
+		if (firstAlleles[snp] == null)
+		{
+			firstAlleles[snp] = allele;
+		}
+		if (firstAlleles[snp] == allele)
+		{
+			return false;
+		}
+		if (secondAlleles[snp] == null)
+		{
+			secondAlleles[snp] = allele;
+		}
+		if (secondAlleles[snp] == allele)
+		{
+			return true;
+		}
+		throw new GenotypeDataException("SNP number " + (snp + 1) + " has more than two alleles: "
+				+ firstAlleles[snp] + ", " + secondAlleles[snp] + " and " + allele);
+	}
+
+	public int getNrOfSnps()
+	{
+		return nrOfSnps;
+	}
+
+	public List<FamEntry> getFamEntries()
+	{
+		return Collections.unmodifiableList(famEntries);
+	}
+
+	/**
+	 * @param snp
+	 * @return the first allele of the SNP or null if all genotypes are missing
+	 */
+	public Allele getFirstAllele(int snp)
+	{
+		return firstAlleles[snp];
+	}
+
+	/**
+	 * @param snp
+	 * @return the second allele of the SNP or null if the SNP is monomorphic
+	 */
+	public Allele getSecondAllele(int snp)
+	{
+		return secondAlleles[snp];
+	}
+}
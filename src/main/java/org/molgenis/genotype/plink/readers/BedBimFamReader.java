@@ -1,10 +1,12 @@
 package org.molgenis.genotype.plink.readers;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -12,17 +14,18 @@ import java.util.Map;
 
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
-import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.plink.datatypes.BimEntry;
 import org.molgenis.genotype.plink.datatypes.FamEntry;
 import org.molgenis.genotype.plink.drivers.BedFileDriver;
 import org.molgenis.genotype.plink.drivers.BimFileDriver;
 import org.molgenis.genotype.plink.drivers.FamFileDriver;
+import org.molgenis.genotype.plink.drivers.MappedBedFileDriver;
 import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.util.VariantPositionIndex;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+import org.molgenis.genotype.variant.sampleProvider.SampleSubsetVariantsProvider;
 import org.molgenis.genotype.variant.sampleProvider.SampleVariantUniqueIdProvider;
-import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
 
 /**
  * Plink binary reader/converter. See:
@@ -32,10 +35,11 @@ import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
  * @author joeri
  * 
  */
-public class BedBimFamReader implements SampleVariantsProvider
+public class BedBimFamReader implements SampleSubsetVariantsProvider, Closeable
 {
 
 	private BedFileDriver bedfd;
+	private MappedBedFileDriver mappedBedfd;
 	private BimFileDriver bimfd;
 	private FamFileDriver famfd;
 
@@ -55,9 +59,9 @@ public class BedBimFamReader implements SampleVariantsProvider
 	private Map<String, Integer> snpIndexById = new HashMap<String, Integer>();
 	private final int sampleVariantProviderUniqueId;
 
-	// first lookup is on sequence (usually chromosome, ie. "chr1" ), second on
-	// position (basepair, ie. 9345352)
-	private Map<String, Map<Long, Integer>> snpIndexByPosition = new HashMap<String, Map<Long, Integer>>();
+	// sequence (usually chromosome, ie. "chr1" ) and position (basepair, ie.
+	// 9345352) to SNP index
+	private VariantPositionIndex snpIndexByPosition;
 
 	// sample phasing
 	private final List<Boolean> phasing;
@@ -72,6 +76,7 @@ public class BedBimFamReader implements SampleVariantsProvider
 		nrOfSnps = bimfd.getNrOfElements();
 		nrOfGenotypes = nrOfIndividuals * nrOfSnps;
 		paddingPerSnp = (int) ((bedfd.getNrOfElements() - nrOfGenotypes) / nrOfSnps);
+		mappedBedfd = new MappedBedFileDriver(bed, (int) nrOfIndividuals, (int) nrOfSnps);
 
 		phasing = Collections.nCopies((int) nrOfIndividuals, false);
 
@@ -112,6 +117,8 @@ public class BedBimFamReader implements SampleVariantsProvider
 		}
 		this.bimEntries = bimEntries;
 		snpCoding = new HashMap<String, Alleles>();
+		List<String> snpChromosomes = new ArrayList<String>(bimEntries.size());
+		int[] snpPositions = new int[bimEntries.size()];
 		int index = 0;
 		for (BimEntry be : bimEntries)
 		{
@@ -127,17 +134,12 @@ public class BedBimFamReader implements SampleVariantsProvider
 			}
 			snpIndexById.put(be.getSNP(), index);
 
-			// add to sequence -> position map, create one if missing for this
-			// sequence (or 'chromosome')
-			if (snpIndexByPosition.get(be.getChromosome()) == null)
-			{
-				Map<Long, Integer> mapForThisSequence = new HashMap<Long, Integer>();
-				snpIndexByPosition.put(be.getChromosome(), mapForThisSequence);
-			}
-			snpIndexByPosition.get(be.getChromosome()).put(be.getBpPos(), index);
+			snpChromosomes.add(be.getChromosome());
+			snpPositions[index] = (int) be.getBpPos();
 
 			index++;
 		}
+		this.snpIndexByPosition = new VariantPositionIndex(snpChromosomes, snpPositions);
 		this.snpNames = snpNames;
 		this.sequences = uniqueChromosomes;
 	}
@@ -146,7 +148,6 @@ public class BedBimFamReader implements SampleVariantsProvider
 	{
 		List<GeneticVariant> variants = new ArrayList<GeneticVariant>();
 
-		int index = 0;
 		for (BimEntry entry : this.bimEntries)
 		{
 			String sequenceName = entry.getChromosome();
@@ -158,15 +159,53 @@ public class BedBimFamReader implements SampleVariantsProvider
 
 			String id = entry.getSNP();
 			int startPos = (int) entry.getBpPos();
-			Alleles alleles = bimEntries.get(index).getBiallele();
+			Alleles alleles = entry.getBiallele();
 			GeneticVariant snp = ReadOnlyGeneticVariant.createVariant(id, startPos, sequenceName, this, alleles);
 			variants.add(snp);
-			index++;
 		}
 
 		return variants;
 	}
 
+	/**
+	 * Load the variants at a position
+	 * 
+	 * @param seq
+	 * @param pos
+	 * @return the variants, empty if there are none
+	 */
+	public List<GeneticVariant> loadVariantsForPosition(String seq, int pos)
+	{
+		return loadVariantsForIndices(snpIndexByPosition.getVariantIndices(seq, pos));
+	}
+
+	/**
+	 * Load the variants within a range ordered on position
+	 * 
+	 * @param seq
+	 * @param rangeStart
+	 *            inclusive
+	 * @param rangeEnd
+	 *            exclusive
+	 * @return the variants, empty if there are none
+	 */
+	public List<GeneticVariant> loadVariantsForRange(String seq, int rangeStart, int rangeEnd)
+	{
+		return loadVariantsForIndices(snpIndexByPosition.getVariantIndicesInRange(seq, rangeStart, rangeEnd));
+	}
+
+	private List<GeneticVariant> loadVariantsForIndices(int[] indices)
+	{
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(indices.length);
+		for (int index : indices)
+		{
+			BimEntry be = bimEntries.get(index);
+			variants.add(ReadOnlyGeneticVariant.createVariant(be.getSNP(), (int) be.getBpPos(), be.getChromosome(),
+					this, be.getBiallele()));
+		}
+		return variants;
+	}
+
 	public void extractGenotypes(File writeTo) throws Exception
 	{
 		setIndividuals();
@@ -224,9 +263,22 @@ public class BedBimFamReader implements SampleVariantsProvider
 		return sequences;
 	}
 
+	/**
+	 * @return index of the first SNP at this position or -1 if there is none
+	 */
 	public int getSnpIndexByPosition(String seq, long pos)
 	{
-		return snpIndexByPosition.get(seq).get(pos);
+		int[] indices = snpIndexByPosition.getVariantIndices(seq, (int) pos);
+		return indices.length == 0 ? -1 : indices[0];
+	}
+
+	/**
+	 * @return index of the SNP with this ID or -1 if there is none
+	 */
+	public int getSnpIndexById(String id)
+	{
+		Integer index = snpIndexById.get(id);
+		return index == null ? -1 : index;
 	}
 
 	public static void main(String[] args) throws Exception
@@ -243,56 +295,36 @@ public class BedBimFamReader implements SampleVariantsProvider
 	@Override
 	public List<Alleles> getSampleVariants(GeneticVariant variant)
 	{
-		if (variant.getPrimaryVariantId() == null)
-		{
-			throw new IllegalArgumentException("Not a snp, missing primaryVariantId");
-		}
+		int index = getSnpIndex(variant);
 
-		Integer index = snpIndexById.get(variant.getPrimaryVariantId());
+		Alleles[] sampleAlleles = new Alleles[(int) nrOfIndividuals];
+		mappedBedfd.loadGenotypes(index, getAllelesByGenotypeCode(index), sampleAlleles);
 
-		if (index == null)
-		{
-			throw new IllegalArgumentException("Unknown primaryVariantId [" + variant.getPrimaryVariantId() + "]");
-		}
-
-		List<Alleles> bialleles = new ArrayList<Alleles>();
+		return Arrays.asList(sampleAlleles);
+	}
 
-		try
-		{
-			String[] allIndividualsForThisSNP = bedfd.getSNPs(index.longValue(), (int) nrOfIndividuals);
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant, int[] sampleIndices)
+	{
+		int index = getSnpIndex(variant);
 
-			Allele a1 = snpCoding.get(snpNames.get(index)).get(0);
-			Allele a2 = snpCoding.get(snpNames.get(index)).get(1);
+		Alleles[] sampleAlleles = new Alleles[sampleIndices.length];
+		mappedBedfd.loadGenotypes(index, getAllelesByGenotypeCode(index), sampleIndices, sampleAlleles);
 
-			for (int i = 0; i < this.nrOfIndividuals; i++)
-			{
-				Alleles b;
-				if (allIndividualsForThisSNP[i].equals("00"))
-				{
-					b = Alleles.createAlleles(a1, a1);
-				}
-				else if (allIndividualsForThisSNP[i].equals("01"))
-				{
-					b = Alleles.createAlleles(a1, a2);
-				}
-				else if (allIndividualsForThisSNP[i].equals("11"))
-				{
-					b = Alleles.createAlleles(a2, a2);
-				}
-				else
-				{
-					b = null;
-				}
-				bialleles.add(b);
-			}
+		return Arrays.asList(sampleAlleles);
+	}
 
-		}
-		catch (Exception e)
-		{
-			throw new GenotypeDataException(e);
-		}
+	/**
+	 * @return the alleles indexed by the BED genotype codes
+	 */
+	private Alleles[] getAllelesByGenotypeCode(int index)
+	{
+		Alleles biallele = bimEntries.get(index).getBiallele();
+		Allele a1 = biallele.get(0);
+		Allele a2 = biallele.get(1);
 
-		return bialleles;
+		return new Alleles[]
+		{ Alleles.createAlleles(a1, a1), null, Alleles.createAlleles(a1, a2), Alleles.createAlleles(a2, a2) };
 	}
 
 	@Override
@@ -327,14 +359,93 @@ public class BedBimFamReader implements SampleVariantsProvider
 	@Override
 	public byte[] getSampleCalledDosage(GeneticVariant variant)
 	{
-		return CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
-				variant.getVariantAlleles(), variant.getRefAllele());
+		byte[] calledDosage = new byte[(int) nrOfIndividuals];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		int index = getSnpIndex(variant);
+		mappedBedfd.loadGenotypes(index, getCalledDosageByGenotypeCode(variant, index), calledDosage);
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, int[] sampleIndices, byte[] calledDosage)
+	{
+		int index = getSnpIndex(variant);
+		mappedBedfd.loadGenotypes(index, getCalledDosageByGenotypeCode(variant, index), sampleIndices, calledDosage);
 	}
 
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
-		return CalledDosageConvertor.convertCalledAllelesToDosage(getSampleVariants(variant),
-				variant.getVariantAlleles(), variant.getRefAllele());
+		return CalledDosageConvertor.convertCalledDosageToDosage(getSampleCalledDosage(variant));
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return false;
+	}
+
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant, int[] sampleIndices)
+	{
+		byte[] calledDosage = new byte[sampleIndices.length];
+		loadSampleCalledDosage(variant, sampleIndices, calledDosage);
+		return CalledDosageConvertor.convertCalledDosageToDosage(calledDosage);
+	}
+
+	/**
+	 * @return the called dosages indexed by the BED genotype codes
+	 */
+	private byte[] getCalledDosageByGenotypeCode(GeneticVariant variant, int index)
+	{
+		Alleles biallele = bimEntries.get(index).getBiallele();
+		Allele a1 = biallele.get(0);
+		Allele a2 = biallele.get(1);
+		Allele dosageRef = variant.getRefAllele() == null ? variant.getVariantAlleles().get(0) : variant
+				.getRefAllele();
+
+		return new byte[]
+		{ calledDosage(a1, a1, dosageRef), -1, calledDosage(a1, a2, dosageRef), calledDosage(a2, a2, dosageRef) };
+	}
+
+	private int getSnpIndex(GeneticVariant variant)
+	{
+		if (variant.getPrimaryVariantId() == null)
+		{
+			throw new IllegalArgumentException("Not a snp, missing primaryVariantId");
+		}
+
+		Integer index = snpIndexById.get(variant.getPrimaryVariantId());
+
+		if (index == null)
+		{
+			throw new IllegalArgumentException("Unknown primaryVariantId [" + variant.getPrimaryVariantId() + "]");
+		}
+
+		return index;
+	}
+
+	private static byte calledDosage(Allele allele1, Allele allele2, Allele dosageRef)
+	{
+		if (allele1 == Allele.ZERO || allele2 == Allele.ZERO)
+		{
+			return -1;
+		}
+		return (byte) ((allele1 == dosageRef ? 1 : 0) + (allele2 == dosageRef ? 1 : 0));
+	}
+
+	/**
+	 * Unmaps the BED data, see MappedBedFileDriver.close()
+	 */
+	@Override
+	public void close()
+	{
+		mappedBedfd.close();
 	}
+
 }
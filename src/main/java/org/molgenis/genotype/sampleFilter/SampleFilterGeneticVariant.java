@@ -0,0 +1,175 @@
+package org.molgenis.genotype.sampleFilter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.util.Ld;
+import org.molgenis.genotype.util.LdCalculator;
+import org.molgenis.genotype.util.LdCalculatorException;
+import org.molgenis.genotype.util.MafCalculator;
+import org.molgenis.genotype.util.MafResult;
+import org.molgenis.genotype.variant.AbstractGeneticVariant;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.id.GeneticVariantId;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
+
+/**
+ * Variant of a SampleFilterGenotypeData. The variant properties are those of
+ * the original variant, the sample data and the minor allele frequency are of
+ * the selected samples only.
+ */
+public class SampleFilterGeneticVariant extends AbstractGeneticVariant
+{
+	private final GeneticVariant originalVariant;
+	private final SampleFilterSampleVariantsProvider sampleVariantsProvider;
+	private MafResult mafResult = null;
+
+	SampleFilterGeneticVariant(GeneticVariant originalVariant, SampleFilterSampleVariantsProvider sampleVariantsProvider)
+	{
+		this.originalVariant = originalVariant;
+		this.sampleVariantsProvider = sampleVariantsProvider;
+	}
+
+	public GeneticVariant getOriginalVariant()
+	{
+		return originalVariant;
+	}
+
+	@Override
+	public String getPrimaryVariantId()
+	{
+		return originalVariant.getPrimaryVariantId();
+	}
+
+	@Override
+	public List<String> getAlternativeVariantIds()
+	{
+		return originalVariant.getAlternativeVariantIds();
+	}
+
+	@Override
+	public List<String> getAllIds()
+	{
+		return originalVariant.getAllIds();
+	}
+
+	@Override
+	public GeneticVariantId getVariantId()
+	{
+		return originalVariant.getVariantId();
+	}
+
+	@Override
+	public int getStartPos()
+	{
+		return originalVariant.getStartPos();
+	}
+
+	@Override
+	public String getSequenceName()
+	{
+		return originalVariant.getSequenceName();
+	}
+
+	@Override
+	public Alleles getVariantAlleles()
+	{
+		return originalVariant.getVariantAlleles();
+	}
+
+	@Override
+	public int getAlleleCount()
+	{
+		return originalVariant.getAlleleCount();
+	}
+
+	@Override
+	public Allele getRefAllele()
+	{
+		return originalVariant.getRefAllele();
+	}
+
+	@Override
+	public List<Alleles> getSampleVariants()
+	{
+		return Collections.unmodifiableList(sampleVariantsProvider.getSampleVariants(this));
+	}
+
+	@Override
+	public Map<String, ?> getAnnotationValues()
+	{
+		return originalVariant.getAnnotationValues();
+	}
+
+	@Override
+	public double getMinorAlleleFrequency()
+	{
+		return getMafResult().getFreq();
+	}
+
+	@Override
+	public Allele getMinorAllele()
+	{
+		return getMafResult().getMinorAllele();
+	}
+
+	private MafResult getMafResult()
+	{
+		if (mafResult == null)
+		{
+			mafResult = MafCalculator.calculateMaf(getVariantAlleles(), getRefAllele(), getSampleVariants());
+		}
+		return mafResult;
+	}
+
+	@Override
+	public boolean isSnp()
+	{
+		return originalVariant.isSnp();
+	}
+
+	@Override
+	public boolean isAtOrGcSnp()
+	{
+		return originalVariant.isAtOrGcSnp();
+	}
+
+	@Override
+	public Ld calculateLd(GeneticVariant other) throws LdCalculatorException
+	{
+		return LdCalculator.calculateLd(this, other);
+	}
+
+	@Override
+	public boolean isBiallelic()
+	{
+		return originalVariant.isBiallelic();
+	}
+
+	@Override
+	public float[] getSampleDosages()
+	{
+		return sampleVariantsProvider.getSampleDosage(this);
+	}
+
+	@Override
+	public byte[] getSampleCalledDosages()
+	{
+		return sampleVariantsProvider.getSampleCalledDosage(this);
+	}
+
+	@Override
+	public void loadSampleCalledDosages(byte[] calledDosages)
+	{
+		sampleVariantsProvider.loadSampleCalledDosage(this, calledDosages);
+	}
+
+	@Override
+	public SampleVariantsProvider getSampleVariantsProvider()
+	{
+		return sampleVariantsProvider;
+	}
+}
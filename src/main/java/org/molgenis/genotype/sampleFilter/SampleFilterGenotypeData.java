@@ -0,0 +1,241 @@
+package org.molgenis.genotype.sampleFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.molgenis.genotype.GenomicPosition;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.SimpleSequence;
+import org.molgenis.genotype.annotation.Annotation;
+import org.molgenis.genotype.annotation.SampleAnnotation;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * View of originalGenotypeData with a subset of the samples. Data is not
+ * copied. The samples keep the order of the original data, the sample data of
+ * the variants only contains the selected samples.
+ *
+ * VCF and BED data only decode the selected samples, see
+ * SampleSubsetVariantsProvider. For other data the sample data of all samples
+ * is loaded and the selected samples are taken from it.
+ */
+public class SampleFilterGenotypeData implements RandomAccessGenotypeData
+{
+	private final RandomAccessGenotypeData originalGenotypeData;
+	private final List<Sample> samples;
+	private final int[] sampleIndices;
+	private final SampleFilterSampleVariantsProvider sampleVariantsProvider;
+
+	/**
+	 * @param originalGenotypeData
+	 * @param includeSampleIds
+	 *            IDs of the samples to include
+	 * @throws GenotypeDataException
+	 *             if a sample is not in the original data
+	 */
+	public SampleFilterGenotypeData(RandomAccessGenotypeData originalGenotypeData, Collection<String> includeSampleIds)
+	{
+		this.originalGenotypeData = originalGenotypeData;
+
+		Set<String> remainingSampleIds = new HashSet<String>(includeSampleIds);
+		List<Sample> originalSamples = originalGenotypeData.getSamples();
+		this.samples = new ArrayList<Sample>(remainingSampleIds.size());
+		this.sampleIndices = new int[remainingSampleIds.size()];
+		for (int i = 0; i < originalSamples.size(); ++i)
+		{
+			Sample sample = originalSamples.get(i);
+			if (remainingSampleIds.remove(sample.getId()))
+			{
+				sampleIndices[samples.size()] = i;
+				samples.add(sample);
+			}
+		}
+
+		if (!remainingSampleIds.isEmpty())
+		{
+			throw new GenotypeDataException("Samples not found in genotype data: " + remainingSampleIds);
+		}
+
+		this.sampleVariantsProvider = new SampleFilterSampleVariantsProvider(sampleIndices);
+	}
+
+	/**
+	 * @return the indices of the included samples in the original data
+	 */
+	public int[] getSampleIndices()
+	{
+		return sampleIndices.clone();
+	}
+
+	@Override
+	public List<Sample> getSamples()
+	{
+		return samples;
+	}
+
+	@Override
+	public List<String> getSeqNames()
+	{
+		return originalGenotypeData.getSeqNames();
+	}
+
+	@Override
+	public Iterable<Sequence> getSequences()
+	{
+		List<Sequence> sequences = new ArrayList<Sequence>();
+		for (Sequence sequence : originalGenotypeData.getSequences())
+		{
+			sequences.add(new SimpleSequence(sequence.getName(), sequence.getLength(), this));
+		}
+		return sequences;
+	}
+
+	@Override
+	public Sequence getSequenceByName(String name)
+	{
+		Sequence sequence = originalGenotypeData.getSequenceByName(name);
+		return sequence == null ? null : new SimpleSequence(sequence.getName(), sequence.getLength(), this);
+	}
+
+	@Override
+	public List<Annotation> getVariantAnnotations()
+	{
+		return originalGenotypeData.getVariantAnnotations();
+	}
+
+	@Override
+	public Annotation getVariantAnnotation(String annotationId)
+	{
+		return originalGenotypeData.getVariantAnnotation(annotationId);
+	}
+
+	@Override
+	public List<SampleAnnotation> getSampleAnnotations()
+	{
+		return originalGenotypeData.getSampleAnnotations();
+	}
+
+	@Override
+	public Annotation getSampleAnnotation(String annotationId)
+	{
+		return originalGenotypeData.getSampleAnnotation(annotationId);
+	}
+
+	@Override
+	public Iterable<GeneticVariant> getVariantsByPos(String seqName, int startPos)
+	{
+		return new SampleFilterVariants(originalGenotypeData.getVariantsByPos(seqName, startPos));
+	}
+
+	@Override
+	public GeneticVariant getSnpVariantByPos(String seqName, int startPos)
+	{
+		return filterVariant(originalGenotypeData.getSnpVariantByPos(seqName, startPos));
+	}
+
+	@Override
+	public List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<List<GeneticVariant>> originalVariantsByPosition = originalGenotypeData.getVariantsByPositions(positions);
+		List<List<GeneticVariant>> variantsByPosition = new ArrayList<List<GeneticVariant>>(
+				originalVariantsByPosition.size());
+		for (List<GeneticVariant> originalVariants : originalVariantsByPosition)
+		{
+			variantsByPosition.add(filterVariants(originalVariants));
+		}
+		return variantsByPosition;
+	}
+
+	@Override
+	public List<GeneticVariant> getSnpVariantsByPositions(List<GenomicPosition> positions)
+	{
+		return filterVariants(originalGenotypeData.getSnpVariantsByPositions(positions));
+	}
+
+	@Override
+	public Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName)
+	{
+		return new SampleFilterVariants(originalGenotypeData.getSequenceGeneticVariants(seqName));
+	}
+
+	@Override
+	public Iterable<GeneticVariant> getVariantsByRange(String seqName, int rangeStart, int rangeEnd)
+	{
+		return new SampleFilterVariants(originalGenotypeData.getVariantsByRange(seqName, rangeStart, rangeEnd));
+	}
+
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		return filterVariant(originalGenotypeData.getVariantById(variantId));
+	}
+
+	@Override
+	public Iterator<GeneticVariant> iterator()
+	{
+		return new SampleFilterVariants(originalGenotypeData).iterator();
+	}
+
+	private GeneticVariant filterVariant(GeneticVariant originalVariant)
+	{
+		return originalVariant == null ? null : new SampleFilterGeneticVariant(originalVariant,
+				sampleVariantsProvider);
+	}
+
+	/**
+	 * @return the variants of the original list with the selected samples,
+	 *         null values stay null
+	 */
+	private List<GeneticVariant> filterVariants(List<GeneticVariant> originalVariants)
+	{
+		List<GeneticVariant> variants = new ArrayList<GeneticVariant>(originalVariants.size());
+		for (GeneticVariant originalVariant : originalVariants)
+		{
+			variants.add(filterVariant(originalVariant));
+		}
+		return variants;
+	}
+
+	private class SampleFilterVariants implements Iterable<GeneticVariant>
+	{
+		private final Iterable<GeneticVariant> originalVariants;
+
+		public SampleFilterVariants(Iterable<GeneticVariant> originalVariants)
+		{
+			this.originalVariants = originalVariants;
+		}
+
+		@Override
+		public Iterator<GeneticVariant> iterator()
+		{
+			final Iterator<GeneticVariant> originalIterator = originalVariants.iterator();
+			return new Iterator<GeneticVariant>()
+			{
+				@Override
+				public boolean hasNext()
+				{
+					return originalIterator.hasNext();
+				}
+
+				@Override
+				public GeneticVariant next()
+				{
+					return filterVariant(originalIterator.next());
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package org.molgenis.genotype.sampleFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+import org.molgenis.genotype.variant.sampleProvider.SampleSubsetVariantsProvider;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantUniqueIdProvider;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
+
+/**
+ * Provides the sample data of the selected samples of the variants of a
+ * SampleFilterGenotypeData.
+ *
+ * The selection is pushed down to the provider of the original variant if it
+ * is a SampleSubsetVariantsProvider, only the selected samples are decoded in
+ * that case. Otherwise the data of all samples is loaded from the original
+ * variant and the selected samples are taken from it.
+ */
+class SampleFilterSampleVariantsProvider implements SampleVariantsProvider
+{
+	private final int[] sampleIndices;
+	private final int sampleVariantProviderUniqueId;
+
+	/**
+	 * @param sampleIndices
+	 *            indices of the selected samples in the original data
+	 */
+	public SampleFilterSampleVariantsProvider(int[] sampleIndices)
+	{
+		this.sampleIndices = sampleIndices;
+		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
+	}
+
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant)
+	{
+		GeneticVariant originalVariant = getOriginalVariant(variant);
+		SampleSubsetVariantsProvider subsetProvider = getSubsetProvider(originalVariant);
+		if (subsetProvider != null)
+		{
+			return subsetProvider.getSampleVariants(originalVariant, sampleIndices);
+		}
+
+		List<Alleles> sampleAlleles = originalVariant.getSampleVariants();
+		List<Alleles> selectedAlleles = new ArrayList<Alleles>(sampleIndices.length);
+		for (int sampleIndex : sampleIndices)
+		{
+			selectedAlleles.add(sampleAlleles.get(sampleIndex));
+		}
+		return selectedAlleles;
+	}
+
+	@Override
+	public List<Boolean> getSamplePhasing(GeneticVariant variant)
+	{
+		GeneticVariant originalVariant = getOriginalVariant(variant);
+		List<Boolean> phasing = originalVariant.getSampleVariantsProvider().getSamplePhasing(originalVariant);
+		List<Boolean> selectedPhasing = new ArrayList<Boolean>(sampleIndices.length);
+		for (int sampleIndex : sampleIndices)
+		{
+			selectedPhasing.add(phasing.get(sampleIndex));
+		}
+		return selectedPhasing;
+	}
+
+	@Override
+	public int cacheSize()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getSampleVariantProviderUniqueId()
+	{
+		return sampleVariantProviderUniqueId;
+	}
+
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		byte[] calledDosage = new byte[sampleIndices.length];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		GeneticVariant originalVariant = getOriginalVariant(variant);
+		SampleSubsetVariantsProvider subsetProvider = getSubsetProvider(originalVariant);
+		if (subsetProvider != null)
+		{
+			subsetProvider.loadSampleCalledDosage(originalVariant, sampleIndices, calledDosage);
+			return;
+		}
+
+		byte[] originalCalledDosage = originalVariant.getSampleCalledDosages();
+		for (int i = 0; i < sampleIndices.length; ++i)
+		{
+			calledDosage[i] = originalCalledDosage[sampleIndices[i]];
+		}
+	}
+
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant)
+	{
+		GeneticVariant originalVariant = getOriginalVariant(variant);
+		SampleSubsetVariantsProvider subsetProvider = getSubsetProvider(originalVariant);
+		if (subsetProvider != null)
+		{
+			return subsetProvider.getSampleDosage(originalVariant, sampleIndices);
+		}
+
+		float[] originalDosage = originalVariant.getSampleDosages();
+		float[] dosage = new float[sampleIndices.length];
+		for (int i = 0; i < sampleIndices.length; ++i)
+		{
+			dosage[i] = originalDosage[sampleIndices[i]];
+		}
+		return dosage;
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		GeneticVariant originalVariant = getOriginalVariant(variant);
+		return originalVariant.getSampleVariantsProvider().hasImputedDosage(originalVariant);
+	}
+
+	private static GeneticVariant getOriginalVariant(GeneticVariant variant)
+	{
+		return variant instanceof SampleFilterGeneticVariant ? ((SampleFilterGeneticVariant) variant)
+				.getOriginalVariant() : variant;
+	}
+
+	/**
+	 * Only read only variants get their sample data directly from their
+	 * provider, other variants can transform the data of their provider
+	 *
+	 * @return the provider to push the selection down to or null
+	 */
+	private static SampleSubsetVariantsProvider getSubsetProvider(GeneticVariant originalVariant)
+	{
+		if (originalVariant instanceof ReadOnlyGeneticVariant
+				&& originalVariant.getSampleVariantsProvider() instanceof SampleSubsetVariantsProvider)
+		{
+			return (SampleSubsetVariantsProvider) originalVariant.getSampleVariantsProvider();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,130 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+/**
+ * Thread safe pool of BlockCompressedInputStreams on the same file. Every
+ * borrowed stream is used by one query at a time, closing it returns it to the
+ * pool so the file handle and decompression buffers are reused by the next
+ * query.
+ */
+public class BlockCompressedInputStreamPool
+{
+	private final File bzipFile;
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<PooledInputStream> idleStreams = new ConcurrentLinkedQueue<PooledInputStream>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * Pool keeping at most one idle stream per available processor
+	 * 
+	 * @param bzipFile
+	 */
+	public BlockCompressedInputStreamPool(File bzipFile)
+	{
+		this(bzipFile, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param bzipFile
+	 * @param maxIdle
+	 *            maximum number of idle streams, streams closed when the pool
+	 *            is full are really closed
+	 */
+	public BlockCompressedInputStreamPool(File bzipFile, int maxIdle)
+	{
+		this.bzipFile = bzipFile;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * @return an idle stream or a new stream if none is idle
+	 * @throws IOException
+	 */
+	public BlockCompressedInputStream borrow() throws IOException
+	{
+		PooledInputStream inputStream = idleStreams.poll();
+		if (inputStream == null)
+		{
+			return new PooledInputStream(bzipFile);
+		}
+		idleCount.decrementAndGet();
+		inputStream.borrowed.set(true);
+		return inputStream;
+	}
+
+	/**
+	 * @return number of idle streams
+	 */
+	public int getIdleCount()
+	{
+		return idleCount.get();
+	}
+
+	/**
+	 * Close all idle streams
+	 */
+	public void close()
+	{
+		PooledInputStream inputStream;
+		while ((inputStream = idleStreams.poll()) != null)
+		{
+			idleCount.decrementAndGet();
+			inputStream.closeStream();
+		}
+	}
+
+	private void release(PooledInputStream inputStream)
+	{
+		if (idleCount.incrementAndGet() <= maxIdle)
+		{
+			idleStreams.offer(inputStream);
+		}
+		else
+		{
+			idleCount.decrementAndGet();
+			inputStream.closeStream();
+		}
+	}
+
+	private class PooledInputStream extends BlockCompressedInputStream
+	{
+		private final AtomicBoolean borrowed = new AtomicBoolean(true);
+
+		public PooledInputStream(File file) throws IOException
+		{
+			super(file);
+		}
+
+		/**
+		 * Returns the stream to the pool, closing it more than once has no
+		 * effect
+		 */
+		@Override
+		public void close()
+		{
+			if (borrowed.compareAndSet(true, false))
+			{
+				release(this);
+			}
+		}
+
+		private void closeStream()
+		{
+			try
+			{
+				super.close();
+			}
+			catch (IOException e)
+			{
+				// nothing to do, the stream is not used anymore
+			}
+		}
+	}
+}
@@ -0,0 +1,644 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * BlockCompressedInputStream for sequential scans. A reader thread reads the
+ * compressed BGZF blocks ahead, the blocks are inflated in parallel on an
+ * executor and consumed in file order by the thread using this stream, so
+ * inflating overlaps with parsing.
+ *
+ * Seeking to a block that is already read ahead skips to it, other seeks
+ * restart the reader at the new position. Close the stream when it is not
+ * read to the end. A reader thread that can not queue a block for the idle
+ * timeout stops and closes the file, reading continues with a new reader
+ * after the blocks it queued, so a stream that is dropped without close only
+ * holds the file and the read ahead blocks until the timeout.
+ */
+public class ParallelBlockCompressedInputStream extends BlockCompressedInputStream
+{
+	/** Default number of blocks read ahead, about 2MB of inflated data */
+	public static final int DEFAULT_READ_AHEAD = 32;
+	/** Default time a reader waits for the consumer before it stops */
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+	private static final int BLOCK_HEADER_LENGTH = 18;
+	private static final int BLOCK_FOOTER_LENGTH = 8;
+	private static final long POLL_MILLIS = 100;
+	private static final byte[] EMPTY = new byte[0];
+	private static final Block END_OF_DATA = new Block(-1, 0, null);
+
+	private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>()
+	{
+		@Override
+		protected Inflater initialValue()
+		{
+			return new Inflater(true);
+		}
+	};
+
+	private final File bzipFile;
+	private final ExecutorService executor;
+	private final int readAhead;
+	private final long idleTimeoutMillis;
+	private long endBlockAddress = Long.MAX_VALUE;
+
+	private BlockReader blockReader;
+	private byte[] blockData = EMPTY;
+	private long blockAddress = 0;
+	private int blockLength = 0;
+	private int blockOffset = 0;
+	private boolean endOfData = false;
+	private boolean closed = false;
+	private byte[] lineBuffer = new byte[1024];
+
+	public ParallelBlockCompressedInputStream(File bzipFile, ExecutorService executor)
+	{
+		this(bzipFile, executor, DEFAULT_READ_AHEAD);
+	}
+
+	/**
+	 * @param bzipFile
+	 * @param executor
+	 *            executor that inflates the blocks
+	 * @param readAhead
+	 *            maximum number of blocks read ahead
+	 */
+	public ParallelBlockCompressedInputStream(File bzipFile, ExecutorService executor, int readAhead)
+	{
+		this(bzipFile, executor, readAhead, DEFAULT_IDLE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param bzipFile
+	 * @param executor
+	 *            executor that inflates the blocks
+	 * @param readAhead
+	 *            maximum number of blocks read ahead
+	 * @param idleTimeoutMillis
+	 *            time the reader thread waits for the consumer to take a
+	 *            block before it stops
+	 */
+	public ParallelBlockCompressedInputStream(File bzipFile, ExecutorService executor, int readAhead,
+			long idleTimeoutMillis)
+	{
+		// the super class is not used to read, all reading methods are
+		// overridden
+		super(new ByteArrayInputStream(EMPTY));
+		if (readAhead <= 0) throw new IllegalArgumentException("Read ahead must be positive");
+		if (idleTimeoutMillis <= 0) throw new IllegalArgumentException("Idle timeout must be positive");
+		this.bzipFile = bzipFile;
+		this.executor = executor;
+		this.readAhead = readAhead;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	/**
+	 * Stop reading ahead after the block of this file pointer. Reads beyond
+	 * this block return end of file. Only applies to reading started after
+	 * this call.
+	 *
+	 * @param filePointer
+	 *            virtual file pointer
+	 */
+	public void setEndFilePointer(long filePointer)
+	{
+		endBlockAddress = filePointer >>> 16;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		if (blockOffset == blockData.length && !nextBlock())
+		{
+			return 0;
+		}
+		return blockData.length - blockOffset;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		return available() > 0 ? blockData[blockOffset++] & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] buffer) throws IOException
+	{
+		return read(buffer, 0, buffer.length);
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		int read = 0;
+		while (read < length)
+		{
+			int available = available();
+			if (available == 0)
+			{
+				break;
+			}
+			int count = Math.min(available, length - read);
+			System.arraycopy(blockData, blockOffset, buffer, offset + read, count);
+			blockOffset += count;
+			read += count;
+		}
+		return read == 0 && length > 0 ? -1 : read;
+	}
+
+	/**
+	 * @return the next line without line terminator, or null at the end of
+	 *         the data
+	 */
+	@Override
+	public String readLine() throws IOException
+	{
+		if (available() == 0)
+		{
+			return null;
+		}
+
+		int lineLength = 0;
+		do
+		{
+			int start = blockOffset;
+			int end = blockData.length;
+			int i = start;
+			while (i < end && blockData[i] != '\n')
+			{
+				++i;
+			}
+			blockOffset = i < end ? i + 1 : end;
+
+			if (i < end && lineLength == 0)
+			{
+				// the complete line is in this block
+				String line = decodeLine(blockData, start, i - start);
+				skipEndOfBlock();
+				return line;
+			}
+
+			if (lineBuffer.length < lineLength + i - start)
+			{
+				byte[] newLineBuffer = new byte[Math.max(lineBuffer.length * 2, lineLength + i - start)];
+				System.arraycopy(lineBuffer, 0, newLineBuffer, 0, lineLength);
+				lineBuffer = newLineBuffer;
+			}
+			System.arraycopy(blockData, start, lineBuffer, lineLength, i - start);
+			lineLength += i - start;
+
+			if (i < end)
+			{
+				break;
+			}
+		}
+		while (available() > 0);
+
+		skipEndOfBlock();
+		return decodeLine(lineBuffer, 0, lineLength);
+	}
+
+	/**
+	 * Move to the next block at the end of a block, like
+	 * BlockCompressedInputStream does after reading a line. This gives the
+	 * same file pointer after the last line as the end of file marker block
+	 * is skipped.
+	 */
+	private void skipEndOfBlock() throws IOException
+	{
+		if (blockOffset == blockData.length)
+		{
+			available();
+		}
+	}
+
+	private static String decodeLine(byte[] bytes, int offset, int length)
+	{
+		if (length > 0 && bytes[offset + length - 1] == '\r')
+		{
+			--length;
+		}
+		return new String(bytes, offset, length, CHARSET_UTF8);
+	}
+
+	@Override
+	public void seek(long pos) throws IOException
+	{
+		checkOpen();
+
+		long address = pos >>> 16;
+		int offset = (int) (pos & 0xffff);
+
+		if (blockReader != null && address >= blockAddress)
+		{
+			// skip to a block that is read ahead
+			for (int skipped = 0; address != blockAddress && skipped <= readAhead; ++skipped)
+			{
+				if (address < blockAddress || !nextBlock())
+				{
+					break;
+				}
+			}
+			if (address == blockAddress)
+			{
+				setBlockOffset(pos, offset);
+				return;
+			}
+		}
+
+		stopReading();
+		blockData = EMPTY;
+		blockAddress = address;
+		blockLength = 0;
+		blockOffset = 0;
+		endOfData = false;
+		if (offset == 0)
+		{
+			// also valid when the block is empty or the end of the file
+			nextBlock();
+			blockOffset = 0;
+			return;
+		}
+		if (!nextBlock() || blockAddress != address)
+		{
+			throw new IOException("Invalid file pointer " + pos + " in " + bzipFile.getAbsolutePath());
+		}
+		setBlockOffset(pos, offset);
+	}
+
+	private void setBlockOffset(long pos, int offset) throws IOException
+	{
+		if (offset > blockData.length)
+		{
+			throw new IOException("Invalid file pointer " + pos + " in " + bzipFile.getAbsolutePath());
+		}
+		blockOffset = offset;
+	}
+
+	@Override
+	public long getFilePointer()
+	{
+		if (blockOffset == blockData.length)
+		{
+			// at the end of a block the pointer is the start of the next block
+			return (blockAddress + blockLength) << 16;
+		}
+		return blockAddress << 16 | blockOffset;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (!closed)
+		{
+			closed = true;
+			stopReading();
+			super.close();
+		}
+	}
+
+	private void checkOpen() throws IOException
+	{
+		if (closed)
+		{
+			throw new IOException("Stream is closed");
+		}
+	}
+
+	/**
+	 * Move to the next block with data
+	 *
+	 * @return false at the end of the data
+	 */
+	private boolean nextBlock() throws IOException
+	{
+		checkOpen();
+		if (endOfData)
+		{
+			return false;
+		}
+		if (blockReader == null)
+		{
+			blockReader = new BlockReader(blockAddress + blockLength, endBlockAddress);
+			blockReader.start();
+		}
+
+		// empty blocks, like the end of file marker, are skipped but do move
+		// the file pointer
+		do
+		{
+			Block block = takeBlock();
+			if (block == END_OF_DATA)
+			{
+				endOfData = true;
+				blockOffset = blockData.length;
+				return false;
+			}
+			blockData = block.data;
+			blockAddress = block.address;
+			blockLength = block.compressedLength;
+			blockOffset = 0;
+		}
+		while (blockData.length == 0);
+		return true;
+	}
+
+	private Block takeBlock() throws IOException
+	{
+		Block block;
+		while ((block = blockReader.take()) == null)
+		{
+			// the reader stopped after the idle timeout, continue after the
+			// last taken block
+			blockReader = new BlockReader(blockAddress + blockLength, blockReader.endAddress);
+			blockReader.start();
+		}
+		return block;
+	}
+
+	private void stopReading()
+	{
+		if (blockReader != null)
+		{
+			blockReader.stop();
+			blockReader = null;
+		}
+	}
+
+	private static int unpackInt16(byte[] buffer, int offset)
+	{
+		return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8;
+	}
+
+	private static int unpackInt32(byte[] buffer, int offset)
+	{
+		return unpackInt16(buffer, offset) | unpackInt16(buffer, offset + 2) << 16;
+	}
+
+	private static Future<Block> completedFuture(Callable<Block> callable)
+	{
+		FutureTask<Block> future = new FutureTask<Block>(callable);
+		future.run();
+		return future;
+	}
+
+	private static class Block
+	{
+		private final long address;
+		private final int compressedLength;
+		private final byte[] data;
+
+		public Block(long address, int compressedLength, byte[] data)
+		{
+			this.address = address;
+			this.compressedLength = compressedLength;
+			this.data = data;
+		}
+	}
+
+	private static class BlockInflater implements Callable<Block>
+	{
+		private final long address;
+		private final byte[] compressedBlock;
+
+		public BlockInflater(long address, byte[] compressedBlock)
+		{
+			this.address = address;
+			this.compressedBlock = compressedBlock;
+		}
+
+		@Override
+		public Block call() throws IOException
+		{
+			int dataStart = 12 + unpackInt16(compressedBlock, 10);
+			int dataLength = compressedBlock.length - dataStart - BLOCK_FOOTER_LENGTH;
+			byte[] data = new byte[unpackInt32(compressedBlock, compressedBlock.length - 4)];
+
+			Inflater inflater = INFLATERS.get();
+			inflater.reset();
+			inflater.setInput(compressedBlock, dataStart, dataLength);
+			try
+			{
+				int inflated = 0;
+				while (inflated < data.length && !inflater.finished())
+				{
+					int count = inflater.inflate(data, inflated, data.length - inflated);
+					if (count == 0 && inflater.needsInput())
+					{
+						break;
+					}
+					inflated += count;
+				}
+				if (inflated != data.length)
+				{
+					throw new IOException("Could not inflate the block at " + address + ", expected " + data.length
+							+ " bytes but got " + inflated);
+				}
+			}
+			catch (DataFormatException e)
+			{
+				throw new IOException("Could not inflate the block at " + address, e);
+			}
+			return new Block(address, compressedBlock.length, data);
+		}
+	}
+
+	/**
+	 * Reads the compressed blocks on its own thread and submits them for
+	 * inflating. The futures are queued in file order, ending with a future of
+	 * END_OF_DATA or of the read error.
+	 */
+	private class BlockReader implements Runnable
+	{
+		private final long startAddress;
+		private final long endAddress;
+		private final BlockingQueue<Future<Block>> queue = new ArrayBlockingQueue<Future<Block>>(readAhead);
+		private final Thread thread;
+		private volatile boolean stopped = false;
+		/** Set when the reader stopped because no blocks were taken */
+		private volatile boolean idle = false;
+
+		/**
+		 * @param startAddress
+		 *            address of the first block
+		 * @param endAddress
+		 *            address of the last block to read
+		 */
+		public BlockReader(long startAddress, long endAddress)
+		{
+			this.startAddress = startAddress;
+			this.endAddress = endAddress;
+			this.thread = new Thread(this, "bgzip-reader-" + bzipFile.getName());
+			this.thread.setDaemon(true);
+		}
+
+		public void start()
+		{
+			thread.start();
+		}
+
+		public void stop()
+		{
+			stopped = true;
+			thread.interrupt();
+			Future<Block> future;
+			while ((future = queue.poll()) != null)
+			{
+				future.cancel(false);
+			}
+		}
+
+		/**
+		 * @return the next block or null if the reader stopped after the idle
+		 *         timeout and all its blocks are taken
+		 */
+		public Block take() throws IOException
+		{
+			try
+			{
+				while (true)
+				{
+					// idle is read before polling, the reader does not queue
+					// blocks after it is set
+					boolean wasIdle = idle;
+					Future<Block> future = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (future != null)
+					{
+						return future.get();
+					}
+					if (wasIdle)
+					{
+						return null;
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading " + bzipFile.getAbsolutePath(), e);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IOException)
+				{
+					throw (IOException) e.getCause();
+				}
+				throw new IOException("Error reading " + bzipFile.getAbsolutePath(), e.getCause());
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			FileInputStream fileInputStream = null;
+			try
+			{
+				fileInputStream = new FileInputStream(bzipFile);
+				fileInputStream.getChannel().position(startAddress);
+				InputStream inputStream = new BufferedInputStream(fileInputStream, 1 << 16);
+
+				byte[] header = new byte[BLOCK_HEADER_LENGTH];
+				long address = startAddress;
+				while (!stopped && address <= endAddress)
+				{
+					int headerLength = IOUtils.read(inputStream, header);
+					if (headerLength == 0)
+					{
+						break;
+					}
+					if (headerLength < BLOCK_HEADER_LENGTH || header[0] != 31 || (header[1] & 0xff) != 139
+							|| header[12] != 'B' || header[13] != 'C')
+					{
+						throw new IOException("Invalid BGZF block at " + address + " in " + bzipFile.getAbsolutePath());
+					}
+
+					byte[] compressedBlock = new byte[unpackInt16(header, 16) + 1];
+					System.arraycopy(header, 0, compressedBlock, 0, BLOCK_HEADER_LENGTH);
+					IOUtils.readFully(inputStream, compressedBlock, BLOCK_HEADER_LENGTH, compressedBlock.length
+							- BLOCK_HEADER_LENGTH);
+
+					if (!enqueue(executor.submit(new BlockInflater(address, compressedBlock))))
+					{
+						return;
+					}
+					address += compressedBlock.length;
+				}
+				enqueue(completedFuture(new Callable<Block>()
+				{
+					@Override
+					public Block call()
+					{
+						return END_OF_DATA;
+					}
+				}));
+			}
+			catch (final Exception e)
+			{
+				enqueue(completedFuture(new Callable<Block>()
+				{
+					@Override
+					public Block call() throws Exception
+					{
+						throw e;
+					}
+				}));
+			}
+			finally
+			{
+				IOUtils.closeQuietly(fileInputStream);
+			}
+		}
+
+		/**
+		 * @return false if the reader is stopped or the consumer did not take a
+		 *         block for the idle timeout
+		 */
+		private boolean enqueue(Future<Block> future)
+		{
+			try
+			{
+				long waitStart = System.currentTimeMillis();
+				while (!stopped)
+				{
+					if (queue.offer(future, POLL_MILLIS, TimeUnit.MILLISECONDS))
+					{
+						return true;
+					}
+					if (System.currentTimeMillis() - waitStart >= idleTimeoutMillis)
+					{
+						idle = true;
+						break;
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// stopped
+			}
+			future.cancel(false);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF, the block compressed format read by tabix and
+ * BlockCompressedInputStream. Full blocks are deflated in parallel on an
+ * executor and written in order, so the writing thread does not wait for a
+ * single compressor.
+ *
+ * Since the compressed size of a block is only known after deflating,
+ * positions in the output are block pointers: the index of the block shifted
+ * 16 bits left, plus the offset in the block. After closing the stream block
+ * pointers are converted to virtual file pointers with
+ * {@link #getVirtualFilePointer(long)}.
+ */
+public class ParallelBlockCompressedOutputStream extends OutputStream
+{
+	/** Maximum number of blocks being deflated */
+	public static final int DEFAULT_MAX_PENDING_BLOCKS = 32;
+	public static final int DEFAULT_COMPRESSION_LEVEL = 5;
+
+	/** Uncompressed bytes per block, leaves room for incompressible data */
+	static final int BLOCK_SIZE = 0xff00;
+	private static final int MAX_BLOCK_LENGTH = 1 << 16;
+	private static final int BLOCK_HEADER_LENGTH = 18;
+	private static final int BLOCK_FOOTER_LENGTH = 8;
+	private static final byte[] EMPTY_BLOCK = new byte[]
+	{ 31, -117, 8, 4, 0, 0, 0, 0, 0, -1, 6, 0, 66, 67, 2, 0, 27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final ThreadLocal<Deflater[]> DEFLATERS = new ThreadLocal<Deflater[]>()
+	{
+		@Override
+		protected Deflater[] initialValue()
+		{
+			// compressing and storing deflater per compression level
+			return new Deflater[10];
+		}
+	};
+
+	private final OutputStream outputStream;
+	private final ExecutorService executor;
+	private final int maxPendingBlocks;
+	private final int compressionLevel;
+	private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+
+	private byte[] buffer = new byte[BLOCK_SIZE];
+	private int bufferLength = 0;
+	private int blockCount = 0;
+	/** Address of every written block, followed by the address after them */
+	private long[] blockAddresses = new long[1024];
+	private int writtenBlockCount = 0;
+	private boolean closed = false;
+
+	/**
+	 * @param file
+	 * @param executor
+	 *            executor deflating the blocks, null to deflate on the writing
+	 *            thread
+	 * @throws IOException
+	 */
+	public ParallelBlockCompressedOutputStream(File file, ExecutorService executor) throws IOException
+	{
+		this(new BufferedOutputStream(new FileOutputStream(file), MAX_BLOCK_LENGTH), executor,
+				DEFAULT_MAX_PENDING_BLOCKS, DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	/**
+	 * @param outputStream
+	 *            stream the compressed blocks are written to, it is closed when
+	 *            this stream is closed
+	 * @param executor
+	 *            executor deflating the blocks, null to deflate on the writing
+	 *            thread
+	 * @param maxPendingBlocks
+	 *            maximum number of blocks being deflated
+	 * @param compressionLevel
+	 *            deflate level 0 to 9
+	 */
+	public ParallelBlockCompressedOutputStream(OutputStream outputStream, ExecutorService executor,
+			int maxPendingBlocks, int compressionLevel)
+	{
+		if (maxPendingBlocks <= 0) throw new IllegalArgumentException("Max pending blocks must be positive");
+		if (compressionLevel < 0 || compressionLevel > 9) throw new IllegalArgumentException(
+				"Compression level must be 0 to 9");
+		this.outputStream = outputStream;
+		this.executor = executor;
+		this.maxPendingBlocks = maxPendingBlocks;
+		this.compressionLevel = compressionLevel;
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		checkOpen();
+		buffer[bufferLength++] = (byte) b;
+		if (bufferLength == BLOCK_SIZE)
+		{
+			endBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException
+	{
+		checkOpen();
+		while (length > 0)
+		{
+			int count = Math.min(length, BLOCK_SIZE - bufferLength);
+			System.arraycopy(bytes, offset, buffer, bufferLength, count);
+			bufferLength += count;
+			offset += count;
+			length -= count;
+			if (bufferLength == BLOCK_SIZE)
+			{
+				endBlock();
+			}
+		}
+	}
+
+	/**
+	 * @return block pointer of the current position
+	 */
+	public long getBlockPointer()
+	{
+		return (long) blockCount << 16 | bufferLength;
+	}
+
+	/**
+	 * Convert a block pointer to a virtual file pointer, only possible for
+	 * blocks that are written
+	 *
+	 * @param blockPointer
+	 * @return the virtual file pointer
+	 */
+	public long getVirtualFilePointer(long blockPointer)
+	{
+		int blockIndex = (int) (blockPointer >>> 16);
+		if (blockIndex > writtenBlockCount || (blockIndex == writtenBlockCount && !closed))
+		{
+			throw new IllegalStateException("Block " + blockIndex + " is not written yet");
+		}
+		return blockAddresses[blockIndex] << 16 | (blockPointer & 0xffff);
+	}
+
+	/**
+	 * Ends the current block and writes all pending blocks
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		checkOpen();
+		if (bufferLength > 0)
+		{
+			endBlock();
+		}
+		while (!pendingBlocks.isEmpty())
+		{
+			writeBlock(pendingBlocks.poll());
+		}
+		outputStream.flush();
+	}
+
+	/**
+	 * Writes all data and the end of file marker block
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		try
+		{
+			flush();
+			outputStream.write(EMPTY_BLOCK);
+		}
+		finally
+		{
+			closed = true;
+			for (Future<byte[]> pendingBlock : pendingBlocks)
+			{
+				pendingBlock.cancel(false);
+			}
+			outputStream.close();
+		}
+	}
+
+	private void checkOpen() throws IOException
+	{
+		if (closed)
+		{
+			throw new IOException("Stream is closed");
+		}
+	}
+
+	private void endBlock() throws IOException
+	{
+		BlockDeflater blockDeflater = new BlockDeflater(Arrays.copyOf(buffer, bufferLength), compressionLevel);
+		Future<byte[]> pendingBlock;
+		if (executor == null)
+		{
+			pendingBlock = new FutureTask<byte[]>(blockDeflater);
+			((FutureTask<byte[]>) pendingBlock).run();
+		}
+		else
+		{
+			pendingBlock = executor.submit(blockDeflater);
+		}
+		pendingBlocks.add(pendingBlock);
+		++blockCount;
+		bufferLength = 0;
+
+		while (pendingBlocks.size() > maxPendingBlocks || (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone()))
+		{
+			writeBlock(pendingBlocks.poll());
+		}
+	}
+
+	private void writeBlock(Future<byte[]> pendingBlock) throws IOException
+	{
+		byte[] block;
+		try
+		{
+			block = pendingBlock.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while deflating", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IOException("Error deflating block", e.getCause());
+		}
+
+		if (writtenBlockCount + 1 == blockAddresses.length)
+		{
+			blockAddresses = Arrays.copyOf(blockAddresses, blockAddresses.length * 2);
+		}
+		blockAddresses[writtenBlockCount + 1] = blockAddresses[writtenBlockCount] + block.length;
+		++writtenBlockCount;
+		outputStream.write(block);
+	}
+
+	private static void packInt16(byte[] buffer, int offset, int value)
+	{
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+	}
+
+	private static void packInt32(byte[] buffer, int offset, int value)
+	{
+		packInt16(buffer, offset, value);
+		packInt16(buffer, offset + 2, value >>> 16);
+	}
+
+	private static class BlockDeflater implements Callable<byte[]>
+	{
+		private final byte[] data;
+		private final int compressionLevel;
+
+		public BlockDeflater(byte[] data, int compressionLevel)
+		{
+			this.data = data;
+			this.compressionLevel = compressionLevel;
+		}
+
+		@Override
+		public byte[] call()
+		{
+			byte[] block = new byte[MAX_BLOCK_LENGTH];
+			int maxCompressedLength = MAX_BLOCK_LENGTH - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH;
+
+			int compressedLength = deflate(compressionLevel, block, maxCompressedLength);
+			if (compressedLength < 0)
+			{
+				// incompressible data, store it
+				compressedLength = deflate(Deflater.NO_COMPRESSION, block, maxCompressedLength);
+			}
+
+			int blockLength = BLOCK_HEADER_LENGTH + compressedLength + BLOCK_FOOTER_LENGTH;
+			System.arraycopy(EMPTY_BLOCK, 0, block, 0, BLOCK_HEADER_LENGTH);
+			packInt16(block, 16, blockLength - 1);
+
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, data.length);
+			packInt32(block, blockLength - 8, (int) crc.getValue());
+			packInt32(block, blockLength - 4, data.length);
+
+			return Arrays.copyOf(block, blockLength);
+		}
+
+		/**
+		 * @return the compressed length or -1 if it does not fit
+		 */
+		private int deflate(int level, byte[] block, int maxCompressedLength)
+		{
+			Deflater[] deflaters = DEFLATERS.get();
+			if (deflaters[level] == null)
+			{
+				deflaters[level] = new Deflater(level, true);
+			}
+			Deflater deflater = deflaters[level];
+			deflater.reset();
+			deflater.setInput(data);
+			deflater.finish();
+			int compressedLength = deflater.deflate(block, BLOCK_HEADER_LENGTH, maxCompressedLength);
+			return deflater.finished() ? compressedLength : -1;
+		}
+	}
+}
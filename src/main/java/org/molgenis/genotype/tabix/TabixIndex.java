@@ -10,11 +10,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.molgenis.genotype.GenotypeDataIndex;
 import org.molgenis.genotype.RawLineQuery;
 import org.molgenis.genotype.VariantQuery;
@@ -50,11 +50,14 @@ public class TabixIndex implements GenotypeDataIndex
 
 	private File bzipFile;
 	private VariantLineMapper variantLineMapper;
+	private final BlockCompressedInputStreamPool inputStreamPool;
+	private volatile ExecutorService parallelInflater;
 
 	public TabixIndex(File tabixIndexFile, File bzipFile, VariantLineMapper variantLineMapper) throws IOException
 	{
 		this.bzipFile = bzipFile;
 		this.variantLineMapper = variantLineMapper;
+		this.inputStreamPool = new BlockCompressedInputStreamPool(bzipFile);
 
 		readIndexFile(tabixIndexFile);
 	}
@@ -76,16 +79,62 @@ public class TabixIndex implements GenotypeDataIndex
 		return new TabixQuery(bzipFile, this, variantLineMapper);
 	}
 
+	/**
+	 * Create a query that maps the lines using a different line mapper
+	 * 
+	 * @param variantLineMapper
+	 * @return the query
+	 */
+	public VariantQuery createQuery(VariantLineMapper variantLineMapper)
+	{
+		return new TabixQuery(bzipFile, this, variantLineMapper);
+	}
+
 	@Override
 	public RawLineQuery createRawLineQuery()
 	{
 		return new TabixRawLineQuery(bzipFile, this);
 	}
 
+	/**
+	 * Get a stream on the bzipped data file from the pool of this index.
+	 * Closing the stream returns it to the pool.
+	 * 
+	 * @return the stream
+	 * @throws IOException
+	 */
+	public BlockCompressedInputStream borrowInputStream() throws IOException
+	{
+		return inputStreamPool.borrow();
+	}
+
+	/**
+	 * Inflate the blocks of full sequence queries in parallel, reading ahead
+	 * of the parsing thread. Other queries read few blocks and are not
+	 * affected.
+	 * 
+	 * @param executor
+	 *            executor inflating the blocks, null to inflate on the querying
+	 *            thread
+	 */
+	public void setParallelInflater(ExecutorService executor)
+	{
+		this.parallelInflater = executor;
+	}
+
+	/**
+	 * @return the executor inflating the blocks of full sequence queries or
+	 *         null
+	 */
+	public ExecutorService getParallelInflater()
+	{
+		return parallelInflater;
+	}
+
 	private int chr2tid(final String chr)
 	{
-		if (mChr2tid.containsKey(chr)) return mChr2tid.get(chr);
-		else return -1;
+		Integer tid = mChr2tid.get(chr);
+		return tid == null ? -1 : tid;
 	}
 
 	private void readIndexFile(File tabixIndexFile) throws IOException
@@ -124,23 +173,45 @@ public class TabixIndex implements GenotypeDataIndex
 			mIndex = new TIndex[seqNames.length];
 			for (i = 0; i < seqNames.length; ++i)
 			{
-				// the binning index
+				// the binning index, stored sorted on bin with the chunks of
+				// all bins in two arrays
 				int n_bin = readInt(bciStream);
-				mIndex[i] = new TIndex();
-				mIndex[i].b = new HashMap<Integer, TPair64[]>();
+				long[] binKeys = new long[n_bin];
+				long[][] binChunks = new long[n_bin][];
+				int nChunks = 0;
 				for (j = 0; j < n_bin; ++j)
 				{
 					int bin = readInt(bciStream);
-					TPair64[] chunks = new TPair64[readInt(bciStream)];
+					long[] chunks = new long[readInt(bciStream) * 2];
 					for (k = 0; k < chunks.length; ++k)
 					{
-						long u = readLong(bciStream);
-						long v = readLong(bciStream);
-						chunks[k] = new TPair64(u, v); // in C, this is
-														// inefficient
+						chunks[k] = readLong(bciStream);
+					}
+					binKeys[j] = ((long) bin << 32) | j;
+					binChunks[j] = chunks;
+					nChunks += chunks.length / 2;
+				}
+				Arrays.sort(binKeys);
+
+				TIndex tIndex = new TIndex();
+				tIndex.bins = new int[n_bin];
+				tIndex.binChunkStarts = new int[n_bin + 1];
+				tIndex.chunkBegins = new long[nChunks];
+				tIndex.chunkEnds = new long[nChunks];
+				for (j = 0, nChunks = 0; j < n_bin; ++j)
+				{
+					tIndex.bins[j] = (int) (binKeys[j] >> 32);
+					tIndex.binChunkStarts[j] = nChunks;
+					long[] chunks = binChunks[(int) binKeys[j]];
+					for (k = 0; k < chunks.length; k += 2, ++nChunks)
+					{
+						tIndex.chunkBegins[nChunks] = chunks[k];
+						tIndex.chunkEnds[nChunks] = chunks[k + 1];
 					}
-					mIndex[i].b.put(bin, chunks);
 				}
+				tIndex.binChunkStarts[n_bin] = nChunks;
+				mIndex[i] = tIndex;
+
 				// the linear index
 				mIndex[i].l = new long[readInt(bciStream)];
 				for (k = 0; k < mIndex[i].l.length; ++k)
@@ -169,49 +240,6 @@ public class TabixIndex implements GenotypeDataIndex
 		return ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN).getLong();
 	}
 
-	private static class TPair64 implements Comparable<TPair64>
-	{
-		long u, v;
-
-		public TPair64(final long _u, final long _v)
-		{
-			u = _u;
-			v = _v;
-		}
-
-		public TPair64(final TPair64 p)
-		{
-			u = p.u;
-			v = p.v;
-		}
-
-		@Override
-		public int compareTo(final TPair64 p)
-		{
-			return u == p.u ? 0 : ((u < p.u) ^ (u < 0) ^ (p.u < 0)) ? -1 : 1; // unsigned
-																				// 64-bit
-																				// comparison
-		}
-
-		@Override
-		public boolean equals(Object obj)
-		{
-			if (!(obj instanceof TPair64))
-			{
-				return false;
-			}
-
-			return compareTo((TPair64) obj) == 0;
-		}
-
-		@Override
-		public int hashCode()
-		{
-			return new HashCodeBuilder(3, 17).append(u).append(v).toHashCode();
-		}
-
-	};
-
 	private static boolean less64(final long u, final long v)
 	{ // unsigned 64-bit comparison
 		return (u < v) ^ (u < 0) ^ (v < 0);
@@ -219,10 +247,27 @@ public class TabixIndex implements GenotypeDataIndex
 
 	private static class TIndex
 	{
-		HashMap<Integer, TPair64[]> b; // binning index
+		// binning index, the chunks of bins[i] are stored from
+		// binChunkStarts[i] up to binChunkStarts[i + 1]
+		int[] bins;
+		int[] binChunkStarts;
+		long[] chunkBegins;
+		long[] chunkEnds;
 		long[] l; // linear index
 	}
 
+	/**
+	 * Scratch buffer for the bins overlapping a query
+	 */
+	private static final ThreadLocal<int[]> BINS_BUFFER = new ThreadLocal<int[]>()
+	{
+		@Override
+		protected int[] initialValue()
+		{
+			return new int[MAX_BIN];
+		}
+	};
+
 	private int reg2bins(final int beg, final int _end, final int[] list)
 	{
 		int i = 0, k, end = _end;
@@ -246,7 +291,6 @@ public class TabixIndex implements GenotypeDataIndex
 	protected TabixIterator queryTabixIndex(String sequence, final int beg, final int end,
 			BlockCompressedInputStream bzipInputStream) throws IOException
 	{
-		TPair64[] off, chunks;
 		long min_off;
 		int tid = chr2tid(sequence);
 
@@ -256,72 +300,146 @@ public class TabixIndex implements GenotypeDataIndex
 		}
 
 		TIndex idx = mIndex[tid];
-		int[] bins = new int[MAX_BIN];
+		int[] bins = BINS_BUFFER.get();
 		int i, l, n_off, n_bins = reg2bins(beg, end, bins);
 		if (idx.l.length > 0) min_off = (beg >> TAD_LIDX_SHIFT >= idx.l.length) ? idx.l[idx.l.length - 1] : idx.l[beg >> TAD_LIDX_SHIFT];
 		else min_off = 0;
+
+		// replace the bins with their index in the binning index
 		for (i = n_off = 0; i < n_bins; ++i)
 		{
-			if ((chunks = idx.b.get(bins[i])) != null) n_off += chunks.length;
+			int binIndex = Arrays.binarySearch(idx.bins, bins[i]);
+			if (binIndex >= 0)
+			{
+				n_off += idx.binChunkStarts[binIndex + 1] - idx.binChunkStarts[binIndex];
+			}
+			bins[i] = binIndex;
 		}
 		if (n_off == 0) return null;
-		off = new TPair64[n_off];
+		long[] offBegins = new long[n_off];
+		long[] offEnds = new long[n_off];
 		for (i = n_off = 0; i < n_bins; ++i)
-			if ((chunks = idx.b.get(bins[i])) != null) for (int j = 0; j < chunks.length; ++j)
-				if (TabixIndex.less64(min_off, chunks[j].v)) off[n_off++] = new TPair64(chunks[j]);
+		{
+			if (bins[i] < 0) continue;
+			for (int j = idx.binChunkStarts[bins[i]]; j < idx.binChunkStarts[bins[i] + 1]; ++j)
+			{
+				if (TabixIndex.less64(min_off, idx.chunkEnds[j]))
+				{
+					offBegins[n_off] = idx.chunkBegins[j];
+					offEnds[n_off++] = idx.chunkEnds[j];
+				}
+			}
+		}
 		if (n_off == 0) return null;
-		Arrays.sort(off, 0, n_off);
+		sortChunks(offBegins, offEnds, 0, n_off - 1);
 		// resolve completely contained adjacent blocks
 		for (i = 1, l = 0; i < n_off; ++i)
 		{
-			if (TabixIndex.less64(off[l].v, off[i].v))
+			if (TabixIndex.less64(offEnds[l], offEnds[i]))
 			{
 				++l;
-				off[l].u = off[i].u;
-				off[l].v = off[i].v;
+				offBegins[l] = offBegins[i];
+				offEnds[l] = offEnds[i];
 			}
 		}
 		n_off = l + 1;
 		// resolve overlaps between adjacent blocks; this may happen due to the
 		// merge in indexing
 		for (i = 1; i < n_off; ++i)
-			if (!TabixIndex.less64(off[i - 1].v, off[i].u)) off[i - 1].v = off[i].u;
+			if (!TabixIndex.less64(offEnds[i - 1], offBegins[i])) offEnds[i - 1] = offBegins[i];
 		// merge adjacent blocks
 		for (i = 1, l = 0; i < n_off; ++i)
 		{
-			if (off[l].v >> 16 == off[i].u >> 16) off[l].v = off[i].v;
+			if (offEnds[l] >> 16 == offBegins[i] >> 16) offEnds[l] = offEnds[i];
 			else
 			{
 				++l;
-				off[l].u = off[i].u;
-				off[l].v = off[i].v;
+				offBegins[l] = offBegins[i];
+				offEnds[l] = offEnds[i];
 			}
 		}
 		n_off = l + 1;
-		// return
-		TPair64[] ret = new TPair64[n_off];
-		for (i = 0; i < n_off; ++i)
-			ret[i] = new TPair64(off[i].u, off[i].v); // in C, this is
-														// inefficient
-		return new TabixIterator(tid, beg, end, ret, bzipInputStream);
+		return new TabixIterator(tid, beg, end, Arrays.copyOf(offBegins, n_off), Arrays.copyOf(offEnds, n_off),
+				bzipInputStream);
+	}
+
+	/**
+	 * Sort the chunks on their begin offset, unsigned. Quick sort that falls
+	 * back to insertion sort for small ranges.
+	 * 
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            inclusive
+	 */
+	private static void sortChunks(long[] begins, long[] ends, int from, int to)
+	{
+		while (to - from > 16)
+		{
+			long pivot = begins[(from + to) >>> 1];
+			int i = from, j = to;
+			while (i <= j)
+			{
+				while (less64(begins[i], pivot))
+					++i;
+				while (less64(pivot, begins[j]))
+					--j;
+				if (i <= j)
+				{
+					swap(begins, ends, i++, j--);
+				}
+			}
+			// recurse on the smaller part
+			if (j - from < to - i)
+			{
+				sortChunks(begins, ends, from, j);
+				from = i;
+			}
+			else
+			{
+				sortChunks(begins, ends, i, to);
+				to = j;
+			}
+		}
+		for (int i = from + 1; i <= to; ++i)
+		{
+			for (int j = i; j > from && less64(begins[j], begins[j - 1]); --j)
+			{
+				swap(begins, ends, j, j - 1);
+			}
+		}
+	}
+
+	private static void swap(long[] begins, long[] ends, int i, int j)
+	{
+		long begin = begins[i];
+		begins[i] = begins[j];
+		begins[j] = begin;
+		long end = ends[i];
+		ends[i] = ends[j];
+		ends[j] = end;
 	}
 
 	protected class TabixIterator
 	{
 		private int i;
 		private int tid, beg, end;
-		private TPair64[] off;
+		private long[] offBegins;
+		private long[] offEnds;
 		private long curr_off;
 		private boolean iseof;
 		private BlockCompressedInputStream inputStream;
+		// interval of the last returned line
+		private int lineBeg, lineEnd;
 
-		public TabixIterator(final int _tid, final int _beg, final int _end, final TPair64[] _off,
-				final BlockCompressedInputStream inputStream)
+		public TabixIterator(final int _tid, final int _beg, final int _end, final long[] offBegins,
+				final long[] offEnds, final BlockCompressedInputStream inputStream)
 		{
 			i = -1;
 			curr_off = 0;
 			iseof = false;
-			off = _off.clone();
+			this.offBegins = offBegins;
+			this.offEnds = offEnds;
 			tid = _tid;
 			beg = _beg;
 			end = _end;
@@ -333,13 +451,13 @@ public class TabixIndex implements GenotypeDataIndex
 			if (iseof) return null;
 			for (;;)
 			{
-				if (curr_off == 0 || !less64(curr_off, off[i].v))
+				if (curr_off == 0 || !less64(curr_off, offEnds[i]))
 				{ // then jump to the next chunk
-					if (i == off.length - 1) break; // no more chunks
-					if (i >= 0) assert (curr_off == off[i].v); // otherwise bug
-					if (i < 0 || off[i].v != off[i + 1].u)
+					if (i == offBegins.length - 1) break; // no more chunks
+					if (i >= 0) assert (curr_off == offEnds[i]); // otherwise bug
+					if (i < 0 || offEnds[i] != offBegins[i + 1])
 					{ // not adjacent chunks; then seek
-						inputStream.seek(off[i + 1].u);
+						inputStream.seek(offBegins[i + 1]);
 						curr_off = inputStream.getFilePointer();
 					}
 					++i;
@@ -354,8 +472,12 @@ public class TabixIndex implements GenotypeDataIndex
 					intv = getIntv(s);
 					if (intv.tid != tid || intv.beg >= end) break; // no need to
 																	// proceed
-					else if (intv.end > beg && intv.beg < end) return s; // overlap;
-																			// return
+					else if (intv.end > beg && intv.beg < end)
+					{ // overlap; return
+						lineBeg = intv.beg;
+						lineEnd = intv.end;
+						return s;
+					}
 				}
 				else break; // end of file
 			}
@@ -363,6 +485,35 @@ public class TabixIndex implements GenotypeDataIndex
 			return null;
 		}
 
+		/**
+		 * @return virtual file pointer of the end of the last chunk
+		 */
+		public long getEndFilePointer()
+		{
+			long endFilePointer = 0;
+			for (long offEnd : offEnds)
+			{
+				if (less64(endFilePointer, offEnd)) endFilePointer = offEnd;
+			}
+			return endFilePointer;
+		}
+
+		/**
+		 * @return zero based start of the last returned line, inclusive
+		 */
+		public int getLineBegin()
+		{
+			return lineBeg;
+		}
+
+		/**
+		 * @return zero based end of the last returned line, exclusive
+		 */
+		public int getLineEnd()
+		{
+			return lineEnd;
+		}
+
 		private TIntv getIntv(final String s)
 		{
 			TIntv intv = new TIntv();
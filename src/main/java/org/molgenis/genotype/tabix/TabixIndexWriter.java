@@ -0,0 +1,328 @@
+package org.molgenis.genotype.tabix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.GenotypeDataException;
+
+/**
+ * Builds a tabix index while the data file is written. For every line the
+ * interval and its start and end position in the data file are added, the
+ * lines must be sorted on position within a sequence and the lines of a
+ * sequence must be together.
+ *
+ * The positions are virtual file pointers, or block pointers of a
+ * ParallelBlockCompressedOutputStream that are converted when the index is
+ * written.
+ */
+public class TabixIndexWriter
+{
+	public static final int PRESET_GENERIC = 0;
+	public static final int PRESET_VCF = 2;
+
+	private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+	private static final byte[] MAGIC = new byte[]
+	{ 'T', 'B', 'I', 1 };
+	private static final int LINEAR_SHIFT = 14;
+	private static final long UNSET = -1;
+
+	private final int preset;
+	private final int sequenceColumn;
+	private final int beginColumn;
+	private final int endColumn;
+	private final char meta;
+	private final int skip;
+	private final Map<String, SequenceIndex> sequenceIndices = new LinkedHashMap<String, SequenceIndex>();
+	private SequenceIndex currentSequenceIndex;
+
+	/**
+	 * @param preset
+	 *            tabix preset
+	 * @param sequenceColumn
+	 *            one based column of the sequence name
+	 * @param beginColumn
+	 *            one based column of the start position
+	 * @param endColumn
+	 *            one based column of the end position, 0 if there is none
+	 * @param meta
+	 *            first character of header lines
+	 * @param skip
+	 *            number of lines to skip at the start of the file
+	 */
+	public TabixIndexWriter(int preset, int sequenceColumn, int beginColumn, int endColumn, char meta, int skip)
+	{
+		this.preset = preset;
+		this.sequenceColumn = sequenceColumn;
+		this.beginColumn = beginColumn;
+		this.endColumn = endColumn;
+		this.meta = meta;
+		this.skip = skip;
+	}
+
+	/**
+	 * @return index writer with the settings of <code>tabix -p vcf</code>
+	 */
+	public static TabixIndexWriter createVcfIndexWriter()
+	{
+		return new TabixIndexWriter(PRESET_VCF, 1, 2, 0, '#', 0);
+	}
+
+	/**
+	 * @return index writer for tab separated haps files, the settings of
+	 *         <code>tabix -b 3 -e 3</code>
+	 */
+	public static TabixIndexWriter createHapsIndexWriter()
+	{
+		return new TabixIndexWriter(PRESET_GENERIC, 1, 3, 3, '#', 0);
+	}
+
+	/**
+	 * Add a data line to the index
+	 *
+	 * @param sequence
+	 * @param begin
+	 *            zero based start of the line interval, inclusive
+	 * @param end
+	 *            zero based end of the line interval, exclusive
+	 * @param lineBegin
+	 *            position of the start of the line
+	 * @param lineEnd
+	 *            position after the end of the line
+	 */
+	public void addLine(String sequence, int begin, int end, long lineBegin, long lineEnd)
+	{
+		if (currentSequenceIndex == null || !currentSequenceIndex.name.equals(sequence))
+		{
+			if (sequenceIndices.containsKey(sequence))
+			{
+				throw new GenotypeDataException("Can not index data, the lines of sequence [" + sequence
+						+ "] are not together");
+			}
+			currentSequenceIndex = new SequenceIndex(sequence);
+			sequenceIndices.put(sequence, currentSequenceIndex);
+		}
+		currentSequenceIndex.addLine(begin, Math.max(end, begin + 1), lineBegin, lineEnd);
+	}
+
+	/**
+	 * Write the index, the positions of the lines are virtual file pointers
+	 *
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public void write(File indexFile) throws IOException
+	{
+		write(indexFile, null);
+	}
+
+	/**
+	 * Write the index, the positions of the lines are block pointers of the
+	 * closed data stream
+	 *
+	 * @param indexFile
+	 * @param dataStream
+	 * @throws IOException
+	 */
+	public void write(File indexFile, ParallelBlockCompressedOutputStream dataStream) throws IOException
+	{
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		for (String sequence : sequenceIndices.keySet())
+		{
+			names.write(sequence.getBytes(CHARSET_UTF8));
+			names.write(0);
+		}
+
+		OutputStream outputStream = new BlockCompressedOutputStream(indexFile);
+		try
+		{
+			outputStream.write(MAGIC);
+			writeInt(outputStream, sequenceIndices.size());
+			writeInt(outputStream, preset);
+			writeInt(outputStream, sequenceColumn);
+			writeInt(outputStream, beginColumn);
+			writeInt(outputStream, endColumn);
+			writeInt(outputStream, meta);
+			writeInt(outputStream, skip);
+			writeInt(outputStream, names.size());
+			names.writeTo(outputStream);
+
+			for (SequenceIndex sequenceIndex : sequenceIndices.values())
+			{
+				sequenceIndex.write(outputStream, dataStream);
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(outputStream);
+		}
+	}
+
+	/**
+	 * Bin of the smallest level that contains the interval, see the SAM
+	 * specification
+	 */
+	static int reg2bin(int begin, int end)
+	{
+		--end;
+		if (begin >> 14 == end >> 14) return 4681 + (begin >> 14);
+		if (begin >> 17 == end >> 17) return 585 + (begin >> 17);
+		if (begin >> 20 == end >> 20) return 73 + (begin >> 20);
+		if (begin >> 23 == end >> 23) return 9 + (begin >> 23);
+		if (begin >> 26 == end >> 26) return 1 + (begin >> 26);
+		return 0;
+	}
+
+	private static long resolve(long position, ParallelBlockCompressedOutputStream dataStream)
+	{
+		return dataStream == null ? position : dataStream.getVirtualFilePointer(position);
+	}
+
+	private static void writeInt(OutputStream outputStream, int value) throws IOException
+	{
+		outputStream.write(value);
+		outputStream.write(value >>> 8);
+		outputStream.write(value >>> 16);
+		outputStream.write(value >>> 24);
+	}
+
+	private static void writeLong(OutputStream outputStream, long value) throws IOException
+	{
+		writeInt(outputStream, (int) value);
+		writeInt(outputStream, (int) (value >>> 32));
+	}
+
+	private static class SequenceIndex
+	{
+		private final String name;
+		/** Chunks per bin, begin and end positions */
+		private final Map<Integer, LongList> binChunks = new HashMap<Integer, LongList>();
+		private long[] linearIndex = new long[64];
+		private int linearIndexSize = 0;
+		private int lastBegin = -1;
+
+		public SequenceIndex(String name)
+		{
+			this.name = name;
+		}
+
+		public void addLine(int begin, int end, long lineBegin, long lineEnd)
+		{
+			if (begin < lastBegin)
+			{
+				throw new GenotypeDataException("Can not index data, the lines of sequence [" + name
+						+ "] are not sorted on position");
+			}
+			lastBegin = begin;
+
+			int bin = reg2bin(begin, end);
+			LongList chunks = binChunks.get(bin);
+			if (chunks == null)
+			{
+				chunks = new LongList();
+				binChunks.put(bin, chunks);
+			}
+			if (chunks.size() > 0 && chunks.get(chunks.size() - 1) == lineBegin)
+			{
+				// the line directly follows the last chunk of the bin
+				chunks.set(chunks.size() - 1, lineEnd);
+			}
+			else
+			{
+				chunks.add(lineBegin);
+				chunks.add(lineEnd);
+			}
+
+			int lastWindow = (end - 1) >> LINEAR_SHIFT;
+			if (lastWindow >= linearIndex.length)
+			{
+				linearIndex = Arrays.copyOf(linearIndex, Math.max(linearIndex.length * 2, lastWindow + 1));
+			}
+			for (int window = begin >> LINEAR_SHIFT; window <= lastWindow; ++window)
+			{
+				if (window >= linearIndexSize)
+				{
+					Arrays.fill(linearIndex, linearIndexSize, window + 1, UNSET);
+					linearIndexSize = window + 1;
+				}
+				if (linearIndex[window] == UNSET)
+				{
+					linearIndex[window] = lineBegin;
+				}
+			}
+		}
+
+		public void write(OutputStream outputStream, ParallelBlockCompressedOutputStream dataStream)
+				throws IOException
+		{
+			List<Integer> bins = new ArrayList<Integer>(binChunks.keySet());
+			Collections.sort(bins);
+
+			writeInt(outputStream, bins.size());
+			for (Integer bin : bins)
+			{
+				LongList chunks = binChunks.get(bin);
+				writeInt(outputStream, bin);
+				writeInt(outputStream, chunks.size() / 2);
+				for (int i = 0; i < chunks.size(); ++i)
+				{
+					writeLong(outputStream, resolve(chunks.get(i), dataStream));
+				}
+			}
+
+			// windows without lines get the offset of the previous window
+			writeInt(outputStream, linearIndexSize);
+			long offset = 0;
+			for (int window = 0; window < linearIndexSize; ++window)
+			{
+				if (linearIndex[window] != UNSET)
+				{
+					offset = resolve(linearIndex[window], dataStream);
+				}
+				writeLong(outputStream, offset);
+			}
+		}
+	}
+
+	private static class LongList
+	{
+		private long[] values = new long[2];
+		private int size = 0;
+
+		public void add(long value)
+		{
+			if (size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		public long get(int index)
+		{
+			return values[index];
+		}
+
+		public void set(int index, long value)
+		{
+			values[index] = value;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+	}
+}
@@ -2,10 +2,14 @@ package org.molgenis.genotype.tabix;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.VariantQuery;
 import org.molgenis.genotype.VariantQueryResult;
@@ -21,7 +25,13 @@ import org.molgenis.genotype.variant.VariantLineMapper;
  */
 public class TabixQuery implements VariantQuery
 {
-	private BlockCompressedInputStream inputStream;
+	/**
+	 * Maximum distance between positions that are read with one query. This is
+	 * the size of the bins in the linear index
+	 */
+	private static final int MAX_WINDOW_GAP = 1 << 14;
+
+	private final File bzipFile;
 	private final TabixIndex index;
 	private final VariantLineMapper variantLineMapper;
 
@@ -31,16 +41,7 @@ public class TabixQuery implements VariantQuery
 		if (index == null) throw new IllegalArgumentException("Index is null");
 		if (variantLineMapper == null) throw new IllegalArgumentException("VariantLineMapper is null");
 
-		try
-		{
-			inputStream = new BlockCompressedInputStream(bzipFile);
-		}
-		catch (IOException e)
-		{
-			throw new GenotypeDataException("IOExcption creating BlockCompressedInputStream for " + bzipFile.getName(),
-					e);
-		}
-
+		this.bzipFile = bzipFile;
 		this.index = index;
 		this.variantLineMapper = variantLineMapper;
 	}
@@ -62,19 +63,24 @@ public class TabixQuery implements VariantQuery
 		if (startPos < 0) throw new IllegalArgumentException("StartPos must be bigger then 0");
 		if (stopPos <= startPos) throw new IllegalArgumentException("StopPos must be bigger then startPos ");
 
+		BlockCompressedInputStream inputStream = null;
 		try
 		{
+			inputStream = index.borrowInputStream();
 			TabixIterator tabixIterator = index.queryTabixIndex(sequence, startPos, stopPos, inputStream);
 			return new TabixQueryResult(inputStream, new TabixQueryIterator(tabixIterator, variantLineMapper));
 		}
 		catch (IOException e)
 		{
+			IOUtils.closeQuietly(inputStream);
 			throw new GenotypeDataException(e);
 		}
 	}
 
 	/**
-	 * Gets all variants of a sequence
+	 * Gets all variants of a sequence. The blocks are inflated in parallel if
+	 * the index has a parallel inflater, close the result when the variants
+	 * are not iterated to the end to stop its reader thread.
 	 * 
 	 * @param sequence
 	 * @return
@@ -83,7 +89,29 @@ public class TabixQuery implements VariantQuery
 	@Override
 	public VariantQueryResult executeQuery(String sequence)
 	{
-		return executeQuery(sequence, 0, Integer.MAX_VALUE);
+		ExecutorService parallelInflater = index.getParallelInflater();
+		if (parallelInflater == null)
+		{
+			return executeQuery(sequence, 0, Integer.MAX_VALUE);
+		}
+
+		ParallelBlockCompressedInputStream inputStream = new ParallelBlockCompressedInputStream(bzipFile,
+				parallelInflater);
+		try
+		{
+			TabixIterator tabixIterator = index.queryTabixIndex(sequence, 0, Integer.MAX_VALUE, inputStream);
+			if (tabixIterator != null)
+			{
+				// do not read ahead beyond the data of this sequence
+				inputStream.setEndFilePointer(tabixIterator.getEndFilePointer());
+			}
+			return new TabixQueryResult(inputStream, new TabixQueryIterator(tabixIterator, variantLineMapper));
+		}
+		catch (IOException e)
+		{
+			IOUtils.closeQuietly(inputStream);
+			throw new GenotypeDataException(e);
+		}
 	}
 
 	@Override
@@ -92,6 +120,94 @@ public class TabixQuery implements VariantQuery
 		return executeQuery(sequence, startPos - 1, startPos);
 	}
 
+	/**
+	 * Find the variants at multiple positions. Positions less than
+	 * MAX_WINDOW_GAP apart are read with a single index query, only lines at a
+	 * requested position are mapped to variants.
+	 */
+	@Override
+	public List<List<GeneticVariant>> executeQuery(String sequence, int[] positions)
+	{
+		List<List<GeneticVariant>> variants = new ArrayList<List<GeneticVariant>>(positions.length);
+		if (positions.length == 0)
+		{
+			return variants;
+		}
+		if (positions[0] < 1) throw new IllegalArgumentException("Positions must be bigger then 0");
+		for (int i = 0; i < positions.length; ++i)
+		{
+			variants.add(new ArrayList<GeneticVariant>(1));
+		}
+
+		BlockCompressedInputStream inputStream = null;
+		try
+		{
+			inputStream = index.borrowInputStream();
+
+			int windowStart = 0;
+			while (windowStart < positions.length)
+			{
+				int windowEnd = windowStart + 1;
+				while (windowEnd < positions.length && positions[windowEnd] - positions[windowEnd - 1] <= MAX_WINDOW_GAP)
+				{
+					++windowEnd;
+				}
+
+				TabixIterator tabixIterator = index.queryTabixIndex(sequence, positions[windowStart] - 1,
+						positions[windowEnd - 1], inputStream);
+				String line;
+				while (tabixIterator != null && (line = tabixIterator.next()) != null)
+				{
+					// the line overlaps requested positions from begin + 1 up to
+					// and including end, same as a single position query
+					GeneticVariant variant = null;
+					for (int i = lowerBound(positions, windowStart, windowEnd, tabixIterator.getLineBegin() + 1); i < windowEnd
+							&& positions[i] <= tabixIterator.getLineEnd(); ++i)
+					{
+						if (variant == null)
+						{
+							variant = variantLineMapper.mapLine(line);
+						}
+						variants.get(i).add(variant);
+					}
+				}
+
+				windowStart = windowEnd;
+			}
+		}
+		catch (IOException e)
+		{
+			throw new GenotypeDataException(e);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(inputStream);
+		}
+
+		return variants;
+	}
+
+	/**
+	 * @return index of the first position equal or larger than the requested
+	 *         position
+	 */
+	private static int lowerBound(int[] positions, int from, int to, int position)
+	{
+		while (from < to)
+		{
+			int mid = (from + to) >>> 1;
+			if (positions[mid] < position)
+			{
+				from = mid + 1;
+			}
+			else
+			{
+				to = mid;
+			}
+		}
+		return from;
+	}
+
 	private static class TabixQueryIterator implements Iterator<GeneticVariant>
 	{
 		private final TabixIterator tabixIterator;
@@ -6,6 +6,7 @@ import java.util.Iterator;
 
 import net.sf.samtools.util.BlockCompressedInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.RawLineQuery;
 import org.molgenis.genotype.RawLineQueryResult;
@@ -19,7 +20,6 @@ import org.molgenis.genotype.tabix.TabixIndex.TabixIterator;
  */
 public class TabixRawLineQuery implements RawLineQuery
 {
-	private BlockCompressedInputStream inputStream;
 	private final TabixIndex index;
 
 	public TabixRawLineQuery(File bzipFile, TabixIndex index)
@@ -27,16 +27,6 @@ public class TabixRawLineQuery implements RawLineQuery
 		if (bzipFile == null) throw new IllegalArgumentException("BzipFile is null");
 		if (index == null) throw new IllegalArgumentException("Index is null");
 
-		try
-		{
-			inputStream = new BlockCompressedInputStream(bzipFile);
-		}
-		catch (IOException e)
-		{
-			throw new GenotypeDataException("IOExcption creating BlockCompressedInputStream for " + bzipFile.getName(),
-					e);
-		}
-
 		this.index = index;
 	}
 
@@ -45,13 +35,16 @@ public class TabixRawLineQuery implements RawLineQuery
 	{
 		if (startPos < 0) throw new IllegalArgumentException("StartPos must be bigger then 0");
 
+		BlockCompressedInputStream inputStream = null;
 		try
 		{
+			inputStream = index.borrowInputStream();
 			TabixIterator tabixIterator = index.queryTabixIndex(sequence, startPos - 1, startPos, inputStream);
 			return new TabixRawLineQueryResult(inputStream, new RawLineIterator(tabixIterator));
 		}
 		catch (IOException e)
 		{
+			IOUtils.closeQuietly(inputStream);
 			throw new GenotypeDataException(e);
 		}
 	}
@@ -42,11 +42,28 @@ public class CalledDosageConvertor
 	public static byte[] convertCalledAllelesToCalledDosage(List<Alleles> sampleAlleles, Alleles alleles,
 			Allele refAllele)
 	{
-		Allele dosageRef = refAllele == null ? alleles.getAlleles().get(0) : refAllele;
-
 		byte[] dosages = new byte[sampleAlleles.size()];
+		convertCalledAllelesToCalledDosage(sampleAlleles, alleles, refAllele, dosages);
+		return dosages;
+	}
 
-		for (int i = 0; i < dosages.length; ++i)
+	/**
+	 * Same as convertCalledAllelesToCalledDosage but writes the called dosage
+	 * in the supplied array
+	 * 
+	 * @param sampleAlleles
+	 * @param alleles
+	 * @param refAllele
+	 * @param dosages
+	 *            array of at least the number of samples
+	 */
+	public static void convertCalledAllelesToCalledDosage(List<Alleles> sampleAlleles, Alleles alleles,
+			Allele refAllele, byte[] dosages)
+	{
+		Allele dosageRef = refAllele == null ? alleles.getAlleles().get(0) : refAllele;
+
+		int sampleCount = sampleAlleles.size();
+		for (int i = 0; i < sampleCount; ++i)
 		{
 			Alleles sampleVariant = sampleAlleles.get(i);
 			boolean missing = false;
@@ -67,8 +84,6 @@ public class CalledDosageConvertor
 
 			dosages[i] = missing ? -1 : dosage;
 		}
-
-		return dosages;
 	}
 
 	public static float[] convertCalledDosageToDosage(byte[] calledDosage)
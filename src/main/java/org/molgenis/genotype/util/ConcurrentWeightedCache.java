@@ -0,0 +1,262 @@
+package org.molgenis.genotype.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe least recently used (LRU) cache limited on both the number of
+ * entries and the total weight of the values, for instance their size in
+ * bytes.
+ *
+ * The cache is split in segments each with its own lock and an equal part of
+ * the capacity, so the LRU order is maintained per segment. Values heavier
+ * than the capacity of a segment are not cached.
+ */
+public class ConcurrentWeightedCache<K, V>
+{
+	public interface Weigher<V>
+	{
+		long getWeight(V value);
+	}
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private final List<Segment> segments;
+	private final int segmentMask;
+	private final Weigher<? super V> weigher;
+	private final int maxEntries;
+	private final long maxWeight;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * @param maxEntries
+	 *            maximum number of entries
+	 * @param maxWeight
+	 *            maximum total weight of the values
+	 * @param weigher
+	 *            determines the weight of a value
+	 */
+	public ConcurrentWeightedCache(int maxEntries, long maxWeight, Weigher<? super V> weigher)
+	{
+		this(maxEntries, maxWeight, weigher, MAX_SEGMENTS);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            maximum number of entries
+	 * @param maxWeight
+	 *            maximum total weight of the values
+	 * @param weigher
+	 *            determines the weight of a value
+	 * @param concurrencyLevel
+	 *            maximum number of segments, use 1 for a strict LRU order
+	 */
+	public ConcurrentWeightedCache(int maxEntries, long maxWeight, Weigher<? super V> weigher, int concurrencyLevel)
+	{
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+
+		// small caches use fewer segments so each segment can hold an entry
+		int segmentCount = 1;
+		while (segmentCount < concurrencyLevel && segmentCount * 2 <= maxEntries)
+		{
+			segmentCount *= 2;
+		}
+
+		segmentMask = segmentCount - 1;
+		segments = new ArrayList<Segment>(segmentCount);
+		for (int i = 0; i < segmentCount; ++i)
+		{
+			segments.add(new Segment(maxEntries / segmentCount, maxWeight / segmentCount));
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the cached value or null if not cached
+	 */
+	public V get(K key)
+	{
+		V value = segmentFor(key).get(key);
+		if (value == null)
+		{
+			missCount.incrementAndGet();
+		}
+		else
+		{
+			hitCount.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Cache a value, replacing the previous value of this key. Evicts the least
+	 * recently used entries if the capacity is exceeded.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(K key, V value)
+	{
+		if (value == null)
+		{
+			throw new IllegalArgumentException("Can not cache null values");
+		}
+		segmentFor(key).put(key, value, weigher.getWeight(value));
+	}
+
+	public void clear()
+	{
+		for (Segment segment : segments)
+		{
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return number of cached entries
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : segments)
+		{
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return total weight of the cached values
+	 */
+	public long getWeight()
+	{
+		long weight = 0;
+		for (Segment segment : segments)
+		{
+			weight += segment.getWeight();
+		}
+		return weight;
+	}
+
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	public long getEvictionCount()
+	{
+		return evictionCount.get();
+	}
+
+	private Segment segmentFor(Object key)
+	{
+		// spread the hash so segments are also used when only the high bits
+		// differ
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return segments.get(hash & segmentMask);
+	}
+
+	private static class WeightedValue<V>
+	{
+		private final V value;
+		private final long weight;
+
+		public WeightedValue(V value, long weight)
+		{
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private class Segment
+	{
+		private final LinkedHashMap<K, WeightedValue<V>> entries = new LinkedHashMap<K, WeightedValue<V>>(16, 0.75f,
+				true);
+		private final int maxSegmentEntries;
+		private final long maxSegmentWeight;
+		private long weight = 0;
+
+		public Segment(int maxSegmentEntries, long maxSegmentWeight)
+		{
+			this.maxSegmentEntries = maxSegmentEntries;
+			this.maxSegmentWeight = maxSegmentWeight;
+		}
+
+		public synchronized V get(K key)
+		{
+			WeightedValue<V> weightedValue = entries.get(key);
+			return weightedValue == null ? null : weightedValue.value;
+		}
+
+		public synchronized void put(K key, V value, long valueWeight)
+		{
+			if (valueWeight > maxSegmentWeight || maxSegmentEntries == 0)
+			{
+				WeightedValue<V> old = entries.remove(key);
+				if (old != null)
+				{
+					weight -= old.weight;
+				}
+				return;
+			}
+
+			WeightedValue<V> old = entries.put(key, new WeightedValue<V>(value, valueWeight));
+			if (old != null)
+			{
+				weight -= old.weight;
+			}
+			weight += valueWeight;
+
+			// iteration order is from least recently used, the new entry is last
+			Iterator<WeightedValue<V>> eldest = entries.values().iterator();
+			while ((entries.size() > maxSegmentEntries || weight > maxSegmentWeight) && eldest.hasNext())
+			{
+				weight -= eldest.next().weight;
+				eldest.remove();
+				evictionCount.incrementAndGet();
+			}
+		}
+
+		public synchronized void clear()
+		{
+			entries.clear();
+			weight = 0;
+		}
+
+		public synchronized int size()
+		{
+			return entries.size();
+		}
+
+		public synchronized long getWeight()
+		{
+			return weight;
+		}
+	}
+
+}
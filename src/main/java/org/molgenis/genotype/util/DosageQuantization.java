@@ -0,0 +1,108 @@
+package org.molgenis.genotype.util;
+
+import java.lang.reflect.Array;
+
+/**
+ * Storage of dosages in less than a float per sample. Quantized dosages are
+ * limited to the range 0 to 2, missing values (-1) are kept.
+ */
+public enum DosageQuantization
+{
+	/** Dosages are stored as float[] */
+	NONE
+	{
+		@Override
+		public Object quantize(float[] dosages)
+		{
+			return dosages;
+		}
+
+		@Override
+		public float getDosage(Object quantizedDosages, int sampleIndex)
+		{
+			return ((float[]) quantizedDosages)[sampleIndex];
+		}
+	},
+	/**
+	 * Dosages are stored as short[] in steps of 1/16000, values with three
+	 * decimals are stored exact
+	 */
+	BITS_16
+	{
+		private static final float SCALE = 16000;
+
+		@Override
+		public Object quantize(float[] dosages)
+		{
+			short[] quantizedDosages = new short[dosages.length];
+			for (int i = 0; i < dosages.length; ++i)
+			{
+				quantizedDosages[i] = dosages[i] < 0 ? -1 : (short) Math.round(Math.min(dosages[i], 2) * SCALE);
+			}
+			return quantizedDosages;
+		}
+
+		@Override
+		public float getDosage(Object quantizedDosages, int sampleIndex)
+		{
+			short quantizedDosage = ((short[]) quantizedDosages)[sampleIndex];
+			return quantizedDosage == -1 ? -1 : quantizedDosage / SCALE;
+		}
+	},
+	/**
+	 * Dosages are stored as byte[] in steps of 1/100, values with two decimals
+	 * are stored exact
+	 */
+	BITS_8
+	{
+		private static final float SCALE = 100;
+
+		@Override
+		public Object quantize(float[] dosages)
+		{
+			byte[] quantizedDosages = new byte[dosages.length];
+			for (int i = 0; i < dosages.length; ++i)
+			{
+				quantizedDosages[i] = dosages[i] < 0 ? -1 : (byte) Math.round(Math.min(dosages[i], 2) * SCALE);
+			}
+			return quantizedDosages;
+		}
+
+		@Override
+		public float getDosage(Object quantizedDosages, int sampleIndex)
+		{
+			byte quantizedDosage = ((byte[]) quantizedDosages)[sampleIndex];
+			return quantizedDosage == -1 ? -1 : (quantizedDosage & 0xff) / SCALE;
+		}
+	};
+
+	/**
+	 * @param dosages
+	 *            dosage per sample, -1 for missing
+	 * @return the quantized dosages, for NONE the dosages themselves
+	 */
+	public abstract Object quantize(float[] dosages);
+
+	/**
+	 * @param quantizedDosages
+	 *            result of quantize
+	 * @return the dosage of a sample, -1 for missing
+	 */
+	public abstract float getDosage(Object quantizedDosages, int sampleIndex);
+
+	/**
+	 * @param quantizedDosages
+	 *            result of quantize
+	 * @return the dosages in a new array
+	 */
+	public float[] getDosages(Object quantizedDosages)
+	{
+		int sampleCount = Array.getLength(quantizedDosages);
+		float[] dosages = new float[sampleCount];
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			dosages[i] = getDosage(quantizedDosages, i);
+		}
+		return dosages;
+	}
+}
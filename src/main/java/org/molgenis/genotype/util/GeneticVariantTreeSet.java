@@ -211,6 +211,12 @@ public class GeneticVariantTreeSet<E extends GeneticVariant> extends TreeSet<E>
 			return null;
 		}
 
+		@Override
+		public void loadSampleCalledDosages(byte[] calledDosages)
+		{
+
+		}
+
 		@Override
 		public SampleVariantsProvider getSampleVariantsProvider()
 		{
@@ -6,6 +6,13 @@ import org.molgenis.genotype.variant.GeneticVariant;
 
 public class LdCalculator
 {
+	static final int R2 = 0;
+	static final int D_PRIME = 1;
+	static final int H11 = 2;
+	static final int H12 = 3;
+	static final int H21 = 4;
+	static final int H22 = 5;
+	static final int LD_VALUES = 6;
 
 	/**
 	 * LD calculator. Based on implementation of Harm-Jan Westra and Lude
@@ -64,6 +71,48 @@ public class LdCalculator
 			}
 		}
 
+		double[] ld = new double[LD_VALUES];
+		calculateLd(genotypes, calledGenoypes, ld);
+
+		return createLd(variant1, variant2, ld);
+
+	}
+
+	/**
+	 * @param ld
+	 *            values calculated by calculateLd
+	 */
+	static Ld createLd(GeneticVariant variant1, GeneticVariant variant2, double[] ld)
+	{
+		String variant1Alt = variant1.getVariantAlleles().get(1).getAlleleAsString();
+		String variant1Ref = variant1.getVariantAlleles().get(0).getAlleleAsString();
+		String variant2Alt = variant2.getVariantAlleles().get(1).getAlleleAsString();
+		String variant2Ref = variant2.getVariantAlleles().get(0).getAlleleAsString();
+
+		LinkedHashMap<String, Double> haplotypesFreq = new LinkedHashMap<String, Double>(4);
+		haplotypesFreq.put(variant1Alt + variant2Alt, ld[H11]);
+		haplotypesFreq.put(variant1Alt + variant2Ref, ld[H12]);
+		haplotypesFreq.put(variant1Ref + variant2Alt, ld[H21]);
+		haplotypesFreq.put(variant1Ref + variant2Ref, ld[H22]);
+
+		return new Ld(variant1, variant2, ld[R2], ld[D_PRIME], haplotypesFreq);
+	}
+
+	/**
+	 * Estimates the haplotype frequencies using the EM algorithm and
+	 * calculates the LD
+	 * 
+	 * @param genotypes
+	 *            counts of the combinations of the called dosages of two
+	 *            variants
+	 * @param calledGenoypes
+	 *            number of samples called for both variants
+	 * @param ld
+	 *            array of at least LD_VALUES length that is filled with the R2,
+	 *            D' and haplotype frequencies
+	 */
+	static void calculateLd(int[][] genotypes, int calledGenoypes, double[] ld)
+	{
 		// matrix with freq for all combined genotypes
 		double[][] genotypesFreq = new double[3][3];
 		for (int x = 0; x < 3; x++)
@@ -157,18 +206,11 @@ public class LdCalculator
 		// sometimes dPrime slightly larger then 1. Fixing this:
 		dPrime = Math.min(1, dPrime);
 
-		String variant1Alt = variant1.getVariantAlleles().get(1).getAlleleAsString();
-		String variant1Ref = variant1.getVariantAlleles().get(0).getAlleleAsString();
-		String variant2Alt = variant2.getVariantAlleles().get(1).getAlleleAsString();
-		String variant2Ref = variant2.getVariantAlleles().get(0).getAlleleAsString();
-
-		LinkedHashMap<String, Double> haplotypesFreq = new LinkedHashMap<String, Double>(4);
-		haplotypesFreq.put(variant1Alt + variant2Alt, h11);
-		haplotypesFreq.put(variant1Alt + variant2Ref, h12);
-		haplotypesFreq.put(variant1Ref + variant2Alt, h21);
-		haplotypesFreq.put(variant1Ref + variant2Ref, h22);
-
-		return new Ld(variant1, variant2, rSquared, dPrime, haplotypesFreq);
-
+		ld[R2] = rSquared;
+		ld[D_PRIME] = dPrime;
+		ld[H11] = h11;
+		ld[H12] = h12;
+		ld[H21] = h21;
+		ld[H22] = h22;
 	}
 }
@@ -0,0 +1,313 @@
+package org.molgenis.genotype.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Calculates the LD between many pairs of bi-allelic variants, for instance
+ * all pairs in a region or all pairs within a sliding window.
+ * 
+ * The called dosages of every variant are loaded once and packed in bitsets,
+ * one bit per sample for each of the dosages 0, 1 and 2. The genotype counts
+ * of a pair are then calculated using Long.bitCount on 64 samples at a time,
+ * after which the same EM algorithm as {@link LdCalculator} is used.
+ * 
+ * Matrices are calculated in tiles of variants that are divided over multiple
+ * threads. The variants are only read in the constructor, so the genotype data
+ * does not need to be thread safe.
+ */
+public class LdMatrixCalculator
+{
+	private static final int TILE_SIZE = 64;
+
+	private final List<GeneticVariant> variants;
+	private final int sampleCount;
+	private final int words;
+	/**
+	 * Per variant the dosage 0, 1 and 2 bits of each group of 64 samples next
+	 * to each other
+	 */
+	private final long[][] dosageBits;
+
+	/**
+	 * @param variants
+	 *            bi-allelic variants with the same samples
+	 * @throws LdCalculatorException
+	 *             if the variants have a different number of samples
+	 */
+	public LdMatrixCalculator(List<GeneticVariant> variants) throws LdCalculatorException
+	{
+		this.variants = Collections.unmodifiableList(new ArrayList<GeneticVariant>(variants));
+		this.dosageBits = new long[variants.size()][];
+
+		int sampleCount = -1;
+		int index = 0;
+		for (GeneticVariant variant : this.variants)
+		{
+			if (variant.getAlleleCount() != 2)
+			{
+				throw new UnsupportedOperationException("Ld calculator currently only supports biallelic variants");
+			}
+
+			byte[] calledDosages = variant.getSampleCalledDosages();
+			if (sampleCount == -1)
+			{
+				sampleCount = calledDosages.length;
+			}
+			else if (calledDosages.length != sampleCount)
+			{
+				throw new LdCalculatorException("Error calculating LD: " + variant.getPrimaryVariantId()
+						+ " contains " + calledDosages.length + " samples, expected " + sampleCount + " samples");
+			}
+			dosageBits[index++] = packDosages(calledDosages);
+		}
+
+		this.sampleCount = Math.max(sampleCount, 0);
+		this.words = (this.sampleCount + 63) >>> 6;
+	}
+
+	private static long[] packDosages(byte[] calledDosages)
+	{
+		int sampleCount = calledDosages.length;
+		long[] bits = new long[((sampleCount + 63) >>> 6) * 3];
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			byte dosage = calledDosages[i];
+			if (dosage >= 0)
+			{
+				bits[(i >>> 6) * 3 + dosage] |= 1L << i;
+			}
+		}
+		return bits;
+	}
+
+	public List<GeneticVariant> getVariants()
+	{
+		return variants;
+	}
+
+	public int getSampleCount()
+	{
+		return sampleCount;
+	}
+
+	/**
+	 * @return LD between the variants at these indices
+	 */
+	public Ld calculateLd(int variantIndex1, int variantIndex2)
+	{
+		double[] ld = new double[LdCalculator.LD_VALUES];
+		calculateLd(variantIndex1, variantIndex2, new int[3][3], ld);
+
+		return LdCalculator.createLd(variants.get(variantIndex1), variants.get(variantIndex2), ld);
+	}
+
+	/**
+	 * @return R2 between the variants at these indices
+	 */
+	public double calculateR2(int variantIndex1, int variantIndex2)
+	{
+		double[] ld = new double[LdCalculator.LD_VALUES];
+		calculateLd(variantIndex1, variantIndex2, new int[3][3], ld);
+		return ld[LdCalculator.R2];
+	}
+
+	/**
+	 * Calculates the R2 between all pairs of variants
+	 * 
+	 * @param executor
+	 *            executor to run the tiles
+	 * @param nrThreads
+	 *            maximum number of tiles calculated at the same time
+	 * @return symmetric matrix of R2 values
+	 */
+	public double[][] calculateR2Matrix(ExecutorService executor, int nrThreads)
+	{
+		final int variantCount = variants.size();
+		final double[][] r2 = new double[variantCount][variantCount];
+
+		List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+		for (int rowStart = 0; rowStart < variantCount; rowStart += TILE_SIZE)
+		{
+			for (int columnStart = rowStart; columnStart < variantCount; columnStart += TILE_SIZE)
+			{
+				final int tileRowStart = rowStart;
+				final int tileColumnStart = columnStart;
+				tiles.add(new Callable<Void>()
+				{
+					@Override
+					public Void call()
+					{
+						int[][] genotypes = new int[3][3];
+						double[] ld = new double[LdCalculator.LD_VALUES];
+						int rowEnd = Math.min(tileRowStart + TILE_SIZE, variantCount);
+						int columnEnd = Math.min(tileColumnStart + TILE_SIZE, variantCount);
+						for (int i = tileRowStart; i < rowEnd; ++i)
+						{
+							// only the upper triangle, including the diagonal
+							for (int j = Math.max(i, tileColumnStart); j < columnEnd; ++j)
+							{
+								calculateLd(i, j, genotypes, ld);
+								r2[i][j] = ld[LdCalculator.R2];
+								r2[j][i] = ld[LdCalculator.R2];
+							}
+						}
+						return null;
+					}
+				});
+			}
+		}
+
+		runTiles(tiles, executor, nrThreads);
+		return r2;
+	}
+
+	/**
+	 * Calculates the R2 of every variant with the next variants in a sliding
+	 * window
+	 * 
+	 * @param windowSize
+	 *            number of following variants to calculate the R2 with
+	 * @param executor
+	 *            executor to run the tiles
+	 * @param nrThreads
+	 *            maximum number of tiles calculated at the same time
+	 * @return per variant the R2 values with the next variants, shorter at the
+	 *         end of the variants
+	 */
+	public double[][] calculateR2Window(final int windowSize, ExecutorService executor, int nrThreads)
+	{
+		if (windowSize < 0)
+		{
+			throw new IllegalArgumentException("Window size must be positive");
+		}
+
+		final int variantCount = variants.size();
+		final double[][] r2 = new double[variantCount][];
+
+		List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+		for (int rowStart = 0; rowStart < variantCount; rowStart += TILE_SIZE)
+		{
+			final int tileRowStart = rowStart;
+			tiles.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					int[][] genotypes = new int[3][3];
+					double[] ld = new double[LdCalculator.LD_VALUES];
+					int rowEnd = Math.min(tileRowStart + TILE_SIZE, variantCount);
+					for (int i = tileRowStart; i < rowEnd; ++i)
+					{
+						double[] variantR2 = new double[Math.min(windowSize, variantCount - i - 1)];
+						for (int j = 0; j < variantR2.length; ++j)
+						{
+							calculateLd(i, i + j + 1, genotypes, ld);
+							variantR2[j] = ld[LdCalculator.R2];
+						}
+						r2[i] = variantR2;
+					}
+					return null;
+				}
+			});
+		}
+
+		runTiles(tiles, executor, nrThreads);
+		return r2;
+	}
+
+	private void calculateLd(int variantIndex1, int variantIndex2, int[][] genotypes, double[] ld)
+	{
+		long[] bits1 = dosageBits[variantIndex1];
+		long[] bits2 = dosageBits[variantIndex2];
+
+		for (int x = 0; x < 3; ++x)
+		{
+			for (int y = 0; y < 3; ++y)
+			{
+				genotypes[x][y] = 0;
+			}
+		}
+
+		for (int w = 0; w < words * 3; w += 3)
+		{
+			for (int x = 0; x < 3; ++x)
+			{
+				long word1 = bits1[w + x];
+				if (word1 == 0)
+				{
+					continue;
+				}
+				int[] row = genotypes[x];
+				row[0] += Long.bitCount(word1 & bits2[w]);
+				row[1] += Long.bitCount(word1 & bits2[w + 1]);
+				row[2] += Long.bitCount(word1 & bits2[w + 2]);
+			}
+		}
+
+		int calledGenotypes = 0;
+		for (int x = 0; x < 3; ++x)
+		{
+			calledGenotypes += genotypes[x][0] + genotypes[x][1] + genotypes[x][2];
+		}
+
+		LdCalculator.calculateLd(genotypes, calledGenotypes, ld);
+	}
+
+	/**
+	 * Runs the tiles using at most nrThreads threads of the executor
+	 */
+	private static void runTiles(final List<Callable<Void>> tiles, ExecutorService executor, int nrThreads)
+	{
+		if (nrThreads <= 0)
+		{
+			throw new IllegalArgumentException("Number of threads must be positive");
+		}
+
+		// each worker takes the next tile until all tiles are done
+		final AtomicInteger nextTile = new AtomicInteger();
+		List<Future<Void>> workers = new ArrayList<Future<Void>>(nrThreads);
+		for (int i = 0; i < Math.min(nrThreads, tiles.size()); ++i)
+		{
+			workers.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					int tile;
+					while ((tile = nextTile.getAndIncrement()) < tiles.size())
+					{
+						tiles.get(tile).call();
+					}
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> worker : workers)
+		{
+			try
+			{
+				worker.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new GenotypeDataException("Interrupted while calculating LD", e);
+			}
+			catch (ExecutionException e)
+			{
+				throw new GenotypeDataException("Error calculating LD: " + e.getCause().getMessage(), e.getCause());
+			}
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package org.molgenis.genotype.util;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
@@ -13,11 +11,10 @@ public class MafCalculator
 	public static MafResult calculateMaf(Alleles alleles, Allele reference, List<Alleles> samplesAlleles)
 	{
 
-		HashMap<Allele, AtomicInteger> alleleCounts = new HashMap<Allele, AtomicInteger>(alleles.getAlleles().size());
-		for (Allele allele : alleles.getAlleles())
-		{
-			alleleCounts.put(allele, new AtomicInteger());
-		}
+		// counts in the order of the variant alleles, alleles are pooled so
+		// they can be compared on identity
+		int alleleCount = alleles.getAlleleCount();
+		int[] alleleCounts = new int[alleleCount];
 
 		for (Alleles sampleAlleles : samplesAlleles)
 		{
@@ -27,11 +24,7 @@ public class MafCalculator
 				{
 					if (sampleAllele != null && sampleAllele != Allele.ZERO)
 					{
-						if (!alleleCounts.containsKey(sampleAllele))
-						{
-							throw new NullPointerException("No counter for allele: " + sampleAllele);
-						}
-						alleleCounts.get(sampleAllele).incrementAndGet();
+						++alleleCounts[getAlleleIndex(alleles, alleleCount, sampleAllele)];
 					}
 				}
 			}
@@ -41,24 +34,95 @@ public class MafCalculator
 		// always be the reference allele in our genetic variants.
 		Allele provisionalMinorAllele = reference != null ? reference : alleles.getAlleles().get(0);
 
-		int provisionalMinorAlleleCount = alleleCounts.get(provisionalMinorAllele).get();
+		int provisionalMinorAlleleCount = alleleCounts[getAlleleIndex(alleles, alleleCount, provisionalMinorAllele)];
 		int totalAlleleCount = 0;
 
-		for (Allele allele : alleles.getAlleles())
+		for (int i = 0; i < alleleCount; ++i)
 		{
 
-			int alleleCount = alleleCounts.get(allele).get();
+			int count = alleleCounts[i];
 
-			totalAlleleCount += alleleCount;
+			totalAlleleCount += count;
 
-			if (alleleCount < provisionalMinorAlleleCount)
+			if (count < provisionalMinorAlleleCount)
 			{
-				provisionalMinorAlleleCount = alleleCount;
-				provisionalMinorAllele = allele;
+				provisionalMinorAlleleCount = count;
+				provisionalMinorAllele = alleles.get(i);
 			}
 		}
 
 		return new MafResult(provisionalMinorAllele, provisionalMinorAlleleCount / (float) totalAlleleCount);
 
 	}
+
+	/**
+	 * Calculates the MAF of a bi-allelic variant from the called dosages, no
+	 * sample alleles need to be created. Assumes diploid samples.
+	 * 
+	 * @param alleles
+	 *            the two alleles of the variant
+	 * @param reference
+	 *            the reference allele or null, the dosages count this allele
+	 *            or the first allele if there is no reference
+	 * @param calledDosages
+	 *            called dosage per sample, -1 for missing
+	 * @param sampleCount
+	 *            number of dosages to use
+	 */
+	public static MafResult calculateMafFromCalledDosage(Alleles alleles, Allele reference, byte[] calledDosages,
+			int sampleCount)
+	{
+		if (alleles.getAlleleCount() != 2)
+		{
+			throw new IllegalArgumentException("MAF from called dosages is only supported for bi-allelic variants");
+		}
+
+		int dosageSum = 0;
+		int calledCount = 0;
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			byte dosage = calledDosages[i];
+			if (dosage >= 0)
+			{
+				dosageSum += dosage;
+				++calledCount;
+			}
+		}
+
+		return createBiallelicMafResult(alleles, reference, dosageSum, calledCount * 2);
+	}
+
+	/**
+	 * @param dosageAlleleCount
+	 *            count of the reference allele or the first allele if there is
+	 *            no reference
+	 * @param totalAlleleCount
+	 *            count of all called alleles
+	 */
+	static MafResult createBiallelicMafResult(Alleles alleles, Allele reference, int dosageAlleleCount,
+			int totalAlleleCount)
+	{
+		Allele dosageAllele = reference != null ? reference : alleles.get(0);
+		Allele otherAllele = alleles.get(0) == dosageAllele ? alleles.get(1) : alleles.get(0);
+		int otherAlleleCount = totalAlleleCount - dosageAlleleCount;
+
+		// same tie breaking as for the sample alleles, the reference wins
+		if (otherAlleleCount < dosageAlleleCount)
+		{
+			return new MafResult(otherAllele, otherAlleleCount / (float) totalAlleleCount);
+		}
+		return new MafResult(dosageAllele, dosageAlleleCount / (float) totalAlleleCount);
+	}
+
+	private static int getAlleleIndex(Alleles alleles, int alleleCount, Allele allele)
+	{
+		for (int i = 0; i < alleleCount; ++i)
+		{
+			if (alleles.get(i) == allele)
+			{
+				return i;
+			}
+		}
+		throw new NullPointerException("No counter for allele: " + allele);
+	}
 }
@@ -0,0 +1,56 @@
+package org.molgenis.genotype.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Release of memory mapped files
+ */
+public class MappedBuffers
+{
+	private MappedBuffers()
+	{
+	}
+
+	/**
+	 * Release a mapping without waiting for garbage collection, some platforms
+	 * can not delete mapped files. If this fails the mapping is released when
+	 * the buffer is garbage collected. The buffer must not be used afterwards.
+	 */
+	public static void unmap(MappedByteBuffer buffer)
+	{
+		try
+		{
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		}
+		catch (NoSuchMethodException e)
+		{
+			// Java 8 and earlier
+			try
+			{
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null)
+				{
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+			catch (Exception e1)
+			{
+				// released by garbage collection
+			}
+		}
+		catch (Exception e)
+		{
+			// released by garbage collection
+		}
+	}
+}
@@ -0,0 +1,378 @@
+package org.molgenis.genotype.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.molgenis.genotype.GenomicPosition;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Persistent index of variant IDs to the position of the variants, stored as a
+ * sidecar file next to the genotype data. Every ID of a variant, including the
+ * alternative IDs, is stored as a 64 bit hash together with the sequence and
+ * position of the variant. The entries are sorted on hash and memory mapped
+ * when the index is opened, a lookup is a binary search.
+ *
+ * Different IDs can have the same hash, the variants at the returned positions
+ * must be checked for the requested ID. The positions of an ID are returned in
+ * the order of the variants in the data.
+ *
+ * VCF and haps data open the sidecar index <code>&lt;data file&gt;.vid</code>
+ * if it is not older than the data file.
+ *
+ * Immutable and thus thread safe.
+ */
+public class VariantIdIndex
+{
+	public static final String DEFAULT_EXTENSION = ".vid";
+
+	private static final Logger LOG = Logger.getLogger(VariantIdIndex.class);
+	private static final int MAGIC = 0x56494458;
+	private static final int VERSION = 1;
+	/** Hash, sequence index and position */
+	private static final int ENTRY_SIZE = 16;
+	/** Entries per mapped chunk, the size of a mapping is limited to 2 GB */
+	private static final int CHUNK_SHIFT = 26;
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+	private static final int INSERTION_SORT_SIZE = 16;
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final String[] sequenceNames;
+	private final long entryCount;
+	private final ByteBuffer[] chunks;
+
+	private VariantIdIndex(String[] sequenceNames, long entryCount, ByteBuffer[] chunks)
+	{
+		this.sequenceNames = sequenceNames;
+		this.entryCount = entryCount;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Index all variants of the genotype data and open the written index
+	 *
+	 * @param genotypeData
+	 * @param indexFile
+	 * @return the opened index
+	 * @throws IOException
+	 */
+	public static VariantIdIndex create(GenotypeData genotypeData, File indexFile) throws IOException
+	{
+		write(genotypeData, indexFile);
+		return open(indexFile);
+	}
+
+	/**
+	 * Index all variants of the genotype data
+	 *
+	 * @param genotypeData
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public static void write(GenotypeData genotypeData, File indexFile) throws IOException
+	{
+		LOG.info("Going to create variant ID index [" + indexFile + "]");
+
+		Map<String, Integer> sequenceIndices = new LinkedHashMap<String, Integer>();
+		long[] hashes = new long[1024];
+		int[] sequences = new int[1024];
+		int[] positions = new int[1024];
+		int count = 0;
+
+		for (GeneticVariant variant : genotypeData)
+		{
+			List<String> variantIds = variant.getVariantId().getVariantIds();
+			if (variantIds.isEmpty())
+			{
+				continue;
+			}
+
+			Integer sequenceIndex = sequenceIndices.get(variant.getSequenceName());
+			if (sequenceIndex == null)
+			{
+				sequenceIndex = sequenceIndices.size();
+				sequenceIndices.put(variant.getSequenceName(), sequenceIndex);
+			}
+
+			for (String variantId : variantIds)
+			{
+				if (count == hashes.length)
+				{
+					hashes = Arrays.copyOf(hashes, count * 2);
+					sequences = Arrays.copyOf(sequences, count * 2);
+					positions = Arrays.copyOf(positions, count * 2);
+				}
+				hashes[count] = hash(variantId);
+				sequences[count] = sequenceIndex;
+				positions[count] = variant.getStartPos();
+				++count;
+			}
+		}
+
+		// the insertion order breaks ties so equal hashes stay in data order
+		int[] order = new int[count];
+		for (int i = 0; i < count; ++i)
+		{
+			order[i] = i;
+		}
+		sort(hashes, order, 0, count);
+
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(sequenceIndices.size());
+			for (String sequenceName : sequenceIndices.keySet())
+			{
+				out.writeUTF(sequenceName);
+			}
+			out.writeLong(count);
+			for (int i = 0; i < count; ++i)
+			{
+				out.writeLong(hashes[i]);
+				out.writeInt(sequences[order[i]]);
+				out.writeInt(positions[order[i]]);
+			}
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+
+		LOG.info("Indexed " + count + " variant IDs");
+	}
+
+	/**
+	 * Open and memory map an index
+	 *
+	 * @param indexFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static VariantIdIndex open(File indexFile) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try
+		{
+			if (file.readInt() != MAGIC)
+			{
+				throw new GenotypeDataException("Not a variant ID index: " + indexFile.getAbsolutePath());
+			}
+			int version = file.readInt();
+			if (version != VERSION)
+			{
+				throw new GenotypeDataException("Unsupported variant ID index version " + version + ": "
+						+ indexFile.getAbsolutePath());
+			}
+
+			String[] sequenceNames = new String[file.readInt()];
+			for (int i = 0; i < sequenceNames.length; ++i)
+			{
+				sequenceNames[i] = file.readUTF();
+			}
+			long entryCount = file.readLong();
+
+			long entriesStart = file.getFilePointer();
+			if (file.length() - entriesStart != entryCount * ENTRY_SIZE)
+			{
+				throw new GenotypeDataException("Variant ID index is truncated: " + indexFile.getAbsolutePath());
+			}
+
+			FileChannel channel = file.getChannel();
+			ByteBuffer[] chunks = new ByteBuffer[(int) ((entryCount + CHUNK_MASK) >>> CHUNK_SHIFT)];
+			for (int i = 0; i < chunks.length; ++i)
+			{
+				long chunkStart = (long) i << CHUNK_SHIFT;
+				long chunkEntries = Math.min(entryCount - chunkStart, 1L << CHUNK_SHIFT);
+				chunks[i] = channel.map(MapMode.READ_ONLY, entriesStart + chunkStart * ENTRY_SIZE, chunkEntries
+						* ENTRY_SIZE);
+			}
+
+			return new VariantIdIndex(sequenceNames, entryCount, chunks);
+		}
+		finally
+		{
+			// mappings stay valid after the file is closed
+			IOUtils.closeQuietly(file);
+		}
+	}
+
+	/**
+	 * @param dataFile
+	 * @return the sidecar index file of a data file
+	 */
+	public static File getDefaultIndexFile(File dataFile)
+	{
+		return new File(dataFile.getPath() + DEFAULT_EXTENSION);
+	}
+
+	/**
+	 * @param indexFile
+	 * @param dataFile
+	 * @return true if the index exists and is not older than the data file
+	 */
+	public static boolean isUpToDate(File indexFile, File dataFile)
+	{
+		return indexFile.isFile() && indexFile.lastModified() >= dataFile.lastModified();
+	}
+
+	/**
+	 * Get the positions of the variants that might have this ID
+	 *
+	 * @param variantId
+	 * @return the candidate positions in data order, empty if the ID is not
+	 *         present
+	 */
+	public List<GenomicPosition> getCandidatePositions(String variantId)
+	{
+		long hash = hash(variantId);
+
+		// first entry with a hash equal or larger than the requested hash
+		long low = 0;
+		long high = entryCount;
+		while (low < high)
+		{
+			long mid = (low + high) >>> 1;
+			if (getHash(mid) < hash)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		if (low == entryCount || getHash(low) != hash)
+		{
+			return Collections.emptyList();
+		}
+
+		List<GenomicPosition> positions = new ArrayList<GenomicPosition>(1);
+		for (long entry = low; entry < entryCount && getHash(entry) == hash; ++entry)
+		{
+			ByteBuffer chunk = chunks[(int) (entry >>> CHUNK_SHIFT)];
+			int offset = (int) (entry & CHUNK_MASK) * ENTRY_SIZE;
+			positions.add(new GenomicPosition(sequenceNames[chunk.getInt(offset + 8)], chunk.getInt(offset + 12)));
+		}
+		return positions;
+	}
+
+	/**
+	 * @return number of indexed IDs
+	 */
+	public long getEntryCount()
+	{
+		return entryCount;
+	}
+
+	private long getHash(long entry)
+	{
+		return chunks[(int) (entry >>> CHUNK_SHIFT)].getLong((int) (entry & CHUNK_MASK) * ENTRY_SIZE);
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the characters of the ID
+	 */
+	static long hash(String variantId)
+	{
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < variantId.length(); ++i)
+		{
+			hash ^= variantId.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Sort the range on hash and then on order, the order array is permuted
+	 * along with the hashes
+	 */
+	static void sort(long[] hashes, int[] order, int from, int to)
+	{
+		while (to - from > INSERTION_SORT_SIZE)
+		{
+			int mid = (from + to) >>> 1;
+			long pivotHash = hashes[mid];
+			int pivotOrder = order[mid];
+
+			int i = from;
+			int j = to - 1;
+			while (i <= j)
+			{
+				while (compare(hashes[i], order[i], pivotHash, pivotOrder) < 0)
+				{
+					++i;
+				}
+				while (compare(hashes[j], order[j], pivotHash, pivotOrder) > 0)
+				{
+					--j;
+				}
+				if (i <= j)
+				{
+					swap(hashes, order, i++, j--);
+				}
+			}
+
+			// recurse into the smaller part to limit the stack depth
+			if (j + 1 - from < to - i)
+			{
+				sort(hashes, order, from, j + 1);
+				from = i;
+			}
+			else
+			{
+				sort(hashes, order, i, to);
+				to = j + 1;
+			}
+		}
+
+		for (int i = from + 1; i < to; ++i)
+		{
+			for (int j = i; j > from && compare(hashes[j - 1], order[j - 1], hashes[j], order[j]) > 0; --j)
+			{
+				swap(hashes, order, j - 1, j);
+			}
+		}
+	}
+
+	private static int compare(long hash1, int order1, long hash2, int order2)
+	{
+		if (hash1 != hash2)
+		{
+			return hash1 < hash2 ? -1 : 1;
+		}
+		return order1 < order2 ? -1 : (order1 == order2 ? 0 : 1);
+	}
+
+	private static void swap(long[] hashes, int[] order, int i, int j)
+	{
+		long hash = hashes[i];
+		hashes[i] = hashes[j];
+		hashes[j] = hash;
+		int o = order[i];
+		order[i] = order[j];
+		order[j] = o;
+	}
+}
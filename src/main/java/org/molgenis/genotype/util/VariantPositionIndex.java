@@ -0,0 +1,158 @@
+package org.molgenis.genotype.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Position index of variants stored by index, for instance the line number in
+ * a BIM file. Per sequence the positions are stored in a sorted int array
+ * together with the matching variant indices, queries are done using a binary
+ * search.
+ *
+ * Immutable and thus thread safe.
+ */
+public class VariantPositionIndex
+{
+	private static final int[] EMPTY = new int[0];
+
+	private final Map<String, int[]> positionsBySequence;
+	private final Map<String, int[]> variantIndicesBySequence;
+
+	/**
+	 * @param sequenceNames
+	 *            the sequence of each variant
+	 * @param positions
+	 *            the position of each variant
+	 */
+	public VariantPositionIndex(List<String> sequenceNames, int[] positions)
+	{
+		if (sequenceNames.size() != positions.length)
+		{
+			throw new IllegalArgumentException("Expected a position for each of the " + sequenceNames.size()
+					+ " variants but got " + positions.length);
+		}
+
+		Map<String, Integer> sequenceCounts = new LinkedHashMap<String, Integer>();
+		for (String sequenceName : sequenceNames)
+		{
+			Integer count = sequenceCounts.get(sequenceName);
+			sequenceCounts.put(sequenceName, count == null ? 1 : count + 1);
+		}
+
+		// position in the upper 32 bits and the index in the lower 32 bits,
+		// sorting these sorts on position and then on index
+		Map<String, long[]> keysBySequence = new HashMap<String, long[]>(sequenceCounts.size() * 2);
+		Map<String, Integer> filled = new HashMap<String, Integer>(sequenceCounts.size() * 2);
+		for (Map.Entry<String, Integer> sequenceCount : sequenceCounts.entrySet())
+		{
+			keysBySequence.put(sequenceCount.getKey(), new long[sequenceCount.getValue()]);
+			filled.put(sequenceCount.getKey(), 0);
+		}
+
+		for (int i = 0; i < positions.length; ++i)
+		{
+			String sequenceName = sequenceNames.get(i);
+			int next = filled.get(sequenceName);
+			keysBySequence.get(sequenceName)[next] = ((long) positions[i] << 32) | (i & 0xFFFFFFFFL);
+			filled.put(sequenceName, next + 1);
+		}
+
+		positionsBySequence = new HashMap<String, int[]>(sequenceCounts.size() * 2);
+		variantIndicesBySequence = new HashMap<String, int[]>(sequenceCounts.size() * 2);
+		for (Map.Entry<String, long[]> sequenceKeys : keysBySequence.entrySet())
+		{
+			long[] keys = sequenceKeys.getValue();
+			Arrays.sort(keys);
+
+			int[] sequencePositions = new int[keys.length];
+			int[] sequenceIndices = new int[keys.length];
+			for (int i = 0; i < keys.length; ++i)
+			{
+				sequencePositions[i] = (int) (keys[i] >> 32);
+				sequenceIndices[i] = (int) keys[i];
+			}
+
+			positionsBySequence.put(sequenceKeys.getKey(), sequencePositions);
+			variantIndicesBySequence.put(sequenceKeys.getKey(), sequenceIndices);
+		}
+	}
+
+	/**
+	 * Get the indices of the variants at a position
+	 *
+	 * @param sequenceName
+	 * @param position
+	 * @return the indices, empty array if there are no variants
+	 */
+	public int[] getVariantIndices(String sequenceName, int position)
+	{
+		return getVariantIndicesInRange(sequenceName, position, position + 1);
+	}
+
+	/**
+	 * Get the indices of the variants within a range ordered on position
+	 *
+	 * @param sequenceName
+	 * @param rangeStart
+	 *            inclusive
+	 * @param rangeEnd
+	 *            exclusive
+	 * @return the indices, empty array if there are no variants
+	 */
+	public int[] getVariantIndicesInRange(String sequenceName, int rangeStart, int rangeEnd)
+	{
+		int[] sequencePositions = positionsBySequence.get(sequenceName);
+		if (sequencePositions == null || rangeStart >= rangeEnd)
+		{
+			return EMPTY;
+		}
+
+		int from = lowerBound(sequencePositions, rangeStart);
+		int to = lowerBound(sequencePositions, rangeEnd);
+
+		if (from == to)
+		{
+			return EMPTY;
+		}
+
+		return Arrays.copyOfRange(variantIndicesBySequence.get(sequenceName), from, to);
+	}
+
+	/**
+	 * Get the indices of all variants on a sequence ordered on position
+	 *
+	 * @param sequenceName
+	 * @return the indices, empty array for unknown sequences
+	 */
+	public int[] getSequenceVariantIndices(String sequenceName)
+	{
+		int[] sequenceIndices = variantIndicesBySequence.get(sequenceName);
+		return sequenceIndices == null ? EMPTY : sequenceIndices.clone();
+	}
+
+	/**
+	 * @return index of first position that is equal or larger than the
+	 *         requested position
+	 */
+	private static int lowerBound(int[] positions, int position)
+	{
+		int low = 0;
+		int high = positions.length;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (positions[mid] < position)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,145 @@
+package org.molgenis.genotype.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.multipart.MultiPartGenotypeData;
+import org.molgenis.genotype.multipart.VariantResultHandler;
+import org.molgenis.genotype.multipart.VariantVisitor;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Calculates the MAF, genotype counts and missingness of variants from their
+ * called dosages using primitive counters. The called dosages are loaded in a
+ * reused buffer per thread so no objects are created per sample.
+ * 
+ * The MAF of bi-allelic variants assumes diploid samples, for other variants
+ * the MAF is calculated from the sample alleles.
+ */
+public class VariantQcCalculator
+{
+	private final ThreadLocal<byte[]> calledDosageBuffer = new ThreadLocal<byte[]>();
+	private final int sampleCount;
+
+	/**
+	 * @param sampleCount
+	 *            number of samples of the variants
+	 */
+	public VariantQcCalculator(int sampleCount)
+	{
+		this.sampleCount = sampleCount;
+	}
+
+	/**
+	 * Thread safe if the sample data of the variant can be loaded from the
+	 * calling thread
+	 */
+	public VariantQcResult calculate(GeneticVariant variant)
+	{
+		byte[] calledDosages = calledDosageBuffer.get();
+		if (calledDosages == null)
+		{
+			calledDosages = new byte[sampleCount];
+			calledDosageBuffer.set(calledDosages);
+		}
+		variant.loadSampleCalledDosages(calledDosages);
+
+		// index 0 is missing and 1 to 3 are the called dosages
+		int[] dosageCounts = new int[4];
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			// polyploid dosages above 2 are counted as 2
+			++dosageCounts[Math.min(calledDosages[i], 2) + 1];
+		}
+
+		MafResult mafResult;
+		if (variant.getAlleleCount() == 2)
+		{
+			mafResult = MafCalculator.createBiallelicMafResult(variant.getVariantAlleles(), variant.getRefAllele(),
+					dosageCounts[2] + 2 * dosageCounts[3], 2 * (dosageCounts[1] + dosageCounts[2] + dosageCounts[3]));
+		}
+		else
+		{
+			mafResult = MafCalculator.calculateMaf(variant.getVariantAlleles(), variant.getRefAllele(),
+					variant.getSampleVariants());
+		}
+
+		return new VariantQcResult(variant, mafResult.getMinorAllele(), mafResult.getFreq(), dosageCounts[3],
+				dosageCounts[2], dosageCounts[1], dosageCounts[0]);
+	}
+
+	/**
+	 * Calculate the QC values of all variants in a single pass
+	 * 
+	 * @param genotypeData
+	 * @return results in variant order
+	 */
+	public static List<VariantQcResult> calculate(GenotypeData genotypeData)
+	{
+		VariantQcCalculator calculator = new VariantQcCalculator(genotypeData.getSamples().size());
+		List<VariantQcResult> results = new ArrayList<VariantQcResult>();
+		for (GeneticVariant variant : genotypeData)
+		{
+			results.add(calculator.calculate(variant));
+		}
+		return results;
+	}
+
+	/**
+	 * Calculate the QC values of all variants in a single pass. The parts of
+	 * a {@link MultiPartGenotypeData} are processed in parallel, other
+	 * genotype data is read by the calling thread since the readers are not
+	 * thread safe.
+	 * 
+	 * @param genotypeData
+	 * @param executor
+	 * @param nrThreads
+	 * @param resultHandler
+	 *            receives the results in variant order on the calling thread
+	 */
+	public static void calculate(GenotypeData genotypeData, ExecutorService executor, int nrThreads,
+			VariantResultHandler<? super VariantQcResult> resultHandler)
+	{
+		final VariantQcCalculator calculator = new VariantQcCalculator(genotypeData.getSamples().size());
+		if (genotypeData instanceof MultiPartGenotypeData)
+		{
+			((MultiPartGenotypeData) genotypeData).visitVariants(new VariantVisitor<VariantQcResult>()
+			{
+				@Override
+				public VariantQcResult visit(GeneticVariant variant)
+				{
+					return calculator.calculate(variant);
+				}
+			}, resultHandler, executor, nrThreads);
+		}
+		else
+		{
+			for (GeneticVariant variant : genotypeData)
+			{
+				resultHandler.handleResult(variant, calculator.calculate(variant));
+			}
+		}
+	}
+
+	/**
+	 * Calculate the QC values of all variants in a single pass, see
+	 * {@link #calculate(GenotypeData, ExecutorService, int, VariantResultHandler)}
+	 * 
+	 * @return results in variant order
+	 */
+	public static List<VariantQcResult> calculate(GenotypeData genotypeData, ExecutorService executor, int nrThreads)
+	{
+		final List<VariantQcResult> results = new ArrayList<VariantQcResult>();
+		calculate(genotypeData, executor, nrThreads, new VariantResultHandler<VariantQcResult>()
+		{
+			@Override
+			public void handleResult(GeneticVariant variant, VariantQcResult result)
+			{
+				results.add(result);
+			}
+		});
+		return results;
+	}
+}
@@ -0,0 +1,81 @@
+package org.molgenis.genotype.util;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Quality control values of a variant. The genotype counts are based on the
+ * called dosages, so hom ref is a dosage of 2 of the reference allele or of the
+ * first allele if there is no reference.
+ */
+public class VariantQcResult
+{
+	private final GeneticVariant variant;
+	private final Allele minorAllele;
+	private final double minorAlleleFrequency;
+	private final int homozygousRefCount;
+	private final int heterozygousCount;
+	private final int homozygousAltCount;
+	private final int missingCount;
+
+	public VariantQcResult(GeneticVariant variant, Allele minorAllele, double minorAlleleFrequency,
+			int homozygousRefCount, int heterozygousCount, int homozygousAltCount, int missingCount)
+	{
+		this.variant = variant;
+		this.minorAllele = minorAllele;
+		this.minorAlleleFrequency = minorAlleleFrequency;
+		this.homozygousRefCount = homozygousRefCount;
+		this.heterozygousCount = heterozygousCount;
+		this.homozygousAltCount = homozygousAltCount;
+		this.missingCount = missingCount;
+	}
+
+	public GeneticVariant getVariant()
+	{
+		return variant;
+	}
+
+	public Allele getMinorAllele()
+	{
+		return minorAllele;
+	}
+
+	public double getMinorAlleleFrequency()
+	{
+		return minorAlleleFrequency;
+	}
+
+	public int getHomozygousRefCount()
+	{
+		return homozygousRefCount;
+	}
+
+	public int getHeterozygousCount()
+	{
+		return heterozygousCount;
+	}
+
+	public int getHomozygousAltCount()
+	{
+		return homozygousAltCount;
+	}
+
+	public int getMissingCount()
+	{
+		return missingCount;
+	}
+
+	public int getCalledCount()
+	{
+		return homozygousRefCount + heterozygousCount + homozygousAltCount;
+	}
+
+	/**
+	 * @return fraction of the samples with a called genotype
+	 */
+	public double getCallRate()
+	{
+		int sampleCount = getCalledCount() + missingCount;
+		return sampleCount == 0 ? 0 : getCalledCount() / (double) sampleCount;
+	}
+}
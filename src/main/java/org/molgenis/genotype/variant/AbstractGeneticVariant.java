@@ -96,7 +96,7 @@ abstract public class AbstractGeneticVariant implements GeneticVariant
 	public int hashCode()
 	{
 		final int prime = 31;
-		int result = super.hashCode();
+		int result = 1;
 		result = prime * result + ((getVariantAlleles() == null) ? 0 : getVariantAlleles().hashCode());
 		result = prime * result + ((getSampleVariantsProvider() == null) ? 0 : getSampleVariantsProvider().hashCode());
 		result = prime * result + ((getSequenceName() == null) ? 0 : getSequenceName().hashCode());
@@ -152,6 +152,15 @@ public interface GeneticVariant extends Comparable<GeneticVariant>
 	 */
 	public byte[] getSampleCalledDosages();
 
+	/**
+	 * Same as getSampleCalledDosages but loads the dosage values into the
+	 * supplied array so it can be reused for multiple variants.
+	 * 
+	 * @param calledDosages
+	 *            array of at least the number of samples
+	 */
+	public void loadSampleCalledDosages(byte[] calledDosages);
+
 	/**
 	 * Get the sample variant provider used by this variant
 	 * 
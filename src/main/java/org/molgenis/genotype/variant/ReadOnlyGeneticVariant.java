@@ -292,6 +292,12 @@ public class ReadOnlyGeneticVariant extends AbstractGeneticVariant
 
 	}
 
+	@Override
+	public void loadSampleCalledDosages(byte[] calledDosages)
+	{
+		sampleVariantsProvider.loadSampleCalledDosage(this, calledDosages);
+	}
+
 	/**
 	 * @param annotationValues
 	 *            the annotationValues to set
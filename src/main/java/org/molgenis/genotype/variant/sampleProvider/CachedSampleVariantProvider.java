@@ -1,54 +1,135 @@
 package org.molgenis.genotype.variant.sampleProvider;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.molgenis.genotype.Alleles;
-import org.molgenis.genotype.util.Cache;
+import org.molgenis.genotype.util.ConcurrentWeightedCache;
+import org.molgenis.genotype.util.DosageQuantization;
 import org.molgenis.genotype.variant.GeneticVariant;
 
 /**
  * Cached sample variant provider to prevent reloading a SNPs that is accessed
  * multiple times in a sort periode.
- * 
+ *
+ * The sample alleles, phasing, called dosage and dosage of a variant share a
+ * single thread safe cache that is limited on the number of entries and on
+ * their estimated size in bytes.
+ *
+ * Sample subsets are taken from the cached data of all samples if present.
+ * Otherwise they are pushed down to the wrapped provider when it supports
+ * subsets, these subsets are not cached.
+ *
+ * Dosages can be cached quantized to 16 or 8 bits per sample, see
+ * DosageQuantization.
+ *
  * @author Patrick Deelen
- * 
+ *
  */
-public class CachedSampleVariantProvider implements SampleVariantsProvider
+public class CachedSampleVariantProvider implements SampleSubsetVariantsProvider
 {
 
+	private enum SampleDataType
+	{
+		ALLELES, PHASING, CALLED_DOSAGE, DOSAGE
+	}
+
+	/**
+	 * Estimated size in bytes of the cached sample data. Lists only count
+	 * their references since Alleles and Booleans are shared instances.
+	 */
+	private static final ConcurrentWeightedCache.Weigher<Object> SAMPLE_DATA_WEIGHER = new ConcurrentWeightedCache.Weigher<Object>()
+	{
+		@Override
+		public long getWeight(Object value)
+		{
+			if (value instanceof byte[])
+			{
+				return 16 + ((byte[]) value).length;
+			}
+			else if (value instanceof short[])
+			{
+				return 16 + 2L * ((short[]) value).length;
+			}
+			else if (value instanceof float[])
+			{
+				return 16 + 4L * ((float[]) value).length;
+			}
+			else if (value instanceof List)
+			{
+				return 16 + 8L * ((List<?>) value).size();
+			}
+			return 16;
+		}
+	};
+
 	private final SampleVariantsProvider sampleVariantProvider;
-	private final Cache<GeneticVariant, List<Alleles>> cache;
-	private final Cache<GeneticVariant, List<Boolean>> phasingCache;
-	private final Cache<GeneticVariant, byte[]> calledDosageCache;
-	private final Cache<GeneticVariant, float[]> dosageCache;
+	private final ConcurrentWeightedCache<CacheKey, Object> cache;
 	private final int cacheSize;
+	private final DosageQuantization dosageQuantization;
 	private final int sampleVariantProviderUniqueId;
 
+	/**
+	 * @param sampleVariantProvider
+	 * @param cacheSize
+	 *            number of variants for which each type of sample data is
+	 *            cached
+	 */
 	public CachedSampleVariantProvider(SampleVariantsProvider sampleVariantProvider, int cacheSize)
+	{
+		this(sampleVariantProvider, cacheSize, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param sampleVariantProvider
+	 * @param cacheSize
+	 *            number of variants for which each type of sample data is
+	 *            cached
+	 * @param maxCacheBytes
+	 *            maximum estimated size in bytes of all cached sample data
+	 */
+	public CachedSampleVariantProvider(SampleVariantsProvider sampleVariantProvider, int cacheSize,
+			long maxCacheBytes)
+	{
+		this(sampleVariantProvider, cacheSize, maxCacheBytes, DosageQuantization.NONE);
+	}
+
+	/**
+	 * @param sampleVariantProvider
+	 * @param cacheSize
+	 *            number of variants for which each type of sample data is
+	 *            cached
+	 * @param maxCacheBytes
+	 *            maximum estimated size in bytes of all cached sample data
+	 * @param dosageQuantization
+	 *            storage of the cached dosages
+	 */
+	public CachedSampleVariantProvider(SampleVariantsProvider sampleVariantProvider, int cacheSize,
+			long maxCacheBytes, DosageQuantization dosageQuantization)
 	{
 		this.sampleVariantProvider = sampleVariantProvider;
-		this.cache = new Cache<GeneticVariant, List<Alleles>>(cacheSize);
-		this.phasingCache = new Cache<GeneticVariant, List<Boolean>>(cacheSize);
-		this.calledDosageCache = new Cache<GeneticVariant, byte[]>(cacheSize);
-		this.dosageCache = new Cache<GeneticVariant, float[]>(cacheSize);
+		this.cache = new ConcurrentWeightedCache<CacheKey, Object>(cacheSize * SampleDataType.values().length,
+				maxCacheBytes, SAMPLE_DATA_WEIGHER);
 		this.cacheSize = cacheSize;
+		this.dosageQuantization = dosageQuantization;
 		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public List<Alleles> getSampleVariants(GeneticVariant variant)
 	{
-		if (cache.containsKey(variant))
-		{
-			return cache.get(variant);
-		}
-		else
+		CacheKey key = new CacheKey(variant, SampleDataType.ALLELES);
+		List<Alleles> variantAlleles = (List<Alleles>) cache.get(key);
+		if (variantAlleles == null)
 		{
-			List<Alleles> variantAlleles = sampleVariantProvider.getSampleVariants(variant);
-			cache.put(variant, variantAlleles);
-			return variantAlleles;
+			variantAlleles = sampleVariantProvider.getSampleVariants(variant);
+			if (variantAlleles != null)
+			{
+				cache.put(key, variantAlleles);
+			}
 		}
-
+		return variantAlleles;
 	}
 
 	@Override
@@ -57,16 +138,20 @@ public class CachedSampleVariantProvider implements SampleVariantsProvider
 		return cacheSize;
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public List<Boolean> getSamplePhasing(GeneticVariant variant)
 	{
-		if (phasingCache.containsKey(variant))
+		CacheKey key = new CacheKey(variant, SampleDataType.PHASING);
+		List<Boolean> phasing = (List<Boolean>) cache.get(key);
+		if (phasing == null)
 		{
-			return phasingCache.get(variant);
+			phasing = sampleVariantProvider.getSamplePhasing(variant);
+			if (phasing != null)
+			{
+				cache.put(key, phasing);
+			}
 		}
-
-		List<Boolean> phasing = sampleVariantProvider.getSamplePhasing(variant);
-		phasingCache.put(variant, phasing);
 		return phasing;
 	}
 
@@ -79,26 +164,174 @@ public class CachedSampleVariantProvider implements SampleVariantsProvider
 	@Override
 	public byte[] getSampleCalledDosage(GeneticVariant variant)
 	{
-		if (calledDosageCache.containsKey(variant))
+		CacheKey key = new CacheKey(variant, SampleDataType.CALLED_DOSAGE);
+		byte[] calledDosage = (byte[]) cache.get(key);
+		if (calledDosage == null)
 		{
-			return calledDosageCache.get(variant);
+			calledDosage = sampleVariantProvider.getSampleCalledDosage(variant);
+			if (calledDosage != null)
+			{
+				cache.put(key, calledDosage);
+			}
 		}
-
-		byte[] calledDosage = sampleVariantProvider.getSampleCalledDosage(variant);
-		calledDosageCache.put(variant, calledDosage);
 		return calledDosage;
 	}
 
+	/**
+	 * Copies the cached called dosage if available. Otherwise the called
+	 * dosage is loaded without caching to prevent allocating a new array.
+	 */
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		byte[] cachedCalledDosage = (byte[]) cache.get(new CacheKey(variant, SampleDataType.CALLED_DOSAGE));
+		if (cachedCalledDosage != null)
+		{
+			System.arraycopy(cachedCalledDosage, 0, calledDosage, 0, cachedCalledDosage.length);
+		}
+		else
+		{
+			sampleVariantProvider.loadSampleCalledDosage(variant, calledDosage);
+		}
+	}
+
+	/**
+	 * Quantized dosages are converted to a new float[] on every call. The
+	 * quantized values are also returned when the dosage is not yet cached so
+	 * the result does not depend on the state of the cache.
+	 */
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
-		if (dosageCache.containsKey(variant))
+		Object quantizedDosage = getQuantizedSampleDosage(variant);
+		if (quantizedDosage == null || dosageQuantization == DosageQuantization.NONE)
+		{
+			return (float[]) quantizedDosage;
+		}
+		return dosageQuantization.getDosages(quantizedDosage);
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return sampleVariantProvider.hasImputedDosage(variant);
+	}
+
+	private Object getQuantizedSampleDosage(GeneticVariant variant)
+	{
+		CacheKey key = new CacheKey(variant, SampleDataType.DOSAGE);
+		Object quantizedDosage = cache.get(key);
+		if (quantizedDosage == null)
+		{
+			float[] dosage = sampleVariantProvider.getSampleDosage(variant);
+			if (dosage != null)
+			{
+				quantizedDosage = dosageQuantization.quantize(dosage);
+				cache.put(key, quantizedDosage);
+			}
+		}
+		return quantizedDosage;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant, int[] sampleIndices)
+	{
+		List<Alleles> variantAlleles = (List<Alleles>) cache.get(new CacheKey(variant, SampleDataType.ALLELES));
+		if (variantAlleles == null)
+		{
+			if (sampleVariantProvider instanceof SampleSubsetVariantsProvider)
+			{
+				return ((SampleSubsetVariantsProvider) sampleVariantProvider).getSampleVariants(variant, sampleIndices);
+			}
+			variantAlleles = getSampleVariants(variant);
+		}
+
+		List<Alleles> subsetAlleles = new ArrayList<Alleles>(sampleIndices.length);
+		for (int sampleIndex : sampleIndices)
+		{
+			subsetAlleles.add(variantAlleles.get(sampleIndex));
+		}
+		return subsetAlleles;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, int[] sampleIndices, byte[] calledDosage)
+	{
+		byte[] cachedCalledDosage = (byte[]) cache.get(new CacheKey(variant, SampleDataType.CALLED_DOSAGE));
+		if (cachedCalledDosage == null)
+		{
+			if (sampleVariantProvider instanceof SampleSubsetVariantsProvider)
+			{
+				((SampleSubsetVariantsProvider) sampleVariantProvider).loadSampleCalledDosage(variant, sampleIndices,
+						calledDosage);
+				return;
+			}
+			cachedCalledDosage = getSampleCalledDosage(variant);
+		}
+
+		for (int i = 0; i < sampleIndices.length; ++i)
 		{
-			return dosageCache.get(variant);
+			calledDosage[i] = cachedCalledDosage[sampleIndices[i]];
 		}
+	}
 
-		float[] dosage = sampleVariantProvider.getSampleDosage(variant);
-		dosageCache.put(variant, dosage);
-		return dosage;
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant, int[] sampleIndices)
+	{
+		Object cachedDosage = cache.get(new CacheKey(variant, SampleDataType.DOSAGE));
+		if (cachedDosage == null)
+		{
+			if (sampleVariantProvider instanceof SampleSubsetVariantsProvider)
+			{
+				float[] dosage = ((SampleSubsetVariantsProvider) sampleVariantProvider).getSampleDosage(variant,
+						sampleIndices);
+				return dosageQuantization == DosageQuantization.NONE ? dosage : dosageQuantization
+						.getDosages(dosageQuantization.quantize(dosage));
+			}
+			cachedDosage = getQuantizedSampleDosage(variant);
+		}
+
+		float[] subsetDosage = new float[sampleIndices.length];
+		for (int i = 0; i < sampleIndices.length; ++i)
+		{
+			subsetDosage[i] = dosageQuantization.getDosage(cachedDosage, sampleIndices[i]);
+		}
+		return subsetDosage;
+	}
+
+	/**
+	 * @return the cache with hit, miss and eviction counts
+	 */
+	public ConcurrentWeightedCache<?, ?> getCache()
+	{
+		return cache;
+	}
+
+	private static class CacheKey
+	{
+		private final GeneticVariant variant;
+		private final SampleDataType type;
+
+		public CacheKey(GeneticVariant variant, SampleDataType type)
+		{
+			this.variant = variant;
+			this.type = type;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return variant.hashCode() * 31 + type.ordinal();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) return true;
+			if (!(obj instanceof CacheKey)) return false;
+			CacheKey other = (CacheKey) obj;
+			return type == other.type && variant.equals(other.variant);
+		}
 	}
 }
@@ -0,0 +1,43 @@
+package org.molgenis.genotype.variant.sampleProvider;
+
+import java.util.List;
+
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Sample variants provider that can decode a subset of the samples without
+ * decoding the other samples. The returned values are in the order of the
+ * requested sample indices.
+ */
+public interface SampleSubsetVariantsProvider extends SampleVariantsProvider
+{
+	/**
+	 * @param variant
+	 * @param sampleIndices
+	 *            indices of the requested samples
+	 * @return the alleles of the requested samples
+	 */
+	List<Alleles> getSampleVariants(GeneticVariant variant, int[] sampleIndices);
+
+	/**
+	 * Load the called dosage {0,1,2} of the requested samples, -1 denotes
+	 * missing
+	 *
+	 * @param variant
+	 * @param sampleIndices
+	 *            indices of the requested samples
+	 * @param calledDosage
+	 *            array of at least the number of requested samples
+	 */
+	void loadSampleCalledDosage(GeneticVariant variant, int[] sampleIndices, byte[] calledDosage);
+
+	/**
+	 * @param variant
+	 * @param sampleIndices
+	 *            indices of the requested samples
+	 * @return dosage in range of 0 to 2 of the requested samples, -1 denotes
+	 *         missing
+	 */
+	float[] getSampleDosage(GeneticVariant variant, int[] sampleIndices);
+}
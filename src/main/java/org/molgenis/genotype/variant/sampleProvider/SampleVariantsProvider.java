@@ -34,6 +34,17 @@ public interface SampleVariantsProvider
 	 */
 	byte[] getSampleCalledDosage(GeneticVariant variant);
 
+	/**
+	 * Load sample called dosage {0,1,2} -1 denotes missing into the supplied
+	 * array. Decodes directly from the source data without creating the sample
+	 * alleles, the array can be reused for multiple variants.
+	 * 
+	 * @param variant
+	 * @param calledDosage
+	 *            array of at least the number of samples
+	 */
+	void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage);
+
 	/**
 	 * Get sample dosage in range of 0 to 2. -1 denotes missing
 	 * 
@@ -41,4 +52,11 @@ public interface SampleVariantsProvider
 	 */
 	float[] getSampleDosage(GeneticVariant variant);
 
+	/**
+	 * @return true if the dosage can differ from the called dosage, for
+	 *         instance for imputed data. If false the dosage can be derived
+	 *         from the called dosage without calling getSampleDosage
+	 */
+	boolean hasImputedDosage(GeneticVariant variant);
+
 }
@@ -53,10 +53,22 @@ public class SwappingSampleVariantsProvider implements SampleVariantsProvider
 		return sampleVariantsProvider.getSampleCalledDosage(variant);
 	}
 
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		sampleVariantsProvider.loadSampleCalledDosage(variant, calledDosage);
+	}
+
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
 		return sampleVariantsProvider.getSampleDosage(variant);
 	}
 
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return sampleVariantsProvider.hasImputedDosage(variant);
+	}
+
 }
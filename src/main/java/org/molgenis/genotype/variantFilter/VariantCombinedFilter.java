@@ -0,0 +1,52 @@
+package org.molgenis.genotype.variantFilter;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Includes the variants that pass all filters. The filters are evaluated in
+ * the given order and stop at the first filter that fails, put the cheap
+ * filters first.
+ */
+public class VariantCombinedFilter implements VariantFilter
+{
+	private final VariantFilter[] filters;
+
+	public VariantCombinedFilter(List<VariantFilter> filters)
+	{
+		this.filters = filters.toArray(new VariantFilter[filters.size()]);
+	}
+
+	public VariantCombinedFilter(VariantFilter... filters)
+	{
+		this(Arrays.asList(filters));
+	}
+
+	@Override
+	public boolean doesVariantPassFilter(GeneticVariant variant)
+	{
+		for (VariantFilter filter : filters)
+		{
+			if (!filter.doesVariantPassFilter(variant))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean doesIdPassFilter(String id)
+	{
+		for (VariantFilter filter : filters)
+		{
+			if (!filter.doesIdPassFilter(id))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,25 @@
+package org.molgenis.genotype.variantFilter;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Decides if a variant is included in a VariantFilterGenotypeData. Filters on
+ * the variant properties, like the position, IDs or alleles, do not load the
+ * sample data of the variant.
+ */
+public interface VariantFilter
+{
+	/**
+	 * @param variant
+	 * @return true if the variant is included
+	 */
+	boolean doesVariantPassFilter(GeneticVariant variant);
+
+	/**
+	 * Used to skip lookups of IDs that can never pass
+	 * 
+	 * @param id
+	 * @return false if no variant with this ID can pass the filter
+	 */
+	boolean doesIdPassFilter(String id);
+}
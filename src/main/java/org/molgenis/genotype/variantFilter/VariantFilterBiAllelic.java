@@ -0,0 +1,21 @@
+package org.molgenis.genotype.variantFilter;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Includes the variants with exactly two alleles
+ */
+public class VariantFilterBiAllelic implements VariantFilter
+{
+	@Override
+	public boolean doesVariantPassFilter(GeneticVariant variant)
+	{
+		return variant.isBiallelic();
+	}
+
+	@Override
+	public boolean doesIdPassFilter(String id)
+	{
+		return true;
+	}
+}
@@ -1,35 +1,66 @@
 package org.molgenis.genotype.variantFilter;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.AbstractRandomAccessGenotypeData;
+import org.molgenis.genotype.GenomicPosition;
 import org.molgenis.genotype.RandomAccessGenotypeData;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.SimpleSequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.SampleAnnotation;
+import org.molgenis.genotype.util.VariantIdIndex;
 import org.molgenis.genotype.variant.GeneticVariant;
 
+/**
+ * View of originalGenotypeData with the variants that pass a filter. Data is
+ * not copied and the variants are those of the original data.
+ *
+ * The first time all variants of a sequence are iterated the result of the
+ * filter is stored in a bitset over the ordinal of the variants in the
+ * sequence. Later iterations of the sequence use the bitset instead of the
+ * filter and stop after the last included variant. Queries on position
+ * evaluate the filter. Call clearCache if the variants of the original data or
+ * the result of the filter change.
+ */
 public class VariantFilterGenotypeData implements RandomAccessGenotypeData
 {
-	//
-	// private final GenotypeData originalGenotypeData;
-	// private final HashSet<GeneticVariant> includeVariants;
-	// private final HashSet<GeneticVariant> excludeVariants;
+	private final RandomAccessGenotypeData originalGenotypeData;
+	private final VariantFilter variantFilter;
+	/** Ordinals of the included variants of completely iterated sequences */
+	private final ConcurrentMap<String, BitSet> includedVariantsBySequence = new ConcurrentHashMap<String, BitSet>();
+
+	/**
+	 * @param originalGenotypeData
+	 * @param variantFilter
+	 *            decides which variants are included
+	 */
+	public VariantFilterGenotypeData(RandomAccessGenotypeData originalGenotypeData, VariantFilter variantFilter)
+	{
+		this.originalGenotypeData = originalGenotypeData;
+		this.variantFilter = variantFilter;
+	}
 
 	/**
 	 * View of originalGenotypeData with a subset of the genetic variants. Data
-	 * is not copied. Modifications in the original data are reflected here
-	 * 
+	 * is not copied.
+	 *
 	 * If both an include list as an exclude list is specified the exclude list
 	 * takes presidency. i.e. other words all variants in the exclude list are
 	 * removed from the include list. Only variants remaining in the include
 	 * list will be visible via this view.
-	 * 
+	 *
 	 * Either include or exclude must other than null.
-	 * 
+	 *
 	 * @param originalGenotypeData
 	 * @param includeVariants
 	 *            list with variants to include. If null all but the excluded
@@ -37,113 +68,352 @@ public class VariantFilterGenotypeData implements RandomAccessGenotypeData
 	 * @param excludeVariants
 	 *            list with variants to exclude. Can be null
 	 */
-	public VariantFilterGenotypeData(GenotypeData originalGenotypeData, HashSet<GeneticVariant> includeVariants,
-			HashSet<GeneticVariant> excludeVariants)
+	public VariantFilterGenotypeData(RandomAccessGenotypeData originalGenotypeData,
+			HashSet<GeneticVariant> includeVariants, HashSet<GeneticVariant> excludeVariants)
 	{
-		super();
+		this(originalGenotypeData, new VariantSetFilter(includeVariants, excludeVariants));
+	}
 
-		throw new UnsupportedOperationException("This class is not fully implemented");
+	public VariantFilter getVariantFilter()
+	{
+		return variantFilter;
+	}
 
-		// if (includeVariants == null && excludeVariants == null)
-		// {
-		// throw new
-		// IllegalArgumentException("Include and exclude list are null for variantFilterGenotypeData");
-		// }
-		//
-		// this.originalGenotypeData = originalGenotypeData;
-		// this.includeVariants = includeVariants;
-		// this.excludeVariants = excludeVariants;
+	/**
+	 * Forget the included variants of the iterated sequences
+	 */
+	public void clearCache()
+	{
+		includedVariantsBySequence.clear();
 	}
 
 	@Override
 	public List<String> getSeqNames()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return originalGenotypeData.getSeqNames();
 	}
 
 	@Override
 	public Iterable<Sequence> getSequences()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		List<Sequence> sequences = new ArrayList<Sequence>();
+		for (Sequence sequence : originalGenotypeData.getSequences())
+		{
+			sequences.add(new SimpleSequence(sequence.getName(), sequence.getLength(), this));
+		}
+		return sequences;
 	}
 
 	@Override
 	public Sequence getSequenceByName(String name)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		Sequence sequence = originalGenotypeData.getSequenceByName(name);
+		return sequence == null ? null : new SimpleSequence(sequence.getName(), sequence.getLength(), this);
 	}
 
 	@Override
 	public List<Annotation> getVariantAnnotations()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return originalGenotypeData.getVariantAnnotations();
 	}
 
 	@Override
 	public Annotation getVariantAnnotation(String annotationId)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return originalGenotypeData.getVariantAnnotation(annotationId);
 	}
 
 	@Override
 	public List<GeneticVariant> getVariantsByPos(String seqName, int startPos)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return filterVariants(originalGenotypeData.getVariantsByPos(seqName, startPos));
 	}
 
 	@Override
 	public List<Sample> getSamples()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return originalGenotypeData.getSamples();
 	}
 
 	@Override
 	public Iterator<GeneticVariant> iterator()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return new GeneticVariantsIterator();
 	}
 
 	@Override
-	public Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName)
+	public Iterable<GeneticVariant> getSequenceGeneticVariants(final String seqName)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return new Iterable<GeneticVariant>()
+		{
+			@Override
+			public Iterator<GeneticVariant> iterator()
+			{
+				return new SequenceVariantsIterator(seqName);
+			}
+		};
 	}
 
 	@Override
 	public GeneticVariant getSnpVariantByPos(String seqName, int startPos)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return filterVariant(originalGenotypeData.getSnpVariantByPos(seqName, startPos));
 	}
 
 	@Override
 	public List<SampleAnnotation> getSampleAnnotations()
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return originalGenotypeData.getSampleAnnotations();
 	}
 
 	@Override
 	public Annotation getSampleAnnotation(String annotationId)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return originalGenotypeData.getSampleAnnotation(annotationId);
 	}
 
 	@Override
 	public Iterable<GeneticVariant> getVariantsByRange(String seqName, int rangeStart, int rangeEnd)
 	{
-		// TODO Auto-generated method stub
+		return filterVariants(originalGenotypeData.getVariantsByRange(seqName, rangeStart, rangeEnd));
+	}
+
+	@Override
+	public List<List<GeneticVariant>> getVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<List<GeneticVariant>> originalVariantsByPosition = originalGenotypeData.getVariantsByPositions(positions);
+		List<List<GeneticVariant>> variantsByPosition = new ArrayList<List<GeneticVariant>>(
+				originalVariantsByPosition.size());
+		for (List<GeneticVariant> originalVariants : originalVariantsByPosition)
+		{
+			variantsByPosition.add(filterVariants(originalVariants));
+		}
+		return variantsByPosition;
+	}
+
+	@Override
+	public List<GeneticVariant> getSnpVariantsByPositions(List<GenomicPosition> positions)
+	{
+		List<GeneticVariant> originalSnpVariants = originalGenotypeData.getSnpVariantsByPositions(positions);
+		List<GeneticVariant> snpVariants = new ArrayList<GeneticVariant>(originalSnpVariants.size());
+		for (GeneticVariant originalVariant : originalSnpVariants)
+		{
+			snpVariants.add(filterVariant(originalVariant));
+		}
+		return snpVariants;
+	}
+
+	/**
+	 * @return the first included variant with this ID. If the first variant
+	 *         with this ID in the original data is excluded the other
+	 *         variants with this ID are searched, using the variant ID index
+	 *         of the original data if it has one
+	 */
+	@Override
+	public GeneticVariant getVariantById(String variantId)
+	{
+		if (!variantFilter.doesIdPassFilter(variantId))
+		{
+			return null;
+		}
+		GeneticVariant variant = originalGenotypeData.getVariantById(variantId);
+		if (variant == null || variantFilter.doesVariantPassFilter(variant))
+		{
+			return variant;
+		}
+
+		VariantIdIndex index = null;
+		if (originalGenotypeData instanceof AbstractRandomAccessGenotypeData)
+		{
+			index = ((AbstractRandomAccessGenotypeData) originalGenotypeData).getVariantIdIndex();
+		}
+		if (index == null)
+		{
+			return findVariantById(this, variantId);
+		}
+		for (GenomicPosition position : index.getCandidatePositions(variantId))
+		{
+			variant = findVariantById(getVariantsByPos(position.getSequenceName(), position.getPosition()),
+					variantId);
+			if (variant != null)
+			{
+				return variant;
+			}
+		}
 		return null;
 	}
 
+	private static GeneticVariant findVariantById(Iterable<GeneticVariant> variants, String variantId)
+	{
+		for (GeneticVariant variant : variants)
+		{
+			if (variant.getVariantId().isIdInVariantIds(variantId))
+			{
+				return variant;
+			}
+		}
+		return null;
+	}
+
+	private GeneticVariant filterVariant(GeneticVariant variant)
+	{
+		return variant != null && variantFilter.doesVariantPassFilter(variant) ? variant : null;
+	}
+
+	private List<GeneticVariant> filterVariants(Iterable<GeneticVariant> originalVariants)
+	{
+		List<GeneticVariant> variants = null;
+		for (GeneticVariant variant : originalVariants)
+		{
+			if (variantFilter.doesVariantPassFilter(variant))
+			{
+				if (variants == null)
+				{
+					variants = new ArrayList<GeneticVariant>();
+				}
+				variants.add(variant);
+			}
+		}
+		return variants == null ? Collections.<GeneticVariant> emptyList() : variants;
+	}
+
+	/**
+	 * Iterates the included variants of a sequence. Records the included
+	 * ordinals if the sequence was not iterated completely before.
+	 */
+	private class SequenceVariantsIterator implements Iterator<GeneticVariant>
+	{
+		private final String seqName;
+		private final Iterator<GeneticVariant> originalVariants;
+		private final BitSet includedVariants;
+		private final BitSet recordedVariants;
+		private int ordinal = 0;
+		private GeneticVariant next;
+
+		public SequenceVariantsIterator(String seqName)
+		{
+			this.seqName = seqName;
+			this.originalVariants = originalGenotypeData.getSequenceGeneticVariants(seqName).iterator();
+			this.includedVariants = includedVariantsBySequence.get(seqName);
+			this.recordedVariants = includedVariants == null ? new BitSet() : null;
+			this.next = findNext();
+		}
+
+		private GeneticVariant findNext()
+		{
+			// no included variants after the last set bit
+			while ((includedVariants == null || ordinal < includedVariants.length()) && originalVariants.hasNext())
+			{
+				GeneticVariant variant = originalVariants.next();
+				int variantOrdinal = ordinal++;
+				if (includedVariants != null)
+				{
+					if (includedVariants.get(variantOrdinal))
+					{
+						return variant;
+					}
+				}
+				else if (variantFilter.doesVariantPassFilter(variant))
+				{
+					recordedVariants.set(variantOrdinal);
+					return variant;
+				}
+			}
+
+			if (recordedVariants != null && !originalVariants.hasNext())
+			{
+				includedVariantsBySequence.putIfAbsent(seqName, recordedVariants);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next != null;
+		}
+
+		@Override
+		public GeneticVariant next()
+		{
+			if (next == null)
+			{
+				throw new NoSuchElementException();
+			}
+			GeneticVariant variant = next;
+			next = findNext();
+			return variant;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Iterates the included variants of all sequences, sequences without
+	 * included variants are skipped
+	 */
+	private class GeneticVariantsIterator implements Iterator<GeneticVariant>
+	{
+		private final Iterator<String> seqNames = getSeqNames().iterator();
+		private Iterator<GeneticVariant> seqVariants = Collections.<GeneticVariant> emptyList().iterator();
+
+		@Override
+		public boolean hasNext()
+		{
+			while (!seqVariants.hasNext() && seqNames.hasNext())
+			{
+				seqVariants = new SequenceVariantsIterator(seqNames.next());
+			}
+			return seqVariants.hasNext();
+		}
+
+		@Override
+		public GeneticVariant next()
+		{
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			return seqVariants.next();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class VariantSetFilter implements VariantFilter
+	{
+		private final HashSet<GeneticVariant> includeVariants;
+		private final HashSet<GeneticVariant> excludeVariants;
+
+		public VariantSetFilter(HashSet<GeneticVariant> includeVariants, HashSet<GeneticVariant> excludeVariants)
+		{
+			if (includeVariants == null && excludeVariants == null)
+			{
+				throw new IllegalArgumentException("Include and exclude list are null for variantFilterGenotypeData");
+			}
+			this.includeVariants = includeVariants;
+			this.excludeVariants = excludeVariants;
+		}
+
+		@Override
+		public boolean doesVariantPassFilter(GeneticVariant variant)
+		{
+			return (includeVariants == null || includeVariants.contains(variant))
+					&& (excludeVariants == null || !excludeVariants.contains(variant));
+		}
+
+		@Override
+		public boolean doesIdPassFilter(String id)
+		{
+			return true;
+		}
+	}
 }
@@ -0,0 +1,40 @@
+package org.molgenis.genotype.variantFilter;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Includes the variants of a sequence that start within a range
+ */
+public class VariantFilterSeqPos implements VariantFilter
+{
+	private final String seqName;
+	private final int rangeStart;
+	private final int rangeEnd;
+
+	/**
+	 * @param seqName
+	 * @param rangeStart
+	 *            start of range, inclusive
+	 * @param rangeEnd
+	 *            end of range, exclusive
+	 */
+	public VariantFilterSeqPos(String seqName, int rangeStart, int rangeEnd)
+	{
+		this.seqName = seqName;
+		this.rangeStart = rangeStart;
+		this.rangeEnd = rangeEnd;
+	}
+
+	@Override
+	public boolean doesVariantPassFilter(GeneticVariant variant)
+	{
+		return variant.getStartPos() >= rangeStart && variant.getStartPos() < rangeEnd
+				&& seqName.equals(variant.getSequenceName());
+	}
+
+	@Override
+	public boolean doesIdPassFilter(String id)
+	{
+		return true;
+	}
+}
@@ -0,0 +1,21 @@
+package org.molgenis.genotype.variantFilter;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Includes the variants of which all alleles are single nucleotides
+ */
+public class VariantFilterSnp implements VariantFilter
+{
+	@Override
+	public boolean doesVariantPassFilter(GeneticVariant variant)
+	{
+		return variant.isSnp();
+	}
+
+	@Override
+	public boolean doesIdPassFilter(String id)
+	{
+		return true;
+	}
+}
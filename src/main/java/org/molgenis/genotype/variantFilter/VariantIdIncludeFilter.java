@@ -0,0 +1,45 @@
+package org.molgenis.genotype.variantFilter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Includes the variants with at least one of the IDs
+ */
+public class VariantIdIncludeFilter implements VariantFilter
+{
+	private final Set<String> includeIds;
+
+	public VariantIdIncludeFilter(Collection<String> includeIds)
+	{
+		this.includeIds = new HashSet<String>(includeIds);
+	}
+
+	public VariantIdIncludeFilter(String... includeIds)
+	{
+		this(Arrays.asList(includeIds));
+	}
+
+	@Override
+	public boolean doesVariantPassFilter(GeneticVariant variant)
+	{
+		for (String id : variant.getVariantId().getVariantIds())
+		{
+			if (includeIds.contains(id))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean doesIdPassFilter(String id)
+	{
+		return includeIds.contains(id);
+	}
+}
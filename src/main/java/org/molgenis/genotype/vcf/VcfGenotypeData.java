@@ -10,11 +10,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.annotation.Nullable;
-
 import net.sf.samtools.util.BlockCompressedInputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
 import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.GenotypeDataIndex;
@@ -28,19 +27,25 @@ import org.molgenis.genotype.annotation.SampleAnnotation;
 import org.molgenis.genotype.annotation.VcfAnnotation;
 import org.molgenis.genotype.tabix.TabixIndex;
 import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.util.DosageQuantization;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.VariantLineMapper;
 import org.molgenis.genotype.variant.sampleProvider.CachedSampleVariantProvider;
+import org.molgenis.genotype.variant.sampleProvider.SampleSubsetVariantsProvider;
 import org.molgenis.genotype.variant.sampleProvider.SampleVariantUniqueIdProvider;
 import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-
-public class VcfGenotypeData extends IndexedGenotypeData implements SampleVariantsProvider
+public class VcfGenotypeData extends IndexedGenotypeData implements SampleSubsetVariantsProvider
 {
-	private final GenotypeDataIndex index;
+	private final TabixIndex index;
+	/**
+	 * Line mapper used for sequential reading, null if not streaming
+	 */
+	private final VariantLineMapper streamingLineMapper;
 	private final VcfReader reader;
+	private final boolean imputedDosageFormat;
+	private final List<String> colNames;
+	private final List<String> sampleNames;
 	private Map<String, Annotation> sampleAnnotationsMap;
 	private Map<String, String> altDescriptions;
 	private final int sampleVariantProviderUniqueId;
@@ -78,6 +83,43 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	public VcfGenotypeData(File bzipVcfFile, File tabixIndexFile, int cacheSize) throws FileNotFoundException,
 			IOException
 	{
+		this(bzipVcfFile, tabixIndexFile, cacheSize, false);
+	}
+
+	/**
+	 * @param bzipVcfFile
+	 * @param tabixIndexFile
+	 * @param cacheSize
+	 * @param streaming
+	 *            if true the genotypes of variants read per sequence, for
+	 *            instance when iterating over all variants, are decoded from
+	 *            the line that is read instead of queried again when needed.
+	 *            These variants use a different sample variant provider so
+	 *            they are not equal to the same variants queried by position.
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public VcfGenotypeData(File bzipVcfFile, File tabixIndexFile, int cacheSize, boolean streaming)
+			throws FileNotFoundException, IOException
+	{
+		this(bzipVcfFile, tabixIndexFile, cacheSize, streaming, DosageQuantization.NONE);
+	}
+
+	/**
+	 * @param bzipVcfFile
+	 * @param tabixIndexFile
+	 * @param cacheSize
+	 * @param streaming
+	 *            see VcfGenotypeData(File, File, int, boolean)
+	 * @param dosageQuantization
+	 *            storage of the cached dosages, quantized dosages reduce the
+	 *            memory of the cache for imputed data at the cost of precision
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public VcfGenotypeData(File bzipVcfFile, File tabixIndexFile, int cacheSize, boolean streaming,
+			DosageQuantization dosageQuantization) throws FileNotFoundException, IOException
+	{
 
 		if (!bzipVcfFile.isFile())
 		{
@@ -105,12 +147,20 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 
 			try
 			{
+				colNames = reader.getColNames();
+				sampleNames = reader.getSampleNames();
+				imputedDosageFormat = hasImputedDosageFormat(reader.getFormats());
+
 				SampleVariantsProvider sampleVariantProvider = cacheSize <= 0 ? this : new CachedSampleVariantProvider(
-						this, cacheSize);
+						this, cacheSize, Long.MAX_VALUE, dosageQuantization);
 
-				VariantLineMapper variantLineMapper = new VcfVariantLineMapper(reader.getColNames(),
+				VariantLineMapper variantLineMapper = new VcfVariantLineMapper(colNames,
 						getVariantAnnotations(), getAltDescriptions(), sampleVariantProvider);
 				index = new TabixIndex(tabixIndexFile, bzipVcfFile, variantLineMapper);
+
+				streamingLineMapper = streaming ? new VcfStreamingVariantLineMapper(colNames,
+						getVariantAnnotations(), getAltDescriptions(), sampleVariantProvider,
+						SampleVariantUniqueIdProvider.getNextUniqueId()) : null;
 			}
 			finally
 			{
@@ -123,30 +173,38 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 			throw new GenotypeDataException(e);
 		}
 		sampleVariantProviderUniqueId = SampleVariantUniqueIdProvider.getNextUniqueId();
+
+		openDefaultVariantIdIndex(bzipVcfFile);
 	}
 
 	@Override
 	public List<Alleles> getSampleVariants(final GeneticVariant variant)
+	{
+		return getSampleVariants(variant, null);
+	}
 
+	/**
+	 * Only the GT values of the requested samples are parsed
+	 */
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant, int[] sampleIndices)
 	{
-		List<VcfSampleGenotype> sampleGenotypes = getSampleGenotypes(variant);
-		return Lists.transform(sampleGenotypes, new Function<VcfSampleGenotype, Alleles>()
+		// materialized so a cached list does not keep the parsed genotypes
+		List<String> variantAlleles = variant.getVariantAlleles().getAllelesAsString();
+		List<VcfSampleGenotype> sampleGenotypes = getSampleGenotypes(variant, sampleIndices);
+		List<Alleles> sampleAlleles = new ArrayList<Alleles>(sampleGenotypes.size());
+		for (VcfSampleGenotype sampleGenotype : sampleGenotypes)
 		{
-			@Override
-			@Nullable
-			public Alleles apply(@Nullable
-			VcfSampleGenotype input)
+			List<String> sampleVariants = sampleGenotype.getSamleVariants(variantAlleles);
+			List<Allele> alleles = new ArrayList<Allele>(sampleVariants.size());
+			for (String sampleVariant : sampleVariants)
 			{
-				if (input == null)
-				{
-					return null;
-				}
-
-				return Alleles.createBasedOnString(input.getSamleVariants(variant.getVariantAlleles()
-						.getAllelesAsString()));
+				// missing alleles are '.' in VCF and the zero allele elsewhere
+				alleles.add(sampleVariant == null ? Allele.ZERO : Allele.create(sampleVariant));
 			}
-
-		});
+			sampleAlleles.add(Alleles.createAlleles(alleles));
+		}
+		return sampleAlleles;
 	}
 
 	@Override
@@ -184,16 +242,6 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	@Override
 	public List<Sample> getSamples()
 	{
-		List<String> sampleNames;
-		try
-		{
-			sampleNames = reader.getSampleNames();
-		}
-		catch (IOException e)
-		{
-			throw new GenotypeDataException("IOException getting samplenames from VcfReader", e);
-		}
-
 		List<Sample> samples = new ArrayList<Sample>(sampleNames.size());
 		for (String sampleName : sampleNames)
 		{
@@ -236,6 +284,16 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 		return altDescriptions;
 	}
 
+	@Override
+	public Iterable<GeneticVariant> getSequenceGeneticVariants(String seqName)
+	{
+		if (streamingLineMapper == null)
+		{
+			return super.getSequenceGeneticVariants(seqName);
+		}
+		return index.createQuery(streamingLineMapper).executeQuery(seqName);
+	}
+
 	@Override
 	protected GenotypeDataIndex getIndex()
 	{
@@ -251,62 +309,70 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	@Override
 	public List<Boolean> getSamplePhasing(GeneticVariant variant)
 	{
-		List<VcfSampleGenotype> sampleGenotypes = getSampleGenotypes(variant);
-		return Lists.transform(sampleGenotypes, new Function<VcfSampleGenotype, Boolean>()
+		List<VcfSampleGenotype> sampleGenotypes = getSampleGenotypes(variant, null);
+		List<Boolean> phasing = new ArrayList<Boolean>(sampleGenotypes.size());
+		for (VcfSampleGenotype sampleGenotype : sampleGenotypes)
 		{
-			@Override
-			@Nullable
-			public Boolean apply(@Nullable
-			VcfSampleGenotype input)
-			{
-				if (input == null)
-				{
-					return null;
-				}
+			phasing.add(sampleGenotype.getPhasing().get(0));
+		}
+		return phasing;
+	}
+
+	/**
+	 * @param sampleIndices
+	 *            the requested samples, null for all samples
+	 */
+	private List<VcfSampleGenotype> getSampleGenotypes(GeneticVariant variant, int[] sampleIndices)
+	{
+		int sampleCount = sampleIndices == null ? sampleNames.size() : sampleIndices.length;
+		List<VcfSampleGenotype> genotypes = new ArrayList<VcfSampleGenotype>(sampleCount);
 
-				return input.getPhasing().get(0);
+		VcfRecord record = getVariantRecord(variant);
+		if (record != null)
+		{
+			for (int i = 0; i < sampleCount; ++i)
+			{
+				int sampleIndex = sampleIndices == null ? i : sampleIndices[i];
+				VcfSampleGenotype geno = record.getSampleGenotype(sampleIndex);
+				if (geno == null) throw new GenotypeDataException("Missing GT format value for sample ["
+						+ sampleNames.get(sampleIndex) + "]");
+				genotypes.add(geno);
 			}
+		}
 
-		});
+		return genotypes;
 	}
 
-	private List<VcfSampleGenotype> getSampleGenotypes(GeneticVariant variant)
+	/**
+	 * Get the VCF record of a variant
+	 * 
+	 * @param variant
+	 * @return the record or null if not found
+	 */
+	private VcfRecord getVariantRecord(GeneticVariant variant)
 	{
 		RawLineQueryResult queryResult = index.createRawLineQuery().executeQuery(variant.getSequenceName(),
 				variant.getStartPos());
 
-		List<VcfSampleGenotype> genotypes = new ArrayList<VcfSampleGenotype>();
 		try
 		{
+			List<String> alleles = variant.getVariantAlleles().getAllelesAsString();
 			for (String line : queryResult)
 			{
-				List<String> alleles = variant.getVariantAlleles().getAllelesAsString();
-				VcfRecord record = new VcfRecord(line, reader.getColNames());
+				VcfRecord record = new VcfRecord(line, colNames);
 				if (record.getChrom().equalsIgnoreCase(variant.getSequenceName())
 						&& (record.getPos() == variant.getStartPos()) && record.getAlleles().equals(alleles))
 				{
-					List<String> sampleNames = reader.getSampleNames();
-					for (String sampleName : sampleNames)
-					{
-						VcfSampleGenotype geno = record.getSampleGenotype(sampleName);
-						if (geno == null) throw new GenotypeDataException("Missing GT format value for sample ["
-								+ sampleName + "]");
-						genotypes.add(geno);
-					}
-
+					return record;
 				}
 			}
 		}
-		catch (IOException e)
-		{
-			throw new RuntimeException(e);
-		}
 		finally
 		{
 			IOUtils.closeQuietly(queryResult);
 		}
 
-		return genotypes;
+		return null;
 	}
 
 	@Override
@@ -324,15 +390,104 @@ public class VcfGenotypeData extends IndexedGenotypeData implements SampleVarian
 	@Override
 	public byte[] getSampleCalledDosage(GeneticVariant variant)
 	{
-		return CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
-				variant.getVariantAlleles(), variant.getRefAllele());
+		byte[] calledDosage = new byte[sampleNames.size()];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
 	}
 
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		loadSampleCalledDosage(variant, null, calledDosage);
+	}
+
+	/**
+	 * Only the GT values of the requested samples are parsed
+	 */
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, int[] sampleIndices, byte[] calledDosage)
+	{
+		VcfRecord record = getExistingVariantRecord(variant);
+		record.loadSampleCalledDosage(getDosageAlleleIndex(variant, record), sampleIndices, calledDosage);
+	}
+
+	/**
+	 * The dosage is read from the DS or GP values if present, otherwise it is
+	 * the called dosage of the GT values
+	 */
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
-		return CalledDosageConvertor.convertCalledAllelesToDosage(getSampleVariants(variant),
-				variant.getVariantAlleles(), variant.getRefAllele());
+		return getSampleDosage(variant, null);
+	}
+
+	/**
+	 * @return true if the header defines the DS or GP format, records without
+	 *         these values still use the called dosage
+	 */
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return imputedDosageFormat;
+	}
+
+	/**
+	 * Only the DS, GP or GT values of the requested samples are parsed
+	 */
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant, int[] sampleIndices)
+	{
+		VcfRecord record = getExistingVariantRecord(variant);
+		int dosageAlleleIndex = getDosageAlleleIndex(variant, record);
+
+		int sampleCount = sampleIndices == null ? sampleNames.size() : sampleIndices.length;
+		float[] dosage = new float[sampleCount];
+		if (record.loadSampleDosage(dosageAlleleIndex, sampleIndices, dosage))
+		{
+			return dosage;
+		}
+
+		byte[] calledDosage = new byte[sampleCount];
+		record.loadSampleCalledDosage(dosageAlleleIndex, sampleIndices, calledDosage);
+		return CalledDosageConvertor.convertCalledDosageToDosage(calledDosage);
+	}
+
+	private static boolean hasImputedDosageFormat(List<VcfFormat> formats)
+	{
+		for (VcfFormat format : formats)
+		{
+			if (VcfRecord.DOSAGE_FORMAT.equals(format.getId())
+					|| VcfRecord.GENOTYPE_PROBABILITIES_FORMAT.equals(format.getId()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private VcfRecord getExistingVariantRecord(GeneticVariant variant)
+	{
+		VcfRecord record = getVariantRecord(variant);
+		if (record == null)
+		{
+			throw new GenotypeDataException("Variant not found in VCF: " + variant.getSequenceName() + ":"
+					+ variant.getStartPos());
+		}
+		return record;
+	}
+
+	private static int getDosageAlleleIndex(GeneticVariant variant, VcfRecord record)
+	{
+		Allele dosageRef = variant.getRefAllele() == null ? variant.getVariantAlleles().get(0) : variant
+				.getRefAllele();
+		int dosageAlleleIndex = record.getAlleles().indexOf(dosageRef.getAlleleAsString());
+		if (dosageAlleleIndex == -1)
+		{
+			throw new GenotypeDataException("Dosage allele [" + dosageRef.getAlleleAsString()
+					+ "] not found in VCF alleles " + record.getAlleles() + " of variant: " + variant.getSequenceName() + ":"
+					+ variant.getStartPos());
+		}
+		return dosageAlleleIndex;
 	}
 
 }
@@ -0,0 +1,547 @@
+package org.molgenis.genotype.vcf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.multipart.MultiPartGenotypeData;
+import org.molgenis.genotype.multipart.VariantResultHandler;
+import org.molgenis.genotype.multipart.VariantVisitor;
+import org.molgenis.genotype.tabix.ParallelBlockCompressedOutputStream;
+import org.molgenis.genotype.tabix.TabixIndexWriter;
+import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.variant.GeneticVariant;
+
+/**
+ * Export a GenotypeData object to VCF with the GT and DS (alternative allele
+ * dosage) sample fields. The output is bgzipped and tabix indexed, so it can
+ * be read by VcfGenotypeData directly.
+ *
+ * Genotypes of unphased biallelic variants are written from the called
+ * dosages, only phased and multiallelic variants need the sample alleles.
+ * Samples are written as diploid. The reference allele is the first allele
+ * if a variant has no reference allele.
+ *
+ * The parts of a {@link MultiPartGenotypeData} are read and formatted in
+ * parallel, blocks are compressed on the executor.
+ */
+public class VcfGenotypeWriter
+{
+	public static final Charset FILE_ENCODING = Charset.forName("UTF-8");
+	public static final String LINE_ENDING = "\n";
+	private static final char SEPARATOR = '\t';
+	private static final String MISSING = ".";
+	private static final Logger LOG = Logger.getLogger(VcfGenotypeWriter.class);
+
+	private final GenotypeData genotypeData;
+
+	public VcfGenotypeWriter(GenotypeData genotypeData)
+	{
+		this.genotypeData = genotypeData;
+	}
+
+	/**
+	 * Write basePath.vcf.gz and basePath.vcf.gz.tbi using the calling thread
+	 *
+	 * @param basePath
+	 * @throws IOException
+	 */
+	public void write(String basePath) throws IOException
+	{
+		write(new File(basePath + ".vcf.gz"), new File(basePath + ".vcf.gz.tbi"), null, 1);
+	}
+
+	/**
+	 * @param bzipVcfFile
+	 * @param tabixIndexFile
+	 * @param executor
+	 *            executor reading the parts of multipart data and compressing
+	 *            the output, null to do everything on the calling thread
+	 * @param nrThreads
+	 *            maximum number of parts read at the same time
+	 * @throws IOException
+	 */
+	public void write(File bzipVcfFile, File tabixIndexFile, ExecutorService executor, int nrThreads)
+			throws IOException
+	{
+		LOG.info("Writing VCF file [" + bzipVcfFile.getAbsolutePath() + "] with index ["
+				+ tabixIndexFile.getAbsolutePath() + "]");
+
+		final IndexedVcfOutput output = new IndexedVcfOutput(null, bzipVcfFile, tabixIndexFile, executor);
+		try
+		{
+			writeLines(new VariantResultHandler<byte[]>()
+			{
+				@Override
+				public void handleResult(GeneticVariant variant, byte[] line)
+				{
+					output.writeLine(variant, line);
+				}
+			}, executor, nrThreads);
+			output.close();
+		}
+		finally
+		{
+			output.closeQuietly();
+		}
+	}
+
+	/**
+	 * Write a VCF and its tabix index per sequence. The files are named
+	 * basePath.sequence.vcf.gz and basePath.sequence.vcf.gz.tbi, the variants
+	 * of a sequence must be together.
+	 *
+	 * @param basePath
+	 * @param executor
+	 *            executor reading the parts of multipart data and compressing
+	 *            the output, null to do everything on the calling thread
+	 * @param nrThreads
+	 *            maximum number of parts read at the same time
+	 * @throws IOException
+	 */
+	public void writePerSequence(final String basePath, final ExecutorService executor, int nrThreads)
+			throws IOException
+	{
+		LOG.info("Writing VCF files per sequence [" + basePath + ".*.vcf.gz]");
+
+		final Set<String> writtenSequences = new HashSet<String>();
+		final IndexedVcfOutput[] output = new IndexedVcfOutput[1];
+		try
+		{
+			writeLines(new VariantResultHandler<byte[]>()
+			{
+				@Override
+				public void handleResult(GeneticVariant variant, byte[] line)
+				{
+					String sequence = variant.getSequenceName();
+					if (output[0] == null || !output[0].sequence.equals(sequence))
+					{
+						if (!writtenSequences.add(sequence))
+						{
+							throw new GenotypeDataException("Can not write VCF per sequence, the variants of sequence ["
+									+ sequence + "] are not together");
+						}
+						try
+						{
+							if (output[0] != null)
+							{
+								output[0].close();
+							}
+							String path = basePath + "." + sequence + ".vcf.gz";
+							output[0] = new IndexedVcfOutput(sequence, new File(path), new File(path + ".tbi"), executor);
+						}
+						catch (IOException e)
+						{
+							throw new GenotypeDataException("Error writing VCF file: " + e.getMessage(), e);
+						}
+					}
+					output[0].writeLine(variant, line);
+				}
+			}, executor, nrThreads);
+			if (output[0] != null)
+			{
+				output[0].close();
+			}
+		}
+		finally
+		{
+			if (output[0] != null)
+			{
+				output[0].closeQuietly();
+			}
+		}
+	}
+
+	/**
+	 * Write an uncompressed VCF
+	 *
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void write(final Writer writer) throws IOException
+	{
+		writer.write(createHeader());
+		writeLines(new VariantResultHandler<byte[]>()
+		{
+			@Override
+			public void handleResult(GeneticVariant variant, byte[] line)
+			{
+				try
+				{
+					writer.write(new String(line, FILE_ENCODING));
+				}
+				catch (IOException e)
+				{
+					throw new GenotypeDataException("Error writing VCF: " + e.getMessage(), e);
+				}
+			}
+		}, null, 1);
+		writer.flush();
+	}
+
+	private void writeLines(VariantResultHandler<byte[]> lineHandler, ExecutorService executor, int nrThreads)
+			throws IOException
+	{
+		int sampleCount = genotypeData.getSamples().size();
+		try
+		{
+			if (executor != null && genotypeData instanceof MultiPartGenotypeData)
+			{
+				final ThreadLocal<VcfLineFormatter> formatters = new FormatterThreadLocal(sampleCount);
+				((MultiPartGenotypeData) genotypeData).visitVariants(new VariantVisitor<byte[]>()
+				{
+					@Override
+					public byte[] visit(GeneticVariant variant)
+					{
+						return formatters.get().format(variant);
+					}
+				}, lineHandler, executor, nrThreads);
+			}
+			else
+			{
+				VcfLineFormatter formatter = new VcfLineFormatter(sampleCount);
+				for (GeneticVariant variant : genotypeData)
+				{
+					lineHandler.handleResult(variant, formatter.format(variant));
+				}
+			}
+		}
+		catch (GenotypeDataException e)
+		{
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private String createHeader()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("##fileformat=VCFv4.1").append(LINE_ENDING);
+		sb.append("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">").append(LINE_ENDING);
+		sb.append("##FORMAT=<ID=DS,Number=1,Type=Float,Description=\"Alternative allele dosage\">").append(
+				LINE_ENDING);
+		sb.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+		for (Sample sample : genotypeData.getSamples())
+		{
+			sb.append(SEPARATOR).append(sample.getId());
+		}
+		sb.append(LINE_ENDING);
+		return sb.toString();
+	}
+
+	/**
+	 * Bgzipped VCF that is indexed while it is written
+	 */
+	private class IndexedVcfOutput
+	{
+		private final String sequence;
+		private final File tabixIndexFile;
+		private final ParallelBlockCompressedOutputStream outputStream;
+		private final TabixIndexWriter indexWriter = TabixIndexWriter.createVcfIndexWriter();
+
+		/**
+		 * @param sequence
+		 *            sequence of the variants in this file, null if it contains
+		 *            all sequences
+		 */
+		public IndexedVcfOutput(String sequence, File bzipVcfFile, File tabixIndexFile, ExecutorService executor)
+				throws IOException
+		{
+			this.sequence = sequence;
+			this.tabixIndexFile = tabixIndexFile;
+			this.outputStream = new ParallelBlockCompressedOutputStream(bzipVcfFile, executor);
+			outputStream.write(createHeader().getBytes(FILE_ENCODING));
+		}
+
+		public void writeLine(GeneticVariant variant, byte[] line)
+		{
+			int begin = variant.getStartPos() - 1;
+			int refLength = variant.getVariantAlleles().getAlleleCount() == 0 ? 1 : getRefAllele(variant)
+					.getAlleleAsString().length();
+
+			long lineBegin = outputStream.getBlockPointer();
+			try
+			{
+				outputStream.write(line);
+			}
+			catch (IOException e)
+			{
+				throw new GenotypeDataException("Error writing VCF file: " + e.getMessage(), e);
+			}
+			indexWriter.addLine(variant.getSequenceName(), begin, begin + refLength, lineBegin,
+					outputStream.getBlockPointer());
+		}
+
+		public void close() throws IOException
+		{
+			outputStream.close();
+			indexWriter.write(tabixIndexFile, outputStream);
+		}
+
+		public void closeQuietly()
+		{
+			IOUtils.closeQuietly(outputStream);
+		}
+	}
+
+	private static Allele getRefAllele(GeneticVariant variant)
+	{
+		Allele refAllele = variant.getRefAllele();
+		return refAllele == null ? variant.getVariantAlleles().get(0) : refAllele;
+	}
+
+	private static class FormatterThreadLocal extends ThreadLocal<VcfLineFormatter>
+	{
+		private final int sampleCount;
+
+		public FormatterThreadLocal(int sampleCount)
+		{
+			this.sampleCount = sampleCount;
+		}
+
+		@Override
+		protected VcfLineFormatter initialValue()
+		{
+			return new VcfLineFormatter(sampleCount);
+		}
+	}
+
+	/**
+	 * Formats the VCF line of a variant, reuses its buffers so it is not
+	 * thread safe
+	 */
+	private static class VcfLineFormatter
+	{
+		private final StringBuilder sb = new StringBuilder();
+		private final byte[] calledDosages;
+
+		public VcfLineFormatter(int sampleCount)
+		{
+			this.calledDosages = new byte[sampleCount];
+		}
+
+		public byte[] format(GeneticVariant variant)
+		{
+			sb.setLength(0);
+
+			Alleles variantAlleles = variant.getVariantAlleles();
+			Allele refAllele = variantAlleles.getAlleleCount() == 0 ? null : getRefAllele(variant);
+
+			sb.append(variant.getSequenceName());
+			sb.append(SEPARATOR);
+			sb.append(variant.getStartPos());
+			sb.append(SEPARATOR);
+			List<String> ids = variant.getVariantId().getVariantIds();
+			if (ids.isEmpty())
+			{
+				sb.append(MISSING);
+			}
+			else
+			{
+				sb.append(variant.getVariantId().getConcatenatedId(";"));
+			}
+			sb.append(SEPARATOR);
+			sb.append(refAllele == null ? MISSING : refAllele.getAlleleAsString());
+			sb.append(SEPARATOR);
+			boolean hasAlt = false;
+			for (Allele allele : variantAlleles)
+			{
+				if (allele != refAllele)
+				{
+					if (hasAlt)
+					{
+						sb.append(',');
+					}
+					sb.append(allele.getAlleleAsString());
+					hasAlt = true;
+				}
+			}
+			if (!hasAlt)
+			{
+				sb.append(MISSING);
+			}
+			sb.append("\t.\t.\t.");
+
+			// phasing is read once per variant and reused
+			List<Boolean> phasing = variant.getSampleVariantsProvider().getSamplePhasing(variant);
+			if (variantAlleles.getAlleleCount() == 2 && !isPhased(phasing))
+			{
+				appendCalledDosageGenotypes(variant);
+			}
+			else
+			{
+				appendAlleleGenotypes(variant, variantAlleles, refAllele, phasing);
+			}
+
+			sb.append(LINE_ENDING);
+			return sb.toString().getBytes(FILE_ENCODING);
+		}
+
+		private void appendCalledDosageGenotypes(GeneticVariant variant)
+		{
+			variant.loadSampleCalledDosages(calledDosages);
+			// without imputed dosages DS is the called dosage
+			float[] dosages = variant.getSampleVariantsProvider().hasImputedDosage(variant) ? variant
+					.getSampleDosages() : null;
+
+			sb.append("\tGT:DS");
+			for (int i = 0; i < calledDosages.length; ++i)
+			{
+				sb.append(SEPARATOR);
+				// called dosage counts the reference alleles
+				switch (calledDosages[i])
+				{
+					case 2:
+						sb.append("0/0");
+						break;
+					case 1:
+						sb.append("0/1");
+						break;
+					case 0:
+						sb.append("1/1");
+						break;
+					default:
+						sb.append("./.");
+				}
+				sb.append(':');
+				appendAltDosage(dosages != null ? dosages[i] : calledDosages[i]);
+			}
+		}
+
+		private void appendAlleleGenotypes(GeneticVariant variant, Alleles variantAlleles, Allele refAllele,
+				List<Boolean> phasing)
+		{
+			List<Alleles> sampleVariants = variant.getSampleVariants();
+			boolean biallelic = variantAlleles.getAlleleCount() == 2;
+			float[] dosages = null;
+			if (biallelic)
+			{
+				// without imputed dosages DS is derived from the sample alleles
+				// that are already loaded
+				dosages = variant.getSampleVariantsProvider().hasImputedDosage(variant) ? variant
+						.getSampleDosages() : CalledDosageConvertor.convertCalledAllelesToDosage(sampleVariants,
+						variantAlleles, variant.getRefAllele());
+			}
+
+			sb.append(biallelic ? "\tGT:DS" : "\tGT");
+			for (int i = 0; i < sampleVariants.size(); ++i)
+			{
+				sb.append(SEPARATOR);
+				char separator = phasing != null && Boolean.TRUE.equals(phasing.get(i)) ? '|' : '/';
+
+				Alleles sampleAlleles = sampleVariants.get(i);
+				if (sampleAlleles == null || sampleAlleles.getAlleleCount() == 0)
+				{
+					sb.append(MISSING).append(separator).append(MISSING);
+				}
+				else
+				{
+					for (int a = 0; a < sampleAlleles.getAlleleCount(); ++a)
+					{
+						if (a > 0)
+						{
+							sb.append(separator);
+						}
+						appendAlleleIndex(variant, variantAlleles, refAllele, sampleAlleles.get(a));
+					}
+				}
+
+				if (biallelic)
+				{
+					sb.append(':');
+					appendAltDosage(dosages[i]);
+				}
+			}
+		}
+
+		private void appendAlleleIndex(GeneticVariant variant, Alleles variantAlleles, Allele refAllele,
+				Allele allele)
+		{
+			if (allele == null || allele == Allele.ZERO)
+			{
+				sb.append(MISSING);
+				return;
+			}
+			if (allele == refAllele)
+			{
+				sb.append('0');
+				return;
+			}
+			// alt alleles are numbered in variant order, skipping the reference
+			int index = 1;
+			for (Allele variantAllele : variantAlleles)
+			{
+				if (variantAllele == allele)
+				{
+					sb.append(index);
+					return;
+				}
+				if (variantAllele != refAllele)
+				{
+					++index;
+				}
+			}
+			throw new GenotypeDataException("Sample allele " + allele + " is not an allele of variant at "
+					+ variant.getSequenceName() + ":" + variant.getStartPos());
+		}
+
+		/**
+		 * Append the alternative allele dosage with at most three decimals
+		 *
+		 * @param dosage
+		 *            reference allele dosage, negative if missing
+		 */
+		private void appendAltDosage(float dosage)
+		{
+			if (dosage < 0)
+			{
+				sb.append(MISSING);
+				return;
+			}
+			int thousandths = Math.max(0, Math.round((2 - dosage) * 1000));
+			sb.append(thousandths / 1000);
+			int decimals = thousandths % 1000;
+			if (decimals != 0)
+			{
+				sb.append('.');
+				int divisor = 100;
+				while (decimals != 0)
+				{
+					sb.append((char) ('0' + decimals / divisor));
+					decimals %= divisor;
+					divisor /= 10;
+				}
+			}
+		}
+
+		private static boolean isPhased(List<Boolean> phasing)
+		{
+			if (phasing != null)
+			{
+				for (Boolean phased : phasing)
+				{
+					if (Boolean.TRUE.equals(phased))
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+}
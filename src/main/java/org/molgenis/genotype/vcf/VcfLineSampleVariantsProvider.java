@@ -0,0 +1,214 @@
+package org.molgenis.genotype.vcf;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
+
+/**
+ * SampleVariantsProvider for one VCF line. The GT values are decoded once when
+ * the line is read and stored as two allele indices per sample, so the sample
+ * data is available without querying the VCF file again. If the FORMAT has DS
+ * or GP values the record is kept and the dosage of the requested allele is
+ * parsed from it on request, the same dosages as read from an indexed VCF.
+ *
+ * Providers created for the same VCF data share their unique id and are equal
+ * to each other.
+ */
+public class VcfLineSampleVariantsProvider implements SampleVariantsProvider
+{
+	private static final byte MISSING = -1;
+	private static final byte ABSENT = -2;
+
+	private final List<String> alleles;
+	/**
+	 * Two allele indices per sample, -1 for missing and -2 for the absent
+	 * second allele of haploid samples
+	 */
+	private final byte[] sampleAlleleIndices;
+	private final BitSet phasing;
+	/** Record to parse the dosages from or null if there are no DS or GP values */
+	private final VcfRecord dosageRecord;
+	private final int sampleCount;
+	private final int sampleVariantProviderUniqueId;
+
+	private VcfLineSampleVariantsProvider(List<String> alleles, byte[] sampleAlleleIndices, BitSet phasing,
+			VcfRecord dosageRecord, int sampleCount, int sampleVariantProviderUniqueId)
+	{
+		this.alleles = alleles;
+		this.sampleAlleleIndices = sampleAlleleIndices;
+		this.phasing = phasing;
+		this.dosageRecord = dosageRecord;
+		this.sampleCount = sampleCount;
+		this.sampleVariantProviderUniqueId = sampleVariantProviderUniqueId;
+	}
+
+	/**
+	 * @param record
+	 *            the VCF record
+	 * @param sampleVariantProviderUniqueId
+	 *            id shared by all providers of the same VCF data
+	 * @return the provider or null if the GT values can not be stored compact,
+	 *         for instance for polyploid samples
+	 */
+	public static VcfLineSampleVariantsProvider create(VcfRecord record, int sampleVariantProviderUniqueId)
+	{
+		int sampleCount = record.getSampleCount();
+		byte[] sampleAlleleIndices = new byte[sampleCount * 2];
+		BitSet phasing = new BitSet(sampleCount);
+		if (!record.loadSampleAlleleIndices(sampleAlleleIndices, phasing))
+		{
+			return null;
+		}
+		List<String> format = record.getFormat();
+		VcfRecord dosageRecord = format.contains(VcfRecord.DOSAGE_FORMAT)
+				|| format.contains(VcfRecord.GENOTYPE_PROBABILITIES_FORMAT) ? record : null;
+		return new VcfLineSampleVariantsProvider(record.getAlleles(), sampleAlleleIndices, phasing, dosageRecord,
+				sampleCount, sampleVariantProviderUniqueId);
+	}
+
+	@Override
+	public List<Alleles> getSampleVariants(GeneticVariant variant)
+	{
+		// Alleles per combination of allele indices, including missing and
+		// absent
+		int alleleIndexCount = alleles.size() + 2;
+		Alleles[] allelesByIndices = new Alleles[alleleIndexCount * alleleIndexCount];
+
+		List<Alleles> sampleVariants = new ArrayList<Alleles>(sampleCount);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			byte allele1 = sampleAlleleIndices[i * 2];
+			byte allele2 = sampleAlleleIndices[i * 2 + 1];
+			int combination = (allele1 + 2) * alleleIndexCount + allele2 + 2;
+
+			Alleles sampleAlleles = allelesByIndices[combination];
+			if (sampleAlleles == null)
+			{
+				List<Allele> sampleAlleleList = new ArrayList<Allele>(2);
+				sampleAlleleList.add(getAllele(allele1));
+				if (allele2 != ABSENT)
+				{
+					sampleAlleleList.add(getAllele(allele2));
+				}
+				sampleAlleles = Alleles.createAlleles(sampleAlleleList);
+				allelesByIndices[combination] = sampleAlleles;
+			}
+			sampleVariants.add(sampleAlleles);
+		}
+		return sampleVariants;
+	}
+
+	/**
+	 * Missing alleles are '.' in VCF and the zero allele elsewhere
+	 */
+	private Allele getAllele(byte alleleIndex)
+	{
+		return alleleIndex == MISSING ? Allele.ZERO : Allele.create(alleles.get(alleleIndex));
+	}
+
+	@Override
+	public List<Boolean> getSamplePhasing(GeneticVariant variant)
+	{
+		List<Boolean> samplePhasing = new ArrayList<Boolean>(sampleCount);
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			samplePhasing.add(phasing.get(i));
+		}
+		return samplePhasing;
+	}
+
+	@Override
+	public int cacheSize()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getSampleVariantProviderUniqueId()
+	{
+		return sampleVariantProviderUniqueId;
+	}
+
+	@Override
+	public byte[] getSampleCalledDosage(GeneticVariant variant)
+	{
+		byte[] calledDosage = new byte[sampleCount];
+		loadSampleCalledDosage(variant, calledDosage);
+		return calledDosage;
+	}
+
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		int dosageAlleleIndex = getDosageAlleleIndex(variant);
+
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			byte allele1 = sampleAlleleIndices[i * 2];
+			byte allele2 = sampleAlleleIndices[i * 2 + 1];
+			if (allele1 == MISSING || allele2 == MISSING)
+			{
+				calledDosage[i] = -1;
+			}
+			else
+			{
+				calledDosage[i] = (byte) ((allele1 == dosageAlleleIndex ? 1 : 0) + (allele2 == dosageAlleleIndex ? 1
+						: 0));
+			}
+		}
+	}
+
+	@Override
+	public float[] getSampleDosage(GeneticVariant variant)
+	{
+		if (dosageRecord != null)
+		{
+			float[] dosage = new float[sampleCount];
+			dosageRecord.loadSampleDosage(getDosageAlleleIndex(variant), dosage);
+			return dosage;
+		}
+		return CalledDosageConvertor.convertCalledDosageToDosage(getSampleCalledDosage(variant));
+	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return dosageRecord != null;
+	}
+
+	private int getDosageAlleleIndex(GeneticVariant variant)
+	{
+		Allele dosageRef = variant.getRefAllele() == null ? variant.getVariantAlleles().get(0) : variant
+				.getRefAllele();
+		int dosageAlleleIndex = alleles.indexOf(dosageRef.getAlleleAsString());
+		if (dosageAlleleIndex == -1)
+		{
+			throw new GenotypeDataException("Dosage allele [" + dosageRef.getAlleleAsString()
+					+ "] not found in VCF alleles " + alleles + " of variant: " + variant.getSequenceName() + ":"
+					+ variant.getStartPos());
+		}
+		return dosageAlleleIndex;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return sampleVariantProviderUniqueId;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj) return true;
+		if (!(obj instanceof VcfLineSampleVariantsProvider)) return false;
+		return sampleVariantProviderUniqueId == ((VcfLineSampleVariantsProvider) obj).sampleVariantProviderUniqueId;
+	}
+
+}
@@ -4,18 +4,22 @@ import static org.molgenis.genotype.vcf.VcfUtils.checkNullValue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.molgenis.util.tuple.KeyValueTuple;
+import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.util.tuple.Tuple;
-import org.molgenis.util.tuple.WritableTuple;
 
 /**
- * Class that represents one row in a VCF file
+ * Class that represents one row in a VCF file.
+ * 
+ * A record created from a line keeps the line and the start offset of each
+ * column. Columns are only converted to strings when requested and the sample
+ * columns can be accessed by index without splitting the line.
  * 
  * @author erwin
  * 
@@ -23,46 +27,123 @@ import org.molgenis.util.tuple.WritableTuple;
 public class VcfRecord
 {
 	public static final String GENOTYPE_FORMAT = "GT";
+	public static final String DOSAGE_FORMAT = "DS";
+	public static final String GENOTYPE_PROBABILITIES_FORMAT = "GP";
+	private static final String FORMAT_COLUMN = "FORMAT";
+
 	private final Tuple record;
+	private final String line;
+	private final List<String> columnNames;
+	/**
+	 * Start offset of each column in the line. The last value is the line
+	 * length plus one so the end of column i is columnStarts[i + 1] - 1
+	 */
+	private final int[] columnStarts;
+	private final int firstSampleColumn;
 
 	// cache for the info map
 	private Map<String, List<String>> infoMap = null;
+	// cache for the format keys
+	private List<String> format = null;
 
 	public VcfRecord(Tuple record)
 	{
 		this.record = record;
+		this.line = null;
+		this.columnStarts = null;
+
+		List<String> recordColumnNames = new ArrayList<String>(record.getNrCols());
+		for (String columnName : record.getColNames())
+		{
+			recordColumnNames.add(columnName);
+		}
+		this.columnNames = recordColumnNames;
+		this.firstSampleColumn = recordColumnNames.indexOf(FORMAT_COLUMN) + 1;
 	}
 
 	public VcfRecord(String line, List<String> columnNames)
 	{
-		String[] values = line.split("	");
-		if (values.length != columnNames.size())
+		this.record = null;
+		this.line = line;
+		this.columnNames = columnNames;
+
+		columnStarts = new int[columnNames.size() + 1];
+		int column = 1;
+		for (int i = line.indexOf('\t'); i != -1; i = line.indexOf('\t', i + 1))
+		{
+			if (column >= columnNames.size())
+			{
+				throw new IllegalArgumentException("The number of columns does not match the number of columnnames");
+			}
+			columnStarts[column++] = i + 1;
+		}
+		if (column != columnNames.size())
 		{
 			throw new IllegalArgumentException("The number of columns does not match the number of columnnames");
 		}
+		columnStarts[column] = line.length() + 1;
 
-		record = new KeyValueTuple();
+		this.firstSampleColumn = columnNames.indexOf(FORMAT_COLUMN) + 1;
+	}
 
-		for (int i = 0; i < values.length; i++)
+	/**
+	 * @return the value of a column or null if the column does not exist
+	 */
+	private String getColumn(String columnName)
+	{
+		if (record != null)
 		{
-			((WritableTuple) record).set(columnNames.get(i), new String(values[i]));
+			return record.getString(columnName);
 		}
+		int column = columnNames.indexOf(columnName);
+		return column == -1 ? null : line.substring(columnStarts[column], columnStarts[column + 1] - 1);
+	}
 
+	private String getColumn(int column)
+	{
+		if (record != null)
+		{
+			return record.getString(columnNames.get(column));
+		}
+		return line.substring(columnStarts[column], columnStarts[column + 1] - 1);
 	}
 
 	public String getChrom()
 	{
-		return record.getString("#CHROM");
+		return getColumn("#CHROM");
 	}
 
 	public Integer getPos()
 	{
-		return record.getInt("POS");
+		if (record != null)
+		{
+			return record.getInt("POS");
+		}
+
+		int column = columnNames.indexOf("POS");
+		if (column == -1)
+		{
+			return null;
+		}
+
+		int end = columnStarts[column + 1] - 1;
+		int pos = 0;
+		for (int i = columnStarts[column]; i < end; ++i)
+		{
+			char c = line.charAt(i);
+			if (c < '0' || c > '9')
+			{
+				// let Integer report the error
+				return Integer.valueOf(getColumn(column));
+			}
+			pos = pos * 10 + (c - '0');
+		}
+		return pos;
 	}
 
 	public List<String> getId()
 	{
-		String id = checkNullValue(record.getString("ID"));
+		String id = checkNullValue(getColumn("ID"));
 		if (id == null)
 		{
 			return Collections.emptyList();
@@ -73,12 +154,12 @@ public class VcfRecord
 
 	public String getRef()
 	{
-		return record.getString("REF");
+		return getColumn("REF");
 	}
 
 	public List<String> getAlt()
 	{
-		String alt = checkNullValue(record.getString("ALT"));
+		String alt = checkNullValue(getColumn("ALT"));
 		if (alt == null)
 		{
 			return Collections.emptyList();
@@ -103,18 +184,18 @@ public class VcfRecord
 
 	public Double getQual()
 	{
-		String qual = checkNullValue(record.getString("QUAL"));
+		String qual = checkNullValue(getColumn("QUAL"));
 		if (qual == null)
 		{
 			return null;
 		}
 
-		return record.getDouble("QUAL");
+		return Double.valueOf(qual);
 	}
 
 	public List<String> getFilter()
 	{
-		String filter = checkNullValue(record.getString("FILTER"));
+		String filter = checkNullValue(getColumn("FILTER"));
 		if (filter == null)
 		{
 			return null;
@@ -125,41 +206,71 @@ public class VcfRecord
 
 	public String getInfo()
 	{
-		return checkNullValue(record.getString("INFO"));
+		return checkNullValue(getColumn("INFO"));
 	}
 
 	public List<String> getFormat()
 	{
-		String format = checkNullValue(record.getString("FORMAT"));
 		if (format == null)
 		{
-			return Collections.emptyList();
+			String formatValue = checkNullValue(getColumn(FORMAT_COLUMN));
+			format = formatValue == null ? Collections.<String> emptyList() : Collections.unmodifiableList(Arrays
+					.asList(formatValue.split(":")));
 		}
+		return format;
+	}
 
-		return Collections.unmodifiableList(Arrays.asList(format.split(":")));
+	/**
+	 * @return number of sample columns
+	 */
+	public int getSampleCount()
+	{
+		return firstSampleColumn == 0 ? 0 : columnNames.size() - firstSampleColumn;
 	}
 
 	public String getSampleValue(String sampleName, String key)
 	{
-		// first get the position from the key
-		int index = getFormat().indexOf(key);
-
-		if (index == -1)
+		int column = columnNames.indexOf(sampleName);
+		if (column < firstSampleColumn || firstSampleColumn == 0)
 		{
 			return null;
 		}
+		return getSampleValue(column - firstSampleColumn, getFormat().indexOf(key));
+	}
 
-		// then get the sample from the tuple
-		String sampleRecord = record.getString(sampleName);
+	/**
+	 * @param sampleIndex
+	 *            index of the sample in the sample columns
+	 * @param key
+	 *            format key
+	 * @return the value or null if not present
+	 */
+	public String getSampleValue(int sampleIndex, String key)
+	{
+		return getSampleValue(sampleIndex, getFormat().indexOf(key));
+	}
+
+	private String getSampleValue(int sampleIndex, int formatIndex)
+	{
+		if (formatIndex == -1)
+		{
+			return null;
+		}
 
-		// and parse out the value
-		if (sampleRecord != null)
+		int column = firstSampleColumn + sampleIndex;
+		String sampleRecord = getSampleRecord(column);
+		if (sampleRecord == null)
 		{
-			String[] values = sampleRecord.split(":");
-			if (index < values.length) return values[index];
+			return null;
 		}
+		int end = getSampleRecordEnd(column, sampleRecord);
 
-		return null;
+		int start = findSampleField(sampleRecord, getSampleRecordStart(column), end, formatIndex);
+		if (start == -1)
+		{
+			return null;
+		}
+		return sampleRecord.substring(start, findSampleFieldEnd(sampleRecord, start, end));
 	}
 
 	/**
@@ -179,6 +290,463 @@ public class VcfRecord
 		return new VcfSampleGenotypeParser(value).parse();
 	}
 
+	/**
+	 * See javadoc in VcfSampleGenotype.java
+	 * 
+	 * @param sampleIndex
+	 *            index of the sample in the sample columns
+	 * @return the genotype or null if there is no GT value
+	 */
+	public VcfSampleGenotype getSampleGenotype(int sampleIndex)
+	{
+		String value = getSampleValue(sampleIndex, GENOTYPE_FORMAT);
+		if (value == null)
+		{
+			return null;
+		}
+
+		return new VcfSampleGenotypeParser(value).parse();
+	}
+
+	/**
+	 * Load the count of an allele in the GT of each sample. -1 denotes missing
+	 * 
+	 * @param alleleIndex
+	 *            the index of the allele to count, 0 for the reference
+	 * @param calledDosage
+	 *            array of at least the number of samples
+	 */
+	public void loadSampleCalledDosage(int alleleIndex, byte[] calledDosage)
+	{
+		loadSampleCalledDosage(alleleIndex, null, calledDosage);
+	}
+
+	/**
+	 * Load the count of an allele in the GT of a subset of the samples, the
+	 * columns of the other samples are not parsed. -1 denotes missing
+	 * 
+	 * @param alleleIndex
+	 *            the index of the allele to count, 0 for the reference
+	 * @param sampleIndices
+	 *            indices of the requested samples in the sample columns, null
+	 *            for all samples
+	 * @param calledDosage
+	 *            array of at least the number of requested samples
+	 */
+	public void loadSampleCalledDosage(int alleleIndex, int[] sampleIndices, byte[] calledDosage)
+	{
+		int gtIndex = getFormat().indexOf(GENOTYPE_FORMAT);
+
+		int sampleCount = sampleIndices == null ? getSampleCount() : sampleIndices.length;
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int column = firstSampleColumn + (sampleIndices == null ? i : sampleIndices[i]);
+			String sampleRecord = getSampleRecord(column);
+			int start = gtIndex == -1 || sampleRecord == null ? -1 : findSampleField(sampleRecord,
+					getSampleRecordStart(column), getSampleRecordEnd(column, sampleRecord), gtIndex);
+			if (start == -1)
+			{
+				throw new GenotypeDataException("Missing GT format value for sample [" + columnNames.get(column)
+						+ "]");
+			}
+			int end = getSampleRecordEnd(column, sampleRecord);
+
+			calledDosage[i] = (byte) VcfSampleGenotypeParser.countAlleleIndex(sampleRecord, start,
+					findSampleFieldEnd(sampleRecord, start, end), alleleIndex);
+		}
+	}
+
+	/**
+	 * Load the dosage of an allele from the DS or GP values of each sample, see
+	 * loadSampleDosage(int, int[], float[])
+	 */
+	public boolean loadSampleDosage(int alleleIndex, float[] dosage)
+	{
+		return loadSampleDosage(alleleIndex, null, dosage);
+	}
+
+	/**
+	 * Load the dosage of an allele from the DS values of a subset of the
+	 * samples, or from the GP values if there is no DS. DS is the expected
+	 * count of each alternative allele so the dosage of the reference is the
+	 * ploidy of the GT, two if there is no GT, minus their sum. GP are the
+	 * probabilities of the diploid genotypes in VCF order, or of the alleles
+	 * for haploid samples. The values are parsed in place without creating
+	 * strings. Missing values are stored as -1.
+	 * 
+	 * @param alleleIndex
+	 *            the index of the allele, 0 for the reference
+	 * @param sampleIndices
+	 *            indices of the requested samples in the sample columns, null
+	 *            for all samples
+	 * @param dosage
+	 *            array of at least the number of requested samples
+	 * @return false if the FORMAT has neither DS nor GP, dosage is not changed
+	 *         in that case
+	 */
+	public boolean loadSampleDosage(int alleleIndex, int[] sampleIndices, float[] dosage)
+	{
+		List<String> format = getFormat();
+		int dsIndex = format.indexOf(DOSAGE_FORMAT);
+		int gpIndex = dsIndex == -1 ? format.indexOf(GENOTYPE_PROBABILITIES_FORMAT) : -1;
+		if (dsIndex == -1 && gpIndex == -1)
+		{
+			return false;
+		}
+		int gtIndex = dsIndex != -1 && alleleIndex == 0 ? format.indexOf(GENOTYPE_FORMAT) : -1;
+		int alleleCount = getAlleles().size();
+
+		int sampleCount = sampleIndices == null ? getSampleCount() : sampleIndices.length;
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int column = firstSampleColumn + (sampleIndices == null ? i : sampleIndices[i]);
+			String sampleRecord = getSampleRecord(column);
+			if (sampleRecord == null)
+			{
+				dosage[i] = -1;
+				continue;
+			}
+			int recordStart = getSampleRecordStart(column);
+			int recordEnd = getSampleRecordEnd(column, sampleRecord);
+			int start = findSampleField(sampleRecord, recordStart, recordEnd, dsIndex != -1 ? dsIndex : gpIndex);
+			if (start == -1)
+			{
+				// trailing fields can be dropped
+				dosage[i] = -1;
+				continue;
+			}
+			int end = findSampleFieldEnd(sampleRecord, start, recordEnd);
+
+			float sampleDosage;
+			if (dsIndex != -1)
+			{
+				int ploidy = 2;
+				int gtStart = gtIndex == -1 ? -1 : findSampleField(sampleRecord, recordStart, recordEnd, gtIndex);
+				if (gtStart != -1)
+				{
+					int gtPloidy = VcfSampleGenotypeParser.countAlleles(sampleRecord, gtStart,
+							findSampleFieldEnd(sampleRecord, gtStart, recordEnd));
+					if (gtPloidy != 0)
+					{
+						ploidy = gtPloidy;
+					}
+				}
+				sampleDosage = parseAlleleDosage(sampleRecord, start, end, alleleIndex, ploidy);
+			}
+			else
+			{
+				sampleDosage = parseGenotypeProbabilitiesDosage(sampleRecord, start, end, alleleIndex, alleleCount);
+			}
+			if (Float.isNaN(sampleDosage))
+			{
+				sampleDosage = -1;
+			}
+			else if (sampleDosage < 0)
+			{
+				// rounded DS values of multiple alternative alleles can sum to
+				// slightly more than the ploidy
+				sampleDosage = 0;
+			}
+			dosage[i] = sampleDosage;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the dosage of an allele from a DS value or NaN if missing
+	 */
+	private static float parseAlleleDosage(String sampleRecord, int start, int end, int alleleIndex, int ploidy)
+	{
+		float altDosageSum = 0;
+		int altIndex = 1;
+		while (start <= end)
+		{
+			int valueEnd = findValueEnd(sampleRecord, start, end);
+			float altDosage = parseFloat(sampleRecord, start, valueEnd);
+			if (Float.isNaN(altDosage))
+			{
+				return Float.NaN;
+			}
+			if (altIndex == alleleIndex)
+			{
+				return altDosage;
+			}
+			altDosageSum += altDosage;
+			++altIndex;
+			start = valueEnd + 1;
+		}
+		return alleleIndex == 0 ? ploidy - altDosageSum : Float.NaN;
+	}
+
+	/**
+	 * @return the dosage of an allele from a GP value or NaN if missing
+	 */
+	private static float parseGenotypeProbabilitiesDosage(String sampleRecord, int start, int end, int alleleIndex,
+			int alleleCount)
+	{
+		// diploid genotype j/k with j <= k is at index k * (k + 1) / 2 + j
+		int valuesStart = start;
+		float dosage = 0;
+		int valueCount = 0;
+		int allele1 = 0;
+		int allele2 = 0;
+		float haploidDosage = Float.NaN;
+		while (start <= end)
+		{
+			int valueEnd = findValueEnd(sampleRecord, start, end);
+			float probability = parseFloat(sampleRecord, start, valueEnd);
+			if (Float.isNaN(probability))
+			{
+				return Float.NaN;
+			}
+			dosage += probability * ((allele1 == alleleIndex ? 1 : 0) + (allele2 == alleleIndex ? 1 : 0));
+			if (valueCount == alleleIndex)
+			{
+				haploidDosage = probability;
+			}
+			++valueCount;
+			if (++allele1 > allele2)
+			{
+				allele1 = 0;
+				++allele2;
+			}
+			start = valueEnd + 1;
+		}
+
+		if (valueCount == alleleCount * (alleleCount + 1) / 2)
+		{
+			return dosage;
+		}
+		else if (valueCount == alleleCount)
+		{
+			return haploidDosage;
+		}
+		throw new GenotypeDataException("Expected " + (alleleCount * (alleleCount + 1) / 2) + " "
+				+ GENOTYPE_PROBABILITIES_FORMAT + " values but found: " + sampleRecord.substring(valuesStart, end));
+	}
+
+	private static int findValueEnd(String sampleRecord, int start, int end)
+	{
+		int separator = indexOf(sampleRecord, ',', start, end);
+		return separator == -1 ? end : separator;
+	}
+
+	private static final double[] POWERS_OF_TEN =
+	{ 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+			1e20, 1e21, 1e22 };
+
+	/**
+	 * Parse a decimal number without creating a string
+	 * 
+	 * @return the value or NaN for '.' or an empty value
+	 * @throws GenotypeDataException
+	 *             if the value is not a number
+	 */
+	static float parseFloat(CharSequence value, int start, int end)
+	{
+		if (start >= end || (end - start == 1 && value.charAt(start) == '.'))
+		{
+			return Float.NaN;
+		}
+
+		int i = start;
+		boolean negative = false;
+		if (value.charAt(i) == '-' || value.charAt(i) == '+')
+		{
+			negative = value.charAt(i) == '-';
+			++i;
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean decimalPoint = false;
+		for (; i < end; ++i)
+		{
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				// digits beyond the precision of a long only shift the
+				// exponent
+				if (mantissa < 100000000000000000L)
+				{
+					mantissa = mantissa * 10 + (c - '0');
+					if (decimalPoint)
+					{
+						--exponent;
+					}
+				}
+				else if (!decimalPoint)
+				{
+					++exponent;
+				}
+				++digits;
+			}
+			else if (c == '.' && !decimalPoint)
+			{
+				decimalPoint = true;
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		if (i < end && digits > 0 && (value.charAt(i) == 'e' || value.charAt(i) == 'E'))
+		{
+			++i;
+			boolean negativeExponent = false;
+			if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+			{
+				negativeExponent = value.charAt(i) == '-';
+				++i;
+			}
+			int exponentStart = i;
+			int explicitExponent = 0;
+			for (; i < end && value.charAt(i) >= '0' && value.charAt(i) <= '9'; ++i)
+			{
+				if (explicitExponent < 10000)
+				{
+					explicitExponent = explicitExponent * 10 + (value.charAt(i) - '0');
+				}
+			}
+			if (i == exponentStart)
+			{
+				// exponent without digits
+				digits = 0;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if (i < end || digits == 0)
+		{
+			// for instance NaN or Infinity
+			try
+			{
+				return Float.parseFloat(value.subSequence(start, end).toString());
+			}
+			catch (NumberFormatException e)
+			{
+				throw new GenotypeDataException("Not a number: " + value.subSequence(start, end));
+			}
+		}
+
+		double result = mantissa;
+		if (exponent < 0)
+		{
+			result = -exponent < POWERS_OF_TEN.length ? result / POWERS_OF_TEN[-exponent] : result
+					/ Math.pow(10, -exponent);
+		}
+		else if (exponent > 0)
+		{
+			result = exponent < POWERS_OF_TEN.length ? result * POWERS_OF_TEN[exponent] : result
+					* Math.pow(10, exponent);
+		}
+		return (float) (negative ? -result : result);
+	}
+
+	/**
+	 * Load the allele indices in the GT of each sample, two per sample. Missing
+	 * alleles are stored as -1 and the second allele of a haploid sample as -2.
+	 * 
+	 * @param alleleIndices
+	 *            array of at least twice the number of samples
+	 * @param phasing
+	 *            set for the phased samples
+	 * @return false if a GT has more than two alleles or an allele index that
+	 *         does not fit in a byte, the content of the arrays is undefined in
+	 *         that case
+	 */
+	public boolean loadSampleAlleleIndices(byte[] alleleIndices, BitSet phasing)
+	{
+		int gtIndex = getFormat().indexOf(GENOTYPE_FORMAT);
+
+		int sampleCount = getSampleCount();
+		for (int i = 0; i < sampleCount; ++i)
+		{
+			int column = firstSampleColumn + i;
+			String sampleRecord = getSampleRecord(column);
+			int start = gtIndex == -1 || sampleRecord == null ? -1 : findSampleField(sampleRecord,
+					getSampleRecordStart(column), getSampleRecordEnd(column, sampleRecord), gtIndex);
+			if (start == -1)
+			{
+				throw new GenotypeDataException("Missing GT format value for sample [" + columnNames.get(column)
+						+ "]");
+			}
+			int end = getSampleRecordEnd(column, sampleRecord);
+
+			int phased = VcfSampleGenotypeParser.parseAlleleIndices(sampleRecord, start,
+					findSampleFieldEnd(sampleRecord, start, end), alleleIndices, i * 2);
+			if (phased == -1)
+			{
+				return false;
+			}
+			phasing.set(i, phased == 1);
+		}
+		return true;
+	}
+
+	/**
+	 * @return text containing the sample column, the line itself if this
+	 *         record is line based
+	 */
+	private String getSampleRecord(int column)
+	{
+		return record != null ? getColumn(column) : line;
+	}
+
+	private int getSampleRecordStart(int column)
+	{
+		return record != null ? 0 : columnStarts[column];
+	}
+
+	private int getSampleRecordEnd(int column, String sampleRecord)
+	{
+		return record != null ? sampleRecord.length() : columnStarts[column + 1] - 1;
+	}
+
+	/**
+	 * @return the start of a ':' separated field or -1 if there are not enough
+	 *         fields
+	 */
+	private static int findSampleField(String sampleRecord, int start, int end, int fieldIndex)
+	{
+		for (int field = 0; field < fieldIndex; ++field)
+		{
+			int separator = indexOf(sampleRecord, ':', start, end);
+			if (separator == -1)
+			{
+				return -1;
+			}
+			start = separator + 1;
+		}
+		return start;
+	}
+
+	private static int findSampleFieldEnd(String sampleRecord, int start, int end)
+	{
+		int separator = indexOf(sampleRecord, ':', start, end);
+		return separator == -1 ? end : separator;
+	}
+
+	/**
+	 * Unlike String.indexOf the search stops at end, in a line based record
+	 * the sample column is followed by the columns of the other samples
+	 * 
+	 * @return the index of c in [start, end) or -1
+	 */
+	private static int indexOf(String text, char c, int start, int end)
+	{
+		for (int i = start; i < end; ++i)
+		{
+			if (text.charAt(i) == c)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	public List<String> getInfo(String key)
 	{
 		if (infoMap == null)
@@ -60,4 +60,160 @@ public class VcfSampleGenotypeParser
 
 		return new VcfSampleGenotype(alleleIndices, phasing);
 	}
+
+	/**
+	 * Count how often an allele index is called in a GT value without creating
+	 * any objects
+	 * 
+	 * @param genotype
+	 *            contains the GT value
+	 * @param start
+	 *            start of the GT value in genotype, inclusive
+	 * @param end
+	 *            end of the GT value in genotype, exclusive
+	 * @param alleleIndex
+	 *            index of the allele to count
+	 * @return the count or -1 if one of the alleles is missing
+	 */
+	public static int countAlleleIndex(CharSequence genotype, int start, int end, int alleleIndex)
+	{
+		if (start >= end)
+		{
+			return -1;
+		}
+
+		int count = 0;
+		int index = 0;
+		boolean missing = false;
+
+		for (int i = start; i <= end; ++i)
+		{
+			char c = i == end ? PHASED_SEPARATOR : genotype.charAt(i);
+			switch (c)
+			{
+				case PHASED_SEPARATOR:
+				case UNPHASED_SEPARATOR:
+					if (index == alleleIndex)
+					{
+						++count;
+					}
+					index = 0;
+					break;
+				case '.':
+					missing = true;
+					break;
+				default:
+					if (c < '0' || c > '9')
+					{
+						throw new IllegalArgumentException("Invalid GT value: "
+								+ genotype.subSequence(start, end).toString());
+					}
+					index = index * 10 + (c - '0');
+			}
+		}
+
+		return missing ? -1 : count;
+	}
+
+	/**
+	 * Count the alleles of a GT value, missing alleles included, without
+	 * creating any objects
+	 * 
+	 * @param genotype
+	 *            contains the GT value
+	 * @param start
+	 *            start of the GT value in genotype, inclusive
+	 * @param end
+	 *            end of the GT value in genotype, exclusive
+	 * @return the ploidy or 0 if the GT value is empty or '.', the ploidy of a
+	 *         missing GT is unknown
+	 */
+	public static int countAlleles(CharSequence genotype, int start, int end)
+	{
+		if (start >= end || (end - start == 1 && genotype.charAt(start) == '.'))
+		{
+			return 0;
+		}
+
+		int alleleCount = 1;
+		for (int i = start; i < end; ++i)
+		{
+			char c = genotype.charAt(i);
+			if (c == PHASED_SEPARATOR || c == UNPHASED_SEPARATOR)
+			{
+				++alleleCount;
+			}
+		}
+		return alleleCount;
+	}
+
+	/**
+	 * Parse the allele indices of a diploid or haploid GT value without
+	 * creating any objects. Missing alleles are stored as -1 and the second
+	 * allele of a haploid GT as -2.
+	 * 
+	 * @param genotype
+	 *            contains the GT value
+	 * @param start
+	 *            start of the GT value in genotype, inclusive
+	 * @param end
+	 *            end of the GT value in genotype, exclusive
+	 * @param alleleIndices
+	 *            the two allele indices are stored here
+	 * @param offset
+	 *            position of the first allele index in alleleIndices
+	 * @return 1 if phased, 0 if not phased and -1 if the GT is empty, has more
+	 *         than two alleles or an allele index larger than 127
+	 */
+	public static int parseAlleleIndices(CharSequence genotype, int start, int end, byte[] alleleIndices, int offset)
+	{
+		if (start >= end)
+		{
+			return -1;
+		}
+
+		int phased = 0;
+		int alleleCount = 0;
+		int index = 0;
+		boolean missing = false;
+
+		for (int i = start; i <= end; ++i)
+		{
+			char c = i == end ? UNPHASED_SEPARATOR : genotype.charAt(i);
+			switch (c)
+			{
+				case PHASED_SEPARATOR:
+				case UNPHASED_SEPARATOR:
+					if (alleleCount == 2 || index > Byte.MAX_VALUE)
+					{
+						return -1;
+					}
+					if (alleleCount == 0 && i != end)
+					{
+						phased = c == PHASED_SEPARATOR ? 1 : 0;
+					}
+					alleleIndices[offset + alleleCount++] = missing ? -1 : (byte) index;
+					index = 0;
+					missing = false;
+					break;
+				case '.':
+					missing = true;
+					break;
+				default:
+					if (c < '0' || c > '9')
+					{
+						throw new IllegalArgumentException("Invalid GT value: "
+								+ genotype.subSequence(start, end).toString());
+					}
+					index = index * 10 + (c - '0');
+			}
+		}
+
+		if (alleleCount == 1)
+		{
+			alleleIndices[offset + 1] = -2;
+		}
+
+		return phased;
+	}
 }
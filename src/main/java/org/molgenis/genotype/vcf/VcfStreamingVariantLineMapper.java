@@ -0,0 +1,38 @@
+package org.molgenis.genotype.vcf;
+
+import java.util.List;
+import java.util.Map;
+
+import org.molgenis.genotype.annotation.Annotation;
+import org.molgenis.genotype.variant.sampleProvider.SampleVariantsProvider;
+
+/**
+ * Line mapper that decodes the genotypes of the line that is mapped, so the
+ * sample data of variants read sequentially does not require a second query
+ * on the VCF file. Lines with genotypes that can not be stored compact use
+ * the default sample variant provider.
+ */
+public class VcfStreamingVariantLineMapper extends VcfVariantLineMapper
+{
+	private final int lineSampleVariantProviderUniqueId;
+
+	/**
+	 * @param lineSampleVariantProviderUniqueId
+	 *            unique id shared by the sample variant providers of all lines
+	 */
+	public VcfStreamingVariantLineMapper(List<String> colNames, List<Annotation> infoAnnotations,
+			Map<String, String> altDescriptions, SampleVariantsProvider sampleVariantsProvider,
+			int lineSampleVariantProviderUniqueId)
+	{
+		super(colNames, infoAnnotations, altDescriptions, sampleVariantsProvider);
+		this.lineSampleVariantProviderUniqueId = lineSampleVariantProviderUniqueId;
+	}
+
+	@Override
+	protected SampleVariantsProvider getSampleVariantsProvider(VcfRecord record)
+	{
+		SampleVariantsProvider lineProvider = VcfLineSampleVariantsProvider.create(record,
+				lineSampleVariantProviderUniqueId);
+		return lineProvider != null ? lineProvider : super.getSampleVariantsProvider(record);
+	}
+}
@@ -64,11 +64,21 @@ public class VcfVariantLineMapper implements VariantLineMapper
 		}
 
 		GeneticVariant variant = ReadOnlyGeneticVariant.createVariant(ids, startPos, sequenceName, annotationValues,
-				sampleVariantsProvider, alleles, refAllele);
+				getSampleVariantsProvider(record), alleles, refAllele);
 
 		return variant;
 	}
 
+	/**
+	 * @param record
+	 *            the record of the variant that is mapped
+	 * @return the sample variant provider of the variant
+	 */
+	protected SampleVariantsProvider getSampleVariantsProvider(VcfRecord record)
+	{
+		return sampleVariantsProvider;
+	}
+
 	private Map<String, Object> getAnnotationValues(VcfRecord record, List<Annotation> annotations)
 	{
 		Map<String, Object> annotationValues = new HashMap<String, Object>();
@@ -1,6 +1,7 @@
 package org.molgenis.genotype;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -46,4 +47,14 @@ public class AlleleTest
 		assertEquals(Allele.A.isSnpAllele(), true);
 	}
 
+	@Test
+	public void createPooled()
+	{
+		assertSame(Allele.create('g'), Allele.create("g"));
+		assertSame(Allele.create("g").getComplement(), Allele.create('c'));
+		assertSame(Allele.create('c').getComplement(), Allele.create('g'));
+		assertSame(Allele.ZERO.getComplement(), Allele.ZERO);
+		assertSame(Allele.create("ACGT"), Allele.create("ACGT"));
+	}
+
 }
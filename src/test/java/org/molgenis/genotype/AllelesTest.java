@@ -2,9 +2,16 @@ package org.molgenis.genotype;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.annotations.Test;
 
@@ -165,4 +172,56 @@ public class AllelesTest
 		assertEquals(alleles.contains(Allele.C), false);
 		assertEquals(alleles.contains(Allele.create("AA")), false);
 	}
+
+	@Test
+	public void createAllelesPairTable()
+	{
+		Alleles alleles = Alleles.createAlleles(Allele.G, Allele.ZERO);
+		assertSame(alleles, Alleles.createAlleles(Arrays.asList(Allele.G, Allele.ZERO)));
+		assertSame(alleles.getComplement(), Alleles.createBasedOnChars('C', '0'));
+		assertSame(alleles.getComplement().getComplement(), alleles);
+
+		Alleles nonSnp = Alleles.createAlleles(Allele.A, Allele.create("AT"));
+		assertSame(nonSnp, Alleles.createBasedOnString("A", "AT"));
+	}
+
+	@Test
+	public void createAllelesConcurrent() throws InterruptedException, ExecutionException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<List<Alleles>>> results = new ArrayList<Future<List<Alleles>>>();
+			for (int t = 0; t < 4; ++t)
+			{
+				results.add(executor.submit(new Callable<List<Alleles>>()
+				{
+					@Override
+					public List<Alleles> call()
+					{
+						List<Alleles> created = new ArrayList<Alleles>();
+						for (int i = 0; i < 200; ++i)
+						{
+							created.add(Alleles.createBasedOnString("concurrent" + i, "G"));
+						}
+						return created;
+					}
+				}));
+			}
+
+			List<Alleles> first = results.get(0).get();
+			for (Future<List<Alleles>> result : results)
+			{
+				List<Alleles> created = result.get();
+				for (int i = 0; i < created.size(); ++i)
+				{
+					assertSame(created.get(i), first.get(i));
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
 }
@@ -50,6 +50,13 @@ public class DummySampleVariantsProvider implements SampleVariantsProvider
 				variant.getVariantAlleles(), variant.getRefAllele());
 	}
 
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
+				variant.getVariantAlleles(), variant.getRefAllele(), calledDosage);
+	}
+
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
@@ -57,4 +64,10 @@ public class DummySampleVariantsProvider implements SampleVariantsProvider
 				variant.getVariantAlleles(), variant.getRefAllele());
 	}
 
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return false;
+	}
+
 }
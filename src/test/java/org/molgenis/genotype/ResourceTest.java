@@ -1,7 +1,18 @@
 package org.molgenis.genotype;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import org.molgenis.genotype.tabix.TabixIndexWriter;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.molgenis.genotype.vcf.VcfGenotypeWriter;
 
 public class ResourceTest
 {
@@ -69,4 +80,60 @@ public class ResourceTest
 	{
 		return getTestResourceFile("/test.haps");
 	}
+
+	/**
+	 * Write a VCF with samples S1, S2 and S3 and its tabix index
+	 */
+	protected static void writeTestVcf(File bzipVcfFile, File tabixIndexFile, String... dataLines) throws IOException
+	{
+		List<String> lines = new ArrayList<String>(Arrays.asList("##fileformat=VCFv4.1",
+				"##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">",
+				"##FORMAT=<ID=DS,Number=A,Type=Float,Description=\"Alternative allele dosage\">",
+				"##FORMAT=<ID=GP,Number=G,Type=Float,Description=\"Genotype probabilities\">",
+				"#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tS1\tS2\tS3"));
+		lines.addAll(Arrays.asList(dataLines));
+
+		TabixIndexWriter indexWriter = TabixIndexWriter.createVcfIndexWriter();
+		BlockCompressedOutputStream outputStream = new BlockCompressedOutputStream(bzipVcfFile);
+		try
+		{
+			for (String line : lines)
+			{
+				long lineBegin = outputStream.getFilePointer();
+				outputStream.write((line + "\n").getBytes("UTF-8"));
+				if (!line.startsWith("#"))
+				{
+					String[] columns = line.split("\t");
+					int begin = Integer.parseInt(columns[1]) - 1;
+					indexWriter.addLine(columns[0], begin, begin + columns[3].length(), lineBegin,
+							outputStream.getFilePointer());
+				}
+			}
+		}
+		finally
+		{
+			outputStream.close();
+		}
+		indexWriter.write(tabixIndexFile);
+	}
+
+	/**
+	 * Split the test VCF in one part per sequence, the parts are returned in
+	 * reverse sequence order
+	 */
+	protected List<RandomAccessGenotypeData> getTestVcfGzParts(File dir) throws IOException, URISyntaxException
+	{
+		VcfGenotypeData genotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0);
+		String basePath = new File(dir, "test").getPath();
+		new VcfGenotypeWriter(genotypeData).writePerSequence(basePath, null, 1);
+
+		List<RandomAccessGenotypeData> parts = new ArrayList<RandomAccessGenotypeData>();
+		for (String seqName : genotypeData.getSeqNames())
+		{
+			File bzipVcfFile = new File(basePath + "." + seqName + ".vcf.gz");
+			parts.add(new VcfGenotypeData(bzipVcfFile, new File(bzipVcfFile.getPath() + ".tbi"), 0));
+		}
+		Collections.reverse(parts);
+		return parts;
+	}
 }
@@ -0,0 +1,182 @@
+package org.molgenis.genotype.binary;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.util.Utils;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class BinaryGenotypeDataTest extends ResourceTest
+{
+	private File tmpDir;
+	private RandomAccessGenotypeData vcfGenotypeData;
+	private BinaryGenotypeData genotypeData;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		tmpDir = new File(FileUtils.getTempDirectory(), "binaryGenotypeDataTest" + System.nanoTime());
+		tmpDir.mkdirs();
+
+		vcfGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0);
+		String basePath = new File(tmpDir, "test").getAbsolutePath();
+		new BinaryGenotypeWriter(vcfGenotypeData).write(basePath);
+		genotypeData = new BinaryGenotypeData(basePath);
+	}
+
+	@AfterClass
+	public void tearDown() throws IOException
+	{
+		genotypeData.close();
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void getSamples()
+	{
+		assertEquals(genotypeData.getSamples().size(), vcfGenotypeData.getSamples().size());
+		for (int i = 0; i < genotypeData.getSamples().size(); ++i)
+		{
+			assertEquals(genotypeData.getSamples().get(i).getId(), vcfGenotypeData.getSamples().get(i).getId());
+		}
+	}
+
+	@Test
+	public void getSeqNames()
+	{
+		assertEquals(genotypeData.getSeqNames(), vcfGenotypeData.getSeqNames());
+	}
+
+	@Test
+	public void roundTrip()
+	{
+		Iterator<GeneticVariant> expectedVariants = vcfGenotypeData.iterator();
+		int count = 0;
+		for (GeneticVariant variant : genotypeData)
+		{
+			assertTrue(expectedVariants.hasNext());
+			GeneticVariant expected = expectedVariants.next();
+
+			assertEquals(variant.getSequenceName(), expected.getSequenceName());
+			assertEquals(variant.getStartPos(), expected.getStartPos());
+			assertEquals(variant.getVariantId().getVariantIds(), expected.getVariantId().getVariantIds());
+			assertEquals(variant.getVariantAlleles(), expected.getVariantAlleles());
+			assertEquals(variant.getRefAllele(), expected.getRefAllele());
+			assertEquals(variant.getSampleCalledDosages(), expected.getSampleCalledDosages());
+			assertEquals(variant.getSampleVariantsProvider().getSamplePhasing(variant), expected
+					.getSampleVariantsProvider().getSamplePhasing(expected));
+
+			List<Alleles> sampleAlleles = variant.getSampleVariants();
+			List<Alleles> expectedSampleAlleles = expected.getSampleVariants();
+			assertEquals(sampleAlleles.size(), expectedSampleAlleles.size());
+			for (int i = 0; i < sampleAlleles.size(); ++i)
+			{
+				assertEquals(getAlleleStrings(sampleAlleles.get(i)), getAlleleStrings(expectedSampleAlleles.get(i)));
+			}
+
+			float[] dosages = variant.getSampleDosages();
+			float[] expectedDosages = expected.getSampleDosages();
+			for (int i = 0; i < dosages.length; ++i)
+			{
+				assertEquals(dosages[i], expectedDosages[i], 0.0001f);
+			}
+			++count;
+		}
+		assertTrue(!expectedVariants.hasNext());
+		assertEquals(count, 8);
+	}
+
+	private static String getAlleleStrings(Alleles alleles)
+	{
+		StringBuilder alleleStrings = new StringBuilder();
+		for (Allele allele : alleles)
+		{
+			String alleleString = allele.getAlleleAsString();
+			alleleStrings.append(alleleString == null ? "0" : alleleString).append(' ');
+		}
+		return alleleStrings.toString();
+	}
+
+	@Test
+	public void getVariantsByPos()
+	{
+		List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.getVariantsByPos("1", 3171929).iterator());
+		assertEquals(variants.size(), 1);
+		assertEquals(variants.get(0).getPrimaryVariantId(), "rs4648464");
+
+		assertEquals(Utils.iteratorToList(genotypeData.getVariantsByPos("1", 3171930).iterator()).size(), 0);
+		assertNull(genotypeData.getSnpVariantByPos("2", 1));
+	}
+
+	@Test
+	public void getVariantsByRange()
+	{
+		List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.getVariantsByRange("1", 3171929, 3172274)
+				.iterator());
+		assertEquals(variants.size(), 3);
+		assertEquals(variants.get(2).getPrimaryVariantId(), "rs2455100");
+	}
+
+	@Test
+	public void getSequenceGeneticVariants()
+	{
+		assertEquals(Utils.iteratorToList(genotypeData.getSequenceGeneticVariants("1").iterator()).size(), 6);
+		assertEquals(Utils.iteratorToList(genotypeData.getSequenceGeneticVariants("3").iterator()).size(), 1);
+	}
+
+	@Test
+	public void getVariantById()
+	{
+		assertEquals(genotypeData.getVariantById("rs4908464").getStartPos(), 7569187);
+		assertEquals(genotypeData.getVariantById("rs1578391").getSequenceName(), "1");
+		assertNull(genotypeData.getVariantById("rs0"));
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void close() throws IOException
+	{
+		BinaryGenotypeData closedGenotypeData = new BinaryGenotypeData(new File(tmpDir, "test").getAbsolutePath());
+		GeneticVariant variant = closedGenotypeData.iterator().next();
+		assertEquals(variant.getSampleCalledDosages().length, closedGenotypeData.getSamples().size());
+
+		closedGenotypeData.close();
+		// the metadata is kept in memory
+		assertEquals(closedGenotypeData.getVariantById("rs1578391"), variant);
+		variant.getSampleCalledDosages();
+	}
+
+	@Test
+	public void withoutDosage() throws IOException
+	{
+		String basePath = new File(tmpDir, "noDosage").getAbsolutePath();
+		new BinaryGenotypeWriter(vcfGenotypeData, false).write(basePath);
+		BinaryGenotypeData noDosage = new BinaryGenotypeData(basePath);
+
+		assertEquals(new File(basePath + ".gtd").length(), BinaryGenotypeFormat.DATA_HEADER_SIZE + 8L
+				* BinaryGenotypeFormat.getBlockSize(noDosage.getSamples().size(), false));
+
+		Iterator<GeneticVariant> expectedVariants = genotypeData.iterator();
+		for (GeneticVariant variant : noDosage)
+		{
+			GeneticVariant expected = expectedVariants.next();
+			assertEquals(variant.getSampleCalledDosages(), expected.getSampleCalledDosages());
+		}
+	}
+}
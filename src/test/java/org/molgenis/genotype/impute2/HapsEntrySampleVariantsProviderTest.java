@@ -47,4 +47,14 @@ public class HapsEntrySampleVariantsProviderTest
 				Arrays.asList(Alleles.createBasedOnChars('A', 'A'), Alleles.createBasedOnChars('G', 'A'),
 						Alleles.createBasedOnChars('A', 'A'), Alleles.createBasedOnChars('G', 'G')));
 	}
+
+	@Test
+	public void loadSampleCalledDosage()
+	{
+		byte[] calledDosage = new byte[4];
+		hapsEntrySampleVariantsProvider.loadSampleCalledDosage(variant, calledDosage);
+		assertEquals(calledDosage, new byte[]
+		{ 2, 1, 2, 0 });
+		assertEquals(hapsEntrySampleVariantsProvider.getSampleCalledDosage(variant), calledDosage);
+	}
 }
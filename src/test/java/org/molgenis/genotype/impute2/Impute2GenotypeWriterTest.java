@@ -1,14 +1,17 @@
 package org.molgenis.genotype.impute2;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.Iterator;
 
 import org.apache.commons.io.FileUtils;
 import org.molgenis.genotype.GenotypeData;
 import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -52,4 +55,42 @@ public class Impute2GenotypeWriterTest extends ResourceTest
 			}
 		}
 	}
+
+	@Test
+	public void writeIndexed() throws IOException, URISyntaxException
+	{
+		File bzipHapsFile = new File("write-indexed-test.haps.tab.gz");
+		File tabixIndexFile = new File("write-indexed-test.haps.tab.gz.tbi");
+		File sampleFile = new File("write-indexed-test.sample");
+		try
+		{
+			writer.writeIndexed("write-indexed-test", null);
+
+			assertEquals(FileUtils.readFileToString(sampleFile), FileUtils.readFileToString(getTestImpute2Sample()));
+
+			Impute2GenotypeData writtenGenotypeData = new Impute2GenotypeData(bzipHapsFile, tabixIndexFile, sampleFile);
+			Iterator<GeneticVariant> writtenVariants = writtenGenotypeData.iterator();
+			for (GeneticVariant variant : genotypeData)
+			{
+				GeneticVariant writtenVariant = writtenVariants.next();
+				assertEquals(writtenVariant.getPrimaryVariantId(), variant.getPrimaryVariantId());
+				assertEquals(writtenVariant.getStartPos(), variant.getStartPos());
+				assertEquals(writtenVariant.getVariantAlleles(), variant.getVariantAlleles());
+				assertEquals(writtenVariant.getSampleVariants(), variant.getSampleVariants());
+				assertEquals(writtenVariant.getSampleVariantsProvider().getSamplePhasing(writtenVariant), variant
+						.getSampleVariantsProvider().getSamplePhasing(variant));
+
+				GeneticVariant queriedVariant = writtenGenotypeData.getSnpVariantByPos(variant.getSequenceName(),
+						variant.getStartPos());
+				assertEquals(queriedVariant.getPrimaryVariantId(), variant.getPrimaryVariantId());
+			}
+			assertFalse(writtenVariants.hasNext());
+		}
+		finally
+		{
+			bzipHapsFile.delete();
+			tabixIndexFile.delete();
+			sampleFile.delete();
+		}
+	}
 }
@@ -0,0 +1,151 @@
+package org.molgenis.genotype.multipart;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.GenomicPosition;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class MultiPartGenotypeDataTest extends ResourceTest
+{
+	private File tmpDir;
+	private MultiPartGenotypeData genotypeData;
+	private ExecutorService executor;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		tmpDir = File.createTempFile("multipart", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+
+		List<RandomAccessGenotypeData> parts = getTestVcfGzParts(tmpDir);
+		assertEquals(parts.size(), 3);
+		genotypeData = new MultiPartGenotypeData(parts);
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterClass
+	public void tearDown() throws IOException
+	{
+		executor.shutdown();
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void visitVariants()
+	{
+		final AtomicInteger count = new AtomicInteger();
+		genotypeData.visitVariants(new VariantVisitor<Void>()
+		{
+			@Override
+			public Void visit(GeneticVariant variant)
+			{
+				count.incrementAndGet();
+				return null;
+			}
+		}, executor, 2);
+
+		assertEquals(count.get(), 8);
+	}
+
+	@Test
+	public void visitVariantsOrdered() throws IOException, URISyntaxException
+	{
+		// the test VCF is sorted, the parts must be visited in the same order
+		List<String> expected = new ArrayList<String>();
+		for (GeneticVariant variant : new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0))
+		{
+			expected.add(variant.getSequenceName() + ":" + variant.getStartPos());
+		}
+
+		final List<String> ids = new ArrayList<String>();
+		genotypeData.visitVariants(new VariantVisitor<String>()
+		{
+			@Override
+			public String visit(GeneticVariant variant)
+			{
+				return variant.getSequenceName() + ":" + variant.getStartPos();
+			}
+		}, new VariantResultHandler<String>()
+		{
+			@Override
+			public void handleResult(GeneticVariant variant, String result)
+			{
+				ids.add(result);
+			}
+		}, executor, 2);
+
+		assertEquals(ids.size(), 8);
+		assertEquals(ids, expected);
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void visitVariantsFailure()
+	{
+		genotypeData.visitVariants(new VariantVisitor<Void>()
+		{
+			@Override
+			public Void visit(GeneticVariant variant)
+			{
+				throw new IllegalStateException("test");
+			}
+		}, executor, 2);
+	}
+
+	@Test
+	public void getVariantsByPositions()
+	{
+		List<GenomicPosition> positions = Arrays.asList(new GenomicPosition("2", 7569187), new GenomicPosition("4",
+				1), new GenomicPosition("1", 565286));
+
+		List<List<GeneticVariant>> variants = genotypeData.getVariantsByPositions(positions);
+		assertEquals(variants.size(), 3);
+		assertEquals(variants.get(0).get(0).getPrimaryVariantId(), "rs4908464");
+		assertEquals(variants.get(1).size(), 0);
+		assertEquals(variants.get(2).get(0).getPrimaryVariantId(), "rs1578391");
+
+		List<GeneticVariant> snpVariants = genotypeData.getSnpVariantsByPositions(positions);
+		assertEquals(snpVariants.get(0).getPrimaryVariantId(), "rs4908464");
+		assertNull(snpVariants.get(1));
+	}
+
+	@Test
+	public void getVariantById() throws IOException
+	{
+		File part2VcfFile = new File(tmpDir, "id2.vcf.gz");
+		File part2IndexFile = new File(tmpDir, "id2.vcf.gz.tbi");
+		writeTestVcf(part2VcfFile, part2IndexFile, "2\t10\trs1\tA\tG\t.\tPASS\t.\tGT\t0/1\t0/0\t1/1");
+		File part1VcfFile = new File(tmpDir, "id1.vcf.gz");
+		File part1IndexFile = new File(tmpDir, "id1.vcf.gz.tbi");
+		writeTestVcf(part1VcfFile, part1IndexFile, "1\t20\trs1\tC\tT\t.\tPASS\t.\tGT\t0/1\t0/0\t1/1",
+				"1\t30\trs2\tC\tT\t.\tPASS\t.\tGT\t0/1\t0/0\t1/1");
+
+		MultiPartGenotypeData idGenotypeData = new MultiPartGenotypeData(Arrays.<RandomAccessGenotypeData> asList(
+				new VcfGenotypeData(part2VcfFile, part2IndexFile, 0), new VcfGenotypeData(part1VcfFile,
+						part1IndexFile, 0)));
+
+		// the first variant in sequence order, not in the order of the parts
+		assertEquals(idGenotypeData.getVariantById("rs1").getSequenceName(), "1");
+		assertEquals(idGenotypeData.getVariantById("rs2").getStartPos(), 30);
+		assertNull(idGenotypeData.getVariantById("rs3"));
+	}
+}
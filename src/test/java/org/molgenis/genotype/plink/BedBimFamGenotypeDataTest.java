@@ -1,16 +1,23 @@
 package org.molgenis.genotype.plink;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.molgenis.genotype.Alleles;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.Sample;
 import org.molgenis.genotype.Sequence;
+import org.molgenis.genotype.plink.drivers.BedFileTransposerTest;
+import org.molgenis.genotype.plink.drivers.MappedBedFileDriver;
 import org.molgenis.genotype.util.Utils;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.testng.annotations.BeforeClass;
@@ -111,6 +118,39 @@ public class BedBimFamGenotypeDataTest extends ResourceTest
 		// false));
 	}
 
+	@Test
+	public void testGetVariantsByRange()
+	{
+		List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.getVariantsByRange("22", 14432618,
+				14433624).iterator());
+		assertEquals(variants.size(), 3);
+		assertEquals(variants.get(0).getPrimaryVariantId(), "rs738829");
+		assertEquals(variants.get(1).getPrimaryVariantId(), "rs7510853");
+		assertEquals(variants.get(2).getPrimaryVariantId(), "rs10154488");
+
+		assertEquals(genotypeData.getVariantsByRange("22", 1, 100).iterator().hasNext(), false);
+		assertEquals(genotypeData.getVariantsByRange("1", 1, Integer.MAX_VALUE).iterator().hasNext(), false);
+	}
+
+	@Test
+	public void testGetVariantsByPosNoVariant()
+	{
+		assertEquals(genotypeData.getVariantsByPos("22", 1).size(), 0);
+		assertEquals(genotypeData.getSnpVariantByPos("22", 1), null);
+	}
+
+	@Test
+	public void testGetSampleCalledDosage()
+	{
+		GeneticVariant variant = genotypeData.getSnpVariantByPos("22", 14431347);
+		assertEquals(variant.getSampleCalledDosages(), new byte[]
+		{ 0, 1, 2, 0, 0, 0, 0, 1, 1 });
+		float[] dosages = variant.getSampleDosages();
+		assertEquals(dosages.length, 9);
+		assertEquals(dosages[1], 1f, 0.0001f);
+		assertEquals(dosages[2], 2f, 0.0001f);
+	}
+
 	@Test
 	public void testGetSnpVariantByPos()
 	{
@@ -120,4 +160,53 @@ public class BedBimFamGenotypeDataTest extends ResourceTest
 		assertEquals(variant.getStartPos(), pos);
 	}
 
+	@Test
+	public void individualMajorBed() throws Exception
+	{
+		File individualMajorBed = File.createTempFile("individualMajor", ".bed");
+		try
+		{
+			MappedBedFileDriver snpMajorDriver = new MappedBedFileDriver(getTestBed(), 9, 10);
+			BedFileTransposerTest.writeIndividualMajor(snpMajorDriver, individualMajorBed);
+			snpMajorDriver.close();
+
+			Set<String> existingTempFiles = getSnpMajorTempFiles();
+			BedBimFamGenotypeData individualMajorData = new BedBimFamGenotypeData(individualMajorBed, getTestBim(),
+					getTestFam());
+			Set<String> snpMajorTempFiles = getSnpMajorTempFiles();
+			snpMajorTempFiles.removeAll(existingTempFiles);
+			assertEquals(snpMajorTempFiles.size(), 1);
+
+			Iterator<GeneticVariant> expectedVariants = genotypeData.iterator();
+			for (GeneticVariant variant : individualMajorData)
+			{
+				GeneticVariant expectedVariant = expectedVariants.next();
+				assertEquals(variant.getPrimaryVariantId(), expectedVariant.getPrimaryVariantId());
+				assertEquals(variant.getSampleVariants(), expectedVariant.getSampleVariants());
+				assertEquals(variant.getSampleCalledDosages(), expectedVariant.getSampleCalledDosages());
+			}
+			assertFalse(expectedVariants.hasNext());
+
+			// the temporary SNP-major copy is deleted on close
+			individualMajorData.close();
+			assertFalse(new File(System.getProperty("java.io.tmpdir"), snpMajorTempFiles.iterator().next()).exists());
+		}
+		finally
+		{
+			individualMajorBed.delete();
+		}
+	}
+
+	private static Set<String> getSnpMajorTempFiles()
+	{
+		Set<String> fileNames = new HashSet<String>();
+		for (String fileName : new File(System.getProperty("java.io.tmpdir")).list())
+		{
+			if (fileName.startsWith("snpMajor") && fileName.endsWith(".bed"))
+			{
+				fileNames.add(fileName);
+			}
+		}
+		return fileNames;
+	}
 }
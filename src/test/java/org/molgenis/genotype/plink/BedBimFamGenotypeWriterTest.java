@@ -0,0 +1,102 @@
+package org.molgenis.genotype.plink;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.NotASnpException;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BedBimFamGenotypeWriterTest extends ResourceTest
+{
+	private File tmpDir;
+
+	@BeforeMethod
+	public void createTmpDir() throws IOException
+	{
+		tmpDir = File.createTempFile("bed-writer", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+	}
+
+	@AfterMethod
+	public void deleteTmpDir() throws IOException
+	{
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void writeBedBimFam() throws Exception
+	{
+		GenotypeData genotypeData = new BedBimFamGenotypeData(getTestBed(), getTestBim(), getTestFam());
+		String basePath = new File(tmpDir, "test").getPath();
+		new BedBimFamGenotypeWriter(genotypeData, BedBimFamGenotypeData.FATHER_SAMPLE_ANNOTATION_NAME,
+				BedBimFamGenotypeData.MOTHER_SAMPLE_ANNOTATION_NAME, BedBimFamGenotypeData.SEX_SAMPLE_ANNOTATION_NAME,
+				BedBimFamGenotypeData.PHENOTYPE_SAMPLE_ANNOTATION_NAME).write(basePath);
+
+		// same allele order, so the genotypes are packed the same
+		assertEquals(FileUtils.readFileToByteArray(new File(basePath + ".bed")),
+				FileUtils.readFileToByteArray(getTestBed()));
+
+		GenotypeData writtenGenotypeData = new BedBimFamGenotypeData(new File(basePath + ".bed"), new File(basePath
+				+ ".bim"), new File(basePath + ".fam"));
+		assertEquals(writtenGenotypeData.getSamples(), genotypeData.getSamples());
+		assertSameGenotypes(writtenGenotypeData, genotypeData);
+	}
+
+	@Test
+	public void writePedMap() throws Exception
+	{
+		GenotypeData genotypeData = new PedMapGenotypeData(getTestPed(), getTestMap());
+		String basePath = new File(tmpDir, "test").getPath();
+		new BedBimFamGenotypeWriter(genotypeData).write(basePath);
+
+		GenotypeData writtenGenotypeData = new BedBimFamGenotypeData(new File(basePath + ".bed"), new File(basePath
+				+ ".bim"), new File(basePath + ".fam"));
+		assertEquals(writtenGenotypeData.getSamples().size(), genotypeData.getSamples().size());
+		assertSameGenotypes(writtenGenotypeData, genotypeData);
+	}
+
+	@Test(expectedExceptions = NotASnpException.class)
+	public void writeNotASnp() throws Exception
+	{
+		GenotypeData genotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+		new BedBimFamGenotypeWriter(genotypeData).write(new File(tmpDir, "test").getPath());
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void writeMultiallelic() throws Exception
+	{
+		File bzipVcfFile = new File(tmpDir, "multiallelic.vcf.gz");
+		File tabixIndexFile = new File(tmpDir, "multiallelic.vcf.gz.tbi");
+		writeTestVcf(bzipVcfFile, tabixIndexFile, "1\t100\trs1\tA\tG\t.\tPASS\t.\tGT\t0/1\t0/0\t1/1",
+				"1\t200\trs2\tA\tC,G\t.\tPASS\t.\tGT\t0/1\t1/2\t2/2");
+		GenotypeData genotypeData = new VcfGenotypeData(bzipVcfFile, tabixIndexFile);
+		new BedBimFamGenotypeWriter(genotypeData).write(new File(tmpDir, "test").getPath());
+	}
+
+	private static void assertSameGenotypes(GenotypeData actual, GenotypeData expected)
+	{
+		Iterator<GeneticVariant> actualVariants = actual.iterator();
+		for (GeneticVariant variant : expected)
+		{
+			GeneticVariant actualVariant = actualVariants.next();
+			assertEquals(actualVariant.getSequenceName(), variant.getSequenceName());
+			assertEquals(actualVariant.getStartPos(), variant.getStartPos());
+			assertEquals(actualVariant.getPrimaryVariantId(), variant.getPrimaryVariantId());
+			assertEquals(actualVariant.getSampleCalledDosages(), variant.getSampleCalledDosages());
+		}
+		assertFalse(actualVariants.hasNext());
+	}
+}
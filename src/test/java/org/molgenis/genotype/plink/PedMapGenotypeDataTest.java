@@ -135,4 +135,39 @@ public class PedMapGenotypeDataTest extends ResourceTest
 
 	}
 
+	@Test
+	public void lowMemory() throws IOException, URISyntaxException
+	{
+		PedMapGenotypeData lowMemoryData = new PedMapGenotypeData(getTestPed(), getTestMap(), true);
+
+		assertEquals(lowMemoryData.getSeqNames(), genotypeData.getSeqNames());
+		assertEquals(lowMemoryData.getSamples(), genotypeData.getSamples());
+
+		List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.iterator());
+		List<GeneticVariant> lowMemoryVariants = Utils.iteratorToList(lowMemoryData.iterator());
+		assertEquals(lowMemoryVariants.size(), variants.size());
+
+		for (int i = 0; i < variants.size(); ++i)
+		{
+			GeneticVariant variant = variants.get(i);
+			GeneticVariant lowMemoryVariant = lowMemoryVariants.get(i);
+			assertEquals(lowMemoryVariant.getPrimaryVariantId(), variant.getPrimaryVariantId());
+			assertEquals(lowMemoryVariant.getVariantAlleles(), variant.getVariantAlleles());
+			assertEquals(lowMemoryVariant.getSampleCalledDosages(), variant.getSampleCalledDosages());
+
+			List<Alleles> sampleAlleles = lowMemoryVariant.getSampleVariants();
+			List<Alleles> expectedSampleAlleles = variant.getSampleVariants();
+			for (int s = 0; s < sampleAlleles.size(); ++s)
+			{
+				// heterozygous genotypes are stored without the allele order
+				assertTrue(sampleAlleles.get(s).sameAlleles(expectedSampleAlleles.get(s)));
+			}
+		}
+
+		GeneticVariant variant = lowMemoryData.getSnpVariantByPos("22", 14433624);
+		assertEquals(variant.getSampleVariants().get(1), Alleles.createBasedOnChars('G', 'A'));
+
+		lowMemoryData.close();
+	}
+
 }
@@ -0,0 +1,73 @@
+package org.molgenis.genotype.plink;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.util.GenotypeDataCompareTool;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PedMapGenotypeWriterTest extends ResourceTest
+{
+	private File tmpDir;
+
+	@BeforeMethod
+	public void createTmpDir() throws IOException
+	{
+		tmpDir = File.createTempFile("ped-writer", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+	}
+
+	@AfterMethod
+	public void deleteTmpDir() throws IOException
+	{
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void writeTransposedInTemporaryFile() throws Exception
+	{
+		GenotypeData genotypeData = new PedMapGenotypeData(getTestPed(), getTestMap());
+
+		String inMemoryPath = new File(tmpDir, "memory").getPath();
+		createWriter(genotypeData, PedMapGenotypeWriter.DEFAULT_TRANSPOSE_BUFFER_SIZE).write(inMemoryPath);
+
+		// a buffer of one variant, every variant is written to the
+		// temporary file
+		String spilledPath = new File(tmpDir, "spilled").getPath();
+		createWriter(genotypeData, 1).write(spilledPath);
+
+		assertEquals(FileUtils.readFileToString(new File(spilledPath + ".ped")),
+				FileUtils.readFileToString(new File(inMemoryPath + ".ped")));
+		assertTrue(GenotypeDataCompareTool.same(genotypeData, new PedMapGenotypeData(spilledPath)));
+	}
+
+	@Test
+	public void writeMissingGenotypes() throws Exception
+	{
+		// the BED reader returns no alleles for missing genotypes
+		GenotypeData genotypeData = new BedBimFamGenotypeData(getTestBed(), getTestBim(), getTestFam());
+		String basePath = new File(tmpDir, "test").getPath();
+		createWriter(genotypeData, 16).write(basePath);
+
+		GenotypeData writtenGenotypeData = new PedMapGenotypeData(basePath);
+		assertEquals(writtenGenotypeData.getSamples().size(), genotypeData.getSamples().size());
+		String ped = FileUtils.readFileToString(new File(basePath + ".ped"));
+		assertEquals(ped.split("\n").length, genotypeData.getSamples().size());
+	}
+
+	private static PedMapGenotypeWriter createWriter(GenotypeData genotypeData, int transposeBufferSize)
+	{
+		return new PedMapGenotypeWriter(genotypeData, PedMapGenotypeData.FATHER_SAMPLE_ANNOTATION_NAME,
+				PedMapGenotypeData.MOTHER_SAMPLE_ANNOTATION_NAME, PedMapGenotypeData.SEX_SAMPLE_ANNOTATION_NAME,
+				PedMapGenotypeData.PHENOTYPE_SAMPLE_ANNOTATION_NAME, transposeBufferSize);
+	}
+}
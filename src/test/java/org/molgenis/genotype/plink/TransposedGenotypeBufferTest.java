@@ -0,0 +1,58 @@
+package org.molgenis.genotype.plink;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class TransposedGenotypeBufferTest
+{
+	@Test
+	public void inMemory() throws IOException
+	{
+		transpose(70, 100, 1 << 20);
+	}
+
+	@Test
+	public void spilled() throws IOException
+	{
+		// block of 3 variants, the last block is partly filled
+		transpose(70, 100, 70 * 3);
+	}
+
+	private void transpose(int sampleCount, int variantCount, int maxBlockSize) throws IOException
+	{
+		byte[][] genotypes = new byte[variantCount][sampleCount];
+		Random random = new Random(1);
+		for (byte[] variantGenotypes : genotypes)
+		{
+			random.nextBytes(variantGenotypes);
+		}
+
+		TransposedGenotypeBuffer buffer = new TransposedGenotypeBuffer(sampleCount, maxBlockSize);
+		try
+		{
+			for (byte[] variantGenotypes : genotypes)
+			{
+				buffer.addVariant(variantGenotypes);
+			}
+			assertEquals(buffer.getVariantCount(), variantCount);
+
+			byte[] sampleGenotypes = new byte[variantCount];
+			for (int s = 0; s < sampleCount; ++s)
+			{
+				buffer.readSample(s, sampleGenotypes);
+				for (int v = 0; v < variantCount; ++v)
+				{
+					assertEquals(sampleGenotypes[v], genotypes[v][s]);
+				}
+			}
+		}
+		finally
+		{
+			buffer.close();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.molgenis.genotype.plink.drivers;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class BedFileTransposerTest extends AbstractResourceTest
+{
+	private static final int NR_OF_INDIVIDUALS = 9;
+	private static final int NR_OF_SNPS = 10;
+
+	private File snpMajorBed;
+	private File individualMajorBed;
+
+	@BeforeClass
+	public void setup() throws Exception
+	{
+		snpMajorBed = getTestResource("/test.bed");
+		individualMajorBed = File.createTempFile("individualMajor", ".bed");
+		individualMajorBed.deleteOnExit();
+		writeIndividualMajor(new MappedBedFileDriver(snpMajorBed, NR_OF_INDIVIDUALS, NR_OF_SNPS), individualMajorBed);
+	}
+
+	@Test
+	public void transpose() throws IOException
+	{
+		File transposed = File.createTempFile("snpMajor", ".bed");
+		transposed.deleteOnExit();
+
+		// small blocks to test transposing in multiple blocks
+		new BedFileTransposer(NR_OF_INDIVIDUALS, NR_OF_SNPS, 3).transpose(individualMajorBed, transposed);
+
+		assertEquals(readFile(transposed), readFile(snpMajorBed));
+	}
+
+	@Test
+	public void mappedBedFileDriverIndividualMajor() throws IOException
+	{
+		MappedBedFileDriver expected = new MappedBedFileDriver(snpMajorBed, NR_OF_INDIVIDUALS, NR_OF_SNPS);
+		MappedBedFileDriver actual = new MappedBedFileDriver(individualMajorBed, NR_OF_INDIVIDUALS, NR_OF_SNPS);
+
+		byte[] expectedCodes = new byte[NR_OF_INDIVIDUALS];
+		byte[] actualCodes = new byte[NR_OF_INDIVIDUALS];
+		for (int snp = 0; snp < NR_OF_SNPS; ++snp)
+		{
+			expected.loadGenotypeCodes(snp, expectedCodes);
+			actual.loadGenotypeCodes(snp, actualCodes);
+			assertEquals(actualCodes, expectedCodes);
+		}
+	}
+
+	/**
+	 * Write the 9 individuals and 10 SNPs of the test BED file individual-major
+	 */
+	public static void writeIndividualMajor(MappedBedFileDriver snpMajor, File file) throws IOException
+	{
+		byte[][] codes = new byte[NR_OF_SNPS][NR_OF_INDIVIDUALS];
+		for (int snp = 0; snp < NR_OF_SNPS; ++snp)
+		{
+			snpMajor.loadGenotypeCodes(snp, codes[snp]);
+		}
+
+		int bytesPerIndividual = (NR_OF_SNPS + 3) / 4;
+		byte[] data = new byte[3 + bytesPerIndividual * NR_OF_INDIVIDUALS];
+		data[0] = 108;
+		data[1] = 27;
+		data[2] = 0;
+		for (int individual = 0; individual < NR_OF_INDIVIDUALS; ++individual)
+		{
+			for (int snp = 0; snp < NR_OF_SNPS; ++snp)
+			{
+				data[3 + individual * bytesPerIndividual + snp / 4] |= codes[snp][individual] << ((snp % 4) * 2);
+			}
+		}
+
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(data);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			byte[] data = new byte[(int) raf.length()];
+			raf.readFully(data);
+			return data;
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+}
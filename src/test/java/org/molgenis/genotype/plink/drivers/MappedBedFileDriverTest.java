@@ -0,0 +1,81 @@
+package org.molgenis.genotype.plink.drivers;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Same test file as the BedFileDriverTest: 9 individuals and 10 SNPs in
+ * SNP-major mode
+ */
+public class MappedBedFileDriverTest extends AbstractResourceTest
+{
+	private MappedBedFileDriver bedfd;
+
+	@BeforeClass
+	public void setup() throws Exception
+	{
+		bedfd = new MappedBedFileDriver(getTestResource("/test.bed"), 9, 10);
+	}
+
+	@Test
+	public void loadGenotypeCodes()
+	{
+		byte[] codes = new byte[9];
+
+		bedfd.loadGenotypeCodes(0, codes);
+		assertEquals(codes, new byte[]
+		{ 3, 2, 0, 3, 3, 3, 3, 2, 2 });
+
+		bedfd.loadGenotypeCodes(1, codes);
+		assertEquals(codes, new byte[]
+		{ 3, 2, 3, 3, 3, 3, 3, 3, 3 });
+
+		bedfd.loadGenotypeCodes(9, codes);
+		assertEquals(codes, new byte[]
+		{ 3, 3, 3, 3, 3, 3, 3, 3, 3 });
+	}
+
+	@Test
+	public void loadGenotypes()
+	{
+		String[] genotypes = new String[9];
+		bedfd.loadGenotypes(0, new String[]
+		{ "A", "N", "H", "B" }, genotypes);
+		assertEquals(genotypes, new String[]
+		{ "B", "H", "A", "B", "B", "B", "B", "H", "H" });
+	}
+
+	@Test
+	public void loadGenotypesSubset()
+	{
+		byte[] codes = new byte[3];
+		bedfd.loadGenotypes(0, new byte[]
+		{ 0, 1, 2, 3 }, new int[]
+		{ 8, 2, 1 }, codes);
+		assertEquals(codes, new byte[]
+		{ 2, 0, 2 });
+
+		String[] genotypes = new String[2];
+		bedfd.loadGenotypes(0, new String[]
+		{ "A", "N", "H", "B" }, new int[]
+		{ 0, 4 }, genotypes);
+		assertEquals(genotypes, new String[]
+		{ "B", "B" });
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void loadGenotypesSubsetOutOfRange()
+	{
+		bedfd.loadGenotypes(0, new byte[]
+		{ 0, 1, 2, 3 }, new int[]
+		{ 9 }, new byte[1]);
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void loadGenotypeCodesOutOfRange()
+	{
+		bedfd.loadGenotypeCodes(10, new byte[9]);
+	}
+}
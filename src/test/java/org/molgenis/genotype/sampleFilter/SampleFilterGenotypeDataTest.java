@@ -0,0 +1,176 @@
+package org.molgenis.genotype.sampleFilter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenotypeDataException;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.Sample;
+import org.molgenis.genotype.impute2.Impute2GenotypeData;
+import org.molgenis.genotype.plink.BedBimFamGenotypeData;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.molgenis.genotype.vcf.VcfGenotypeWriter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class SampleFilterGenotypeDataTest extends ResourceTest
+{
+	private BedBimFamGenotypeData bedGenotypeData;
+	private File tmpDir;
+
+	@BeforeClass
+	public void setUp() throws Exception
+	{
+		bedGenotypeData = new BedBimFamGenotypeData(getTestBed(), getTestBim(), getTestFam());
+		tmpDir = File.createTempFile("sample-filter", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+	}
+
+	@AfterClass
+	public void deleteTmpDir() throws IOException
+	{
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void getSamples()
+	{
+		SampleFilterGenotypeData genotypeData = new SampleFilterGenotypeData(bedGenotypeData, Arrays.asList("1050",
+				"1043", "1044"));
+
+		// the order of the original data is kept
+		List<String> sampleIds = new ArrayList<String>();
+		for (Sample sample : genotypeData.getSamples())
+		{
+			sampleIds.add(sample.getId());
+		}
+		assertEquals(sampleIds, Arrays.asList("1043", "1044", "1050"));
+		assertEquals(genotypeData.getSampleIndices(), new int[]
+		{ 1, 2, 8 });
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void unknownSample()
+	{
+		new SampleFilterGenotypeData(bedGenotypeData, Arrays.asList("1043", "unknown"));
+	}
+
+	@Test
+	public void bed()
+	{
+		SampleFilterGenotypeData genotypeData = new SampleFilterGenotypeData(bedGenotypeData, Arrays.asList("1050",
+				"1043", "1044"));
+		assertSelectedSamples(genotypeData, bedGenotypeData);
+
+		GeneticVariant variant = genotypeData.getVariantById("rs738829");
+		assertEquals(variant.getStartPos(), 14432618);
+		assertEquals(variant.getSampleCalledDosages().length, 3);
+		assertNull(genotypeData.getSnpVariantByPos("22", 1));
+	}
+
+	@Test
+	public void vcf() throws IOException
+	{
+		String basePath = new File(tmpDir, "test").getPath();
+		new VcfGenotypeWriter(bedGenotypeData).write(basePath);
+		VcfGenotypeData vcfGenotypeData = new VcfGenotypeData(new File(basePath + ".vcf.gz"), new File(basePath
+				+ ".vcf.gz.tbi"));
+
+		assertSelectedSamples(new SampleFilterGenotypeData(vcfGenotypeData, Arrays.asList("1049", "1042")),
+				vcfGenotypeData);
+
+		// without cache the selection goes to the VCF record directly
+		VcfGenotypeData uncachedGenotypeData = new VcfGenotypeData(new File(basePath + ".vcf.gz"), new File(basePath
+				+ ".vcf.gz.tbi"), 0);
+		assertSelectedSamples(new SampleFilterGenotypeData(uncachedGenotypeData, Arrays.asList("1045", "1046",
+				"1047")), uncachedGenotypeData);
+	}
+
+	@Test
+	public void vcfGenotypesOnly() throws IOException
+	{
+		File bzipVcfFile = new File(tmpDir, "gt.vcf.gz");
+		File tabixIndexFile = new File(tmpDir, "gt.vcf.gz.tbi");
+		writeTestVcf(bzipVcfFile, tabixIndexFile, "1\t100\trs1\tA\tG\t.\tPASS\t.\tGT\t0/1\t./.\t1|1",
+				"1\t200\trs2\tC\tT,G\t.\tPASS\t.\tGT\t2\t0|1\t0/2",
+				"1\t300\trs3\tC\tT\t.\tPASS\t.\tGT:DS\t0/1\t1/1:1.5\t0/0:0");
+		VcfGenotypeData vcfGenotypeData = new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 0);
+
+		SampleFilterGenotypeData genotypeData = new SampleFilterGenotypeData(vcfGenotypeData, Arrays.asList("S3",
+				"S1"));
+		assertSelectedSamples(genotypeData, vcfGenotypeData);
+
+		// the dropped DS of S1 is not searched in the columns of other samples
+		GeneticVariant variant = genotypeData.getVariantsByPos("1", 300).iterator().next();
+		assertEquals(variant.getSampleDosages(), new float[]
+		{ -1, 2 });
+	}
+
+	@Test
+	public void impute2() throws Exception
+	{
+		Impute2GenotypeData impute2GenotypeData = new Impute2GenotypeData(getTestImpute2Gz(), getTestImpute2GzTbi(),
+				getTestImpute2Sample());
+		String lastSampleId = impute2GenotypeData.getSamples().get(impute2GenotypeData.getSamples().size() - 1)
+				.getId();
+		SampleFilterGenotypeData genotypeData = new SampleFilterGenotypeData(impute2GenotypeData,
+				Arrays.asList(lastSampleId));
+		assertSelectedSamples(genotypeData, impute2GenotypeData);
+
+		for (GeneticVariant variant : genotypeData)
+		{
+			assertEquals(genotypeData.getSamples().size(), 1);
+			assertEquals(variant.getSampleVariantsProvider().getSamplePhasing(variant).size(), 1);
+		}
+	}
+
+	private static void assertSelectedSamples(SampleFilterGenotypeData genotypeData,
+			RandomAccessGenotypeData originalGenotypeData)
+	{
+		int[] sampleIndices = genotypeData.getSampleIndices();
+		Iterator<GeneticVariant> originalVariants = originalGenotypeData.iterator();
+		for (GeneticVariant variant : genotypeData)
+		{
+			GeneticVariant originalVariant = originalVariants.next();
+			assertEquals(variant.getPrimaryVariantId(), originalVariant.getPrimaryVariantId());
+			assertEquals(variant.getStartPos(), originalVariant.getStartPos());
+
+			List<Alleles> originalSampleAlleles = originalVariant.getSampleVariants();
+			byte[] originalCalledDosages = originalVariant.getSampleCalledDosages();
+			float[] originalDosages = originalVariant.getSampleDosages();
+
+			List<Alleles> expectedSampleAlleles = new ArrayList<Alleles>();
+			byte[] expectedCalledDosages = new byte[sampleIndices.length];
+			float[] expectedDosages = new float[sampleIndices.length];
+			for (int i = 0; i < sampleIndices.length; ++i)
+			{
+				expectedSampleAlleles.add(originalSampleAlleles.get(sampleIndices[i]));
+				expectedCalledDosages[i] = originalCalledDosages[sampleIndices[i]];
+				expectedDosages[i] = originalDosages[sampleIndices[i]];
+			}
+
+			assertEquals(variant.getSampleVariants(), expectedSampleAlleles);
+			assertEquals(variant.getSampleCalledDosages(), expectedCalledDosages);
+			assertEquals(variant.getSampleDosages(), expectedDosages);
+
+			byte[] calledDosages = new byte[sampleIndices.length];
+			variant.loadSampleCalledDosages(calledDosages);
+			assertEquals(calledDosages, expectedCalledDosages);
+		}
+		assertFalse(originalVariants.hasNext());
+	}
+}
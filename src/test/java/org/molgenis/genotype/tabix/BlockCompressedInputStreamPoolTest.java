@@ -0,0 +1,47 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import org.molgenis.genotype.ResourceTest;
+import org.testng.annotations.Test;
+
+public class BlockCompressedInputStreamPoolTest extends ResourceTest
+{
+	@Test
+	public void borrow() throws IOException, URISyntaxException
+	{
+		BlockCompressedInputStreamPool pool = new BlockCompressedInputStreamPool(getTestVcfGz(), 1);
+
+		BlockCompressedInputStream inputStream1 = pool.borrow();
+		BlockCompressedInputStream inputStream2 = pool.borrow();
+		assertNotSame(inputStream1, inputStream2);
+
+		inputStream1.close();
+		// closing twice does not add it twice
+		inputStream1.close();
+		assertEquals(pool.getIdleCount(), 1);
+
+		// pool is full so this one is really closed
+		inputStream2.close();
+		assertEquals(pool.getIdleCount(), 1);
+
+		BlockCompressedInputStream inputStream3 = pool.borrow();
+		assertSame(inputStream3, inputStream1);
+		assertEquals(pool.getIdleCount(), 0);
+
+		// reused stream can still seek and read
+		inputStream3.seek(0);
+		assertEquals(inputStream3.readLine().substring(0, 2), "##");
+		inputStream3.close();
+
+		pool.close();
+		assertEquals(pool.getIdleCount(), 0);
+	}
+}
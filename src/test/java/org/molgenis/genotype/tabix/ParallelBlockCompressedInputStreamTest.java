@@ -0,0 +1,219 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+import net.sf.samtools.util.BlockCompressedOutputStream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ParallelBlockCompressedInputStreamTest
+{
+	private static final int LINE_COUNT = 20000;
+
+	private File bzipFile;
+	private ExecutorService executor;
+	private List<String> lines;
+	private List<Long> filePointers;
+
+	@BeforeClass
+	public void setUp() throws IOException
+	{
+		// large enough for many blocks, with lines crossing block boundaries
+		bzipFile = File.createTempFile("parallel", ".txt.gz");
+		BlockCompressedOutputStream outputStream = new BlockCompressedOutputStream(bzipFile);
+		try
+		{
+			for (int i = 0; i < LINE_COUNT; ++i)
+			{
+				outputStream.write(("line\t" + i + "\t" + Integer.toHexString(i * 7919) + (i % 3 == 0 ? "\r\n" : "\n"))
+						.getBytes("UTF-8"));
+			}
+		}
+		finally
+		{
+			outputStream.close();
+		}
+
+		lines = new ArrayList<String>();
+		filePointers = new ArrayList<Long>();
+		BlockCompressedInputStream inputStream = new BlockCompressedInputStream(bzipFile);
+		try
+		{
+			// the file pointer is not available before the first read
+			filePointers.add(0L);
+			String line;
+			while ((line = inputStream.readLine()) != null)
+			{
+				lines.add(line);
+				filePointers.add(inputStream.getFilePointer());
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		executor = Executors.newFixedThreadPool(3);
+	}
+
+	@AfterClass
+	public void tearDown()
+	{
+		executor.shutdown();
+		bzipFile.delete();
+	}
+
+	@Test
+	public void readLine() throws IOException
+	{
+		ParallelBlockCompressedInputStream inputStream = new ParallelBlockCompressedInputStream(bzipFile, executor, 4);
+		try
+		{
+			assertEquals(inputStream.getFilePointer(), (long) filePointers.get(0));
+			for (int i = 0; i < LINE_COUNT; ++i)
+			{
+				assertEquals(inputStream.readLine(), lines.get(i));
+				assertEquals(inputStream.getFilePointer(), (long) filePointers.get(i + 1));
+			}
+			assertNull(inputStream.readLine());
+			assertEquals(inputStream.read(), -1);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	@Test
+	public void read() throws IOException
+	{
+		BlockCompressedInputStream expectedStream = new BlockCompressedInputStream(bzipFile);
+		ParallelBlockCompressedInputStream inputStream = new ParallelBlockCompressedInputStream(bzipFile, executor, 2);
+		try
+		{
+			byte[] expected = new byte[1 << 20];
+			byte[] actual = new byte[1 << 20];
+			int expectedLength = 0;
+			int length;
+			while ((length = expectedStream.read(expected, expectedLength, expected.length - expectedLength)) > 0)
+			{
+				expectedLength += length;
+			}
+			int actualLength = 0;
+			while ((length = inputStream.read(actual, actualLength, 1000)) > 0)
+			{
+				actualLength += length;
+			}
+			assertEquals(actualLength, expectedLength);
+			for (int i = 0; i < expectedLength; ++i)
+			{
+				assertEquals(actual[i], expected[i]);
+			}
+		}
+		finally
+		{
+			expectedStream.close();
+			inputStream.close();
+		}
+	}
+
+	@Test
+	public void seek() throws IOException
+	{
+		ParallelBlockCompressedInputStream inputStream = new ParallelBlockCompressedInputStream(bzipFile, executor, 4);
+		try
+		{
+			// forward within the read ahead, backward and far forward
+			int[] lineIndices = new int[]
+			{ 10, 11, 500, 100, LINE_COUNT - 1, 0, LINE_COUNT / 2 };
+			for (int lineIndex : lineIndices)
+			{
+				inputStream.seek(filePointers.get(lineIndex));
+				assertEquals(inputStream.readLine(), lines.get(lineIndex));
+				assertEquals(inputStream.getFilePointer(), (long) filePointers.get(lineIndex + 1));
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	@Test
+	public void endFilePointer() throws IOException
+	{
+		ParallelBlockCompressedInputStream inputStream = new ParallelBlockCompressedInputStream(bzipFile, executor, 4);
+		try
+		{
+			long endFilePointer = filePointers.get(100);
+			inputStream.setEndFilePointer(endFilePointer);
+
+			// reading stops after the block of the end file pointer
+			int lineCount = 0;
+			while (inputStream.readLine() != null)
+			{
+				++lineCount;
+			}
+			assertEquals(lineCount < LINE_COUNT, true);
+			assertEquals(lineCount >= 100, true);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	@Test
+	public void idleReaderStops() throws IOException, InterruptedException
+	{
+		ParallelBlockCompressedInputStream inputStream = new ParallelBlockCompressedInputStream(bzipFile, executor, 2,
+				200);
+		try
+		{
+			assertEquals(inputStream.readLine(), lines.get(0));
+
+			// the reader can not queue more blocks and stops after the timeout
+			long waitEnd = System.currentTimeMillis() + 10000;
+			while (isReaderRunning() && System.currentTimeMillis() < waitEnd)
+			{
+				Thread.sleep(50);
+			}
+			assertFalse(isReaderRunning());
+
+			// reading continues with a new reader
+			for (int i = 1; i < LINE_COUNT; ++i)
+			{
+				assertEquals(inputStream.readLine(), lines.get(i));
+			}
+			assertNull(inputStream.readLine());
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	private boolean isReaderRunning()
+	{
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+		{
+			if (thread.getName().equals("bgzip-reader-" + bzipFile.getName()) && thread.isAlive())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
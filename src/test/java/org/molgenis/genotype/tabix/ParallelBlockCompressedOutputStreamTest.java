@@ -0,0 +1,116 @@
+package org.molgenis.genotype.tabix;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ParallelBlockCompressedOutputStreamTest
+{
+	private static final int LINE_COUNT = 20000;
+
+	private ExecutorService executor;
+
+	@BeforeClass
+	public void setUp()
+	{
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void writeParallel() throws IOException
+	{
+		write(executor);
+	}
+
+	@Test
+	public void writeSingleThreaded() throws IOException
+	{
+		write(null);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void getVirtualFilePointerNotWritten() throws IOException
+	{
+		File bzipFile = File.createTempFile("parallel", ".txt.gz");
+		ParallelBlockCompressedOutputStream outputStream = new ParallelBlockCompressedOutputStream(bzipFile, executor);
+		try
+		{
+			outputStream.write(new byte[ParallelBlockCompressedOutputStream.BLOCK_SIZE * 3]);
+			outputStream.getVirtualFilePointer(outputStream.getBlockPointer());
+		}
+		finally
+		{
+			outputStream.close();
+			bzipFile.delete();
+		}
+	}
+
+	private void write(ExecutorService executor) throws IOException
+	{
+		File bzipFile = File.createTempFile("parallel", ".txt.gz");
+		try
+		{
+			// large enough for many blocks, with lines crossing block boundaries
+			List<String> lines = new ArrayList<String>();
+			List<Long> blockPointers = new ArrayList<Long>();
+			ParallelBlockCompressedOutputStream outputStream = new ParallelBlockCompressedOutputStream(bzipFile,
+					executor);
+			try
+			{
+				for (int i = 0; i < LINE_COUNT; ++i)
+				{
+					String line = "line\t" + i + "\t" + Integer.toHexString(i * 7919);
+					lines.add(line);
+					blockPointers.add(outputStream.getBlockPointer());
+					outputStream.write((line + '\n').getBytes("UTF-8"));
+				}
+			}
+			finally
+			{
+				outputStream.close();
+			}
+
+			BlockCompressedInputStream inputStream = new BlockCompressedInputStream(bzipFile);
+			try
+			{
+				for (String line : lines)
+				{
+					assertEquals(inputStream.readLine(), line);
+				}
+				assertNull(inputStream.readLine());
+
+				for (int i = 0; i < LINE_COUNT; i += 997)
+				{
+					inputStream.seek(outputStream.getVirtualFilePointer(blockPointers.get(i)));
+					assertEquals(inputStream.readLine(), lines.get(i));
+				}
+			}
+			finally
+			{
+				inputStream.close();
+			}
+		}
+		finally
+		{
+			bzipFile.delete();
+		}
+	}
+}
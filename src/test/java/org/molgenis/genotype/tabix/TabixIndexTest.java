@@ -2,11 +2,18 @@ package org.molgenis.genotype.tabix;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import org.apache.commons.io.IOUtils;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.variant.GeneticVariant;
 import org.molgenis.genotype.variant.VariantLineMapper;
@@ -39,4 +46,81 @@ public class TabixIndexTest extends ResourceTest
 		assertEquals(seqNames.get(1), "2");
 		assertEquals(seqNames.get(2), "3");
 	}
+
+	@Test
+	public void queryTabixIndex() throws IOException
+	{
+		BlockCompressedInputStream inputStream = index.borrowInputStream();
+		try
+		{
+			assertEquals(readLines(index.queryTabixIndex("1", 0, Integer.MAX_VALUE, inputStream)).size(), 6);
+			List<String> lines = readLines(index.queryTabixIndex("1", 565285, 565286, inputStream));
+			assertEquals(lines.size(), 1);
+			assertTrue(lines.get(0).startsWith("1\t565286\t"));
+			assertNull(index.queryTabixIndex("4", 0, Integer.MAX_VALUE, inputStream));
+		}
+		finally
+		{
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	@Test
+	public void concurrentQueries() throws InterruptedException
+	{
+		final AtomicInteger errors = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; ++t)
+		{
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 50; ++i)
+					{
+						try
+						{
+							BlockCompressedInputStream inputStream = index.borrowInputStream();
+							try
+							{
+								if (readLines(index.queryTabixIndex("1", 0, Integer.MAX_VALUE, inputStream)).size() != 6)
+								{
+									errors.incrementAndGet();
+								}
+							}
+							finally
+							{
+								inputStream.close();
+							}
+						}
+						catch (IOException e)
+						{
+							errors.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals(errors.get(), 0);
+	}
+
+	private static List<String> readLines(TabixIndex.TabixIterator iterator) throws IOException
+	{
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = iterator.next()) != null)
+		{
+			lines.add(line);
+		}
+		return lines;
+	}
 }
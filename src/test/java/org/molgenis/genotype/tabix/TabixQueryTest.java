@@ -170,10 +170,23 @@ public class TabixQueryTest extends ResourceTest implements SampleVariantsProvid
 				variant.getVariantAlleles(), variant.getRefAllele());
 	}
 
+	@Override
+	public void loadSampleCalledDosage(GeneticVariant variant, byte[] calledDosage)
+	{
+		CalledDosageConvertor.convertCalledAllelesToCalledDosage(getSampleVariants(variant),
+				variant.getVariantAlleles(), variant.getRefAllele(), calledDosage);
+	}
+
 	@Override
 	public float[] getSampleDosage(GeneticVariant variant)
 	{
 		return CalledDosageConvertor.convertCalledAllelesToDosage(getSampleVariants(variant),
 				variant.getVariantAlleles(), variant.getRefAllele());
 	}
+
+	@Override
+	public boolean hasImputedDosage(GeneticVariant variant)
+	{
+		return false;
+	}
 }
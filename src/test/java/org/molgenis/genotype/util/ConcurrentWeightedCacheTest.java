@@ -0,0 +1,139 @@
+package org.molgenis.genotype.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class ConcurrentWeightedCacheTest
+{
+	private static final ConcurrentWeightedCache.Weigher<byte[]> BYTE_WEIGHER = new ConcurrentWeightedCache.Weigher<byte[]>()
+	{
+		@Override
+		public long getWeight(byte[] value)
+		{
+			return value.length;
+		}
+	};
+
+	@Test
+	public void evictOnEntries()
+	{
+		ConcurrentWeightedCache<String, byte[]> cache = new ConcurrentWeightedCache<String, byte[]>(2,
+				Long.MAX_VALUE, BYTE_WEIGHER, 1);
+
+		cache.put("a", new byte[1]);
+		cache.put("b", new byte[1]);
+		// a is now most recently used
+		assertEquals(cache.get("a").length, 1);
+		cache.put("c", new byte[1]);
+
+		assertEquals(cache.size(), 2);
+		assertNull(cache.get("b"));
+		assertEquals(cache.get("a").length, 1);
+		assertEquals(cache.get("c").length, 1);
+		assertEquals(cache.getEvictionCount(), 1);
+	}
+
+	@Test
+	public void evictOnWeight()
+	{
+		ConcurrentWeightedCache<String, byte[]> cache = new ConcurrentWeightedCache<String, byte[]>(100, 10,
+				BYTE_WEIGHER, 1);
+
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		assertEquals(cache.getWeight(), 8);
+
+		cache.put("c", new byte[4]);
+		assertEquals(cache.getWeight(), 8);
+		assertNull(cache.get("a"));
+
+		// replacing a value updates the weight
+		cache.put("b", new byte[2]);
+		assertEquals(cache.getWeight(), 6);
+
+		// too heavy to cache
+		cache.put("d", new byte[11]);
+		assertNull(cache.get("d"));
+		assertEquals(cache.size(), 2);
+	}
+
+	@Test
+	public void counts()
+	{
+		ConcurrentWeightedCache<String, byte[]> cache = new ConcurrentWeightedCache<String, byte[]>(10, 100,
+				BYTE_WEIGHER);
+
+		assertNull(cache.get("a"));
+		cache.put("a", new byte[1]);
+		cache.get("a");
+		cache.get("a");
+
+		assertEquals(cache.getHitCount(), 2);
+		assertEquals(cache.getMissCount(), 1);
+		assertEquals(cache.getEvictionCount(), 0);
+
+		cache.clear();
+		assertEquals(cache.size(), 0);
+		assertEquals(cache.getWeight(), 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void putNull()
+	{
+		new ConcurrentWeightedCache<String, byte[]>(10, 100, BYTE_WEIGHER).put("a", null);
+	}
+
+	@Test
+	public void concurrentAccess() throws InterruptedException
+	{
+		final ConcurrentWeightedCache<Integer, byte[]> cache = new ConcurrentWeightedCache<Integer, byte[]>(64,
+				1000, BYTE_WEIGHER);
+		final AtomicInteger wrongValues = new AtomicInteger();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; ++t)
+		{
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 10000; ++i)
+					{
+						int key = i % 200;
+						byte[] value = cache.get(key);
+						if (value == null)
+						{
+							cache.put(key, new byte[key % 20 + 1]);
+						}
+						else if (value.length != key % 20 + 1)
+						{
+							wrongValues.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(wrongValues.get(), 0);
+		assertTrue(cache.size() <= 64);
+		assertTrue(cache.getWeight() <= 1000);
+		assertEquals(cache.getHitCount() + cache.getMissCount(), 40000);
+	}
+
+}
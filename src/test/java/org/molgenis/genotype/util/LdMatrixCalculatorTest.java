@@ -0,0 +1,121 @@
+package org.molgenis.genotype.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.molgenis.genotype.Allele;
+import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.DummySampleVariantsProvider;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class LdMatrixCalculatorTest
+{
+	private static final int SAMPLE_COUNT = 150;
+	private static final int VARIANT_COUNT = 70;
+
+	private List<GeneticVariant> variants;
+	private LdMatrixCalculator ldMatrixCalculator;
+	private ExecutorService executor;
+
+	@BeforeClass
+	public void setUp() throws LdCalculatorException
+	{
+		Random random = new Random(42);
+		variants = new ArrayList<GeneticVariant>();
+		for (int v = 0; v < VARIANT_COUNT; ++v)
+		{
+			List<Alleles> sampleAlleles = new ArrayList<Alleles>();
+			for (int s = 0; s < SAMPLE_COUNT; ++s)
+			{
+				if (random.nextInt(20) == 0)
+				{
+					sampleAlleles.add(Alleles.createAlleles(Allele.ZERO, Allele.ZERO));
+				}
+				else
+				{
+					sampleAlleles.add(Alleles.createBasedOnChars(random.nextBoolean() ? 'A' : 'C',
+							random.nextBoolean() ? 'A' : 'C'));
+				}
+			}
+			variants.add(ReadOnlyGeneticVariant.createSnp("rs" + v, v + 1, "1", new DummySampleVariantsProvider(
+					sampleAlleles), 'A', 'C'));
+		}
+
+		ldMatrixCalculator = new LdMatrixCalculator(variants);
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterClass
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void calculateLd() throws LdCalculatorException
+	{
+		Ld expected = LdCalculator.calculateLd(variants.get(3), variants.get(67));
+		Ld ld = ldMatrixCalculator.calculateLd(3, 67);
+
+		assertEquals(ld.getR2(), expected.getR2(), 1e-12);
+		assertEquals(ld.getDPrime(), expected.getDPrime(), 1e-12);
+		assertEquals(ld.getHaplotypesFreq(), expected.getHaplotypesFreq());
+		assertEquals(ld.getVariant1(), variants.get(3));
+	}
+
+	@Test
+	public void calculateR2Matrix() throws LdCalculatorException
+	{
+		double[][] r2 = ldMatrixCalculator.calculateR2Matrix(executor, 2);
+
+		assertEquals(r2.length, VARIANT_COUNT);
+		for (int i = 0; i < VARIANT_COUNT; ++i)
+		{
+			for (int j = 0; j < VARIANT_COUNT; ++j)
+			{
+				assertEquals(r2[i][j], LdCalculator.calculateLd(variants.get(i), variants.get(j)).getR2(), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void calculateR2Window() throws LdCalculatorException
+	{
+		double[][] r2 = ldMatrixCalculator.calculateR2Window(5, executor, 3);
+
+		assertEquals(r2.length, VARIANT_COUNT);
+		assertEquals(r2[0].length, 5);
+		assertEquals(r2[VARIANT_COUNT - 3].length, 2);
+		assertEquals(r2[VARIANT_COUNT - 1].length, 0);
+		for (int i = 0; i < VARIANT_COUNT; ++i)
+		{
+			for (int j = 0; j < r2[i].length; ++j)
+			{
+				assertEquals(r2[i][j], ldMatrixCalculator.calculateR2(i, i + j + 1), 1e-12);
+				assertEquals(r2[i][j], LdCalculator.calculateLd(variants.get(i), variants.get(i + j + 1)).getR2(),
+						1e-12);
+			}
+		}
+	}
+
+	@Test(expectedExceptions = LdCalculatorException.class)
+	public void differentSampleCounts() throws LdCalculatorException
+	{
+		List<Alleles> sampleAlleles = new ArrayList<Alleles>();
+		sampleAlleles.add(Alleles.createBasedOnChars('A', 'C'));
+
+		List<GeneticVariant> mixedVariants = new ArrayList<GeneticVariant>(variants.subList(0, 2));
+		mixedVariants.add(ReadOnlyGeneticVariant.createSnp("rs", 1, "1", new DummySampleVariantsProvider(
+				sampleAlleles), 'A', 'C'));
+		new LdMatrixCalculator(mixedVariants);
+	}
+}
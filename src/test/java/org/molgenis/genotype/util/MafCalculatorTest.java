@@ -48,4 +48,26 @@ public class MafCalculatorTest
 		assertEquals(result.getFreq(), 0.333333333333d, 0.01);
 
 	}
+
+	@Test
+	public void calculateMafFromCalledDosage()
+	{
+		Alleles variantAlleles = Alleles.createBasedOnChars('A', 'T');
+
+		MafResult result = MafCalculator.calculateMafFromCalledDosage(variantAlleles, null, new byte[]
+		{ 2, 1, -1, 0, 0 }, 5);
+		assertEquals(result.getMinorAllele(), Allele.A);
+		assertEquals(result.getFreq(), 0.375d, 0.00000001);
+
+		result = MafCalculator.calculateMafFromCalledDosage(variantAlleles, Allele.T, new byte[]
+		{ 2, 2, 1, 9 }, 3);
+		assertEquals(result.getMinorAllele(), Allele.A);
+		assertEquals(result.getFreq(), 1 / 6d, 0.00000001);
+
+		// ties are won by the reference
+		result = MafCalculator.calculateMafFromCalledDosage(variantAlleles, Allele.T, new byte[]
+		{ 1, 1 }, 2);
+		assertEquals(result.getMinorAllele(), Allele.T);
+		assertEquals(result.getFreq(), 0.5d, 0.00000001);
+	}
 }
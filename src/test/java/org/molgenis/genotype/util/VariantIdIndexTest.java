@@ -0,0 +1,173 @@
+package org.molgenis.genotype.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.GenomicPosition;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.impute2.Impute2GenotypeData;
+import org.molgenis.genotype.multipart.MultiPartGenotypeData;
+import org.molgenis.genotype.plink.BedBimFamGenotypeData;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class VariantIdIndexTest extends ResourceTest
+{
+	private File tmpDir;
+
+	@BeforeMethod
+	public void createTmpDir() throws IOException
+	{
+		tmpDir = File.createTempFile("variant-id-index", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+	}
+
+	@AfterMethod
+	public void deleteTmpDir() throws IOException
+	{
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void getVariantByIdVcf() throws IOException, URISyntaxException
+	{
+		VcfGenotypeData genotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+		GeneticVariant scannedVariant = genotypeData.getVariantById("rs4908464");
+
+		genotypeData.createVariantIdIndex(new File(tmpDir, "test.vcf.gz.vid"));
+		GeneticVariant variant = genotypeData.getVariantById("rs4908464");
+		assertEquals(variant.getSequenceName(), "2");
+		assertEquals(variant.getStartPos(), 7569187);
+		assertEquals(variant.getPrimaryVariantId(), "rs4908464");
+		assertEquals(variant, scannedVariant);
+
+		assertNull(genotypeData.getVariantById("rs0"));
+		assertNull(genotypeData.getVariantById("RS4908464"));
+	}
+
+	@Test
+	public void getCandidatePositions() throws IOException, URISyntaxException
+	{
+		VariantIdIndex index = VariantIdIndex.create(new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi()),
+				new File(tmpDir, "test.vcf.gz.vid"));
+		assertEquals(index.getCandidatePositions("rs4908464"), Arrays.asList(new GenomicPosition("2", 7569187)));
+		assertTrue(index.getCandidatePositions("rs0").isEmpty());
+	}
+
+	@Test
+	public void openDefaultIndex() throws IOException, URISyntaxException
+	{
+		File bzipVcfFile = new File(tmpDir, "test.vcf.gz");
+		File tabixIndexFile = new File(tmpDir, "test.vcf.gz.tbi");
+		FileUtils.copyFile(getTestVcfGz(), bzipVcfFile);
+		FileUtils.copyFile(getTestVcfGzTbi(), tabixIndexFile);
+
+		VcfGenotypeData genotypeData = new VcfGenotypeData(bzipVcfFile, tabixIndexFile);
+		assertNull(genotypeData.getVariantIdIndex());
+
+		File indexFile = VariantIdIndex.getDefaultIndexFile(bzipVcfFile);
+		VariantIdIndex.write(genotypeData, indexFile);
+		indexFile.setLastModified(bzipVcfFile.lastModified() + 1000);
+
+		genotypeData = new VcfGenotypeData(bzipVcfFile, tabixIndexFile);
+		assertNotNull(genotypeData.getVariantIdIndex());
+		assertEquals(genotypeData.getVariantById("rs4908464").getStartPos(), 7569187);
+
+		// an index older than the data is not used
+		indexFile.setLastModified(bzipVcfFile.lastModified() - 1000);
+		assertNull(new VcfGenotypeData(bzipVcfFile, tabixIndexFile).getVariantIdIndex());
+	}
+
+	@Test
+	public void getVariantByIdImpute2() throws IOException, URISyntaxException
+	{
+		Impute2GenotypeData genotypeData = new Impute2GenotypeData(getTestImpute2Gz(), getTestImpute2GzTbi(),
+				getTestImpute2Sample());
+		genotypeData.createVariantIdIndex(new File(tmpDir, "test.haps.vid"));
+		assertAllVariantsFound(genotypeData);
+
+		GeneticVariant variant = genotypeData.getVariantById("SNP2");
+		assertEquals(variant.getSequenceName(), "7");
+		assertEquals(variant.getStartPos(), 456);
+	}
+
+	@Test
+	public void getVariantByIdBed() throws Exception
+	{
+		BedBimFamGenotypeData genotypeData = new BedBimFamGenotypeData(getTestBed(), getTestBim(), getTestFam());
+		assertAllVariantsFound(genotypeData);
+		assertEquals(genotypeData.getVariantById("rs738829").getStartPos(), 14432618);
+		assertNull(genotypeData.getVariantById("rs0"));
+
+		genotypeData.createVariantIdIndex(new File(tmpDir, "test.bed.vid"));
+		assertAllVariantsFound(genotypeData);
+		assertNull(genotypeData.getVariantById("rs0"));
+	}
+
+	@Test
+	public void getVariantByIdMultiPart() throws IOException, URISyntaxException
+	{
+		VcfGenotypeData vcfGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+		vcfGenotypeData.createVariantIdIndex(new File(tmpDir, "test.vcf.gz.vid"));
+		List<RandomAccessGenotypeData> parts = new ArrayList<RandomAccessGenotypeData>();
+		parts.add(vcfGenotypeData);
+		MultiPartGenotypeData genotypeData = new MultiPartGenotypeData(parts);
+
+		assertEquals(genotypeData.getVariantById("rs4908464").getStartPos(), 7569187);
+		assertNull(genotypeData.getVariantById("rs0"));
+	}
+
+	@Test
+	public void sort()
+	{
+		Random random = new Random(1);
+		int count = 10000;
+		long[] hashes = new long[count];
+		int[] order = new int[count];
+		for (int i = 0; i < count; ++i)
+		{
+			// few distinct hashes to test the ties
+			hashes[i] = random.nextInt(100) - 50;
+			order[i] = i;
+		}
+		long[] originalHashes = hashes.clone();
+
+		VariantIdIndex.sort(hashes, order, 0, count);
+
+		for (int i = 0; i < count; ++i)
+		{
+			assertEquals(hashes[i], originalHashes[order[i]]);
+			if (i > 0)
+			{
+				assertTrue(hashes[i - 1] < hashes[i] || (hashes[i - 1] == hashes[i] && order[i - 1] < order[i]));
+			}
+		}
+	}
+
+	private static void assertAllVariantsFound(RandomAccessGenotypeData genotypeData)
+	{
+		for (GeneticVariant variant : genotypeData)
+		{
+			GeneticVariant foundVariant = genotypeData.getVariantById(variant.getPrimaryVariantId());
+			assertEquals(foundVariant.getSequenceName(), variant.getSequenceName());
+			assertEquals(foundVariant.getStartPos(), variant.getStartPos());
+			assertEquals(foundVariant.getPrimaryVariantId(), variant.getPrimaryVariantId());
+		}
+	}
+}
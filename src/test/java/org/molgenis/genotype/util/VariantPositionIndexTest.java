@@ -0,0 +1,53 @@
+package org.molgenis.genotype.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class VariantPositionIndexTest
+{
+	private VariantPositionIndex index;
+
+	@BeforeClass
+	public void setUp()
+	{
+		index = new VariantPositionIndex(Arrays.asList("1", "1", "2", "1", "1", "2"), new int[]
+		{ 300, 100, 50, 200, 200, 10 });
+	}
+
+	@Test
+	public void getVariantIndices()
+	{
+		assertEquals(index.getVariantIndices("1", 100), new int[]
+		{ 1 });
+		assertEquals(index.getVariantIndices("1", 200), new int[]
+		{ 3, 4 });
+		assertEquals(index.getVariantIndices("1", 150), new int[0]);
+		assertEquals(index.getVariantIndices("2", 10), new int[]
+		{ 5 });
+		assertEquals(index.getVariantIndices("3", 10), new int[0]);
+	}
+
+	@Test
+	public void getVariantIndicesInRange()
+	{
+		assertEquals(index.getVariantIndicesInRange("1", 100, 300), new int[]
+		{ 1, 3, 4 });
+		assertEquals(index.getVariantIndicesInRange("1", 101, 301), new int[]
+		{ 3, 4, 0 });
+		assertEquals(index.getVariantIndicesInRange("1", 301, 400), new int[0]);
+		assertEquals(index.getVariantIndicesInRange("2", 0, 100), new int[]
+		{ 5, 2 });
+	}
+
+	@Test
+	public void getSequenceVariantIndices()
+	{
+		assertEquals(index.getSequenceVariantIndices("1"), new int[]
+		{ 1, 3, 4, 0 });
+		assertEquals(index.getSequenceVariantIndices("3"), new int[0]);
+	}
+}
@@ -0,0 +1,104 @@
+package org.molgenis.genotype.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.multipart.MultiPartGenotypeData;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class VariantQcCalculatorTest extends ResourceTest
+{
+	private RandomAccessGenotypeData genotypeData;
+	private ExecutorService executor;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		genotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0);
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterClass
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void calculate()
+	{
+		List<VariantQcResult> results = VariantQcCalculator.calculate(genotypeData);
+		assertEquals(results.size(), 8);
+		assertResults(results);
+	}
+
+	@Test
+	public void calculateParallel() throws IOException, URISyntaxException
+	{
+		File tmpDir = File.createTempFile("variant-qc", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+
+		List<VariantQcResult> results;
+		try
+		{
+			MultiPartGenotypeData multiPartGenotypeData = new MultiPartGenotypeData(getTestVcfGzParts(tmpDir));
+			results = VariantQcCalculator.calculate(multiPartGenotypeData, executor, 2);
+		}
+		finally
+		{
+			FileUtils.deleteDirectory(tmpDir);
+		}
+		assertEquals(results.size(), 8);
+		assertResults(results);
+
+		List<VariantQcResult> sequentialResults = VariantQcCalculator.calculate(genotypeData);
+		for (int i = 0; i < results.size(); ++i)
+		{
+			assertEquals(results.get(i).getVariant().getPrimaryVariantId(), sequentialResults.get(i).getVariant()
+					.getPrimaryVariantId());
+			assertEquals(results.get(i).getMinorAlleleFrequency(), sequentialResults.get(i)
+					.getMinorAlleleFrequency());
+		}
+	}
+
+	private static void assertResults(List<VariantQcResult> results)
+	{
+		for (VariantQcResult result : results)
+		{
+			GeneticVariant variant = result.getVariant();
+			byte[] calledDosages = variant.getSampleCalledDosages();
+
+			int[] expectedCounts = new int[4];
+			for (byte dosage : calledDosages)
+			{
+				++expectedCounts[dosage + 1];
+			}
+			assertEquals(result.getMissingCount(), expectedCounts[0]);
+			assertEquals(result.getHomozygousAltCount(), expectedCounts[1]);
+			assertEquals(result.getHeterozygousCount(), expectedCounts[2]);
+			assertEquals(result.getHomozygousRefCount(), expectedCounts[3]);
+			assertEquals(result.getCallRate(), (calledDosages.length - expectedCounts[0])
+					/ (double) calledDosages.length, 1e-9);
+
+			if (variant.getAlleleCount() == 2)
+			{
+				assertEquals(result.getMinorAllele(), variant.getMinorAllele());
+				assertEquals(result.getMinorAlleleFrequency(), variant.getMinorAlleleFrequency(), 1e-6);
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package org.molgenis.genotype.variantFilter;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.GenomicPosition;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.vcf.VcfGenotypeData;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class VariantFilterGenotypeDataTest extends ResourceTest
+{
+	private VcfGenotypeData originalGenotypeData;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		originalGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+	}
+
+	@Test
+	public void snpFilter()
+	{
+		VariantFilterGenotypeData genotypeData = new VariantFilterGenotypeData(originalGenotypeData,
+				new VariantFilterSnp());
+
+		List<Integer> expectedPositions = Arrays.asList(565286, 3171929, 3172062, 3172273, 6097450, 7569187);
+		assertEquals(getPositions(genotypeData), expectedPositions);
+		// the second iteration uses the included variants of the first
+		assertEquals(getPositions(genotypeData), expectedPositions);
+
+		genotypeData.clearCache();
+		assertEquals(getPositions(genotypeData), expectedPositions);
+
+		assertTrue(genotypeData.getVariantsByPos("1", 2243618).isEmpty());
+		assertNull(genotypeData.getVariantById("rs35434908"));
+		assertEquals(genotypeData.getVariantsByPos("1", 565286).size(), 1);
+	}
+
+	@Test
+	public void idFilter()
+	{
+		VariantFilterGenotypeData genotypeData = new VariantFilterGenotypeData(originalGenotypeData,
+				new VariantIdIncludeFilter("rs4648465", "rs4908464", "rs0"));
+
+		assertEquals(getPositions(genotypeData), Arrays.asList(3172062, 7569187));
+		assertEquals(getPositions(genotypeData), Arrays.asList(3172062, 7569187));
+
+		assertNotNull(genotypeData.getVariantById("rs4908464"));
+		assertNull(genotypeData.getVariantById("rs1578391"));
+		assertNull(genotypeData.getSnpVariantByPos("1", 565286));
+		assertNotNull(genotypeData.getSnpVariantByPos("1", 3172062));
+
+		List<List<GeneticVariant>> variantsByPosition = genotypeData.getVariantsByPositions(Arrays.asList(
+				new GenomicPosition("2", 7569187), new GenomicPosition("1", 565286)));
+		assertEquals(variantsByPosition.get(0).size(), 1);
+		assertTrue(variantsByPosition.get(1).isEmpty());
+
+		List<GeneticVariant> sequenceVariants = new ArrayList<GeneticVariant>();
+		for (GeneticVariant variant : genotypeData.getSequenceGeneticVariants("3"))
+		{
+			sequenceVariants.add(variant);
+		}
+		assertTrue(sequenceVariants.isEmpty());
+	}
+
+	@Test
+	public void getVariantByDuplicateId() throws IOException
+	{
+		File tmpDir = File.createTempFile("variant-filter", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+		try
+		{
+			File bzipVcfFile = new File(tmpDir, "duplicate.vcf.gz");
+			File tabixIndexFile = new File(tmpDir, "duplicate.vcf.gz.tbi");
+			writeTestVcf(bzipVcfFile, tabixIndexFile, "1\t100\trs1\tA\tAT\t.\tPASS\t.\tGT\t0/1\t0/0\t1/1",
+					"1\t200\trs1\tC\tT\t.\tPASS\t.\tGT\t0/1\t0/0\t1/1");
+			VcfGenotypeData duplicateGenotypeData = new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 0);
+			VariantFilterGenotypeData genotypeData = new VariantFilterGenotypeData(duplicateGenotypeData,
+					new VariantFilterSnp());
+
+			// the first variant with the ID is excluded
+			assertEquals(genotypeData.getVariantById("rs1").getStartPos(), 200);
+
+			duplicateGenotypeData.createVariantIdIndex(new File(tmpDir, "duplicate.vid"));
+			assertEquals(genotypeData.getVariantById("rs1").getStartPos(), 200);
+			assertNull(genotypeData.getVariantById("rs2"));
+		}
+		finally
+		{
+			FileUtils.deleteDirectory(tmpDir);
+		}
+	}
+
+	@Test
+	public void combinedFilter()
+	{
+		VariantFilterGenotypeData genotypeData = new VariantFilterGenotypeData(originalGenotypeData,
+				new VariantCombinedFilter(new VariantFilterSeqPos("1", 2243618, 3172273), new VariantFilterBiAllelic()));
+
+		assertEquals(getPositions(genotypeData), Arrays.asList(2243618, 3171929, 3172062));
+
+		List<Integer> rangePositions = new ArrayList<Integer>();
+		for (GeneticVariant variant : genotypeData.getVariantsByRange("1", 3000000, 4000000))
+		{
+			rangePositions.add(variant.getStartPos());
+		}
+		assertEquals(rangePositions, Arrays.asList(3171929, 3172062));
+	}
+
+	@Test
+	public void includeExcludeVariants()
+	{
+		HashSet<GeneticVariant> includeVariants = new HashSet<GeneticVariant>();
+		HashSet<GeneticVariant> excludeVariants = new HashSet<GeneticVariant>();
+		for (GeneticVariant variant : originalGenotypeData.getSequenceGeneticVariants("1"))
+		{
+			includeVariants.add(variant);
+			if (variant.getStartPos() == 3171929)
+			{
+				excludeVariants.add(variant);
+			}
+		}
+
+		assertEquals(getPositions(new VariantFilterGenotypeData(originalGenotypeData, includeVariants,
+				excludeVariants)), Arrays.asList(565286, 2243618, 3172062, 3172273, 6097450));
+		assertEquals(getPositions(new VariantFilterGenotypeData(originalGenotypeData, null, excludeVariants)),
+				Arrays.asList(565286, 2243618, 3172062, 3172273, 6097450, 7569187, 7569));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void includeExcludeVariantsNull()
+	{
+		new VariantFilterGenotypeData(originalGenotypeData, null, null);
+	}
+
+	private static List<Integer> getPositions(Iterable<GeneticVariant> variants)
+	{
+		List<Integer> positions = new ArrayList<Integer>();
+		for (GeneticVariant variant : variants)
+		{
+			positions.add(variant.getStartPos());
+		}
+		return positions;
+	}
+}
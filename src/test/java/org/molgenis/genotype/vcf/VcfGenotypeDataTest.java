@@ -5,19 +5,29 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.Allele;
 import org.molgenis.genotype.Alleles;
+import org.molgenis.genotype.GenomicPosition;
+import org.molgenis.genotype.GenotypeDataException;
 import org.molgenis.genotype.ResourceTest;
 import org.molgenis.genotype.Sequence;
 import org.molgenis.genotype.annotation.Annotation;
 import org.molgenis.genotype.annotation.VcfAnnotation;
+import org.molgenis.genotype.util.CalledDosageConvertor;
+import org.molgenis.genotype.util.DosageQuantization;
 import org.molgenis.genotype.util.Utils;
 import org.molgenis.genotype.variant.GeneticVariant;
+import org.molgenis.genotype.variant.ReadOnlyGeneticVariant;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -180,4 +190,244 @@ public class VcfGenotypeDataTest extends ResourceTest
 		GeneticVariant variant = genotypeData.getVariantsByPos("1", 565286).iterator().next();
 		assertEquals(genotypeData.getSamplePhasing(variant), Arrays.asList(false));
 	}
+
+	@Test
+	public void loadSampleCalledDosages()
+	{
+		for (GeneticVariant variant : genotypeData)
+		{
+			byte[] expected = CalledDosageConvertor.convertCalledAllelesToCalledDosage(variant.getSampleVariants(),
+					variant.getVariantAlleles(), variant.getRefAllele());
+
+			byte[] calledDosages = new byte[expected.length];
+			variant.loadSampleCalledDosages(calledDosages);
+
+			assertEquals(calledDosages, expected);
+			assertEquals(variant.getSampleCalledDosages(), expected);
+		}
+	}
+
+	@Test
+	public void streaming() throws IOException, URISyntaxException
+	{
+		VcfGenotypeData streamingGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0, true);
+
+		List<GeneticVariant> expectedVariants = Utils.iteratorToList(genotypeData.iterator());
+		List<GeneticVariant> variants = Utils.iteratorToList(streamingGenotypeData.iterator());
+		assertEquals(variants.size(), expectedVariants.size());
+
+		for (int i = 0; i < variants.size(); ++i)
+		{
+			GeneticVariant variant = variants.get(i);
+			GeneticVariant expectedVariant = expectedVariants.get(i);
+
+			assertTrue(variant.getSampleVariantsProvider() instanceof VcfLineSampleVariantsProvider);
+			assertEquals(variant.getPrimaryVariantId(), expectedVariant.getPrimaryVariantId());
+			assertEquals(variant.getSampleVariants(), expectedVariant.getSampleVariants());
+			assertEquals(variant.getSampleVariantsProvider().getSamplePhasing(variant), genotypeData
+					.getSamplePhasing(expectedVariant));
+			assertEquals(variant.getSampleCalledDosages(), expectedVariant.getSampleCalledDosages());
+		}
+
+		// position queries still use the VCF data as provider
+		GeneticVariant variant = streamingGenotypeData.getVariantsByPos("1", 565286).iterator().next();
+		assertEquals(variant.getSampleVariantsProvider(), streamingGenotypeData);
+	}
+
+	@Test
+	public void streamingMissingGenotypes() throws IOException
+	{
+		File tmpDir = File.createTempFile("vcf-missing", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+		try
+		{
+			File bzipVcfFile = new File(tmpDir, "missing.vcf.gz");
+			File tabixIndexFile = new File(tmpDir, "missing.vcf.gz.tbi");
+			writeTestVcf(bzipVcfFile, tabixIndexFile, "1\t100\trs1\tA\tG\t.\tPASS\t.\tGT\t0/1\t./.\t.",
+					"1\t200\trs2\tC\tT\t.\tPASS\t.\tGT\t.|1\t1|1\t0");
+
+			List<GeneticVariant> expectedVariants = Utils.iteratorToList(new VcfGenotypeData(bzipVcfFile,
+					tabixIndexFile, 0).iterator());
+			List<GeneticVariant> variants = Utils.iteratorToList(new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 0,
+					true).iterator());
+			assertEquals(variants.size(), 2);
+
+			for (int i = 0; i < variants.size(); ++i)
+			{
+				GeneticVariant variant = variants.get(i);
+				GeneticVariant expectedVariant = expectedVariants.get(i);
+				assertTrue(variant.getSampleVariantsProvider() instanceof VcfLineSampleVariantsProvider);
+				assertEquals(variant.getSampleVariants(), expectedVariant.getSampleVariants());
+				assertEquals(variant.getSampleCalledDosages(), expectedVariant.getSampleCalledDosages());
+			}
+
+			assertEquals(variants.get(0).getSampleVariants().get(1), Alleles.createAlleles(Allele.ZERO, Allele.ZERO));
+			assertEquals(variants.get(0).getSampleVariants().get(2), Alleles.createAlleles(Arrays.asList(Allele.ZERO)));
+			assertEquals(variants.get(1).getSampleVariants().get(0), Alleles.createAlleles(Allele.ZERO, Allele.T));
+			assertEquals(variants.get(1).getSampleCalledDosages(), new byte[]
+			{ -1, 0, 1 });
+		}
+		finally
+		{
+			FileUtils.deleteDirectory(tmpDir);
+		}
+	}
+
+	@Test
+	public void streamingDosageOfAlternativeAllele() throws IOException
+	{
+		File tmpDir = File.createTempFile("vcf-dosage", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+		try
+		{
+			File bzipVcfFile = new File(tmpDir, "dosage.vcf.gz");
+			File tabixIndexFile = new File(tmpDir, "dosage.vcf.gz.tbi");
+			writeTestVcf(bzipVcfFile, tabixIndexFile,
+					"1\t100\trs1\tA\tG\t.\tPASS\t.\tGT:GP\t0/1:0.1,0.8,0.05\t1/1:.\t1:0.3,0.7");
+
+			GeneticVariant variant = new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 0, true).iterator().next();
+			assertTrue(variant.getSampleVariantsProvider() instanceof VcfLineSampleVariantsProvider);
+
+			assertEquals(variant.getSampleDosages()[0], 1.0f, 1e-6);
+
+			// G as reference, the GP values do not sum to one so the dosage
+			// can not be derived from the dosage of A
+			GeneticVariant altRefVariant = ReadOnlyGeneticVariant.createVariant("rs1", 100, "1",
+					variant.getSampleVariantsProvider(), "A", "G", "G");
+			assertEquals(altRefVariant.getSampleDosages()[0], 0.9f, 1e-6);
+			assertEquals(altRefVariant.getSampleDosages()[1], -1f);
+			assertEquals(altRefVariant.getSampleDosages()[2], 0.7f);
+		}
+		finally
+		{
+			FileUtils.deleteDirectory(tmpDir);
+		}
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void streamingDosageAlleleNotInVcf() throws IOException, URISyntaxException
+	{
+		GeneticVariant variant = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0, true).iterator().next();
+		ReadOnlyGeneticVariant.createVariant("rs1", variant.getStartPos(), variant.getSequenceName(),
+				variant.getSampleVariantsProvider(), "AAAA", "CCCC").getSampleCalledDosages();
+	}
+
+	@Test
+	public void parallelInflater() throws IOException, URISyntaxException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			VcfGenotypeData parallelGenotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi(), 0, true);
+			parallelGenotypeData.setParallelInflater(executor);
+
+			List<GeneticVariant> expectedVariants = Utils.iteratorToList(genotypeData.iterator());
+			List<GeneticVariant> variants = Utils.iteratorToList(parallelGenotypeData.iterator());
+			assertEquals(variants.size(), expectedVariants.size());
+			for (int i = 0; i < variants.size(); ++i)
+			{
+				assertEquals(variants.get(i).getPrimaryVariantId(), expectedVariants.get(i).getPrimaryVariantId());
+				assertEquals(variants.get(i).getSampleVariants(), expectedVariants.get(i).getSampleVariants());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void getVariantsByPositions()
+	{
+		List<GenomicPosition> positions = Arrays.asList(new GenomicPosition("1", 3172273), new GenomicPosition("2",
+				7569187), new GenomicPosition("1", 3171929), new GenomicPosition("1", 3172000), new GenomicPosition(
+				"4", 1), new GenomicPosition("1", 3171929), new GenomicPosition("1", 565286));
+
+		List<List<GeneticVariant>> variants = genotypeData.getVariantsByPositions(positions);
+		assertEquals(variants.size(), positions.size());
+		for (int i = 0; i < positions.size(); ++i)
+		{
+			GenomicPosition position = positions.get(i);
+			assertEquals(variants.get(i), Utils.iteratorToList(genotypeData.getVariantsByPos(
+					position.getSequenceName(), position.getPosition()).iterator()));
+		}
+		assertEquals(variants.get(0).get(0).getPrimaryVariantId(), "rs2455100");
+		assertEquals(variants.get(3).size(), 0);
+		assertEquals(variants.get(4).size(), 0);
+
+		List<GeneticVariant> snpVariants = genotypeData.getSnpVariantsByPositions(positions);
+		assertEquals(snpVariants.get(1).getPrimaryVariantId(), "rs4908464");
+		assertEquals(snpVariants.get(5).getPrimaryVariantId(), "rs4648464");
+		assertNull(snpVariants.get(3));
+	}
+
+	@Test
+	public void imputedDosages() throws IOException
+	{
+		File tmpDir = File.createTempFile("vcf-dosage", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+		try
+		{
+			File bzipVcfFile = new File(tmpDir, "imputed.vcf.gz");
+			File tabixIndexFile = new File(tmpDir, "imputed.vcf.gz.tbi");
+			writeImputedVcf(bzipVcfFile, tabixIndexFile);
+
+			float[] expectedDsDosages =
+			{ 1.127f, 0.1f, -1 };
+			float[] expectedGpDosages =
+			{ 1.9f, 1f, 0.05f };
+
+			VcfGenotypeData uncachedGenotypeData = new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 0);
+			assertDosages(uncachedGenotypeData, expectedDsDosages, expectedGpDosages, 1e-6f);
+			GeneticVariant variant = uncachedGenotypeData.getSnpVariantByPos("1", 100);
+			assertEquals(uncachedGenotypeData.getSampleDosage(variant, new int[]
+			{ 2, 0 }), new float[]
+			{ -1, 1.127f });
+			assertEquals(variant.getSampleCalledDosages(), new byte[]
+			{ 1, 0, -1 });
+
+			assertDosages(new VcfGenotypeData(bzipVcfFile, tabixIndexFile), expectedDsDosages, expectedGpDosages,
+					1e-6f);
+			assertDosages(new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 100, true), expectedDsDosages,
+					expectedGpDosages, 1e-6f);
+			assertDosages(new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 100, false, DosageQuantization.BITS_16),
+					expectedDsDosages, expectedGpDosages, 1e-6f);
+			assertDosages(new VcfGenotypeData(bzipVcfFile, tabixIndexFile, 100, false, DosageQuantization.BITS_8),
+					expectedDsDosages, expectedGpDosages, 0.005f);
+		}
+		finally
+		{
+			FileUtils.deleteDirectory(tmpDir);
+		}
+	}
+
+	private static void assertDosages(VcfGenotypeData genotypeData, float[] expectedDsDosages,
+			float[] expectedGpDosages, float delta)
+	{
+		List<GeneticVariant> variants = Utils.iteratorToList(genotypeData.iterator());
+		assertEquals(variants.size(), 2);
+		for (int repeat = 0; repeat < 2; ++repeat)
+		{
+			assertDosages(variants.get(0).getSampleDosages(), expectedDsDosages, delta);
+			assertDosages(variants.get(1).getSampleDosages(), expectedGpDosages, delta);
+		}
+	}
+
+	private static void assertDosages(float[] dosages, float[] expectedDosages, float delta)
+	{
+		assertEquals(dosages.length, expectedDosages.length);
+		for (int i = 0; i < dosages.length; ++i)
+		{
+			assertEquals(dosages[i], expectedDosages[i], delta);
+		}
+	}
+
+	private static void writeImputedVcf(File bzipVcfFile, File tabixIndexFile) throws IOException
+	{
+		writeTestVcf(bzipVcfFile, tabixIndexFile, "1\t100\trs1\tA\tG\t.\tPASS\t.\tGT:DS\t0/1:0.873\t1/1:1.9\t./.:.",
+				"1\t200\trs2\tC\tT\t.\tPASS\t.\tGT:GP\t0/0:0.9,0.1,0\t0/1:0.2,0.6,0.2\t1/1:0,0.05,0.95");
+	}
 }
@@ -0,0 +1,206 @@
+package org.molgenis.genotype.vcf;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.molgenis.genotype.GenotypeData;
+import org.molgenis.genotype.RandomAccessGenotypeData;
+import org.molgenis.genotype.ResourceTest;
+import org.molgenis.genotype.impute2.Impute2GenotypeData;
+import org.molgenis.genotype.multipart.MultiPartGenotypeData;
+import org.molgenis.genotype.plink.BedBimFamGenotypeData;
+import org.molgenis.genotype.variant.GeneticVariant;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class VcfGenotypeWriterTest extends ResourceTest
+{
+	private VcfGenotypeData genotypeData;
+	private File tmpDir;
+
+	@BeforeClass
+	public void setUp() throws IOException, URISyntaxException
+	{
+		genotypeData = new VcfGenotypeData(getTestVcfGz(), getTestVcfGzTbi());
+	}
+
+	@BeforeMethod
+	public void createTmpDir() throws IOException
+	{
+		tmpDir = File.createTempFile("vcf-writer", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+	}
+
+	@AfterMethod
+	public void deleteTmpDir() throws IOException
+	{
+		FileUtils.deleteDirectory(tmpDir);
+	}
+
+	@Test
+	public void write() throws IOException
+	{
+		String basePath = new File(tmpDir, "test").getPath();
+		new VcfGenotypeWriter(genotypeData).write(basePath);
+
+		VcfGenotypeData writtenGenotypeData = new VcfGenotypeData(new File(basePath + ".vcf.gz"), new File(basePath
+				+ ".vcf.gz.tbi"));
+		assertEquals(writtenGenotypeData.getSeqNames(), genotypeData.getSeqNames());
+		assertEquals(writtenGenotypeData.getSamples().size(), genotypeData.getSamples().size());
+		assertSameCalledDosages(writtenGenotypeData, genotypeData);
+
+		GeneticVariant variant = writtenGenotypeData.getSnpVariantByPos("2", 7569187);
+		assertEquals(variant.getPrimaryVariantId(), "rs4908464");
+	}
+
+	@Test
+	public void writeParallel() throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			File bzipVcfFile = new File(tmpDir, "test.vcf.gz");
+			File tabixIndexFile = new File(tmpDir, "test.vcf.gz.tbi");
+			new VcfGenotypeWriter(genotypeData).write(bzipVcfFile, tabixIndexFile, executor, 2);
+
+			assertSameCalledDosages(new VcfGenotypeData(bzipVcfFile, tabixIndexFile), genotypeData);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void writePerSequence() throws IOException
+	{
+		String basePath = new File(tmpDir, "test").getPath();
+		new VcfGenotypeWriter(genotypeData).writePerSequence(basePath, null, 1);
+
+		List<RandomAccessGenotypeData> parts = new ArrayList<RandomAccessGenotypeData>();
+		int variantCount = 0;
+		for (String seqName : genotypeData.getSeqNames())
+		{
+			File bzipVcfFile = new File(basePath + "." + seqName + ".vcf.gz");
+			VcfGenotypeData writtenGenotypeData = new VcfGenotypeData(bzipVcfFile, new File(bzipVcfFile.getPath()
+					+ ".tbi"));
+			assertEquals(writtenGenotypeData.getSeqNames().size(), 1);
+			assertEquals(writtenGenotypeData.getSeqNames().get(0), seqName);
+			for (GeneticVariant variant : writtenGenotypeData)
+			{
+				assertEquals(variant.getSequenceName(), seqName);
+				++variantCount;
+			}
+			parts.add(writtenGenotypeData);
+		}
+		assertEquals(variantCount, 8);
+
+		// the parts are read in parallel when writing multipart data
+		MultiPartGenotypeData multiPartGenotypeData = new MultiPartGenotypeData(parts);
+		File bzipVcfFile = new File(tmpDir, "merged.vcf.gz");
+		File tabixIndexFile = new File(tmpDir, "merged.vcf.gz.tbi");
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try
+		{
+			new VcfGenotypeWriter(multiPartGenotypeData).write(bzipVcfFile, tabixIndexFile, executor, 3);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertSameCalledDosages(new VcfGenotypeData(bzipVcfFile, tabixIndexFile), genotypeData);
+	}
+
+	@Test
+	public void writePhased() throws IOException, URISyntaxException
+	{
+		GenotypeData impute2GenotypeData = new Impute2GenotypeData(getTestImpute2Gz(), getTestImpute2GzTbi(),
+				getTestImpute2Sample());
+		String basePath = new File(tmpDir, "test").getPath();
+		new VcfGenotypeWriter(impute2GenotypeData).write(basePath);
+
+		VcfGenotypeData writtenGenotypeData = new VcfGenotypeData(new File(basePath + ".vcf.gz"), new File(basePath
+				+ ".vcf.gz.tbi"));
+		Iterator<GeneticVariant> writtenVariants = writtenGenotypeData.iterator();
+		for (GeneticVariant variant : impute2GenotypeData)
+		{
+			GeneticVariant writtenVariant = writtenVariants.next();
+			assertEquals(writtenVariant.getStartPos(), variant.getStartPos());
+			assertEquals(writtenVariant.getVariantAlleles(), variant.getVariantAlleles());
+			assertEquals(writtenVariant.getSampleVariants(), variant.getSampleVariants());
+			assertEquals(writtenGenotypeData.getSamplePhasing(writtenVariant), variant.getSampleVariantsProvider()
+					.getSamplePhasing(variant));
+		}
+		assertFalse(writtenVariants.hasNext());
+	}
+
+	@Test
+	public void writeUncompressed() throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		new VcfGenotypeWriter(genotypeData).write(writer);
+
+		String[] lines = writer.toString().split("\n");
+		assertEquals(lines[0], "##fileformat=VCFv4.1");
+		assertTrue(lines[3].startsWith("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\t"));
+		assertEquals(lines.length, 4 + 8);
+		assertTrue(lines[lines.length - 1].startsWith("3\t7569\t.\tG\t<DEL>\t.\t.\t.\tGT:DS\t"));
+	}
+
+	@Test
+	public void writeCalledDosageAsDs() throws Exception
+	{
+		StringWriter writer = new StringWriter();
+		new VcfGenotypeWriter(new BedBimFamGenotypeData(getTestBed(), getTestBim(), getTestFam())).write(writer);
+
+		int genotypeCount = 0;
+		for (String line : writer.toString().split("\n"))
+		{
+			if (line.startsWith("#"))
+			{
+				continue;
+			}
+			String[] columns = line.split("\t");
+			assertEquals(columns[8], "GT:DS");
+			for (int i = 9; i < columns.length; ++i)
+			{
+				String[] values = columns[i].split(":");
+				assertEquals(values[1], values[0].equals("./.") ? "." : String.valueOf(values[0].replace("0", "")
+						.replace("/", "").length()));
+				++genotypeCount;
+			}
+		}
+		assertTrue(genotypeCount > 0);
+	}
+
+	private static void assertSameCalledDosages(GenotypeData actual, GenotypeData expected)
+	{
+		Iterator<GeneticVariant> actualVariants = actual.iterator();
+		for (GeneticVariant variant : expected)
+		{
+			GeneticVariant actualVariant = actualVariants.next();
+			assertEquals(actualVariant.getSequenceName(), variant.getSequenceName());
+			assertEquals(actualVariant.getStartPos(), variant.getStartPos());
+			assertEquals(actualVariant.getVariantId().getVariantIds(), variant.getVariantId().getVariantIds());
+			assertEquals(actualVariant.getVariantAlleles(), variant.getVariantAlleles());
+			assertEquals(actualVariant.getRefAllele(), variant.getRefAllele());
+			assertEquals(actualVariant.getSampleCalledDosages(), variant.getSampleCalledDosages());
+		}
+		assertFalse(actualVariants.hasNext());
+	}
+}
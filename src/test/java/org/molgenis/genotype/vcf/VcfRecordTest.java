@@ -0,0 +1,153 @@
+package org.molgenis.genotype.vcf;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.molgenis.genotype.GenotypeDataException;
+import org.testng.annotations.Test;
+
+public class VcfRecordTest
+{
+	private static final List<String> COLUMN_NAMES = Arrays.asList("#CHROM", "POS", "ID", "REF", "ALT", "QUAL",
+			"FILTER", "INFO", "FORMAT", "S1", "S2", "S3");
+
+	private static final String LINE = "1\t565286\trs1;rs2\tC\tT,G\t.\tPASS\tAC=3\tDP:GT\t5:0/1\t6:2|2\t.:./.";
+
+	@Test
+	public void fixedColumns()
+	{
+		VcfRecord record = new VcfRecord(LINE, COLUMN_NAMES);
+		assertEquals(record.getChrom(), "1");
+		assertEquals(record.getPos(), Integer.valueOf(565286));
+		assertEquals(record.getId(), Arrays.asList("rs1", "rs2"));
+		assertEquals(record.getAlleles(), Arrays.asList("C", "T", "G"));
+		assertNull(record.getQual());
+		assertEquals(record.getFilter(), Arrays.asList("PASS"));
+		assertEquals(record.getInfo("AC"), Arrays.asList("3"));
+		assertEquals(record.getFormat(), Arrays.asList("DP", "GT"));
+		assertEquals(record.getSampleCount(), 3);
+	}
+
+	@Test
+	public void sampleValues()
+	{
+		VcfRecord record = new VcfRecord(LINE, COLUMN_NAMES);
+		assertEquals(record.getSampleValue(0, "DP"), "5");
+		assertEquals(record.getSampleValue(1, "GT"), "2|2");
+		assertEquals(record.getSampleValue("S3", "GT"), "./.");
+		assertNull(record.getSampleValue(0, "GQ"));
+		assertNull(record.getSampleValue("S4", "GT"));
+
+		VcfSampleGenotype genotype = record.getSampleGenotype(1);
+		assertEquals(genotype.getSamleVariants(record.getAlleles()), Arrays.asList("G", "G"));
+		assertEquals(genotype.getPhasing(), Arrays.asList(true));
+	}
+
+	@Test
+	public void loadSampleCalledDosage()
+	{
+		VcfRecord record = new VcfRecord(LINE, COLUMN_NAMES);
+		byte[] calledDosage = new byte[3];
+		record.loadSampleCalledDosage(0, calledDosage);
+		assertEquals(calledDosage, new byte[]
+		{ 1, 0, -1 });
+		record.loadSampleCalledDosage(2, calledDosage);
+		assertEquals(calledDosage, new byte[]
+		{ 0, 2, -1 });
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void loadSampleCalledDosageMissingGt()
+	{
+		VcfRecord record = new VcfRecord("1\t1\t.\tC\tT\t.\tPASS\t.\tDP:GT\t5:0/1\t6\t.:./.", COLUMN_NAMES);
+		record.loadSampleCalledDosage(0, new byte[3]);
+	}
+
+	@Test
+	public void loadSampleDosageDs()
+	{
+		VcfRecord record = new VcfRecord("1\t1\t.\tC\tT\t.\tPASS\t.\tGT:DS\t0/1:0.25\t1/1:.\t0/0", COLUMN_NAMES);
+		float[] dosage = new float[3];
+		assertTrue(record.loadSampleDosage(0, dosage));
+		assertEquals(dosage, new float[]
+		{ 1.75f, -1, -1 });
+		assertTrue(record.loadSampleDosage(1, new int[]
+		{ 0 }, dosage));
+		assertEquals(dosage[0], 0.25f);
+
+		// the reference dosage of haploid samples is one minus DS, as for GP
+		VcfRecord haploidRecord = new VcfRecord("1\t1\t.\tC\tT\t.\tPASS\t.\tGT:DS\t1:0.75\t.:0.5\t0|1:0.5",
+				COLUMN_NAMES);
+		assertTrue(haploidRecord.loadSampleDosage(0, dosage));
+		assertEquals(dosage, new float[]
+		{ 0.25f, 1.5f, 1.5f });
+		assertTrue(haploidRecord.loadSampleDosage(1, dosage));
+		assertEquals(dosage, new float[]
+		{ 0.75f, 0.5f, 0.5f });
+
+		VcfRecord multiAllelicRecord = new VcfRecord("1\t1\t.\tC\tT,G\t.\tPASS\t.\tDS\t0.5,1\t1.2e-1,0\t1,1.001",
+				COLUMN_NAMES);
+		assertTrue(multiAllelicRecord.loadSampleDosage(0, dosage));
+		assertEquals(dosage, new float[]
+		{ 0.5f, 1.88f, 0 });
+		assertTrue(multiAllelicRecord.loadSampleDosage(2, dosage));
+		assertEquals(dosage, new float[]
+		{ 1, 0, 1.001f });
+	}
+
+	@Test
+	public void loadSampleDosageGp()
+	{
+		VcfRecord record = new VcfRecord("1\t1\t.\tC\tT\t.\tPASS\t.\tGT:GP\t0/1:0.1,0.8,0.1\t0/0:.\t0:0.25,0.75",
+				COLUMN_NAMES);
+		float[] dosage = new float[3];
+		assertTrue(record.loadSampleDosage(0, dosage));
+		assertEquals(dosage[0], 1f, 1e-6);
+		assertEquals(dosage[1], -1f);
+		assertEquals(dosage[2], 0.25f);
+		assertTrue(record.loadSampleDosage(1, dosage));
+		assertEquals(dosage[0], 1f, 1e-6);
+		assertEquals(dosage[2], 0.75f);
+
+		assertFalse(new VcfRecord(LINE, COLUMN_NAMES).loadSampleDosage(0, dosage));
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void loadSampleDosageWrongGpCount()
+	{
+		VcfRecord record = new VcfRecord("1\t1\t.\tC\tT\t.\tPASS\t.\tGP\t0,1,0\t0,0,0,1\t.", COLUMN_NAMES);
+		record.loadSampleDosage(0, new float[3]);
+	}
+
+	@Test
+	public void parseFloat()
+	{
+		String[] values =
+		{ "0", "1", "0.123", "-2.5", "+3", "1e-3", "2.5E2", ".5", "5.", "0.12345678901234567890123",
+				"123456789012345678901234567890", "NaN", "Infinity" };
+		for (String value : values)
+		{
+			String text = "x" + value + ",";
+			assertEquals(VcfRecord.parseFloat(text, 1, text.length() - 1), Float.parseFloat(value), value);
+		}
+		assertTrue(Float.isNaN(VcfRecord.parseFloat(".", 0, 1)));
+		assertTrue(Float.isNaN(VcfRecord.parseFloat("", 0, 0)));
+	}
+
+	@Test(expectedExceptions = GenotypeDataException.class)
+	public void parseFloatNotANumber()
+	{
+		VcfRecord.parseFloat("1e", 0, 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void wrongColumnCount()
+	{
+		new VcfRecord("1\t565286\trs1\tC\tT\t.\tPASS\t.\tGT\t0/1", COLUMN_NAMES);
+	}
+}
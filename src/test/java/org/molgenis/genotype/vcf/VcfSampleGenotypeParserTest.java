@@ -52,4 +52,47 @@ public class VcfSampleGenotypeParserTest
 		assertFalse(geno.getPhasing().get(0));
 		assertFalse(geno.getPhasing().get(1));
 	}
+
+	@Test
+	public void countAlleleIndex()
+	{
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("0|1", 0, 3, 0), 1);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("0/0", 0, 3, 0), 2);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("1/1", 0, 3, 0), 0);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("./.", 0, 3, 0), -1);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("0/.", 0, 3, 0), -1);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("1", 0, 1, 1), 1);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("0/2/1", 0, 5, 2), 1);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("10|1", 0, 4, 10), 1);
+		assertEquals(VcfSampleGenotypeParser.countAlleleIndex("x:1|1:y", 2, 5, 1), 2);
+	}
+
+	@Test
+	public void countAlleles()
+	{
+		assertEquals(VcfSampleGenotypeParser.countAlleles("0|1", 0, 3), 2);
+		assertEquals(VcfSampleGenotypeParser.countAlleles("./.", 0, 3), 2);
+		assertEquals(VcfSampleGenotypeParser.countAlleles("1", 0, 1), 1);
+		assertEquals(VcfSampleGenotypeParser.countAlleles("0/2/1", 0, 5), 3);
+		assertEquals(VcfSampleGenotypeParser.countAlleles(".", 0, 1), 0);
+		assertEquals(VcfSampleGenotypeParser.countAlleles("x:1:y", 2, 2), 0);
+	}
+
+	@Test
+	public void parseAlleleIndices()
+	{
+		byte[] alleleIndices = new byte[4];
+		assertEquals(VcfSampleGenotypeParser.parseAlleleIndices("0|1", 0, 3, alleleIndices, 0), 1);
+		assertEquals(VcfSampleGenotypeParser.parseAlleleIndices("x:12/.", 2, 6, alleleIndices, 2), 0);
+		assertEquals(alleleIndices, new byte[]
+		{ 0, 1, 12, -1 });
+
+		assertEquals(VcfSampleGenotypeParser.parseAlleleIndices("1", 0, 1, alleleIndices, 0), 0);
+		assertEquals(alleleIndices[0], 1);
+		assertEquals(alleleIndices[1], -2);
+
+		assertEquals(VcfSampleGenotypeParser.parseAlleleIndices("0/1/1", 0, 5, alleleIndices, 0), -1);
+		assertEquals(VcfSampleGenotypeParser.parseAlleleIndices("128/1", 0, 5, alleleIndices, 0), -1);
+		assertEquals(VcfSampleGenotypeParser.parseAlleleIndices("", 0, 0, alleleIndices, 0), -1);
+	}
 }